@@ -0,0 +1,58 @@
+package org.example.benchmark;
+
+import org.example.repository.IProduitRepository;
+import org.example.repository.ProduitStatistics;
+import org.example.repository.query.Criteria;
+import org.example.repository.query.Criterion;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of the parallel aggregation with the number of cores.
+ * The aggregation runs in a pool of {@code parallelism} workers; run it with -Dthreads=1 so that
+ * a single benchmark thread drives the pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class AggregationBenchmark {
+
+    @Param({"10000000"})
+    int size;
+
+    @Param({"hashmap", "columnar"})
+    String impl;
+
+    @Param({"1", "2", "4", "8", "16"})
+    int parallelism;
+
+    IProduitRepository repository;
+    ForkJoinPool pool;
+    private final Criterion halfOfPrices = Criteria.prix().lt(Catalog.MAX_PRIX / 2);
+
+    @Setup(Level.Trial)
+    public void load() {
+        repository = Catalog.load(impl, size);
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public ProduitStatistics aggregateAll() {
+        return pool.submit(() -> repository.aggregate()).join();
+    }
+
+    @Benchmark
+    public ProduitStatistics aggregateFiltered() {
+        return pool.submit(() -> repository.aggregate(halfOfPrices)).join();
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.benchmark;
+
+import org.example.entity.Produit;
+import org.example.repository.IProduitRepository;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The batch methods against the equivalent loop of single calls, per batch of {@code batchSize} products.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    int batchSize;
+
+    @Param({"hashmap", "columnar"})
+    String impl;
+
+    IProduitRepository repository;
+    List<Produit> batch;
+    List<Long> refs;
+
+    @Setup(Level.Trial)
+    public void init() {
+        repository = Catalog.create(impl, batchSize);
+        batch = Catalog.produits(batchSize, new SplittableRandom(Catalog.SEED));
+        refs = new ArrayList<>(batchSize);
+    }
+
+    @Benchmark
+    public void saveAllThenDeleteAll(Blackhole bh) {
+        refs.clear();
+        for (Produit p : repository.saveAll(batch))
+            refs.add(p.getRef());
+        bh.consume(repository.findAllByRefs(refs));
+        repository.deleteAll(refs);
+    }
+
+    @Benchmark
+    public void saveThenDeleteLoop(Blackhole bh) {
+        refs.clear();
+        for (Produit p : batch)
+            refs.add(repository.save(p).getRef());
+        for (Long ref : refs)
+            bh.consume(repository.finfByRef(ref));
+        for (Long ref : refs)
+            repository.detele(ref);
+    }
+}
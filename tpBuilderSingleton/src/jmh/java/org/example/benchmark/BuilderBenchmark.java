@@ -0,0 +1,67 @@
+package org.example.benchmark;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost and allocation of building a product; run with the GC profiler to read the bytes per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuilderBenchmark {
+
+    private final Instant creation = Instant.ofEpochMilli(1_700_000_000_000L);
+    private final Instant premption = Instant.ofEpochMilli(1_700_000_000_000L + 30 * Catalog.DAY);
+    private final ProduitBuilder builder = new ProduitBuilder();
+    private final Produit template = build();
+    private long ref;
+
+    /**
+     * A new builder per product, as most callers do.
+     */
+    @Benchmark
+    public Produit build() {
+        return new ProduitBuilder()
+                .ref(++ref)
+                .nom("Produit")
+                .prix(12.5)
+                .quantiteStock(100)
+                .dateCreation(creation)
+                .datePremption(premption)
+                .type(TypeProduit.Neutritif)
+                .build();
+    }
+
+    /**
+     * One builder reset for every product, as a bulk loader does: only the product is allocated.
+     */
+    @Benchmark
+    public Produit buildReused() {
+        return builder.reset()
+                .ref(++ref)
+                .nom("Produit")
+                .prix(12.5)
+                .quantiteStock(100)
+                .dateCreationMillis(1_700_000_000_000L)
+                .datePremptionMillis(1_700_000_000_000L + 30 * Catalog.DAY)
+                .type(TypeProduit.Neutritif)
+                .build();
+    }
+
+    /**
+     * A modified copy of an existing product.
+     */
+    @Benchmark
+    public Produit withQuantiteStock() {
+        return template.withQuantiteStock(++ref);
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.benchmark;
+
+import org.example.entity.Produit;
+import org.example.repository.CachingProduitRepository;
+import org.example.repository.IProduitRepository;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups and writes through the caching decorator, in front of a backend that answers every
+ * call after {@code latencyMicros}. References are drawn from a Zipf distribution of exponent
+ * {@code skew} (rank k is drawn with a probability proportional to 1/k^skew), the usual model of
+ * a catalog where a few products get most of the traffic. {@code mode} "none" measures the slow
+ * backend alone, for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheBenchmark {
+
+    @Param({"100000"})
+    int size;
+
+    @Param({"10000"})
+    int cacheSize;
+
+    @Param({"0.8", "1.2"})
+    double skew;
+
+    @Param({"100"})
+    long latencyMicros;
+
+    @Param({"none", "write-through", "write-behind"})
+    String mode;
+
+    IProduitRepository repository;
+    private double[] cdf; // Cumulative probability of the ranks 1 to i + 1
+    private long[] refByRank; // Shuffled, so that the hot products are spread over the references
+
+    @Setup(Level.Trial)
+    public void load() {
+        IProduitRepository backend = new SlowProduitRepository(Catalog.load("hashmap", size), latencyMicros);
+        switch (mode) {
+            case "none":
+                repository = backend;
+                break;
+            case "write-through":
+                repository = CachingProduitRepository.builder(backend).maximumSize(cacheSize).build();
+                break;
+            case "write-behind":
+                repository = CachingProduitRepository.builder(backend).maximumSize(cacheSize).writeBehind(10).build();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown cache mode: " + mode);
+        }
+        cdf = new double[size];
+        double sum = 0;
+        for (int rank = 1; rank <= size; rank++) {
+            sum += 1 / Math.pow(rank, skew);
+            cdf[rank - 1] = sum;
+        }
+        for (int i = 0; i < size; i++)
+            cdf[i] /= sum;
+        refByRank = new long[size];
+        for (int i = 0; i < size; i++)
+            refByRank[i] = i + 1;
+        SplittableRandom random = new SplittableRandom(Catalog.SEED);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long swap = refByRank[i];
+            refByRank[i] = refByRank[j];
+            refByRank[j] = swap;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        if (repository instanceof CachingProduitRepository) {
+            CachingProduitRepository cache = (CachingProduitRepository) repository;
+            cache.close();
+            System.out.println(cache.stats());
+        }
+    }
+
+    /**
+     * Per-thread source of new products, so that generating them does not contend.
+     */
+    @State(Scope.Thread)
+    public static class Products {
+        SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+        }
+    }
+
+    private long zipfRef() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        int lo = 0;
+        int hi = cdf.length - 1;
+        while (lo < hi) { // First rank whose cumulative probability reaches u
+            int mid = (lo + hi) >>> 1;
+            if (cdf[mid] < u)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return refByRank[lo];
+    }
+
+    @Benchmark
+    public Optional<Produit> finfByRef() {
+        return repository.finfByRef(zipfRef());
+    }
+
+    /**
+     * Nine lookups for one overwrite of a product, drawn from the same distribution.
+     */
+    @Benchmark
+    public Object readMostly(Products products) {
+        long ref = zipfRef();
+        if (products.random.nextInt(10) == 0)
+            return repository.update(Catalog.produit(products.random).withRef(ref));
+        return repository.finfByRef(ref);
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.benchmark;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.example.repository.ColumnarProduitRepository;
+import org.example.repository.IProduitRepository;
+import org.example.repository.ProduitRepositoryImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic product catalogs shared by the benchmarks.
+ * A fixed seed keeps the data, and therefore the selectivity of the searches, identical between runs.
+ */
+final class Catalog {
+
+    static final long SEED = 42L;
+    static final double MAX_PRIX = 1_000;
+    static final double MAX_STOCK = 10_000;
+    static final long DAY = 24L * 60 * 60 * 1000;
+
+    static final long NOW = 1_700_000_000_000L; // Fixed, so that runs are comparable
+    private static final TypeProduit[] TYPES = TypeProduit.values();
+
+    private Catalog() {
+    }
+
+    /**
+     * @param random The source of the field values.
+     * @return A new product without reference.
+     */
+    static Produit produit(SplittableRandom random) {
+        return new ProduitBuilder()
+                .nom("P" + random.nextInt(1_000_000))
+                .prix(random.nextDouble() * MAX_PRIX)
+                .quantiteStock(random.nextDouble() * MAX_STOCK)
+                .dateCreationMillis(NOW - random.nextLong(365 * DAY))
+                .datePremptionMillis(NOW + random.nextLong(365 * DAY))
+                .type(TYPES[random.nextInt(TYPES.length)])
+                .build();
+    }
+
+    /**
+     * @param size The number of products.
+     * @param random The source of the field values.
+     * @return New products without reference.
+     */
+    static List<Produit> produits(int size, SplittableRandom random) {
+        List<Produit> produits = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            produits.add(produit(random));
+        return produits;
+    }
+
+    /**
+     * @param impl {@code "hashmap"} or {@code "columnar"}.
+     * @param size The number of products to load, with references 1 to size.
+     * @return A new repository holding the catalog.
+     */
+    static IProduitRepository load(String impl, int size) {
+        IProduitRepository repository = create(impl, size);
+        SplittableRandom random = new SplittableRandom(SEED);
+        int batch = 100_000; // Bounds the garbage of the loading itself
+        for (int loaded = 0; loaded < size; loaded += batch)
+            repository.saveAll(produits(Math.min(batch, size - loaded), random));
+        return repository;
+    }
+
+    static IProduitRepository create(String impl, int capacity) {
+        switch (impl) {
+            case "hashmap":
+                return ProduitRepositoryImpl.newInstance();
+            case "columnar":
+                return new ColumnarProduitRepository(capacity);
+            default:
+                throw new IllegalArgumentException("Unknown repository implementation: " + impl);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.example.benchmark;
+
+import org.example.entity.Produit;
+import org.example.io.ProduitCodec;
+import org.example.io.ProduitJson;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a batch of {@value #BATCH} products with the binary codec and with the
+ * Jackson streaming JSON of {@link ProduitJson}. Scores are per product. The encoded size of each
+ * form is printed during the setup. The dictionary codec knows every name of the batch, which is
+ * the best case for it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    static final int BATCH = 1000;
+
+    @Param({"heap", "direct"})
+    String buffer;
+
+    List<Produit> produits;
+    ProduitCodec dictionary;
+    ByteBuffer out;
+    ByteBuffer encoded;
+    ByteBuffer encodedWithDictionary;
+    ByteArrayOutputStream json;
+    byte[] encodedJson;
+
+    @Setup(Level.Trial)
+    public void init() throws IOException {
+        produits = new ArrayList<>(BATCH);
+        for (Produit p : Catalog.produits(BATCH, new SplittableRandom(Catalog.SEED)))
+            produits.add(p.withRefAndVersion(produits.size() + 1, 1));
+        List<String> names = new ArrayList<>(BATCH);
+        for (Produit p : produits)
+            names.add(p.getNom());
+        dictionary = ProduitCodec.withDictionary(names);
+        int capacity = 0;
+        for (Produit p : produits)
+            capacity += ProduitCodec.standard().sizeOf(p);
+        out = allocate(capacity);
+        encoded = allocate(capacity);
+        encodedWithDictionary = allocate(capacity);
+        for (Produit p : produits) {
+            ProduitCodec.standard().encode(p, encoded);
+            dictionary.encode(p, encodedWithDictionary);
+        }
+        encoded.flip();
+        encodedWithDictionary.flip();
+        json = new ByteArrayOutputStream(capacity * 8);
+        ProduitJson.write(produits, json, ProduitJson.Format.NDJSON);
+        encodedJson = json.toByteArray();
+        System.out.printf("%nBytes per product: binary %.1f, binary with dictionary %.1f, JSON %.1f%n",
+                (double) encoded.remaining() / BATCH, (double) encodedWithDictionary.remaining() / BATCH,
+                (double) encodedJson.length / BATCH);
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return buffer.equals("direct") ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public ByteBuffer encodeBinary() {
+        out.clear();
+        for (Produit p : produits)
+            ProduitCodec.standard().encode(p, out);
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public ByteBuffer encodeBinaryWithDictionary() {
+        out.clear();
+        for (Produit p : produits)
+            dictionary.encode(p, out);
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void decodeBinary(Blackhole bh) {
+        ByteBuffer in = encoded.duplicate();
+        while (in.hasRemaining())
+            bh.consume(ProduitCodec.standard().decode(in));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void decodeBinaryWithDictionary(Blackhole bh) {
+        ByteBuffer in = encodedWithDictionary.duplicate();
+        while (in.hasRemaining())
+            bh.consume(dictionary.decode(in));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public ByteArrayOutputStream encodeJson() throws IOException {
+        json.reset();
+        ProduitJson.write(produits, json, ProduitJson.Format.NDJSON);
+        return json;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void decodeJson(Blackhole bh) throws IOException {
+        ProduitJson.read(new ByteArrayInputStream(encodedJson), BATCH, list -> list.forEach(bh::consume));
+    }
+}
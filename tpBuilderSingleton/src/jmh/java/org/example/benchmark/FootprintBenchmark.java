@@ -0,0 +1,69 @@
+package org.example.benchmark;
+
+import org.example.repository.IProduitRepository;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained by a catalog of {@code size} products in the map-backed and the columnar
+ * repositories, measured as the used heap after a full collection, before and after loading.
+ * The {@code heapBytes} and {@code bytesPerProduct} counters hold the result; the time is that of
+ * the load. 10M products need about 6 GB of heap in the map-backed repository: raise -Xmx with
+ * -jvmArgsAppend when the machine has the memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class FootprintBenchmark {
+
+    @Param({"hashmap", "columnar"})
+    String impl;
+
+    @Param({"1000000", "10000000"})
+    int size;
+
+    IProduitRepository repository; // Kept reachable until the heap is measured
+
+    /**
+     * Footprint of the loaded catalog, reported next to the load time.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long heapBytes;
+        public double bytesPerProduct;
+    }
+
+    @TearDown(Level.Iteration)
+    public void drop() {
+        repository = null;
+    }
+
+    @Benchmark
+    public void load(Footprint footprint) {
+        long before = usedHeap();
+        repository = Catalog.load(impl, size);
+        footprint.heapBytes = usedHeap() - before;
+        footprint.bytesPerProduct = (double) footprint.heapBytes / size;
+    }
+
+    // Used heap once collections no longer free anything
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            memory.gc();
+            long now = memory.getHeapMemoryUsage().getUsed();
+            if (now >= used)
+                return now;
+            used = now;
+        }
+        return used;
+    }
+}
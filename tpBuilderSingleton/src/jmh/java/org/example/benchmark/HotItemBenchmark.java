@@ -0,0 +1,72 @@
+package org.example.benchmark;
+
+import org.example.entity.Produit;
+import org.example.repository.IProduitRepository;
+import org.example.repository.OptimisticLockException;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent writes to a few hot products; run with several threads (-Dthreads) to measure contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotItemBenchmark {
+
+    @Param({"1", "16"})
+    int hotItems;
+
+    @Param({"hashmap", "columnar"})
+    String impl;
+
+    IProduitRepository repository;
+    long[] refs;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void init() {
+        repository = Catalog.create(impl, hotItems);
+        refs = new long[hotItems];
+        SplittableRandom random = new SplittableRandom(Catalog.SEED);
+        for (int i = 0; i < hotItems; i++)
+            refs[i] = repository.save(Catalog.produit(random)).getRef();
+    }
+
+    private long nextRef(Cursor cursor) {
+        return refs[cursor.next++ % refs.length];
+    }
+
+    @Benchmark
+    public Produit adjustStock(Cursor cursor) {
+        return repository.adjustStock(nextRef(cursor), -1);
+    }
+
+    @Benchmark
+    public Produit reprice(Cursor cursor) {
+        return repository.reprice(nextRef(cursor), prix -> prix * 1.0001);
+    }
+
+    // The read-modify-write loop a client runs itself without adjustStock
+    @Benchmark
+    public Produit compareAndSetLoop(Cursor cursor) {
+        long ref = nextRef(cursor);
+        while (true) {
+            Produit p = repository.finfByRef(ref).get();
+            try {
+                return repository.updateVersioned(p.withQuantiteStock(p.getQuantiteStock() - 1));
+            } catch (OptimisticLockException e) {
+                // Another thread won the race: read again
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.benchmark;
+
+import org.example.entity.Produit;
+import org.example.repository.JournaledProduitRepository;
+import org.example.repository.ProduitRepositoryImpl;
+import org.example.repository.SyncPolicy;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Write throughput of the journaled repository under each sync policy.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+
+    @Param({"EVERY_WRITE", "INTERVAL", "OS_MANAGED"})
+    SyncPolicy.Mode policy;
+
+    Path directory;
+    JournaledProduitRepository repository;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("journal-bench");
+        repository = JournaledProduitRepository.open(directory, ProduitRepositoryImpl.newInstance(), policy(policy));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        repository.close();
+        deleteRecursively(directory);
+    }
+
+    static SyncPolicy policy(SyncPolicy.Mode mode) {
+        switch (mode) {
+            case EVERY_WRITE:
+                return SyncPolicy.everyWrite();
+            case INTERVAL:
+                return SyncPolicy.everyMillis(10);
+            default:
+                return SyncPolicy.osManaged();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Produit update() {
+        Produit p = Catalog.produit(new SplittableRandom(ThreadLocalRandom.current().nextLong()));
+        return repository.update(p.withRef(1L + ThreadLocalRandom.current().nextInt(100_000)));
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.benchmark;
+
+import org.example.repository.IProduitRepository;
+import org.example.repository.JournaledProduitRepository;
+import org.example.repository.ProduitRepositoryImpl;
+import org.example.repository.SyncPolicy;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to reopen a journaled repository whose log holds {@code size} records and no snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class JournalRecoveryBenchmark {
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    Path directory;
+
+    @Setup(Level.Trial)
+    public void write() throws IOException {
+        directory = Files.createTempDirectory("journal-recovery");
+        try (JournaledProduitRepository journal = JournaledProduitRepository.open(directory,
+                ProduitRepositoryImpl.newInstance(), SyncPolicy.osManaged())) {
+            SplittableRandom random = new SplittableRandom(Catalog.SEED);
+            for (int loaded = 0; loaded < size; loaded += 10_000)
+                journal.saveAll(Catalog.produits(Math.min(10_000, size - loaded), random));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        JournalBenchmark.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public IProduitRepository recover() throws IOException {
+        try (JournaledProduitRepository journal = JournaledProduitRepository.open(directory,
+                ProduitRepositoryImpl.newInstance(), SyncPolicy.osManaged())) {
+            return journal;
+        }
+    }
+}
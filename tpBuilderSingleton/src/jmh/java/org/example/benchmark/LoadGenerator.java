@@ -0,0 +1,325 @@
+package org.example.benchmark;
+
+import org.example.entity.Produit;
+import org.example.io.ProduitJson;
+import org.example.repository.metrics.LatencyHistogram; // Latency percentiles of the requests
+import org.example.server.ProduitHttpServer;
+
+import java.io.*; // Sockets and the child process
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load on a {@link ProduitHttpServer}: {@code -Dclients} clients, each on its own
+ * virtual thread with its own keep-alive connection, send requests back to back for
+ * {@code -Dseconds} once all of them are connected, and the throughput and latency percentiles
+ * are printed per request kind. The mix is 90% lookups, 8% searches (the ten best stocked
+ * products of a type) and 2% updates, over a catalog of {@code -Dsize} products.
+ * <p>
+ * The server runs in a child JVM on the same class path, so that the client and server sockets
+ * are counted against two file descriptor limits, unless {@code -Dport} names a server already
+ * running. Run with the JDK of the server:
+ * <pre>
+ * java -Dclients=10000 -Dseconds=20 -cp target/benchmarks.jar org.example.benchmark.LoadGenerator
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private static final String[] KINDS = {"lookup", "search", "update"};
+    private static final int LOOKUP = 0;
+    private static final int SEARCH = 1;
+    private static final int UPDATE = 2;
+
+    private final int clients = Integer.getInteger("clients", 10_000);
+    private final int seconds = Integer.getInteger("seconds", 20);
+    private final int size = Integer.getInteger("size", 100_000);
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[KINDS.length];
+    private final LongAdder[] failures = new LongAdder[KINDS.length]; // Answers other than 2xx
+    private final LongAdder reconnects = new LongAdder();
+    private final byte[][] updates = new byte[64][]; // Bodies of the updates, made once
+    private volatile boolean measuring;
+    private volatile boolean stopping;
+
+    private LoadGenerator() throws IOException {
+        for (int i = 0; i < KINDS.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            failures[i] = new LongAdder();
+        }
+        SplittableRandom random = new SplittableRandom(Catalog.SEED + 1);
+        for (int i = 0; i < updates.length; i++)
+            updates[i] = json(Collections.singletonList(Catalog.produit(random)), ProduitJson.Format.NDJSON);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator().run();
+    }
+
+    private void run() throws Exception {
+        Process server = null;
+        int port = Integer.getInteger("port", 0);
+        if (port == 0) {
+            server = startServer();
+            port = readPort(server);
+        }
+        try {
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+            load(address);
+            measure(address);
+        } finally {
+            if (server != null) {
+                server.getOutputStream().close(); // The server stops at the end of its standard input
+                if (!server.waitFor(10, TimeUnit.SECONDS))
+                    server.destroyForcibly();
+            }
+        }
+    }
+
+    private Process startServer() throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return new ProcessBuilder(java,
+                "-Dsun.net.httpserver.maxIdleConnections=" + clients, // Keep the connections of idle clients open
+                "-cp", System.getProperty("java.class.path"),
+                ProduitHttpServer.class.getName())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    private static int readPort(Process server) throws IOException {
+        BufferedReader out = new BufferedReader(new InputStreamReader(server.getInputStream(), StandardCharsets.UTF_8));
+        String line = out.readLine(); // "Serving products on port p with ... threads"
+        if (line == null)
+            throw new IOException("The server exited before listening");
+        System.out.println(line);
+        String[] words = line.split(" ");
+        return Integer.parseInt(words[4]);
+    }
+
+    // Saves the catalog in batches over one connection
+    private void load(InetSocketAddress address) throws IOException {
+        SplittableRandom random = new SplittableRandom(Catalog.SEED);
+        try (Connection connection = new Connection(address)) {
+            for (int loaded = 0; loaded < size; loaded += 10_000) {
+                List<Produit> batch = Catalog.produits(Math.min(10_000, size - loaded), random);
+                int status = connection.send("POST", "/produits", json(batch, ProduitJson.Format.JSON_ARRAY));
+                if (status != 201)
+                    throw new IOException("Loading the catalog failed with status " + status);
+            }
+        }
+        System.out.printf("Loaded %,d products%n", size);
+    }
+
+    private void measure(InetSocketAddress address) throws InterruptedException {
+        CountDownLatch connected = new CountDownLatch(clients);
+        AtomicInteger failedToConnect = new AtomicInteger();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        long startedConnecting = System.nanoTime();
+        for (int i = 0; i < clients; i++)
+            executor.execute(() -> client(address, connected, failedToConnect));
+        connected.await();
+        System.out.printf("%,d clients connected in %d ms (%d failed)%n",
+                clients - failedToConnect.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedConnecting),
+                failedToConnect.get());
+        Thread.sleep(TimeUnit.SECONDS.toMillis(Math.min(5, seconds))); // Warm up with every client in the loop
+        measuring = true;
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        measuring = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        stopping = true;
+        executor.shutdown();
+        executor.awaitTermination(60, TimeUnit.SECONDS);
+        report(elapsed);
+    }
+
+    private void client(InetSocketAddress address, CountDownLatch connected, AtomicInteger failedToConnect) {
+        Connection connection;
+        try {
+            connection = Connection.open(address, 10);
+        } catch (IOException e) {
+            failedToConnect.incrementAndGet();
+            connected.countDown();
+            return;
+        }
+        connected.countDown();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            while (!stopping) {
+                int dice = random.nextInt(100);
+                int kind = dice < 90 ? LOOKUP : dice < 98 ? SEARCH : UPDATE;
+                long ref = 1 + random.nextInt(size);
+                boolean timed = measuring;
+                long begin = System.nanoTime();
+                int status;
+                try {
+                    switch (kind) {
+                        case LOOKUP:
+                            status = connection.send("GET", "/produits/" + ref, null);
+                            break;
+                        case SEARCH:
+                            status = connection.send("GET", "/produits?type=" + (random.nextBoolean() ? "Cosmitique" : "Neutritif")
+                                    + "&orderBy=-QUANTITE_STOCK&limit=10", null);
+                            break;
+                        default:
+                            status = connection.send("PUT", "/produits/" + ref, updates[random.nextInt(updates.length)]);
+                            break;
+                    }
+                } catch (IOException e) {
+                    status = -1;
+                    connection.close();
+                    if (stopping)
+                        return;
+                    reconnects.increment();
+                    connection = Connection.open(address, 10);
+                }
+                if (!connection.isReusable()) {
+                    connection.close();
+                    reconnects.increment();
+                    connection = Connection.open(address, 10);
+                }
+                if (timed && measuring) {
+                    latencies[kind].record(System.nanoTime() - begin);
+                    if (status < 200 || status >= 300)
+                        failures[kind].increment();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Client gave up: " + e);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void report(double elapsed) {
+        long total = 0;
+        System.out.printf("%n%-8s %12s %10s %10s %10s %10s %10s%n", "request", "req/s", "p50 us", "p99 us", "p99.9 us", "max us", "failures");
+        LatencyHistogram.Snapshot[] snapshots = new LatencyHistogram.Snapshot[KINDS.length];
+        for (int i = 0; i < KINDS.length; i++) {
+            snapshots[i] = latencies[i].snapshot();
+            total += snapshots[i].count();
+            print(KINDS[i], snapshots[i].count() / elapsed, snapshots[i], failures[i].sum());
+        }
+        System.out.printf(Locale.ROOT, "%-8s %12.0f%n", "total", total / elapsed);
+        System.out.printf("%,d clients, %.1f s measured, %d reconnects%n", clients, elapsed, reconnects.sum());
+    }
+
+    private static void print(String kind, double throughput, LatencyHistogram.Snapshot s, long failures) {
+        System.out.printf(Locale.ROOT, "%-8s %12.0f %10d %10d %10d %10d %10d%n", kind, throughput,
+                s.percentile(50) / 1000, s.percentile(99) / 1000, s.percentile(99.9) / 1000, s.max() / 1000, failures);
+    }
+
+    private static byte[] json(List<Produit> produits, ProduitJson.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProduitJson.write(produits, out, format);
+        return out.toByteArray();
+    }
+
+    /**
+     * A keep-alive HTTP/1.1 connection carrying one request at a time; response bodies are
+     * read and dropped.
+     */
+    private static final class Connection implements Closeable {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private final byte[] line = new byte[512];
+        private boolean reusable = true; // false once the server announced it closes the connection
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(60_000);
+            socket.connect(address, 30_000);
+            in = new BufferedInputStream(socket.getInputStream(), 2048);
+            out = new BufferedOutputStream(socket.getOutputStream(), 1024);
+        }
+
+        // Retries, as the accept backlog overflows while thousands of clients connect at once
+        static Connection open(InetSocketAddress address, int attempts) throws IOException {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return new Connection(address);
+                } catch (IOException e) {
+                    if (attempt >= attempts)
+                        throw e;
+                    try {
+                        Thread.sleep(ThreadLocalRandom.current().nextInt(10, 100) * attempt);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return The status of the response.
+         * @throws IOException if the connection fails or the server closes it.
+         */
+        int send(String method, String path, byte[] body) throws IOException {
+            StringBuilder head = new StringBuilder(128)
+                    .append(method).append(' ').append(path).append(" HTTP/1.1\r\nHost: localhost\r\n");
+            if (body != null)
+                head.append("Content-Type: application/json\r\nContent-Length: ").append(body.length).append("\r\n");
+            head.append("\r\n");
+            out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+            if (body != null)
+                out.write(body);
+            out.flush();
+
+            String statusLine = readLine();
+            int status = Integer.parseInt(statusLine.substring(9, 12)); // "HTTP/1.1 200 OK"
+            long length = 0;
+            boolean close = false;
+            for (String header = readLine(); !header.isEmpty(); header = readLine()) {
+                String lower = header.toLowerCase(Locale.ROOT);
+                if (lower.startsWith("content-length:"))
+                    length = Long.parseLong(lower.substring(15).trim());
+                else if (lower.startsWith("connection:") && lower.contains("close"))
+                    close = true;
+            }
+            for (long skipped = 0; skipped < length; skipped++)
+                if (in.read() < 0)
+                    throw new EOFException("Response body cut short");
+            reusable = !close;
+            return status;
+        }
+
+        private String readLine() throws IOException {
+            int n = 0;
+            for (int b = in.read(); b != '\n'; b = in.read()) {
+                if (b < 0)
+                    throw new EOFException("Connection closed by the server");
+                if (b != '\r' && n < line.length)
+                    line[n++] = (byte) b;
+            }
+            return new String(line, 0, n, StandardCharsets.ISO_8859_1);
+        }
+
+        boolean isReusable() {
+            return reusable;
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+    }
+}
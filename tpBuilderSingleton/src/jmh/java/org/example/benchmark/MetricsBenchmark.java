@@ -0,0 +1,67 @@
+package org.example.benchmark;
+
+import org.example.entity.Produit;
+import org.example.repository.IProduitRepository;
+import org.example.repository.InstrumentedProduitRepository;
+import org.example.repository.metrics.LatencyHistogram;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the metrics: the same operations on a repository, plain ("none") or measured
+ * ("metrics"). Point operations should pay a few tens of nanoseconds, mostly the atomic counter
+ * increment, the clock being read for a sample of the calls only; -prof gc shows that measuring
+ * allocates nothing. Run with several threads (-Dthreads) to check that the counters do not
+ * contend. {@code record} times the histogram alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @Param({"100000"})
+    int size;
+
+    @Param({"none", "metrics"})
+    String instrumentation;
+
+    IProduitRepository repository;
+    final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Setup(Level.Trial)
+    public void load() {
+        IProduitRepository plain = Catalog.load("hashmap", size);
+        repository = "metrics".equals(instrumentation) ? InstrumentedProduitRepository.of(plain) : plain;
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        if (repository instanceof InstrumentedProduitRepository)
+            System.out.println(((InstrumentedProduitRepository) repository).metrics().snapshot());
+    }
+
+    private long randomRef() {
+        return 1 + ThreadLocalRandom.current().nextInt(size);
+    }
+
+    @Benchmark
+    public Optional<Produit> finfByRef() {
+        return repository.finfByRef(randomRef());
+    }
+
+    @Benchmark
+    public Produit adjustStock() {
+        return repository.adjustStock(randomRef(), 1);
+    }
+
+    @Benchmark
+    public void record() {
+        histogram.record(ThreadLocalRandom.current().nextInt(1_000_000));
+    }
+}
@@ -0,0 +1,183 @@
+package org.example.benchmark;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.repository.IProduitRepository;
+import org.example.repository.query.Criteria;
+import org.example.repository.query.ProduitQuery;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Hot paths of the repositories, against a catalog of {@code size} products.
+ * The repository is shared by every benchmark thread, so runs with several threads measure contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class RepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"hashmap", "columnar"})
+    String impl;
+
+    IProduitRepository repository;
+
+    // About 0.1% of the catalog: one type and the top 0.2% of the stock
+    private final Predicate<Produit> selective = p -> p.getType() == TypeProduit.Cosmitique
+            && p.getQuantiteStock() > Catalog.MAX_STOCK * 0.998;
+    // About half of the catalog
+    private final Predicate<Produit> nonSelective = p -> p.getPrix() < Catalog.MAX_PRIX / 2;
+    private final ProduitQuery selectiveQuery = ProduitQuery.where(Criteria.and(
+            Criteria.type().eq(TypeProduit.Cosmitique),
+            Criteria.quantiteStock().gt(Catalog.MAX_STOCK * 0.998)));
+
+    private final Date tomorrow = new Date(Catalog.NOW + Catalog.DAY);
+
+    @Setup(Level.Trial)
+    public void load() {
+        repository = Catalog.load(impl, size);
+    }
+
+    /**
+     * Per-thread source of new products, so that generating them does not contend.
+     */
+    @State(Scope.Thread)
+    public static class Products {
+        SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void init() {
+            random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+        }
+
+        Produit next() {
+            return Catalog.produit(random);
+        }
+    }
+
+    private long randomRef() {
+        return 1 + ThreadLocalRandom.current().nextInt(size);
+    }
+
+    /**
+     * Inserts a product, then deletes it so that the catalog keeps its size.
+     */
+    @Benchmark
+    public Produit save(Products products) {
+        Produit saved = repository.save(products.next());
+        repository.detele(saved.getRef());
+        return saved;
+    }
+
+    @Benchmark
+    public Optional<Produit> finfByRef() {
+        return repository.finfByRef(randomRef());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Produit> findAll() {
+        return repository.findAll();
+    }
+
+    /**
+     * Visits every product without building a list, to compare with findAll().
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void streamAll(Blackhole bh) {
+        repository.stream().forEach(bh::consume);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Produit> findPageAfter() {
+        return repository.findPageAfter(randomRef(), 50);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Produit> searchSelective() {
+        return repository.search(selective);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Produit> searchNonSelective() {
+        return repository.search(nonSelective);
+    }
+
+    /**
+     * The selective search through the query DSL, which can use the indexes.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Produit> searchSelectiveQuery() {
+        return repository.search(selectiveQuery);
+    }
+
+    /**
+     * The nightly cleanup query: products expiring within a day, about 0.3% of the catalog.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Produit> findExpiringBefore() {
+        return repository.findExpiringBefore(tomorrow);
+    }
+
+    /**
+     * Autocomplete on a three-digit prefix ("p123"), matching about 0.1% of the catalog; first ten
+     * results. Catalog names are "P" followed by a number.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Produit> findByNomPrefix() {
+        return repository.findByNomPrefix("p" + ThreadLocalRandom.current().nextInt(100, 1000), 10);
+    }
+
+    /**
+     * Substring search for four random digits anywhere in the name; first ten results.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Produit> findByNomContaining() {
+        return repository.findByNomContaining(Integer.toString(ThreadLocalRandom.current().nextInt(1000, 10000)), 10);
+    }
+
+    /**
+     * Replaces a random product, then deletes another one and stores it again under its reference.
+     */
+    @Benchmark
+    public void updateDeleteChurn(Products products, Blackhole bh) {
+        Produit p = products.next().withRef(randomRef());
+        bh.consume(repository.update(p));
+        long ref = randomRef();
+        Optional<Produit> old = repository.finfByRef(ref);
+        repository.detele(ref);
+        if (old.isPresent())
+            bh.consume(repository.update(old.get()));
+    }
+}
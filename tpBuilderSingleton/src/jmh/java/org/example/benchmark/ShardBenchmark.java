@@ -0,0 +1,125 @@
+package org.example.benchmark;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.repository.ShardedProduitRepository;
+import org.example.repository.ShardServer;
+import org.example.repository.query.Criteria;
+import org.example.repository.query.ProduitField;
+import org.example.repository.query.ProduitQuery;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a catalog split into {@code shards} shards, either in this JVM ("local") or each
+ * in its own child JVM reached over loopback sockets ("process"). Run with as many threads as
+ * cores (-Dthreads) and compare the shard counts: point operations should scale with the shards
+ * until the cores or, in process mode, the client's own networking saturate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShardBenchmark {
+
+    @Param({"100000"})
+    int size;
+
+    @Param({"1", "2", "4"})
+    int shards;
+
+    @Param({"local", "process"})
+    String transport;
+
+    ShardedProduitRepository repository;
+    private final List<Process> processes = new ArrayList<>();
+
+    private final ProduitQuery top10 = ProduitQuery.where(Criteria.type().eq(TypeProduit.Cosmitique))
+            .orderByDesc(ProduitField.QUANTITE_STOCK)
+            .limit(10);
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        switch (transport) {
+            case "local":
+                repository = ShardedProduitRepository.local(shards);
+                break;
+            case "process":
+                List<InetSocketAddress> addresses = new ArrayList<>(shards);
+                for (int i = 0; i < shards; i++)
+                    addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), startShard(i)));
+                repository = ShardedProduitRepository.connect(addresses);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown transport: " + transport);
+        }
+        SplittableRandom random = new SplittableRandom(Catalog.SEED);
+        int batch = 10_000; // A multiple of the shard counts, so that references stay dense
+        for (int loaded = 0; loaded < size; loaded += batch)
+            repository.saveAll(Catalog.produits(Math.min(batch, size - loaded), random));
+    }
+
+    // Starts a shard in a child JVM on the benchmark's class path and returns its port
+    private int startShard(int index) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ShardServer.class.getName(), String.valueOf(index), String.valueOf(shards))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        processes.add(process);
+        BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line = out.readLine(); // "Shard i of n listening on port p"
+        if (line == null)
+            throw new IOException("Shard " + index + " exited before listening");
+        return Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException, InterruptedException {
+        repository.close();
+        for (Process process : processes) {
+            process.getOutputStream().close(); // The shard stops at the end of its standard input
+            if (!process.waitFor(10, TimeUnit.SECONDS))
+                process.destroyForcibly();
+        }
+        processes.clear();
+    }
+
+    private long randomRef() {
+        return 1 + ThreadLocalRandom.current().nextInt(size);
+    }
+
+    @Benchmark
+    public Optional<Produit> finfByRef() {
+        return repository.finfByRef(randomRef());
+    }
+
+    @Benchmark
+    public Produit update() {
+        Produit p = Catalog.produit(new SplittableRandom(ThreadLocalRandom.current().nextLong()));
+        return repository.update(p.withRef(randomRef()));
+    }
+
+    /**
+     * Scattered to every shard, then merged.
+     */
+    @Benchmark
+    public List<Produit> searchTop10() {
+        return repository.search(top10);
+    }
+}
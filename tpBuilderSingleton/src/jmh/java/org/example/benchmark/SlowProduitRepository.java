@@ -0,0 +1,140 @@
+package org.example.benchmark;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.repository.IProduitRepository;
+import org.example.repository.query.ProduitQuery;
+
+import java.util.*; // Collections, lists and optionals of the interface
+import java.util.concurrent.locks.LockSupport; // Waits without burning a core
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * Stand-in for a remote backend: forwards every call to an in-process repository after a fixed
+ * latency, like a round trip to a database would. Batch calls pay the latency once, as a single
+ * statement would. The wait parks the calling thread, so slow calls overlap instead of
+ * contending for the CPU.
+ */
+final class SlowProduitRepository implements IProduitRepository {
+
+    private final IProduitRepository delegate;
+    private final long latencyNanos;
+
+    /**
+     * @param delegate The repository holding the data.
+     * @param latencyMicros The latency added to every call.
+     */
+    SlowProduitRepository(IProduitRepository delegate, long latencyMicros) {
+        this.delegate = delegate;
+        this.latencyNanos = latencyMicros * 1_000;
+    }
+
+    private void roundTrip() {
+        long deadline = System.nanoTime() + latencyNanos;
+        for (long left = latencyNanos; left > 0; left = deadline - System.nanoTime())
+            LockSupport.parkNanos(left); // Parking may return early
+    }
+
+    @Override
+    public Produit save(Produit p) {
+        roundTrip();
+        return delegate.save(p);
+    }
+
+    @Override
+    public List<Produit> saveAll(Collection<Produit> produits) {
+        roundTrip();
+        return delegate.saveAll(produits);
+    }
+
+    @Override
+    public List<Produit> findAll() {
+        roundTrip();
+        return delegate.findAll();
+    }
+
+    @Override
+    public Optional<Produit> finfByRef(Long ref) {
+        roundTrip();
+        return delegate.finfByRef(ref);
+    }
+
+    @Override
+    public List<Produit> findAllByRefs(Collection<Long> refs) {
+        roundTrip();
+        return delegate.findAllByRefs(refs);
+    }
+
+    @Override
+    public Produit update(Produit p) {
+        roundTrip();
+        return delegate.update(p);
+    }
+
+    @Override
+    public List<Produit> updateAll(Collection<Produit> produits) {
+        roundTrip();
+        return delegate.updateAll(produits);
+    }
+
+    @Override
+    public Produit updateVersioned(Produit p) {
+        roundTrip();
+        return delegate.updateVersioned(p);
+    }
+
+    @Override
+    public Produit adjustStock(long ref, double delta) {
+        roundTrip();
+        return delegate.adjustStock(ref, delta);
+    }
+
+    @Override
+    public Produit reprice(long ref, DoubleUnaryOperator fn) {
+        roundTrip();
+        return delegate.reprice(ref, fn);
+    }
+
+    @Override
+    public void detele(Long ref) {
+        roundTrip();
+        delegate.detele(ref);
+    }
+
+    @Override
+    public void deleteAll(Collection<Long> refs) {
+        roundTrip();
+        delegate.deleteAll(refs);
+    }
+
+    @Override
+    public List<Produit> search(Predicate<Produit> predicate) {
+        roundTrip();
+        return delegate.search(predicate);
+    }
+
+    @Override
+    public List<Produit> search(ProduitQuery query) {
+        roundTrip();
+        return delegate.search(query);
+    }
+
+    @Override
+    public List<Produit> findByType(TypeProduit type) {
+        roundTrip();
+        return delegate.findByType(type);
+    }
+
+    @Override
+    public List<Produit> findByPrixBetween(double min, double max) {
+        roundTrip();
+        return delegate.findByPrixBetween(min, max);
+    }
+
+    @Override
+    public List<Produit> findByQuantiteStockGreaterThan(double seuil) {
+        roundTrip();
+        return delegate.findByQuantiteStockGreaterThan(seuil);
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.benchmark;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.repository.ProduitRepositoryImpl;
+import org.example.repository.ProduitSnapshot;
+import org.example.repository.query.Criteria;
+import org.example.repository.query.ProduitField;
+import org.example.repository.query.ProduitQuery;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of snapshots: opening and closing one, writing while one is open ({@code open} = true)
+ * or not, and reading through one that has seen {@code writesSince} writes since it was taken,
+ * compared with reading the live repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({"100000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean open;
+
+    @Param({"1000"})
+    int writesSince;
+
+    ProduitRepositoryImpl repository;
+    ProduitSnapshot snapshot;
+
+    private final ProduitQuery top10 = ProduitQuery.where(Criteria.type().eq(TypeProduit.Cosmitique))
+            .orderByDesc(ProduitField.QUANTITE_STOCK)
+            .limit(10);
+
+    @Setup(Level.Trial)
+    public void load() {
+        repository = (ProduitRepositoryImpl) Catalog.load("hashmap", size);
+        if (open) {
+            snapshot = repository.snapshot();
+            for (int i = 0; i < writesSince; i++)
+                repository.adjustStock(randomRef(), 1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        if (snapshot != null)
+            snapshot.close();
+    }
+
+    private long randomRef() {
+        return 1 + ThreadLocalRandom.current().nextInt(size);
+    }
+
+    @Benchmark
+    public long openAndClose() {
+        try (ProduitSnapshot s = repository.snapshot()) {
+            return s.getVersion();
+        }
+    }
+
+    /**
+     * Keeps the replaced version when a snapshot is open.
+     */
+    @Benchmark
+    public Produit adjustStock() {
+        return repository.adjustStock(randomRef(), 1);
+    }
+
+    @Benchmark
+    public Optional<Produit> finfByRef() {
+        return open ? snapshot.finfByRef(randomRef()) : repository.finfByRef(randomRef());
+    }
+
+    @Benchmark
+    public List<Produit> searchTop10() {
+        return open ? snapshot.search(top10) : repository.search(top10);
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.benchmark;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.io.ProduitJson;
+import org.example.repository.ProduitRepositoryImpl;
+import org.example.repository.RepositoryStartup;
+import org.example.repository.SeedSource;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load a repository from an NDJSON seed file of {@code records} products, until it
+ * answers a first lookup and until it holds every product.
+ * <ul>
+ * <li>{@code save}: importInto() an unsized repository from a single thread, as before.</li>
+ * <li>{@code bulk}: a RepositoryStartup sized from the estimate, on a single thread.</li>
+ * <li>{@code parallel}: the same, with one loading thread per core.</li>
+ * <li>{@code background}: the same, handing out the repository before it is loaded.</li>
+ * </ul>
+ * 10M records need about 8 GB of heap: run them with a larger -Xmx through -jvmArgsAppend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class StartupBenchmark {
+
+    @Param({"1000000", "10000000"})
+    int records;
+
+    @Param({"save", "bulk", "parallel", "background"})
+    String startup;
+
+    Path seed;
+    RepositoryStartup started;
+
+    @Setup(Level.Trial)
+    public void write() throws IOException {
+        seed = Files.createTempFile("startup", ".ndjson");
+        SplittableRandom random = new SplittableRandom(Catalog.SEED);
+        ProduitBuilder builder = new ProduitBuilder();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(seed), 1 << 16)) {
+            for (int written = 0; written < records; ) {
+                List<Produit> chunk = new ArrayList<>(10_000);
+                for (int i = 0; i < 10_000 && written < records; i++)
+                    chunk.add(builder.from(Catalog.produit(random)).ref(++written).build());
+                ProduitJson.write(chunk, out, ProduitJson.Format.NDJSON);
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void finishLoading() throws IOException, InterruptedException {
+        if (started != null)
+            started.awaitLoaded(); // So that a background load does not run into the next invocation
+        started = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(seed);
+    }
+
+    @Benchmark
+    public Produit firstQuery() throws IOException {
+        return start().getByRef(records / 2);
+    }
+
+    @Benchmark
+    public ProduitRepositoryImpl fullyLoaded() throws IOException, InterruptedException {
+        ProduitRepositoryImpl repository = start();
+        if (started != null)
+            started.awaitLoaded();
+        return repository;
+    }
+
+    private ProduitRepositoryImpl start() throws IOException {
+        if (startup.equals("save")) {
+            ProduitRepositoryImpl repository = ProduitRepositoryImpl.newInstance();
+            try (InputStream in = Files.newInputStream(seed)) {
+                ProduitJson.importInto(in, repository);
+            }
+            return repository;
+        }
+        RepositoryStartup.Builder builder = RepositoryStartup.builder(SeedSource.json(seed));
+        if (startup.equals("bulk"))
+            builder.parallelism(1);
+        started = builder.background(startup.equals("background")).start();
+        return started.getRepository();
+    }
+}
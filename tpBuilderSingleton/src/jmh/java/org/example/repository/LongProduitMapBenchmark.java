@@ -0,0 +1,180 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.openjdk.jmh.annotations.*; // JMH annotations
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup latency and footprint of the primary store: the former {@code ConcurrentHashMap<Long, Produit>},
+ * the {@link LongProduitMap} that replaced it, and a direct-indexed paged array kept here as a
+ * prototype. References are either {@code dense} (1 to size, as generated by a single repository)
+ * or {@code sparse} (size references drawn from a range 64 times larger, as left by explicit
+ * references, shard strides and deletes). The heap taken by each entry is printed once per trial;
+ * run with {@code -prof gc} to see that only the boxed lookups allocate.
+ * <p>
+ * Lives in the repository package because the map is package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class LongProduitMapBenchmark {
+
+    private static final int SPARSENESS = 64;
+
+    @Param({"1000000"})
+    int size;
+
+    @Param({"concurrenthashmap", "longmap", "paged"})
+    String map;
+
+    @Param({"dense", "sparse"})
+    String keys;
+
+    private Store store;
+    private long[] refs; // The stored references, in random order
+
+    @Setup(Level.Trial)
+    public void load() {
+        SplittableRandom random = new SplittableRandom(42);
+        refs = new long[size];
+        if (keys.equals("dense")) {
+            for (int i = 0; i < size; i++)
+                refs[i] = i + 1;
+        } else {
+            BitSet taken = new BitSet();
+            for (int i = 0; i < size; ) {
+                int ref = 1 + random.nextInt(size * SPARSENESS);
+                if (!taken.get(ref)) {
+                    taken.set(ref);
+                    refs[i++] = ref;
+                }
+            }
+        }
+        for (int i = size - 1; i > 0; i--) { // Shuffle, so that lookups do not walk the memory in order
+            int j = random.nextInt(i + 1);
+            long t = refs[i];
+            refs[i] = refs[j];
+            refs[j] = t;
+        }
+        Produit p = new ProduitBuilder().nom("P").prix(1).quantiteStock(1).type(TypeProduit.Cosmitique).build();
+        long before = usedHeap();
+        store = create(map);
+        for (long ref : refs)
+            store.put(ref, p); // One shared product: only the store itself is measured
+        long after = usedHeap();
+        System.out.printf("%n%s/%s: %.1f bytes per entry%n", map, keys, (double) (after - before) / size);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static Store create(String map) {
+        switch (map) {
+            case "concurrenthashmap":
+                return new BoxedStore();
+            case "longmap":
+                return new LongStore();
+            case "paged":
+                return new PagedStore();
+            default:
+                throw new IllegalArgumentException("Unknown map: " + map);
+        }
+    }
+
+    private long randomRef() {
+        return refs[ThreadLocalRandom.current().nextInt(size)];
+    }
+
+    @Benchmark
+    public Produit get() {
+        return store.get(randomRef());
+    }
+
+    /**
+     * A reference that is not stored: probes until a free slot.
+     */
+    @Benchmark
+    public Produit getMissing() {
+        return store.get(-randomRef());
+    }
+
+    private interface Store {
+        Produit get(long ref);
+
+        void put(long ref, Produit p);
+    }
+
+    private static final class BoxedStore implements Store {
+        private final ConcurrentMap<Long, Produit> map = new ConcurrentHashMap<>();
+
+        @Override
+        public Produit get(long ref) {
+            return map.get(ref); // Boxes references above 127
+        }
+
+        @Override
+        public void put(long ref, Produit p) {
+            map.put(ref, p);
+        }
+    }
+
+    private static final class LongStore implements Store {
+        private final LongProduitMap map = new LongProduitMap();
+
+        @Override
+        public Produit get(long ref) {
+            return map.get(ref);
+        }
+
+        @Override
+        public void put(long ref, Produit p) {
+            map.put(ref, p);
+        }
+    }
+
+    /**
+     * Products indexed directly by reference in pages of 4096 slots, allocated on first write.
+     * A lookup is two array reads, but a page is paid for as soon as one of its references is
+     * used, and negative or huge references cannot be stored at all.
+     */
+    private static final class PagedStore implements Store {
+        private static final int PAGE_BITS = 12;
+        private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+        private Produit[][] pages = new Produit[16][];
+
+        @Override
+        public Produit get(long ref) {
+            long page = ref >>> PAGE_BITS;
+            Produit[][] ps = pages;
+            if (page >= ps.length || ps[(int) page] == null)
+                return null;
+            return ps[(int) page][(int) ref & PAGE_MASK];
+        }
+
+        @Override
+        public void put(long ref, Produit p) {
+            int page = Math.toIntExact(ref >>> PAGE_BITS);
+            if (page >= pages.length)
+                pages = Arrays.copyOf(pages, Math.max(page + 1, pages.length * 2));
+            if (pages[page] == null)
+                pages[page] = new Produit[1 << PAGE_BITS];
+            pages[page][(int) ref & PAGE_MASK] = p;
+        }
+    }
+}
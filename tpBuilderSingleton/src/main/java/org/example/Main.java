@@ -5,11 +5,13 @@ import org.example.entity.Produit;
 import org.example.entity.ProduitBuilder; // Builder pattern for creating Produit objects
 import org.example.entity.TypeProduit; // Enum or class representing product types
 import org.example.repository.ProduitRepositoryImpl; // Repository for CRUD operations on Produit objects
+import org.example.repository.query.Criteria; // Factories for query criteria
+import org.example.repository.query.ProduitField; // Fields usable for sorting
+import org.example.repository.query.ProduitQuery; // Structured query passed to the repository
 
 import java.util.Date; // For handling product creation dates
 import java.util.List; // For handling lists of products
 import java.util.Optional; // To handle optional values when searching for products
-import java.util.function.Predicate; // Functional interface for filtering products
 
 /**
  * Main class that demonstrates CRUD operations on Produit entities.
@@ -49,9 +51,8 @@ public class Main {
                   .build();
         pri.save(p); // Save the new product in the repository
 
-        // Display all products after adding the new product
-        for (Produit p1 : pri.findAll())
-            System.out.println(p1.toString());
+        // Display all products after adding the new product, streaming over the store instead of copying it
+        pri.stream().forEach(p1 -> System.out.println(p1.toString()));
 
         // Searching for a product by its reference
         System.out.println("=====================Chercher un Produit===========================");
@@ -71,30 +72,29 @@ public class Main {
         pri.update(p2); // Update the product in the repository
 
         // Display all products after updating
-        for (Produit p1 : pri.findAll())
-            System.out.println(p1.toString());
+        pri.stream().forEach(p1 -> System.out.println(p1.toString()));
 
         // Deleting a product from the repository
         System.out.println("=====================Supprimer un Produit===========================");
         pri.detele(4L); // Delete product with reference 4
-        for (Produit p1 : pri.findAll()) // Display remaining products
-            System.out.println(p1.toString());
+        pri.stream().forEach(p1 -> System.out.println(p1.toString())); // Display remaining products
 
-        // Searching for products based on specific criteria using a Predicate
+        // Searching for products based on specific criteria using a query the repository can plan
         System.out.println("=====================chercher un Produit===========================");
-        List<Produit> prds1 = pri.search(
-            new Predicate<Produit>() {
-                @Override
-                public boolean test(Produit p) {
-                    // Define criteria: product type is "Cosmitique" and stock quantity > 80
-                    return (p.getType().equals(TypeProduit.Cosmitique)
-                            && p.getQuantiteStock() > 80);
-                }
-            }
-        );
+        ProduitQuery query = ProduitQuery
+                .where(Criteria.type().eq(TypeProduit.Cosmitique) // Product type is "Cosmitique"
+                        .and(Criteria.quantiteStock().gt(80))) // and stock quantity > 80
+                .orderByDesc(ProduitField.PRIX) // Most expensive first
+                .limit(10); // At most 10 results
+        System.out.println(pri.explain(query)); // Show the access path chosen by the planner
+        List<Produit> prds1 = pri.search(query);
 
         // Display products that match the search criteria
         for (Produit p1 : prds1)
             System.out.println(p1.toString());
+
+        // Aggregates over the whole catalog: price statistics, stock value per type, expirations per week
+        System.out.println("=====================Statistiques===========================");
+        System.out.println(pri.aggregate());
     }
 }
@@ -1,42 +1,55 @@
 package org.example.entity;
 
-import java.util.Date;
+import java.time.Instant; // Immutable point in time, exposed for the dates of a product
 
 /**
  * Entity class representing a product (Produit).
- * Contains attributes for product details and methods for accessing and modifying them.
+ * Contains attributes for product details and methods for accessing them.
+ * <p>
+ * A Produit is immutable: the withX methods return a modified copy, and a ProduitBuilder
+ * creates new instances. Repositories can therefore hand out the instances they store, and any
+ * number of threads can share them without copies.
+ * <p>
+ * Dates are held as epoch milliseconds, so a product is made of primitives, one String and one
+ * enum constant. The Instant getters create their result on demand; the millisecond getters
+ * read the fields directly and are the ones to use on hot paths.
  */
-public class Produit {
+public final class Produit {
 
-    // Fields representing the properties of a product
-    private Long ref; // Reference ID of the product
-    private String nom; // Name of the product
-    private double prix; // Price of the product
-    private double quantiteStock; // Quantity of product in stock
-    private Date dateCreation; // Date when the product was created
-    private Date datePremption; // Expiration date of the product
-    private TypeProduit type; // Type of the product (e.g., Cosmetique, Neutritif)
+    /**
+     * The reference of a product that was never stored; repositories start their references at 1.
+     */
+    public static final long NO_REF = 0;
 
     /**
-     * Default constructor for Produit.
-     * Useful for frameworks or cases where a default instance is required.
+     * The millisecond value of a missing date.
      */
-    public Produit() {
-    }
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    // Fields representing the properties of a product
+    private final long ref; // Reference ID of the product, or NO_REF
+    private final String nom; // Name of the product
+    private final double prix; // Price of the product
+    private final double quantiteStock; // Quantity of product in stock
+    private final long dateCreation; // Date when the product was created, in epoch milliseconds, or NO_DATE
+    private final long datePremption; // Expiration date of the product, in epoch milliseconds, or NO_DATE
+    private final TypeProduit type; // Type of the product (e.g., Cosmetique, Neutritif)
+    private final long version; // Incremented by the repository on every write; 0 for a product never stored
 
     /**
      * Parameterized constructor for Produit.
-     * Initializes all fields of the class.
-     * 
-     * @param ref Reference ID of the product.
+     * Initializes all fields of the class; ProduitBuilder is the more readable way to create a product.
+     *
+     * @param ref Reference ID of the product, or NO_REF.
      * @param nom Name of the product.
      * @param prix Price of the product.
      * @param quantiteStock Quantity in stock.
-     * @param dateCreation Creation date of the product.
-     * @param datePremption Expiration date of the product.
+     * @param dateCreation Creation date of the product in epoch milliseconds, or NO_DATE.
+     * @param datePremption Expiration date of the product in epoch milliseconds, or NO_DATE.
      * @param type Type of the product.
+     * @param version Version of the product.
      */
-    public Produit(Long ref, String nom, double prix, double quantiteStock, Date dateCreation, Date datePremption, TypeProduit type) {
+    public Produit(long ref, String nom, double prix, double quantiteStock, long dateCreation, long datePremption, TypeProduit type, long version) {
         this.ref = ref;
         this.nom = nom;
         this.prix = prix;
@@ -44,14 +57,25 @@ public class Produit {
         this.dateCreation = dateCreation;
         this.datePremption = datePremption;
         this.type = type;
+        this.version = version;
     }
 
     // Getters: Provide read-only access to the fields
 
-    public Long getRef() {
+    /**
+     * @return The reference of the product, or NO_REF if it was never stored.
+     */
+    public long getRef() {
         return ref;
     }
 
+    /**
+     * @return Whether the product carries a reference.
+     */
+    public boolean hasRef() {
+        return ref != NO_REF;
+    }
+
     public String getNom() {
         return nom;
     }
@@ -64,11 +88,31 @@ public class Produit {
         return quantiteStock;
     }
 
-    public Date getDateCreation() {
+    /**
+     * @return The creation date, or null.
+     */
+    public Instant getDateCreation() {
+        return dateCreation == NO_DATE ? null : Instant.ofEpochMilli(dateCreation);
+    }
+
+    /**
+     * @return The creation date in epoch milliseconds, or NO_DATE.
+     */
+    public long getDateCreationMillis() {
         return dateCreation;
     }
 
-    public Date getDatePremption() {
+    /**
+     * @return The expiration date, or null.
+     */
+    public Instant getDatePremption() {
+        return datePremption == NO_DATE ? null : Instant.ofEpochMilli(datePremption);
+    }
+
+    /**
+     * @return The expiration date in epoch milliseconds, or NO_DATE.
+     */
+    public long getDatePremptionMillis() {
         return datePremption;
     }
 
@@ -76,51 +120,114 @@ public class Produit {
         return type;
     }
 
-    // Setters: Allow modification of the fields
+    /**
+     * @return The version of the product as last read from or written to a repository.
+     */
+    public long getVersion() {
+        return version;
+    }
 
-    public void setRef(Long ref) {
-        this.ref = ref;
+    // Withers: Return a copy with one field changed, or this product if the value is the same
+
+    public Produit withRef(long ref) {
+        return ref == this.ref ? this : new Produit(ref, nom, prix, quantiteStock, dateCreation, datePremption, type, version);
     }
 
-    public void setNom(String nom) {
-        this.nom = nom;
+    public Produit withNom(String nom) {
+        return nom == this.nom ? this : new Produit(ref, nom, prix, quantiteStock, dateCreation, datePremption, type, version);
     }
 
-    public void setPrix(double prix) {
-        this.prix = prix;
+    public Produit withPrix(double prix) {
+        return Double.compare(prix, this.prix) == 0 ? this : new Produit(ref, nom, prix, quantiteStock, dateCreation, datePremption, type, version);
     }
 
-    public void setQuantiteStock(double quantiteStock) {
-        this.quantiteStock = quantiteStock;
+    public Produit withQuantiteStock(double quantiteStock) {
+        return Double.compare(quantiteStock, this.quantiteStock) == 0 ? this : new Produit(ref, nom, prix, quantiteStock, dateCreation, datePremption, type, version);
     }
 
-    public void setDateCreation(Date dateCreation) {
-        this.dateCreation = dateCreation;
+    public Produit withDateCreation(Instant dateCreation) {
+        long millis = dateCreation == null ? NO_DATE : dateCreation.toEpochMilli();
+        return millis == this.dateCreation ? this : new Produit(ref, nom, prix, quantiteStock, millis, datePremption, type, version);
     }
 
-    public void setDatePremption(Date datePremption) {
-        this.datePremption = datePremption;
+    public Produit withDatePremption(Instant datePremption) {
+        long millis = datePremption == null ? NO_DATE : datePremption.toEpochMilli();
+        return millis == this.datePremption ? this : new Produit(ref, nom, prix, quantiteStock, dateCreation, millis, type, version);
     }
 
-    public void setType(TypeProduit type) {
-        this.type = type;
+    public Produit withType(TypeProduit type) {
+        return type == this.type ? this : new Produit(ref, nom, prix, quantiteStock, dateCreation, datePremption, type, version);
+    }
+
+    public Produit withVersion(long version) {
+        return version == this.version ? this : new Produit(ref, nom, prix, quantiteStock, dateCreation, datePremption, type, version);
+    }
+
+    /**
+     * Returns this product as stored under a reference, with a single copy.
+     *
+     * @param ref The reference of the product.
+     * @param version The version of the product.
+     * @return The product with both values set.
+     */
+    public Produit withRefAndVersion(long ref, long version) {
+        if (ref == this.ref && version == this.version)
+            return this;
+        return new Produit(ref, nom, prix, quantiteStock, dateCreation, datePremption, type, version);
+    }
+
+    /**
+     * @return A new builder holding the values of this product.
+     */
+    public ProduitBuilder toBuilder() {
+        return new ProduitBuilder().from(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Produit))
+            return false;
+        Produit other = (Produit) o;
+        return ref == other.ref
+                && version == other.version
+                && Double.compare(prix, other.prix) == 0
+                && Double.compare(quantiteStock, other.quantiteStock) == 0
+                && dateCreation == other.dateCreation
+                && datePremption == other.datePremption
+                && type == other.type
+                && (nom == null ? other.nom == null : nom.equals(other.nom));
+    }
+
+    @Override
+    public int hashCode() {
+        int h = Long.hashCode(ref);
+        h = 31 * h + (nom == null ? 0 : nom.hashCode());
+        h = 31 * h + Double.hashCode(prix);
+        h = 31 * h + Double.hashCode(quantiteStock);
+        h = 31 * h + Long.hashCode(dateCreation);
+        h = 31 * h + Long.hashCode(datePremption);
+        h = 31 * h + (type == null ? 0 : type.hashCode());
+        return 31 * h + Long.hashCode(version);
     }
 
     /**
      * Returns a string representation of the product.
-     * 
+     *
      * @return A formatted string with all the product details.
      */
     @Override
     public String toString() {
         return "Produit{" +
-                "ref=" + ref +
+                "ref=" + (hasRef() ? String.valueOf(ref) : "null") +
                 ", nom='" + nom + '\'' +
                 ", prix=" + prix +
                 ", quantiteStock=" + quantiteStock +
-                ", dateCreation=" + dateCreation +
-                ", datePremption=" + datePremption +
+                ", dateCreation=" + getDateCreation() +
+                ", datePremption=" + getDatePremption() +
                 ", type=" + type +
+                ", version=" + version +
                 '}';
     }
 }
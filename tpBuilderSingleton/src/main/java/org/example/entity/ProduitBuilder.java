@@ -1,36 +1,42 @@
 package org.example.entity;
 
-import java.util.Date;
+import java.time.Instant;
+import java.util.Date; // Accepted for callers still holding legacy dates
 
 /**
  * Builder class for creating instances of the Produit class.
  * Utilizes the Builder design pattern to simplify object creation and allow for method chaining.
+ * <p>
+ * A builder can be reused: build() leaves its values in place, so products that differ in a few
+ * fields are built in a row, and reset() clears it for an unrelated product. Bulk loaders keep
+ * one builder per thread and only allocate the products themselves. A builder is not thread-safe.
  */
 public class ProduitBuilder {
 
     // Fields corresponding to the Produit class properties
-    private Long ref; // Reference ID of the product
+    private long ref = Produit.NO_REF; // Reference ID of the product
     private String nom; // Name of the product
     private double prix; // Price of the product
     private double quantiteStock; // Quantity in stock
-    private Date dateCreation; // Date when the product was created
-    private Date datePremption; // Expiration date of the product
+    private long dateCreation = Produit.NO_DATE; // Date when the product was created, in epoch milliseconds
+    private long datePremption = Produit.NO_DATE; // Expiration date of the product, in epoch milliseconds
     private TypeProduit type; // Type of the product (e.g., Cosmetique, Neutritif)
+    private long version; // Version the product was read with, for compare-and-set updates
 
     /**
      * Sets the reference ID of the product.
-     * 
-     * @param ref The product reference.
+     *
+     * @param ref The product reference, or Produit.NO_REF.
      * @return The current instance of ProduitBuilder for chaining.
      */
-    public ProduitBuilder ref(Long ref) {
+    public ProduitBuilder ref(long ref) {
         this.ref = ref;
         return this;
     }
 
     /**
      * Sets the name of the product.
-     * 
+     *
      * @param nom The product name.
      * @return The current instance of ProduitBuilder for chaining.
      */
@@ -41,7 +47,7 @@ public class ProduitBuilder {
 
     /**
      * Sets the price of the product.
-     * 
+     *
      * @param prix The product price.
      * @return The current instance of ProduitBuilder for chaining.
      */
@@ -52,7 +58,7 @@ public class ProduitBuilder {
 
     /**
      * Sets the stock quantity of the product.
-     * 
+     *
      * @param quantiteStock The quantity in stock.
      * @return The current instance of ProduitBuilder for chaining.
      */
@@ -63,29 +69,69 @@ public class ProduitBuilder {
 
     /**
      * Sets the creation date of the product.
-     * 
-     * @param dateCreation The creation date.
+     *
+     * @param dateCreation The creation date, or null.
+     * @return The current instance of ProduitBuilder for chaining.
+     */
+    public ProduitBuilder dateCreation(Instant dateCreation) {
+        return dateCreationMillis(dateCreation == null ? Produit.NO_DATE : dateCreation.toEpochMilli());
+    }
+
+    /**
+     * Sets the creation date of the product from a legacy date.
+     *
+     * @param dateCreation The creation date, or null.
      * @return The current instance of ProduitBuilder for chaining.
      */
     public ProduitBuilder dateCreation(Date dateCreation) {
-        this.dateCreation = dateCreation;
+        return dateCreationMillis(dateCreation == null ? Produit.NO_DATE : dateCreation.getTime());
+    }
+
+    /**
+     * Sets the creation date of the product without creating a date object.
+     *
+     * @param millis The creation date in epoch milliseconds, or Produit.NO_DATE.
+     * @return The current instance of ProduitBuilder for chaining.
+     */
+    public ProduitBuilder dateCreationMillis(long millis) {
+        this.dateCreation = millis;
         return this;
     }
 
     /**
      * Sets the expiration date of the product.
-     * 
-     * @param datePremption The expiration date.
+     *
+     * @param datePremption The expiration date, or null.
+     * @return The current instance of ProduitBuilder for chaining.
+     */
+    public ProduitBuilder datePremption(Instant datePremption) {
+        return datePremptionMillis(datePremption == null ? Produit.NO_DATE : datePremption.toEpochMilli());
+    }
+
+    /**
+     * Sets the expiration date of the product from a legacy date.
+     *
+     * @param datePremption The expiration date, or null.
      * @return The current instance of ProduitBuilder for chaining.
      */
     public ProduitBuilder datePremption(Date datePremption) {
-        this.datePremption = datePremption;
+        return datePremptionMillis(datePremption == null ? Produit.NO_DATE : datePremption.getTime());
+    }
+
+    /**
+     * Sets the expiration date of the product without creating a date object.
+     *
+     * @param millis The expiration date in epoch milliseconds, or Produit.NO_DATE.
+     * @return The current instance of ProduitBuilder for chaining.
+     */
+    public ProduitBuilder datePremptionMillis(long millis) {
+        this.datePremption = millis;
         return this;
     }
 
     /**
      * Sets the type of the product.
-     * 
+     *
      * @param type The product type (e.g., Cosmetique, Neutritif).
      * @return The current instance of ProduitBuilder for chaining.
      */
@@ -94,13 +140,60 @@ public class ProduitBuilder {
         return this;
     }
 
+    /**
+     * Sets the version of the product, as read from a repository.
+     *
+     * @param version The product version.
+     * @return The current instance of ProduitBuilder for chaining.
+     */
+    public ProduitBuilder version(long version) {
+        this.version = version;
+        return this;
+    }
+
+    /**
+     * Copies every value of a product into the builder.
+     *
+     * @param p The product to start from.
+     * @return The current instance of ProduitBuilder for chaining.
+     */
+    public ProduitBuilder from(Produit p) {
+        this.ref = p.getRef();
+        this.nom = p.getNom();
+        this.prix = p.getPrix();
+        this.quantiteStock = p.getQuantiteStock();
+        this.dateCreation = p.getDateCreationMillis();
+        this.datePremption = p.getDatePremptionMillis();
+        this.type = p.getType();
+        this.version = p.getVersion();
+        return this;
+    }
+
+    /**
+     * Clears every value, so that the builder can be reused for another product.
+     *
+     * @return The current instance of ProduitBuilder for chaining.
+     */
+    public ProduitBuilder reset() {
+        ref = Produit.NO_REF;
+        nom = null;
+        prix = 0;
+        quantiteStock = 0;
+        dateCreation = Produit.NO_DATE;
+        datePremption = Produit.NO_DATE;
+        type = null;
+        version = 0;
+        return this;
+    }
+
     /**
      * Builds and returns an instance of the Produit class using the specified values.
-     * 
+     * The values stay in the builder.
+     *
      * @return A new instance of Produit initialized with the builder's values.
      */
     public Produit build() {
         // Construct and return a new Produit instance with the provided values
-        return new Produit(ref, nom, prix, quantiteStock, dateCreation, datePremption, type);
+        return new Produit(ref, nom, prix, quantiteStock, dateCreation, datePremption, type, version);
     }
 }
@@ -0,0 +1,337 @@
+package org.example.io;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*; // For the name dictionary
+
+/**
+ * Compact binary form of a Produit, read and written directly in a ByteBuffer.
+ * <p>
+ * A record is laid out as follows (schema version 1):
+ * <ol>
+ * <li>the schema version, one byte;</li>
+ * <li>a byte of flags telling which optional fields follow;</li>
+ * <li>the reference and the version, as unsigned varints (7 bits per byte, low bits first);</li>
+ * <li>the price and the stock, as raw big-endian doubles;</li>
+ * <li>the creation date as the zigzag varint of its distance to {@link #DATE_BASE}, and the expiry
+ * date as the zigzag varint of its distance to the creation date (or to the base without one),
+ * both in milliseconds;</li>
+ * <li>the TypeProduit ordinal, one byte;</li>
+ * <li>the name, as the varint length of its UTF-8 bytes followed by them, or as the varint
+ * position of the name in the dictionary of the codec.</li>
+ * </ol>
+ * A product with a short name and both dates takes about 45 bytes, against some 190 as JSON.
+ * <p>
+ * Encoding allocates nothing. Decoding allocates the product and its name, unless the name comes
+ * from the dictionary, whose shared instance is returned. Codecs are immutable and thread-safe;
+ * the encoder and the decoder of a record must use the same dictionary.
+ */
+public final class ProduitCodec {
+
+    public static final byte SCHEMA_VERSION = 1;
+
+    /**
+     * Origin of the encoded creation dates, 2020-01-01T00:00:00Z; dates near it take fewer bytes.
+     */
+    public static final long DATE_BASE = 1_577_836_800_000L;
+
+    private static final int HAS_NOM = 1;
+    private static final int NOM_IN_DICTIONARY = 1 << 1;
+    private static final int HAS_CREATION = 1 << 2;
+    private static final int HAS_PREMPTION = 1 << 3;
+    private static final int HAS_TYPE = 1 << 4;
+
+    // Worst case without the name: version, flags, four 10-byte varints, two doubles, type, name length
+    private static final int MAX_FIXED_SIZE = 2 + 4 * 10 + 2 * 8 + 1 + 5;
+
+    private static final TypeProduit[] TYPES = TypeProduit.values();
+    private static final ProduitCodec STANDARD = new ProduitCodec(new String[0]);
+    private static final ThreadLocal<char[]> SCRATCH = ThreadLocal.withInitial(() -> new char[64]); // Names of direct buffers
+
+    private final String[] dictionary;
+    private final Map<String, Integer> positions;
+
+    private ProduitCodec(String[] dictionary) {
+        this.dictionary = dictionary;
+        this.positions = new HashMap<>(dictionary.length * 2);
+        for (int i = 0; i < dictionary.length; i++)
+            positions.putIfAbsent(dictionary[i], i);
+    }
+
+    /**
+     * @return The codec writing every name in full.
+     */
+    public static ProduitCodec standard() {
+        return STANDARD;
+    }
+
+    /**
+     * Returns a codec that writes the names of a dictionary as their position in it: a varint of
+     * one or two bytes instead of the whole name. Meant for catalogs where a limited set of names
+     * repeats, for instance the most frequent names of a sample.
+     *
+     * @param names The names of the dictionary, in a fixed order shared by encoder and decoder.
+     * @return A new codec.
+     */
+    public static ProduitCodec withDictionary(List<String> names) {
+        String[] dictionary = names.toArray(new String[0]);
+        for (String name : dictionary)
+            Objects.requireNonNull(name, "dictionary name");
+        return new ProduitCodec(dictionary);
+    }
+
+    /**
+     * @param p A product.
+     * @return The number of bytes {@link #encode} writes for it.
+     */
+    public int sizeOf(Produit p) {
+        String nom = p.getNom();
+        long creation = p.getDateCreationMillis();
+        long premption = p.getDatePremptionMillis();
+        int size = 2 + varintSize(p.getRef()) + varintSize(p.getVersion()) + 16;
+        if (creation != Produit.NO_DATE)
+            size += varintSize(zigzag(creation - DATE_BASE));
+        if (premption != Produit.NO_DATE)
+            size += varintSize(zigzag(premption - (creation != Produit.NO_DATE ? creation : DATE_BASE)));
+        if (p.getType() != null)
+            size++;
+        if (nom != null) {
+            Integer position = positions.get(nom);
+            if (position != null) {
+                size += varintSize(position);
+            } else {
+                int bytes = utf8Length(nom);
+                size += varintSize(bytes) + bytes;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes a product at the position of a buffer and moves the position past it.
+     *
+     * @param p The product.
+     * @param out The destination.
+     * @throws BufferOverflowException if the buffer has less than {@link #sizeOf} bytes left; it is
+     *                                 left unchanged then.
+     */
+    public void encode(Produit p, ByteBuffer out) {
+        String nom = p.getNom();
+        if (out.remaining() < MAX_FIXED_SIZE + (nom == null ? 0 : 3 * nom.length()) && out.remaining() < sizeOf(p))
+            throw new BufferOverflowException(); // Only sized exactly when the worst case does not fit
+        long creation = p.getDateCreationMillis();
+        long premption = p.getDatePremptionMillis();
+        Integer position = nom == null ? null : positions.get(nom);
+        int flags = (nom != null ? HAS_NOM : 0)
+                | (position != null ? NOM_IN_DICTIONARY : 0)
+                | (creation != Produit.NO_DATE ? HAS_CREATION : 0)
+                | (premption != Produit.NO_DATE ? HAS_PREMPTION : 0)
+                | (p.getType() != null ? HAS_TYPE : 0);
+        out.put(SCHEMA_VERSION);
+        out.put((byte) flags);
+        putVarint(out, p.getRef());
+        putVarint(out, p.getVersion());
+        putDouble(out, p.getPrix());
+        putDouble(out, p.getQuantiteStock());
+        if (creation != Produit.NO_DATE)
+            putVarint(out, zigzag(creation - DATE_BASE));
+        if (premption != Produit.NO_DATE)
+            putVarint(out, zigzag(premption - (creation != Produit.NO_DATE ? creation : DATE_BASE)));
+        if (p.getType() != null)
+            out.put((byte) p.getType().ordinal());
+        if (position != null) {
+            putVarint(out, position);
+        } else if (nom != null) {
+            putVarint(out, utf8Length(nom));
+            putUtf8(out, nom);
+        }
+    }
+
+    /**
+     * Reads a product at the position of a buffer and moves the position past it.
+     *
+     * @param in The source.
+     * @return The product.
+     * @throws BufferUnderflowException if the record is truncated.
+     * @throws IllegalArgumentException if the record has an unknown schema version or invalid content.
+     */
+    public Produit decode(ByteBuffer in) {
+        byte schema = in.get();
+        if (schema != SCHEMA_VERSION)
+            throw new IllegalArgumentException("Unsupported product schema version " + schema);
+        int flags = in.get();
+        long ref = getVarint(in);
+        long version = getVarint(in);
+        double prix = getDouble(in);
+        double quantiteStock = getDouble(in);
+        long creation = (flags & HAS_CREATION) != 0 ? DATE_BASE + unzigzag(getVarint(in)) : Produit.NO_DATE;
+        long premption = (flags & HAS_PREMPTION) != 0
+                ? (creation != Produit.NO_DATE ? creation : DATE_BASE) + unzigzag(getVarint(in)) : Produit.NO_DATE;
+        TypeProduit type = null;
+        if ((flags & HAS_TYPE) != 0) {
+            int ordinal = in.get() & 0xFF;
+            if (ordinal >= TYPES.length)
+                throw new IllegalArgumentException("Invalid product type ordinal " + ordinal);
+            type = TYPES[ordinal];
+        }
+        String nom = null;
+        if ((flags & NOM_IN_DICTIONARY) != 0) {
+            long position = getVarint(in);
+            if (position < 0 || position >= dictionary.length) // Ten-byte varints can come out negative
+                throw new IllegalArgumentException("Name " + position + " is not in the dictionary");
+            nom = dictionary[(int) position];
+        } else if ((flags & HAS_NOM) != 0) {
+            long length = getVarint(in);
+            if (length < 0)
+                throw new IllegalArgumentException("Invalid name length " + length);
+            if (length > in.remaining())
+                throw new BufferUnderflowException();
+            nom = getUtf8(in, (int) length);
+        }
+        return new Produit(ref, nom, prix, quantiteStock, creation, premption, type, version);
+    }
+
+    // Maps signed values to unsigned ones so that small magnitudes of either sign stay short
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static int varintSize(long v) {
+        int size = 1;
+        while ((v & ~0x7FL) != 0) {
+            v >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarint(ByteBuffer out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.put((byte) v);
+    }
+
+    private static long getVarint(ByteBuffer in) {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return v;
+        }
+        throw new IllegalArgumentException("Varint longer than 10 bytes");
+    }
+
+    // Doubles are big-endian whatever the order of the buffer
+    private static void putDouble(ByteBuffer out, double d) {
+        long bits = Double.doubleToRawLongBits(d);
+        out.putLong(out.order() == ByteOrder.BIG_ENDIAN ? bits : Long.reverseBytes(bits));
+    }
+
+    private static double getDouble(ByteBuffer in) {
+        long bits = in.getLong();
+        return Double.longBitsToDouble(in.order() == ByteOrder.BIG_ENDIAN ? bits : Long.reverseBytes(bits));
+    }
+
+    // Byte length of the UTF-8 form; an unpaired surrogate counts as the one-byte '?' written for it
+    private static int utf8Length(String s) {
+        int n = s.length();
+        int bytes = n;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80)
+                continue;
+            if (c < 0x800) {
+                bytes++;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 2; // Four bytes for the two chars of the pair
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+
+    // Encodes like String.getBytes(UTF_8), without the intermediate array
+    private static void putUtf8(ByteBuffer out, String s) {
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                out.put((byte) (0xF0 | (cp >> 18)));
+                out.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static String getUtf8(ByteBuffer in, int length) {
+        if (in.hasArray()) {
+            int start = in.arrayOffset() + in.position();
+            in.position(in.position() + length);
+            return new String(in.array(), start, length, StandardCharsets.UTF_8);
+        }
+        // Direct buffer: decode into a per-thread scratch array; malformed input becomes U+FFFD
+        char[] chars = SCRATCH.get();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+            SCRATCH.set(chars);
+        }
+        int end = in.position() + length;
+        int n = 0;
+        while (in.position() < end) {
+            int b = in.get() & 0xFF;
+            if (b < 0x80) {
+                chars[n++] = (char) b;
+                continue;
+            }
+            int extra = b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : b >= 0xC0 ? 1 : -1;
+            int cp = extra == 3 ? b & 0x07 : extra == 2 ? b & 0x0F : b & 0x1F;
+            boolean valid = extra > 0 && in.position() + extra <= end;
+            for (int k = 0; valid && k < extra; k++) {
+                int next = in.get(in.position()) & 0xFF;
+                if ((next & 0xC0) != 0x80) {
+                    valid = false;
+                } else {
+                    in.get();
+                    cp = (cp << 6) | (next & 0x3F);
+                }
+            }
+            if (!valid || cp > Character.MAX_CODE_POINT) {
+                chars[n++] = '\uFFFD';
+            } else if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                chars[n++] = Character.highSurrogate(cp);
+                chars[n++] = Character.lowSurrogate(cp);
+            } else {
+                chars[n++] = (char) cp;
+            }
+        }
+        return new String(chars, 0, n);
+    }
+}
@@ -0,0 +1,241 @@
+package org.example.io;
+
+import com.fasterxml.jackson.core.JsonFactory; // Thread-safe factory of streaming parsers and generators
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.example.repository.IProduitRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Bulk import and export of products as JSON, built on Jackson's streaming API.
+ * <p>
+ * Products are read and written one token at a time with hand-written field mapping, so no
+ * reflection is involved and memory use does not depend on the size of the file: only the
+ * current batch of products is held while importing.
+ * <p>
+ * Two layouts are supported: a JSON array of product objects, and NDJSON (one object per line).
+ * The import detects the layout by itself. Fields are named after the Produit properties; dates
+ * are epoch milliseconds (ISO-8601 strings are accepted on import) and the type is the
+ * TypeProduit constant name.
+ */
+public final class ProduitJson {
+
+    /**
+     * The layouts the export can produce.
+     */
+    public enum Format {
+        JSON_ARRAY,
+        NDJSON
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private ProduitJson() {
+    }
+
+    /**
+     * Imports products into a repository, one batch at a time.
+     * Products carrying a reference are stored under it with updateAll(); the others get a new
+     * reference from saveAll().
+     *
+     * @param in The JSON or NDJSON input; it is not closed.
+     * @param repository The repository to fill.
+     * @return The number of imported products.
+     * @throws IOException if the input cannot be read or is not valid product JSON.
+     */
+    public static long importInto(InputStream in, IProduitRepository repository) throws IOException {
+        List<Produit> toSave = new ArrayList<>();
+        List<Produit> toUpdate = new ArrayList<>();
+        return read(in, DEFAULT_BATCH_SIZE, batch -> {
+            for (Produit p : batch)
+                (p.hasRef() ? toUpdate : toSave).add(p);
+            if (!toSave.isEmpty())
+                repository.saveAll(toSave);
+            if (!toUpdate.isEmpty())
+                repository.updateAll(toUpdate);
+            toSave.clear();
+            toUpdate.clear();
+        });
+    }
+
+    /**
+     * Reads products and hands them over in batches.
+     * The batch list is reused: the consumer must not keep a reference to it.
+     *
+     * @param in The JSON or NDJSON input; it is not closed.
+     * @param batchSize The maximum number of products per batch.
+     * @param sink Receives each batch.
+     * @return The number of products read.
+     * @throws IOException if the input cannot be read or is not valid product JSON.
+     */
+    public static long read(InputStream in, int batchSize, Consumer<List<Produit>> sink) throws IOException {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        List<Produit> batch = new ArrayList<>(Math.min(batchSize, DEFAULT_BATCH_SIZE));
+        long total = 0;
+        ProduitBuilder builder = new ProduitBuilder(); // Reused for every product of the input
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array)
+                token = parser.nextToken();
+            while (token != null && token != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT)
+                    throw new JsonParseException(parser, "Expected a product object but found " + token);
+                batch.add(readProduit(parser, builder));
+                total++;
+                if (batch.size() >= batchSize) {
+                    sink.accept(batch);
+                    batch.clear();
+                }
+                token = parser.nextToken();
+            }
+            if (array && token != JsonToken.END_ARRAY)
+                throw new JsonParseException(parser, "Unterminated product array");
+        }
+        if (!batch.isEmpty())
+            sink.accept(batch);
+        return total;
+    }
+
+    // Reads the fields of one object; the parser is on its START_OBJECT token
+    private static Produit readProduit(JsonParser parser, ProduitBuilder p) throws IOException {
+        p.reset();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            boolean isNull = value == JsonToken.VALUE_NULL;
+            switch (field) {
+                case "ref":
+                    p.ref(isNull ? Produit.NO_REF : parser.getLongValue());
+                    break;
+                case "nom":
+                    p.nom(isNull ? null : parser.getText());
+                    break;
+                case "prix":
+                    p.prix(isNull ? 0 : parser.getDoubleValue());
+                    break;
+                case "quantiteStock":
+                    p.quantiteStock(isNull ? 0 : parser.getDoubleValue());
+                    break;
+                case "dateCreation":
+                    p.dateCreationMillis(readDate(parser, value));
+                    break;
+                case "datePremption":
+                    p.datePremptionMillis(readDate(parser, value));
+                    break;
+                case "type":
+                    p.type(isNull ? null : readType(parser));
+                    break;
+                case "version":
+                    p.version(isNull ? 0 : parser.getLongValue());
+                    break;
+                default:
+                    parser.skipChildren(); // Unknown field: ignore its value, whatever its shape
+            }
+        }
+        return p.build();
+    }
+
+    // Epoch milliseconds of a date field, or NO_DATE
+    private static long readDate(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL)
+            return Produit.NO_DATE;
+        if (value == JsonToken.VALUE_NUMBER_INT)
+            return parser.getLongValue();
+        if (value == JsonToken.VALUE_STRING) {
+            try {
+                return Instant.parse(parser.getText()).toEpochMilli();
+            } catch (DateTimeParseException e) {
+                throw new JsonParseException(parser, "Invalid date: " + parser.getText(), e);
+            }
+        }
+        throw new JsonParseException(parser, "Expected a date but found " + value);
+    }
+
+    private static TypeProduit readType(JsonParser parser) throws IOException {
+        try {
+            return TypeProduit.valueOf(parser.getText());
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException(parser, "Unknown product type: " + parser.getText(), e);
+        }
+    }
+
+    /**
+     * Writes products.
+     *
+     * @param produits The products to write, read one at a time.
+     * @param out The output; it is flushed but not closed.
+     * @param format The layout to produce.
+     * @return The number of products written.
+     * @throws IOException if the output fails.
+     */
+    public static long write(Iterable<Produit> produits, OutputStream out, Format format) throws IOException {
+        long total = 0;
+        try (JsonGenerator gen = FACTORY.createGenerator(out)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (format == Format.JSON_ARRAY)
+                gen.writeStartArray();
+            else
+                gen.setRootValueSeparator(new SerializedString("\n"));
+            for (Produit p : produits) {
+                writeProduit(gen, p);
+                total++;
+            }
+            if (format == Format.JSON_ARRAY)
+                gen.writeEndArray();
+            else if (total > 0)
+                gen.writeRaw('\n');
+        }
+        return total;
+    }
+
+    /**
+     * Exports every product of a repository.
+     *
+     * @param repository The repository to export.
+     * @param out The output; it is flushed but not closed.
+     * @param format The layout to produce.
+     * @return The number of products written.
+     * @throws IOException if the output fails.
+     */
+    public static long exportFrom(IProduitRepository repository, OutputStream out, Format format) throws IOException {
+        return write(repository.findAll(), out, format);
+    }
+
+    private static void writeProduit(JsonGenerator gen, Produit p) throws IOException {
+        gen.writeStartObject();
+        if (p.hasRef())
+            gen.writeNumberField("ref", p.getRef());
+        if (p.getNom() != null)
+            gen.writeStringField("nom", p.getNom());
+        gen.writeNumberField("prix", p.getPrix());
+        gen.writeNumberField("quantiteStock", p.getQuantiteStock());
+        if (p.getDateCreationMillis() != Produit.NO_DATE)
+            gen.writeNumberField("dateCreation", p.getDateCreationMillis());
+        if (p.getDatePremptionMillis() != Produit.NO_DATE)
+            gen.writeNumberField("datePremption", p.getDatePremptionMillis());
+        if (p.getType() != null)
+            gen.writeStringField("type", p.getType().name());
+        if (p.getVersion() != 0)
+            gen.writeNumberField("version", p.getVersion());
+        gen.writeEndObject();
+    }
+}
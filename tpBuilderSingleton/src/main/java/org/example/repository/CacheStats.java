@@ -0,0 +1,114 @@
+package org.example.repository;
+
+/**
+ * Counters of a {@link CachingProduitRepository}, as read at one point in time.
+ */
+public final class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long loads;
+    private final long coalescedLoads;
+    private final long evictions;
+    private final long expirations;
+    private final long writeBehindFlushes;
+    private final long writeBehindFailures;
+    private final int size;
+
+    CacheStats(long hits, long misses, long loads, long coalescedLoads, long evictions, long expirations,
+               long writeBehindFlushes, long writeBehindFailures, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.loads = loads;
+        this.coalescedLoads = coalescedLoads;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.writeBehindFlushes = writeBehindFlushes;
+        this.writeBehindFailures = writeBehindFailures;
+        this.size = size;
+    }
+
+    /**
+     * @return Lookups answered from the cache or from pending writes.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Lookups that had to wait for the backend.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Lookups sent to the backend; lower than the misses when concurrent misses were coalesced.
+     */
+    public long getLoads() {
+        return loads;
+    }
+
+    /**
+     * @return Misses that waited for a load already in flight instead of starting their own.
+     */
+    public long getCoalescedLoads() {
+        return coalescedLoads;
+    }
+
+    /**
+     * @return Products dropped to stay within the maximum size.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return Products dropped because they outlived the time to live.
+     */
+    public long getExpirations() {
+        return expirations;
+    }
+
+    public long getWriteBehindFlushes() {
+        return writeBehindFlushes;
+    }
+
+    /**
+     * @return Flushes that failed; their writes stay pending and are tried again.
+     */
+    public long getWriteBehindFailures() {
+        return writeBehindFailures;
+    }
+
+    /**
+     * @return The number of products cached.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return The fraction of lookups answered without the backend, 0 if there was none.
+     */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hits=" + hits +
+                ", misses=" + misses +
+                ", hitRate=" + String.format("%.4f", hitRate()) +
+                ", loads=" + loads +
+                ", coalescedLoads=" + coalescedLoads +
+                ", evictions=" + evictions +
+                ", expirations=" + expirations +
+                ", writeBehindFlushes=" + writeBehindFlushes +
+                ", writeBehindFailures=" + writeBehindFailures +
+                ", size=" + size +
+                '}';
+    }
+}
@@ -0,0 +1,709 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.repository.query.Criterion;
+import org.example.repository.query.ProduitQuery;
+
+import java.io.Closeable;
+import java.util.*; // For the segments and the pending writes
+import java.util.concurrent.CompletableFuture; // A load in flight, shared by concurrent misses
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder; // Contention-free counters for the statistics
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache of products by reference, in front of a slow IProduitRepository such as a
+ * persistent or remote store.
+ * <p>
+ * finfByRef answers from a bounded cache split into segments, each evicting with a segmented
+ * LRU: products enter a probation list and move to a protected list when read again, so a scan
+ * of many products read once cannot push out the frequently read ones. Products can also expire
+ * a fixed time after they were loaded or written. Concurrent misses on the same reference wait
+ * for a single backend load.
+ * <p>
+ * Writes are either written through, the cache being updated once the backend accepted them,
+ * or written behind: update and detele only change a map of pending writes, which a background
+ * thread flushes to the backend in batches, keeping the last write of each reference. Until it
+ * is flushed, a write is read back with a provisional version; the flush caches the products
+ * the backend stored, with the versions it assigned. Saves always reach the backend, which
+ * assigns the references. Queries are
+ * delegated to the backend after flushing the pending writes, so they see every write made
+ * before them; compare-and-set updates, stock adjustments and repricing flush as well.
+ * <p>
+ * The backend must not be changed behind the cache's back; {@link #invalidateAll()} forgets the
+ * cached products if it was.
+ */
+public class CachingProduitRepository implements IProduitRepository, Closeable {
+
+    private static final int SEGMENTS = 16; // A power of two: a segment is picked from the top bits of a hash
+    private static final int STRIPES = 64;
+    private static final int MAX_PENDING = 10_000; // Writers flush themselves past this many pending writes
+
+    // Marks a pending delete in the map of pending writes; compared by identity
+    private static final Produit DELETED = new Produit(Produit.NO_REF, null, 0, 0, Produit.NO_DATE, Produit.NO_DATE, null, 0);
+
+    private final IProduitRepository delegate;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long expireAfterWriteNanos; // 0 if products never expire
+    private final boolean writeBehind;
+    private final Object[] locks = new Object[STRIPES]; // Keep backend and cache order identical per reference
+    private final ConcurrentMap<Long, CompletableFuture<Produit>> loading = new ConcurrentHashMap<>();
+
+    // Write-behind state: writes not yet sent, and the batch being sent; both are read by finfByRef
+    private final ConcurrentMap<Long, Produit> pending = new ConcurrentHashMap<>();
+    private volatile Map<Long, Produit> flushing = Collections.emptyMap();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalescedLoads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    private CachingProduitRepository(Builder builder) {
+        this.delegate = builder.delegate;
+        this.expireAfterWriteNanos = TimeUnit.MILLISECONDS.toNanos(builder.expireAfterWriteMillis);
+        this.writeBehind = builder.flushIntervalMillis > 0;
+        int perSegment = Math.max(1, (builder.maximumSize + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment(perSegment);
+        for (int i = 0; i < STRIPES; i++)
+            locks[i] = new Object();
+        if (writeBehind) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "repository-cache-flush");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(() -> {
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    // Counted by flush(); the writes stay pending and the next run tries again
+                }
+            }, builder.flushIntervalMillis, builder.flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * @param delegate The backend to cache.
+     * @return A builder of a cache in front of the backend.
+     */
+    public static Builder builder(IProduitRepository delegate) {
+        return new Builder(delegate);
+    }
+
+    /**
+     * Options of a CachingProduitRepository.
+     * By default, the cache holds up to 10,000 products, never expires them and writes through.
+     */
+    public static final class Builder {
+        private final IProduitRepository delegate;
+        private int maximumSize = 10_000;
+        private long expireAfterWriteMillis;
+        private long flushIntervalMillis;
+
+        private Builder(IProduitRepository delegate) {
+            this.delegate = Objects.requireNonNull(delegate, "delegate");
+        }
+
+        /**
+         * @param maximumSize The number of products to keep, rounded up to a multiple of the segment count.
+         * @return This builder.
+         */
+        public Builder maximumSize(int maximumSize) {
+            if (maximumSize <= 0)
+                throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * @param millis The time a product stays cached after it was loaded or written.
+         * @return This builder.
+         */
+        public Builder expireAfterWrite(long millis) {
+            if (millis <= 0)
+                throw new IllegalArgumentException("Time to live must be positive: " + millis);
+            this.expireAfterWriteMillis = millis;
+            return this;
+        }
+
+        /**
+         * Makes update and detele write behind.
+         *
+         * @param flushIntervalMillis The time between two flushes of the pending writes; at most
+         *                            this much is lost if the process dies.
+         * @return This builder.
+         */
+        public Builder writeBehind(long flushIntervalMillis) {
+            if (flushIntervalMillis <= 0)
+                throw new IllegalArgumentException("Flush interval must be positive: " + flushIntervalMillis);
+            this.flushIntervalMillis = flushIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @return A new cache; close it to flush and stop its background thread.
+         */
+        public CachingProduitRepository build() {
+            return new CachingProduitRepository(this);
+        }
+    }
+
+    // Lookups
+
+    @Override
+    public Optional<Produit> finfByRef(Long ref) {
+        if (ref == null)
+            return Optional.empty();
+        if (writeBehind) {
+            Produit written = pendingWrite(ref);
+            if (written != null) {
+                hits.increment();
+                return written == DELETED ? Optional.empty() : Optional.of(written);
+            }
+        }
+        Produit cached = segmentFor(ref).get(ref);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        misses.increment();
+        return Optional.ofNullable(load(ref));
+    }
+
+    // The last write not yet applied to the backend, DELETED for a delete, or null
+    private Produit pendingWrite(long ref) {
+        Produit written = pending.get(ref);
+        return written != null ? written : flushing.get(ref);
+    }
+
+    // Loads a product from the backend, or waits for the load another thread started
+    private Produit load(long ref) {
+        CompletableFuture<Produit> mine = new CompletableFuture<>();
+        CompletableFuture<Produit> running = loading.putIfAbsent(ref, mine);
+        if (running != null) {
+            coalescedLoads.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                // The backend failure of the thread that loaded, rethrown as is
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        loads.increment();
+        Produit p;
+        try {
+            p = delegate.finfByRef(ref).orElse(null);
+        } catch (RuntimeException e) {
+            loading.remove(ref, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        segmentFor(ref).putLoaded(ref, p, mine);
+        mine.complete(p);
+        return p;
+    }
+
+    // Writes
+
+    @Override
+    public Produit save(Produit p) {
+        Produit saved = delegate.save(p); // The backend assigns the reference, even when writing behind
+        segmentFor(saved.getRef()).put(saved.getRef(), saved);
+        return saved;
+    }
+
+    @Override
+    public List<Produit> saveAll(Collection<Produit> produits) {
+        List<Produit> saved = delegate.saveAll(produits);
+        for (Produit p : saved)
+            segmentFor(p.getRef()).put(p.getRef(), p);
+        return saved;
+    }
+
+    @Override
+    public Produit update(Produit p) {
+        if (!p.hasRef())
+            throw new IllegalArgumentException("Cannot update a product without a reference");
+        if (!writeBehind)
+            return writeThrough(p.getRef(), () -> delegate.update(p));
+        long ref = p.getRef();
+        Produit stored;
+        synchronized (lockFor(ref)) {
+            Produit current = pendingWrite(ref);
+            if (current == DELETED) {
+                flush(); // The backend must drop the old product before a new one takes its reference
+                current = null;
+            } else if (current == null) {
+                current = finfByRef(ref).orElse(null);
+            }
+            // Provisional: the backend assigns the version when the write is flushed
+            stored = p.withVersion(Math.max(current == null ? 1 : current.getVersion() + 1, p.getVersion()));
+            pending.put(ref, stored);
+            segmentFor(ref).remove(ref); // Cached again once flushed, as the backend stored it
+        }
+        flushIfFull();
+        return stored;
+    }
+
+    @Override
+    public List<Produit> updateAll(Collection<Produit> produits) {
+        if (writeBehind) {
+            List<Produit> updated = new ArrayList<>(produits.size());
+            for (Produit p : produits)
+                updated.add(update(p));
+            return updated;
+        }
+        List<Produit> updated = delegate.updateAll(produits);
+        for (Produit p : updated)
+            invalidate(p.getRef()); // Cheaper than ordering the batch against single writes
+        return updated;
+    }
+
+    @Override
+    public Produit updateVersioned(Produit p) {
+        if (!p.hasRef())
+            throw new IllegalArgumentException("Cannot update a product without a reference");
+        flushIfWriteBehind();
+        return writeThrough(p.getRef(), () -> delegate.updateVersioned(p));
+    }
+
+    @Override
+    public Produit adjustStock(long ref, double delta) {
+        flushIfWriteBehind();
+        return writeThrough(ref, () -> delegate.adjustStock(ref, delta));
+    }
+
+    @Override
+    public Produit reprice(long ref, DoubleUnaryOperator fn) {
+        flushIfWriteBehind();
+        return writeThrough(ref, () -> delegate.reprice(ref, fn));
+    }
+
+    /**
+     * Flushes pending writes, which could otherwise overwrite the restored product later, and
+     * restores the product in the backend and in the cache.
+     */
+    @Override
+    public Produit restore(Produit p) {
+        if (!p.hasRef())
+            throw new IllegalArgumentException("Cannot restore a product without a reference");
+        synchronized (lockFor(p.getRef())) { // No write to this reference can be queued in between
+            if (writeBehind)
+                flush();
+            return writeThrough(p.getRef(), () -> delegate.restore(p));
+        }
+    }
+
+    // Applies a change in the backend, then caches the stored product
+    private Produit writeThrough(long ref, Supplier<Produit> change) {
+        synchronized (lockFor(ref)) {
+            Produit stored = change.get(); // Failures, such as a version mismatch, leave the cache as it was
+            segmentFor(ref).put(ref, stored);
+            return stored;
+        }
+    }
+
+    @Override
+    public void detele(Long ref) {
+        if (ref == null)
+            return;
+        synchronized (lockFor(ref)) {
+            if (writeBehind)
+                pending.put(ref, DELETED);
+            else
+                delegate.detele(ref);
+            segmentFor(ref).remove(ref);
+        }
+        flushIfFull();
+    }
+
+    @Override
+    public void deleteAll(Collection<Long> refs) {
+        if (writeBehind) {
+            for (Long ref : refs)
+                detele(ref);
+            return;
+        }
+        delegate.deleteAll(refs);
+        for (Long ref : refs)
+            if (ref != null)
+                invalidate(ref);
+    }
+
+    @Override
+    public List<Produit> drainExpiredBefore(Date instant) {
+        flushIfWriteBehind();
+        List<Produit> drained = delegate.drainExpiredBefore(instant);
+        for (Produit p : drained)
+            invalidate(p.getRef());
+        return drained;
+    }
+
+    private void invalidate(long ref) {
+        synchronized (lockFor(ref)) {
+            segmentFor(ref).remove(ref);
+        }
+    }
+
+    /**
+     * Forgets every cached product, for instance after the backend was changed directly.
+     * Pending writes are kept.
+     */
+    public void invalidateAll() {
+        for (Segment s : segments)
+            s.clear();
+    }
+
+    /**
+     * Sends the pending writes to the backend: one deleteAll and one updateAll, then caches the
+     * products the backend stored. If the backend fails, the writes stay pending, unless written
+     * again since.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            if (pending.isEmpty())
+                return;
+            Map<Long, Produit> batch = new HashMap<>(pending);
+            flushing = batch; // Published before the writes leave pending, so finfByRef always finds them
+            List<Produit> puts = new ArrayList<>(batch.size());
+            List<Long> deletes = new ArrayList<>();
+            for (Map.Entry<Long, Produit> e : batch.entrySet()) {
+                pending.remove(e.getKey(), e.getValue()); // Unless written again meanwhile
+                if (e.getValue() == DELETED)
+                    deletes.add(e.getKey());
+                else
+                    puts.add(e.getValue());
+            }
+            try {
+                if (!deletes.isEmpty())
+                    delegate.deleteAll(deletes);
+                if (!puts.isEmpty())
+                    for (Produit stored : delegate.updateAll(puts))
+                        segmentFor(stored.getRef()).putFlushed(stored.getRef(), stored);
+                flushes.increment();
+            } catch (RuntimeException e) {
+                flushFailures.increment();
+                for (Map.Entry<Long, Produit> w : batch.entrySet())
+                    pending.putIfAbsent(w.getKey(), w.getValue());
+                throw e;
+            } finally {
+                flushing = Collections.emptyMap();
+            }
+        }
+    }
+
+    private void flushIfWriteBehind() {
+        if (writeBehind)
+            flush();
+    }
+
+    private void flushIfFull() {
+        if (writeBehind && pending.size() >= MAX_PENDING)
+            flush(); // Backpressure: writers cannot outrun the backend indefinitely
+    }
+
+    /**
+     * Flushes the pending writes and stops the background flusher.
+     * The backend is not closed.
+     */
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flush();
+        }
+    }
+
+    /**
+     * @return The current counters of the cache.
+     */
+    public CacheStats stats() {
+        int size = 0;
+        for (Segment s : segments)
+            size += s.size();
+        return new CacheStats(hits.sum(), misses.sum(), loads.sum(), coalescedLoads.sum(), evictions.sum(),
+                expirations.sum(), flushes.sum(), flushFailures.sum(), size);
+    }
+
+    private Segment segmentFor(long ref) {
+        return segments[(int) ((ref * 0x9E3779B97F4A7C15L) >>> 60)]; // Top 4 bits of a multiplicative hash
+    }
+
+    private Object lockFor(long ref) {
+        int h = (int) (ref ^ (ref >>> 32));
+        h ^= (h >>> 16);
+        return locks[h & (STRIPES - 1)];
+    }
+
+    // Queries: answered by the backend once it holds every write
+
+    @Override
+    public List<Produit> findAll() {
+        flushIfWriteBehind();
+        return delegate.findAll();
+    }
+
+    @Override
+    public Spliterator<Produit> spliterator() {
+        flushIfWriteBehind();
+        return delegate.spliterator();
+    }
+
+    @Override
+    public Stream<Produit> stream() {
+        flushIfWriteBehind();
+        return delegate.stream();
+    }
+
+    @Override
+    public List<Produit> findPage(int offset, int limit) {
+        flushIfWriteBehind();
+        return delegate.findPage(offset, limit);
+    }
+
+    @Override
+    public List<Produit> findPageAfter(long afterRef, int limit) {
+        flushIfWriteBehind();
+        return delegate.findPageAfter(afterRef, limit);
+    }
+
+    @Override
+    public ProduitStatistics aggregate(Criterion criterion) {
+        flushIfWriteBehind();
+        return delegate.aggregate(criterion);
+    }
+
+    @Override
+    public Map<TypeProduit, InventorySummary> inventory() {
+        flushIfWriteBehind();
+        return delegate.inventory();
+    }
+
+    @Override
+    public InventorySummary inventory(TypeProduit type) {
+        flushIfWriteBehind();
+        return delegate.inventory(type);
+    }
+
+    @Override
+    public List<Produit> search(Predicate<Produit> predicate) {
+        flushIfWriteBehind();
+        return delegate.search(predicate);
+    }
+
+    @Override
+    public List<Produit> search(ProduitQuery query) {
+        flushIfWriteBehind();
+        return delegate.search(query);
+    }
+
+    @Override
+    public List<Produit> findByType(TypeProduit type) {
+        flushIfWriteBehind();
+        return delegate.findByType(type);
+    }
+
+    @Override
+    public List<Produit> findByPrixBetween(double min, double max) {
+        flushIfWriteBehind();
+        return delegate.findByPrixBetween(min, max);
+    }
+
+    @Override
+    public List<Produit> findByQuantiteStockGreaterThan(double seuil) {
+        flushIfWriteBehind();
+        return delegate.findByQuantiteStockGreaterThan(seuil);
+    }
+
+    @Override
+    public List<Produit> findByNomPrefix(String prefix, int limit) {
+        flushIfWriteBehind();
+        return delegate.findByNomPrefix(prefix, limit);
+    }
+
+    @Override
+    public List<Produit> findByNomContaining(String fragment, int limit) {
+        flushIfWriteBehind();
+        return delegate.findByNomContaining(fragment, limit);
+    }
+
+    @Override
+    public List<Produit> findExpiringBefore(Date instant) {
+        flushIfWriteBehind();
+        return delegate.findExpiringBefore(instant);
+    }
+
+    @Override
+    public List<Produit> findExpiringBetween(Date from, Date to) {
+        flushIfWriteBehind();
+        return delegate.findExpiringBetween(from, to);
+    }
+
+    @Override
+    public Optional<Produit> findNextExpiring(Date instant) {
+        flushIfWriteBehind();
+        return delegate.findNextExpiring(instant);
+    }
+
+    /**
+     * A share of the cache with its own lock and segmented LRU lists.
+     * Both lists are circular and doubly linked around a sentinel; the most recently used node
+     * follows the sentinel.
+     */
+    private final class Segment {
+        private final int capacity;
+        private final int protectedCapacity; // The protected list takes up to 80% of the segment
+        private final Map<Long, Node> nodes = new HashMap<>();
+        private final Node probation = new Node(0, null, 0);
+        private final Node protectedList = new Node(0, null, 0);
+        private int protectedSize;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = Math.max(1, capacity * 4 / 5);
+            clear();
+        }
+
+        synchronized Produit get(long ref) {
+            Node n = nodes.get(ref);
+            if (n == null)
+                return null;
+            if (expireAfterWriteNanos > 0 && System.nanoTime() - n.writtenAt >= expireAfterWriteNanos) {
+                drop(n);
+                expirations.increment();
+                return null;
+            }
+            if (n.inProtected) {
+                moveToFront(n, protectedList);
+            } else {
+                // Read twice: promote, and make room by demoting the least recently used protected node
+                n.inProtected = true;
+                protectedSize++;
+                moveToFront(n, protectedList);
+                if (protectedSize > protectedCapacity) {
+                    Node demoted = protectedList.prev;
+                    demoted.inProtected = false;
+                    protectedSize--;
+                    moveToFront(demoted, probation);
+                }
+            }
+            return n.value;
+        }
+
+        // Caches a written product; a load in flight read the backend before the write and must not overwrite it
+        synchronized void put(long ref, Produit p) {
+            loading.remove(ref);
+            store(ref, p);
+        }
+
+        // Caches the product stored by a flushed write, unless written again or cached by a later write meanwhile
+        synchronized void putFlushed(long ref, Produit p) {
+            if (!pending.containsKey(ref) && !nodes.containsKey(ref))
+                store(ref, p);
+        }
+
+        // Caches a loaded product, unless a write or a delete happened since the load started
+        synchronized void putLoaded(long ref, Produit p, CompletableFuture<Produit> load) {
+            if (loading.remove(ref, load) && p != null)
+                store(ref, p);
+        }
+
+        synchronized void remove(long ref) {
+            loading.remove(ref);
+            Node n = nodes.get(ref);
+            if (n != null)
+                drop(n);
+        }
+
+        synchronized void clear() {
+            nodes.clear();
+            probation.prev = probation.next = probation; // Empty circular lists
+            protectedList.prev = protectedList.next = protectedList;
+            protectedSize = 0;
+        }
+
+        synchronized int size() {
+            return nodes.size();
+        }
+
+        private void store(long ref, Produit p) {
+            long now = expireAfterWriteNanos > 0 ? System.nanoTime() : 0;
+            Node n = nodes.get(ref);
+            if (n != null) {
+                n.value = p;
+                n.writtenAt = now;
+                moveToFront(n, n.inProtected ? protectedList : probation);
+                return;
+            }
+            n = new Node(ref, p, now);
+            nodes.put(ref, n);
+            moveToFront(n, probation);
+            if (nodes.size() > capacity) {
+                // Evict from probation first: products read only once are the cheapest to lose
+                Node victim = probation.prev != probation ? probation.prev : protectedList.prev;
+                drop(victim);
+                evictions.increment();
+            }
+        }
+
+        private void drop(Node n) {
+            unlink(n);
+            nodes.remove(n.ref);
+            if (n.inProtected)
+                protectedSize--;
+        }
+
+        private void moveToFront(Node n, Node list) {
+            unlink(n);
+            n.next = list.next;
+            n.prev = list;
+            list.next.prev = n;
+            list.next = n;
+        }
+
+        private void unlink(Node n) {
+            if (n.prev != null) {
+                n.prev.next = n.next;
+                n.next.prev = n.prev;
+            }
+            n.prev = null;
+            n.next = null;
+        }
+    }
+
+    /**
+     * A cached product, linked in the list of its segment.
+     */
+    private static final class Node {
+        final long ref;
+        Produit value;
+        long writtenAt; // System.nanoTime() when loaded or written, if products expire
+        boolean inProtected;
+        Node prev;
+        Node next;
+
+        Node(long ref, Produit value, long writtenAt) {
+            this.ref = ref;
+            this.value = value;
+            this.writtenAt = writtenAt;
+        }
+    }
+}
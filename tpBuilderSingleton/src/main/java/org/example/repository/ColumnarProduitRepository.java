@@ -0,0 +1,863 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.repository.query.Criterion;
+import org.example.repository.query.ProduitQuery;
+
+import java.util.*; // For lists, dictionaries and statistics
+import java.util.concurrent.locks.ReentrantReadWriteLock; // Many readers, one writer
+import java.util.function.DoubleUnaryOperator; // For computing new prices
+import java.util.function.Predicate; // For opaque predicate search
+
+/**
+ * Column-oriented implementation of the IProduitRepository interface.
+ * <p>
+ * Instead of one heap object per product, every field lives in its own primitive array, one
+ * row per product: {@code long[]} references,
+ * {@code double[]} prices and stock quantities, epoch-millisecond {@code long[]} dates,
+ * a {@code byte[]} of TypeProduit ordinals and an {@code int[]} of ids into a dictionary
+ * of distinct names. Structured queries and aggregates run directly over these arrays;
+ * Produit objects are only created for the rows that are returned.
+ * <p>
+ * Rows are allocated densely, in the order references are first stored, and a {@link RowIndex}
+ * maps each reference to its row; an explicit reference, however large, costs one row. A
+ * deleted product keeps its row, marked free, and gets it back if its reference is stored again.
+ * References are generated above the highest one stored, so rows stay in reference order unless
+ * a lower reference is stored explicitly; scans in reference order then sort the live rows first.
+ * Names are reference-counted: a name no row uses any more leaves the dictionary, and its id is
+ * reused. Returned products are built from the columns on every read, so unlike the map-backed
+ * repository two reads never share an instance.
+ * <p>
+ * A single read-write lock guards the whole store: reads share it, and every write, including
+ * updateVersioned(), adjustStock() and reprice(), takes it exclusively. A product spans several
+ * arrays, so per-row locks would let readers see a half-written row; writers are therefore
+ * serialized store-wide rather than per row as in {@link ProduitRepositoryImpl}.
+ */
+public class ColumnarProduitRepository implements IProduitRepository {
+
+    private static final long NO_DATE = RowFilter.NO_DATE; // Encodes a missing date
+    private static final byte NO_TYPE = RowFilter.NO_TYPE; // Encodes a null TypeProduit
+    private static final int NO_NOM = -1; // Encodes a null name
+    private static final TypeProduit[] TYPES = TypeProduit.values();
+
+    private long[] refs; // 0 marks a row that is free (never saved or deleted)
+    private double[] prix;
+    private double[] quantiteStock;
+    private long[] dateCreation;
+    private long[] datePremption;
+    private byte[] types;
+    private int[] noms;
+    private long[] versions;
+
+    private int rows; // Number of rows in use, deleted ones included
+    private int count; // Number of live products
+    private final RowIndex index; // Row of every reference ever stored
+    private long highestRef; // Highest reference ever stored, the last generated one at least
+    private boolean refOrdered = true; // Whether row order is reference order
+
+    // Dictionary encoding of names: each distinct name is stored once, with the number of rows using it
+    private final List<String> dictionary = new ArrayList<>(); // null for an id free for reuse
+    private final Map<String, Integer> dictionaryIds = new HashMap<>();
+    private int[] nomUses = new int[16];
+    private final ArrayDeque<Integer> freeNomIds = new ArrayDeque<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates an empty repository.
+     */
+    public ColumnarProduitRepository() {
+        this(1024);
+    }
+
+    /**
+     * Creates an empty repository with room for the given number of products.
+     *
+     * @param initialCapacity The number of rows to allocate up front.
+     */
+    public ColumnarProduitRepository(int initialCapacity) {
+        allocate(Math.max(16, initialCapacity));
+        index = new RowIndex(Math.max(16, initialCapacity));
+    }
+
+    private void allocate(int capacity) {
+        refs = new long[capacity];
+        prix = new double[capacity];
+        quantiteStock = new double[capacity];
+        dateCreation = new long[capacity];
+        datePremption = new long[capacity];
+        types = new byte[capacity];
+        noms = new int[capacity];
+        versions = new long[capacity];
+    }
+
+    // Grows every column so that the given row exists; called with the write lock held
+    private void ensureCapacity(int row) {
+        if (row < refs.length)
+            return;
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(row + 1L, refs.length + (refs.length >> 1)));
+        refs = Arrays.copyOf(refs, capacity);
+        prix = Arrays.copyOf(prix, capacity);
+        quantiteStock = Arrays.copyOf(quantiteStock, capacity);
+        dateCreation = Arrays.copyOf(dateCreation, capacity);
+        datePremption = Arrays.copyOf(datePremption, capacity);
+        types = Arrays.copyOf(types, capacity);
+        noms = Arrays.copyOf(noms, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+    }
+
+    /**
+     * Saves a new product, generating its reference.
+     *
+     * @param p The product to save.
+     * @return The saved product with its reference set.
+     */
+    @Override
+    public Produit save(Produit p) {
+        lock.writeLock().lock();
+        try {
+            return append(p);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Saves a batch of products in consecutive rows under a single lock acquisition.
+     *
+     * @param batch The products to save.
+     * @return The saved products, in the order given, with their references set.
+     */
+    @Override
+    public List<Produit> saveAll(Collection<Produit> batch) {
+        List<Produit> saved = new ArrayList<>(batch.size());
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(rows + batch.size() - 1); // Grow the columns once for the whole batch
+            for (Produit p : batch)
+                saved.add(append(p));
+            return saved;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Stores a product under a new reference, called with the write lock held
+    private Produit append(Produit p) {
+        long ref = highestRef + 1;
+        return p.withRefAndVersion(ref, write(rowFor(ref), ref, p));
+    }
+
+    // Row of a reference, allocated at the end of the columns if it has none; called with the write lock held
+    private int rowFor(long ref) {
+        int row = index.get(ref);
+        if (row >= 0)
+            return row;
+        if (rows == Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("Columnar repository is full");
+        row = rows;
+        ensureCapacity(row);
+        index.put(ref, row);
+        rows++;
+        if (ref < highestRef)
+            refOrdered = false;
+        highestRef = Math.max(highestRef, ref);
+        return row;
+    }
+
+    /**
+     * Replaces the product stored under the reference of the given product, or stores it if
+     * the reference is unknown.
+     *
+     * @param p The updated product.
+     * @return The updated product, carrying its stored version.
+     * @throws IllegalArgumentException if the product has no valid reference.
+     */
+    @Override
+    public Produit update(Produit p) {
+        checkRef(p.getRef());
+        lock.writeLock().lock();
+        try {
+            return p.withVersion(write(rowFor(p.getRef()), p.getRef(), p));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void checkRef(long ref) {
+        if (ref < 1)
+            throw new IllegalArgumentException("Invalid reference for a columnar repository: " + ref);
+    }
+
+    /**
+     * Updates a batch of products under a single lock acquisition.
+     *
+     * @param batch The updated products.
+     * @return The updated products, in the order given.
+     * @throws IllegalArgumentException if a product has an invalid reference; nothing is updated then.
+     */
+    @Override
+    public List<Produit> updateAll(Collection<Produit> batch) {
+        List<Produit> updated = new ArrayList<>(batch);
+        for (Produit p : updated)
+            checkRef(p.getRef());
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < updated.size(); i++) {
+                Produit p = updated.get(i);
+                updated.set(i, p.withVersion(write(rowFor(p.getRef()), p.getRef(), p)));
+            }
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Stores a product into its row and returns its next version, called with the write lock held
+    private long write(int row, long ref, Produit p) {
+        long previous = versionAt(row);
+        versions[row] = Math.max(previous + 1, p.getVersion());
+        int nom = encode(p.getNom()); // Before releasing the previous name, which may be the same
+        if (refs[row] == 0)
+            count++;
+        else
+            release(noms[row]);
+        refs[row] = ref;
+        prix[row] = p.getPrix();
+        quantiteStock[row] = p.getQuantiteStock();
+        dateCreation[row] = p.getDateCreationMillis();
+        datePremption[row] = p.getDatePremptionMillis();
+        types[row] = p.getType() == null ? NO_TYPE : (byte) p.getType().ordinal();
+        noms[row] = nom;
+        return versions[row];
+    }
+
+    // Stored version of a row, 0 if it holds no product; called with a lock held
+    private long versionAt(int row) {
+        return row < rows && refs[row] != 0 ? versions[row] : 0;
+    }
+
+    /**
+     * Stores a product in its row with the version it carries, under the write lock.
+     *
+     * @param p The product to store.
+     * @return The product, as stored.
+     * @throws IllegalArgumentException if the product has no valid reference.
+     */
+    @Override
+    public Produit restore(Produit p) {
+        checkRef(p.getRef());
+        lock.writeLock().lock();
+        try {
+            int row = rowFor(p.getRef());
+            write(row, p.getRef(), p);
+            versions[row] = p.getVersion(); // Not moved past the stored one, unlike update()
+            return p;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates a product under the write lock if its stored version is the one it carries.
+     *
+     * @param p The product with updated details and the version it was read with.
+     * @return The updated product, carrying its new version.
+     * @throws OptimisticLockException if the stored version differs.
+     * @throws IllegalArgumentException if the product has no valid reference.
+     */
+    @Override
+    public Produit updateVersioned(Produit p) {
+        checkRef(p.getRef());
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(p.getRef());
+            long actual = row < 0 ? 0 : versionAt(row);
+            if (actual != p.getVersion())
+                throw new OptimisticLockException(p.getRef(), p.getVersion(), actual);
+            return p.withVersion(write(rowFor(p.getRef()), p.getRef(), p));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds to the stock column of a product in place, under the write lock.
+     *
+     * @param ref The reference of the product.
+     * @param delta The quantity to add, negative to remove stock.
+     * @return The product as stored after the adjustment.
+     * @throws NoSuchElementException if there is no product with this reference.
+     */
+    @Override
+    public Produit adjustStock(long ref, double delta) {
+        lock.writeLock().lock();
+        try {
+            int row = liveRow(ref);
+            quantiteStock[row] += delta;
+            versions[row]++;
+            return materialize(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the price of a product in place, under the write lock; the function is called once.
+     *
+     * @param ref The reference of the product.
+     * @param fn Computes the new price from the current one.
+     * @return The product as stored after the change.
+     * @throws NoSuchElementException if there is no product with this reference.
+     */
+    @Override
+    public Produit reprice(long ref, DoubleUnaryOperator fn) {
+        lock.writeLock().lock();
+        try {
+            int row = liveRow(ref);
+            prix[row] = fn.applyAsDouble(prix[row]);
+            versions[row]++;
+            return materialize(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Row of a stored product, called with a lock held
+    private int liveRow(long ref) {
+        int row = rowOf(ref);
+        if (row < 0 || versionAt(row) == 0)
+            throw new NoSuchElementException("No product with reference " + ref);
+        return row;
+    }
+
+    // Dictionary id of a name, taking one use of it; called with the write lock held
+    private int encode(String nom) {
+        if (nom == null)
+            return NO_NOM;
+        Integer id = dictionaryIds.get(nom);
+        if (id == null) {
+            if (freeNomIds.isEmpty()) {
+                id = dictionary.size();
+                dictionary.add(nom);
+                if (id == nomUses.length)
+                    nomUses = Arrays.copyOf(nomUses, 2 * id);
+            } else {
+                id = freeNomIds.pop();
+                dictionary.set(id, nom);
+            }
+            dictionaryIds.put(nom, id);
+        }
+        nomUses[id]++;
+        return id;
+    }
+
+    // Gives back one use of a dictionary id, dropping its name once no row uses it; called with the write lock held
+    private void release(int id) {
+        if (id == NO_NOM || --nomUses[id] > 0)
+            return;
+        dictionaryIds.remove(dictionary.get(id));
+        dictionary.set(id, null);
+        freeNomIds.push(id);
+    }
+
+    /**
+     * Deletes a product; its row stays allocated but is marked free.
+     *
+     * @param ref The reference of the product to delete.
+     */
+    @Override
+    public void detele(Long ref) {
+        deleteAll(Collections.singletonList(ref));
+    }
+
+    /**
+     * Deletes a batch of products under a single lock acquisition.
+     *
+     * @param batch The references of the products to delete.
+     */
+    @Override
+    public void deleteAll(Collection<Long> batch) {
+        lock.writeLock().lock();
+        try {
+            for (Long ref : batch) {
+                int row = rowOf(ref);
+                if (row >= 0 && refs[row] != 0) {
+                    refs[row] = 0;
+                    release(noms[row]);
+                    count--;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Called with the read or write lock held.
+     *
+     * @param ref A product reference, possibly null.
+     * @return The row of the reference, or -1 if it never had one.
+     */
+    private int rowOf(Long ref) {
+        return ref == null || ref < 1 ? -1 : index.get(ref);
+    }
+
+    @Override
+    public Optional<Produit> finfByRef(Long ref) {
+        lock.readLock().lock();
+        try {
+            int row = rowOf(ref);
+            return row >= 0 && refs[row] != 0 ? Optional.of(materialize(row)) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Materializes the products with the given references under a single lock acquisition.
+     *
+     * @param batch The references to look up.
+     * @return The products found, in the order of the references; missing ones are skipped.
+     */
+    @Override
+    public List<Produit> findAllByRefs(Collection<Long> batch) {
+        List<Produit> found = new ArrayList<>(batch.size());
+        lock.readLock().lock();
+        try {
+            for (Long ref : batch) {
+                int row = rowOf(ref);
+                if (row >= 0 && refs[row] != 0)
+                    found.add(materialize(row));
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Produit> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Produit> result = new ArrayList<>(count);
+            for (int row = 0; row < rows; row++)
+                if (refs[row] != 0)
+                    result.add(materialize(row));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Traverses the rows, materializing one chunk of rows per read lock acquisition; rows
+     * appended after this call are not visited. The rows are in reference order, and the
+     * spliterator reports ORDERED, unless a reference lower than the highest was stored explicitly.
+     *
+     * @return A weakly consistent spliterator over the products.
+     */
+    @Override
+    public Spliterator<Produit> spliterator() {
+        lock.readLock().lock();
+        try {
+            return new RowSpliterator(lock.readLock(), row -> refs[row] != 0, columns, 0, rows, refOrdered);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a page of products in reference order, skipping free rows without materializing them.
+     *
+     * @param offset The number of products to skip.
+     * @param limit The maximum number of products to return.
+     * @return The products of the page, in ascending reference order.
+     */
+    @Override
+    public List<Produit> findPage(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Produit> page = new ArrayList<>(Math.min(limit, count));
+            if (!refOrdered) {
+                int[] ordered = liveRowsByRef();
+                for (int i = offset; i >= 0 && i < ordered.length && page.size() < limit; i++)
+                    page.add(materialize(ordered[i]));
+                return page;
+            }
+            int skip = offset;
+            for (int row = 0; row < rows && page.size() < limit; row++) {
+                if (refs[row] == 0)
+                    continue;
+                if (skip > 0)
+                    skip--;
+                else
+                    page.add(materialize(row));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the products following a reference; the page starts directly after its row when
+     * the reference is known and rows are in reference order.
+     *
+     * @param afterRef The reference after which the page starts, excluded.
+     * @param limit The maximum number of products to return.
+     * @return The products of the page, in ascending reference order.
+     */
+    @Override
+    public List<Produit> findPageAfter(long afterRef, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Produit> page = new ArrayList<>(Math.min(limit, count));
+            if (!refOrdered) {
+                for (int row : liveRowsByRef()) {
+                    if (page.size() == limit)
+                        break;
+                    if (refs[row] > afterRef)
+                        page.add(materialize(row));
+                }
+                return page;
+            }
+            int from = afterRef < 1 ? 0 : index.get(afterRef) + 1; // 0 for an unknown reference: scan from the start
+            for (int row = from; row < rows && page.size() < limit; row++)
+                if (refs[row] > afterRef)
+                    page.add(materialize(row));
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches with an opaque predicate.
+     * The predicate can only look at objects, so every live row is materialized; prefer
+     * {@link #search(ProduitQuery)}, which filters on the columns.
+     *
+     * @param predicate The condition to filter products.
+     * @return A list of products that match the predicate.
+     */
+    @Override
+    public List<Produit> search(Predicate<Produit> predicate) {
+        lock.readLock().lock();
+        try {
+            List<Produit> result = new ArrayList<>();
+            for (int row = 0; row < rows; row++) {
+                if (refs[row] == 0)
+                    continue;
+                Produit p = materialize(row);
+                if (predicate.test(p))
+                    result.add(p);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches with a structured query evaluated over the columns.
+     * Unordered queries materialize only the rows of the requested page.
+     *
+     * @param query The query to run.
+     * @return The requested page of matching products.
+     */
+    @Override
+    public List<Produit> search(ProduitQuery query) {
+        lock.readLock().lock();
+        try {
+            RowFilter filter = compile(query.getCriterion());
+            if (query.getOrderFields().isEmpty()) {
+                List<Produit> result = new ArrayList<>();
+                int skip = query.getOffset();
+                for (int row = 0; row < rows && result.size() < query.getLimit(); row++) {
+                    if (refs[row] == 0 || !filter.test(row))
+                        continue;
+                    if (skip > 0)
+                        skip--;
+                    else
+                        result.add(materialize(row));
+                }
+                return result;
+            }
+            return query.apply(matching(filter), false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Produit> findByType(TypeProduit type) {
+        byte ordinal = (byte) Objects.requireNonNull(type, "type").ordinal();
+        lock.readLock().lock();
+        try {
+            List<Produit> result = new ArrayList<>();
+            for (int row = 0; row < rows; row++)
+                if (types[row] == ordinal && refs[row] != 0)
+                    result.add(materialize(row));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Produit> findByPrixBetween(double min, double max) {
+        lock.readLock().lock();
+        try {
+            List<Produit> result = new ArrayList<>();
+            for (int row = 0; row < rows; row++)
+                if (prix[row] >= min && prix[row] <= max && refs[row] != 0)
+                    result.add(materialize(row));
+            result.sort(Comparator.comparingDouble(Produit::getPrix));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Produit> findByQuantiteStockGreaterThan(double seuil) {
+        lock.readLock().lock();
+        try {
+            List<Produit> result = new ArrayList<>();
+            for (int row = 0; row < rows; row++)
+                if (quantiteStock[row] > seuil && refs[row] != 0)
+                    result.add(materialize(row));
+            result.sort(Comparator.comparingDouble(Produit::getQuantiteStock));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the products matching a criterion without materializing any of them.
+     *
+     * @param criterion The condition to satisfy.
+     * @return The number of matching products.
+     */
+    public long count(Criterion criterion) {
+        lock.readLock().lock();
+        try {
+            RowFilter filter = compile(criterion);
+            long n = 0;
+            for (int row = 0; row < rows; row++)
+                if (refs[row] != 0 && filter.test(row))
+                    n++;
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Computes count, min, max, sum and average of the prices of the matching products.
+     *
+     * @param criterion The condition to satisfy.
+     * @return The price statistics; empty statistics if nothing matches.
+     */
+    public DoubleSummaryStatistics prixStatistics(Criterion criterion) {
+        lock.readLock().lock();
+        try {
+            RowFilter filter = compile(criterion);
+            DoubleSummaryStatistics stats = new DoubleSummaryStatistics();
+            for (int row = 0; row < rows; row++)
+                if (refs[row] != 0 && filter.test(row))
+                    stats.accept(prix[row]);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Computes the total stock value (prix * quantiteStock) of the matching products.
+     *
+     * @param criterion The condition to satisfy.
+     * @return The total value.
+     */
+    public double totalStockValue(Criterion criterion) {
+        lock.readLock().lock();
+        try {
+            RowFilter filter = compile(criterion);
+            double total = 0;
+            for (int row = 0; row < rows; row++)
+                if (refs[row] != 0 && filter.test(row))
+                    total += prix[row] * quantiteStock[row];
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Computes aggregates directly on the columns, in parallel for large stores.
+     * Each segment of rows takes the read lock on its own, so writers can interleave between
+     * segments.
+     *
+     * @param criterion The products to include.
+     * @return The aggregates.
+     */
+    @Override
+    public ProduitStatistics aggregate(Criterion criterion) {
+        RowFilter filter;
+        int end;
+        lock.readLock().lock();
+        try {
+            filter = compile(criterion);
+            end = rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ParallelAggregation.aggregateRows(lock.readLock(), row -> refs[row] != 0, columns, filter, 0, end);
+    }
+
+    /**
+     * @return The number of live products.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimates the heap used by the columns and the reference index, excluding the name dictionary.
+     *
+     * @return The allocated column and index size in bytes.
+     */
+    public long columnBytes() {
+        lock.readLock().lock();
+        try {
+            // 6 eight-byte columns, one int column and one byte column per allocated row
+            return (long) refs.length * (6 * 8 + 4 + 1) + index.bytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Live rows sorted by reference, for when row order is not reference order; called with a lock held
+    private int[] liveRowsByRef() {
+        long[] live = new long[count];
+        int n = 0;
+        for (int row = 0; row < rows; row++)
+            if (refs[row] != 0)
+                live[n++] = refs[row];
+        Arrays.sort(live, 0, n);
+        int[] ordered = new int[n];
+        for (int i = 0; i < n; i++)
+            ordered[i] = index.get(live[i]);
+        return ordered;
+    }
+
+    /**
+     * @return The number of distinct names used by live products.
+     */
+    int dictionarySize() {
+        lock.readLock().lock();
+        try {
+            return dictionaryIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Creates the Produit held by a row, called with the read or write lock held
+    private Produit materialize(int row) {
+        return new Produit(refs[row],
+                noms[row] == NO_NOM ? null : dictionary.get(noms[row]),
+                prix[row],
+                quantiteStock[row],
+                dateCreation[row],
+                datePremption[row],
+                types[row] == NO_TYPE ? null : TYPES[types[row]],
+                versions[row]);
+    }
+
+    // Lazily materializes the live rows accepted by a filter
+    private Iterable<Produit> matching(RowFilter filter) {
+        return () -> new Iterator<Produit>() {
+            private int row = next(0);
+
+            private int next(int from) {
+                while (from < rows && (refs[from] == 0 || !filter.test(from)))
+                    from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return row < rows;
+            }
+
+            @Override
+            public Produit next() {
+                if (row >= rows)
+                    throw new NoSuchElementException();
+                Produit p = materialize(row);
+                row = next(row + 1);
+                return p;
+            }
+        };
+    }
+
+    // Translates a criterion into column accesses, called with the read lock held
+    private RowFilter compile(Criterion c) {
+        return RowFilter.compile(c, columns);
+    }
+
+    // Reads the columns for RowFilter; only used with the read or write lock held
+    private final RowFilter.Source columns = new RowFilter.Source() {
+        @Override
+        public double prix(int row) {
+            return prix[row];
+        }
+
+        @Override
+        public double quantiteStock(int row) {
+            return quantiteStock[row];
+        }
+
+        @Override
+        public long datePremption(int row) {
+            return datePremption[row];
+        }
+
+        @Override
+        public byte type(int row) {
+            return types[row];
+        }
+
+        @Override
+        public RowFilter nomStartsWith(String prefix) {
+            // Evaluate the prefix once per distinct name, then test the row's dictionary id
+            BitSet accepted = new BitSet(dictionary.size());
+            for (int id = 0; id < dictionary.size(); id++)
+                if (dictionary.get(id) != null && dictionary.get(id).startsWith(prefix))
+                    accepted.set(id);
+            return row -> noms[row] != NO_NOM && accepted.get(noms[row]);
+        }
+
+        @Override
+        public RowFilter nomMatches(Predicate<String> test) {
+            BitSet accepted = new BitSet(dictionary.size());
+            for (int id = 0; id < dictionary.size(); id++)
+                if (dictionary.get(id) != null && test.test(dictionary.get(id)))
+                    accepted.set(id);
+            return row -> noms[row] != NO_NOM && accepted.get(noms[row]);
+        }
+
+        @Override
+        public Produit materialize(int row) {
+            return ColumnarProduitRepository.this.materialize(row);
+        }
+    };
+}
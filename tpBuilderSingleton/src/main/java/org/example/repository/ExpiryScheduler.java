@@ -0,0 +1,103 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+
+import java.io.Closeable;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Calls back when products expire, without rescanning the repository.
+ * <p>
+ * A single background thread sleeps until the next known expiration date, then fetches the
+ * products that expired since its last run from the expiry index and hands them to the
+ * callback, in expiration order. A product saved with an earlier expiration date than the one
+ * the thread is waiting for is picked up at the latest {@code maxDelayMillis} later.
+ * <p>
+ * In draining mode the expired products are also removed from the repository; otherwise they
+ * stay and each expiration is reported once.
+ */
+public final class ExpiryScheduler implements Closeable {
+
+    private final IProduitRepository repository;
+    private final Consumer<Produit> onExpiry;
+    private final boolean drain;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService executor;
+    private long reportedUpTo; // Expirations before this instant were reported; only used by the scheduler thread
+
+    private ExpiryScheduler(IProduitRepository repository, Consumer<Produit> onExpiry, boolean drain, long maxDelayMillis) {
+        this.repository = repository;
+        this.onExpiry = onExpiry;
+        this.drain = drain;
+        this.maxDelayMillis = maxDelayMillis;
+        this.reportedUpTo = System.currentTimeMillis();
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "expiry-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts a scheduler.
+     * Products already expired when it starts are only reported in draining mode.
+     *
+     * @param repository The repository to watch.
+     * @param onExpiry Called with each expired product, from the scheduler thread.
+     * @param drain Whether expired products are removed from the repository.
+     * @param maxDelayMillis The longest the thread sleeps without looking at the expiry index.
+     * @return The running scheduler.
+     */
+    public static ExpiryScheduler start(IProduitRepository repository, Consumer<Produit> onExpiry, boolean drain,
+                                        long maxDelayMillis) {
+        if (maxDelayMillis <= 0)
+            throw new IllegalArgumentException("maxDelayMillis must be positive: " + maxDelayMillis);
+        ExpiryScheduler scheduler = new ExpiryScheduler(repository, onExpiry, drain, maxDelayMillis);
+        scheduler.executor.execute(scheduler::run);
+        return scheduler;
+    }
+
+    private void run() {
+        long now = System.currentTimeMillis();
+        long delay = maxDelayMillis;
+        try {
+            List<Produit> expired = expiredUpTo(now);
+            reportedUpTo = now;
+            for (Produit p : expired)
+                onExpiry.accept(p);
+            delay = Math.min(maxDelayMillis, Math.max(0, nextExpiry(now) - now));
+        } catch (RuntimeException e) {
+            // Neither a failing callback nor a failing read may stop the scheduler; the next run retries the read
+        }
+        if (!executor.isShutdown())
+            executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private List<Produit> expiredUpTo(long now) {
+        if (drain)
+            return repository.drainExpiredBefore(new Date(now));
+        // Those expiring before reportedUpTo were reported by an earlier run
+        return repository.findExpiringBetween(new Date(reportedUpTo), new Date(now));
+    }
+
+    // The first expiration date at or after now, or Long.MAX_VALUE if there is none
+    private long nextExpiry(long now) {
+        return repository.findNextExpiring(new Date(now))
+                .map(Produit::getDatePremptionMillis)
+                .filter(millis -> millis != Produit.NO_DATE) // The product lost its expiry meanwhile
+                .orElse(Long.MAX_VALUE);
+    }
+
+    /**
+     * Stops the scheduler; a callback in progress is allowed to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -1,39 +1,456 @@
 package org.example.repository;
 
 import org.example.entity.Produit; // Entity class representing a product
+import org.example.entity.TypeProduit; // Product categories used by typed queries
+import org.example.repository.query.Criteria; // Factories for query criteria
+import org.example.repository.query.Criterion; // Conditions selecting the products to aggregate
+import org.example.repository.query.Folding; // Case- and accent-insensitive names
+import org.example.repository.query.ProduitField; // Fields queries can be ordered by
+import org.example.repository.query.ProduitQuery; // Structured queries the repository can plan
 
+import java.util.AbstractMap; // For pairing products with their folded names
+import java.util.ArrayList; // For building batch results
+import java.util.Collection; // For batch operations
+import java.util.Comparator; // For ordering name search results
+import java.util.Collections;
+import java.util.Date; // For expiry instants
 import java.util.List; // For returning lists of products
+import java.util.Map;
+import java.util.NoSuchElementException; // For in-place operations on missing products
 import java.util.Optional; // For null-safe operations on products
+import java.util.PriorityQueue; // For keeping the first results of a name search
+import java.util.Spliterator; // For traversing the store without copying all of it
+import java.util.function.DoubleUnaryOperator; // For computing new prices
 import java.util.function.Predicate; // For defining filter criteria
+import java.util.stream.Stream; // For streaming over the store
+import java.util.stream.StreamSupport;
 
 /**
  * Interface defining the repository contract for managing Produit entities.
  * Provides CRUD operations and additional search functionality.
+ * <p>
+ * Products are immutable: writes return the product as stored, with its reference and version,
+ * and leave the given product untouched. Implementations may return the instances they store.
  */
 public interface IProduitRepository {
 
     /**
      * Saves a new product to the repository.
-     * 
-     * @param p The product to be saved.
+     *
+     * @param p The product to be saved; its reference, if any, is ignored.
      * @return The saved product with updated details (e.g., a generated reference).
      */
     Produit save(Produit p);
 
     /**
      * Retrieves all products from the repository.
-     * 
+     *
      * @return A list of all products.
      */
     List<Produit> findAll();
 
+    /**
+     * Returns a spliterator over the products of the repository.
+     * Implementations traverse the live store without copying all of it first, at most a share
+     * of it at a time, and split it for parallel streams. The traversal is weakly consistent: it never fails because of concurrent changes,
+     * returns each product at most once, reflects every product stored before it started and
+     * not removed since, and may or may not reflect later changes. This default copies findAll().
+     *
+     * @return A spliterator over the products.
+     */
+    default Spliterator<Produit> spliterator() {
+        return findAll().spliterator();
+    }
+
+    /**
+     * Streams the products of the repository, with the consistency of {@link #spliterator()}.
+     * Prefer it to findAll() to visit the products once: no list of the whole catalog is built.
+     *
+     * @return A sequential stream of the products; call parallel() to split the traversal.
+     */
+    default Stream<Produit> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a page of products ordered by reference.
+     * The cost grows with the offset; to walk the whole catalog, use {@link #findPageAfter}.
+     *
+     * @param offset The number of products to skip.
+     * @param limit The maximum number of products to return.
+     * @return The products of the page, in ascending reference order.
+     */
+    default List<Produit> findPage(int offset, int limit) {
+        return search(ProduitQuery.all().orderBy(ProduitField.REF).offset(offset).limit(limit));
+    }
+
+    /**
+     * Returns the products following a reference, in ascending reference order (keyset paging).
+     * Pass 0 for the first page, then the reference of the last product of each page: unlike
+     * offsets, pages stay stable when products are added or removed before the current position.
+     *
+     * @param afterRef The reference after which the page starts, excluded.
+     * @param limit The maximum number of products to return.
+     * @return The products of the page, in ascending reference order.
+     */
+    default List<Produit> findPageAfter(long afterRef, int limit) {
+        return ProduitQuery.all().orderBy(ProduitField.REF).limit(limit)
+                .apply(() -> stream().filter(p -> p.getRef() > afterRef).iterator(), false);
+    }
+
+    /**
+     * Computes aggregates over the products matching a criterion: price statistics, stock value
+     * per type and products expiring per week.
+     * Large catalogs are split and aggregated in parallel on the fork-join pool, with one partial
+     * result per segment merged at the end; small ones are aggregated by the calling thread.
+     * The result has the consistency of {@link #spliterator()}.
+     *
+     * @param criterion The products to include.
+     * @return The aggregates.
+     */
+    default ProduitStatistics aggregate(Criterion criterion) {
+        return ParallelAggregation.aggregate(spliterator(), criterion);
+    }
+
+    /**
+     * Computes aggregates over every product.
+     *
+     * @return The aggregates.
+     * @see #aggregate(Criterion)
+     */
+    default ProduitStatistics aggregate() {
+        return aggregate(Criteria.all());
+    }
+
+    /**
+     * Returns the inventory totals of every product type: number of products, quantity in stock,
+     * stock value and cheapest and priciest product.
+     * This default computes them from findAll(); repositories that maintain them on every write
+     * answer without visiting the products.
+     *
+     * @return A summary per type, empty summaries included.
+     */
+    default Map<TypeProduit, InventorySummary> inventory() {
+        return InventorySummary.of(findAll());
+    }
+
+    /**
+     * @param type The product type.
+     * @return The inventory totals of the type.
+     * @see #inventory()
+     */
+    default InventorySummary inventory(TypeProduit type) {
+        return inventory().get(type);
+    }
+
     /**
      * Finds a product by its unique reference.
-     * 
+     *
      * @param ref The reference of the product to find.
      * @return An Optional containing the product if found, or empty if not found.
      */
     Optional<Produit> finfByRef(Long ref); // Note: Consider fixing the method name typo to `findByRef`.
 
     /**
+     * Finds a product by its reference without boxing the reference or wrapping the result,
+     * for lookups on hot paths.
+     *
+     * @param ref The reference of the product to find.
+     * @return The product, or null if there is none.
+     */
+    default Produit getByRef(long ref) {
+        return finfByRef(ref).orElse(null);
+    }
+
+    /**
+     * Updates an existing product in the repository.
+     * The last write wins. The stored version becomes the previous one plus one, or the version
+     * carried by the product if it is higher, so that a replayed product keeps its version.
+     *
+     * @param p The product with updated details.
+     * @return The updated product, carrying its stored version.
+     */
+    Produit update(Produit p);
+
+    /**
+     * Stores a product exactly as given, reference and version included, replacing the stored one.
+     * Meant for recovery, such as replaying a journal over a snapshot that may already hold the
+     * record: unlike update(), the version is not moved past the stored one, so the product comes
+     * back with the version it had. This default deletes, then updates, which is not atomic:
+     * repositories shared between threads override it with an atomic implementation.
+     *
+     * @param p The product to store, with its reference and version.
+     * @return The product as stored.
+     * @throws IllegalArgumentException if the product has no reference.
+     */
+    default Produit restore(Produit p) {
+        if (!p.hasRef())
+            throw new IllegalArgumentException("Cannot restore a product without a reference");
+        detele(p.getRef());
+        return update(p);
+    }
+
+    /**
+     * Updates a product only if it was not changed since it was read (compare-and-set).
+     * The product must carry the version it was read with, 0 to create a product that must not
+     * exist yet; on success the stored version is incremented and carried by the returned product.
+     * This default checks, then updates, which is not atomic: repositories shared between threads
+     * override it with an atomic implementation.
+     *
+     * @param p The product with updated details and the version it was read with.
+     * @return The updated product.
+     * @throws OptimisticLockException if the stored version is not the one carried by the product.
+     * @throws IllegalArgumentException if the product has no reference.
+     */
+    default Produit updateVersioned(Produit p) {
+        if (!p.hasRef())
+            throw new IllegalArgumentException("Cannot update a product without a reference");
+        long actual = finfByRef(p.getRef()).map(Produit::getVersion).orElse(0L);
+        if (actual != p.getVersion())
+            throw new OptimisticLockException(p.getRef(), p.getVersion(), actual);
+        return update(p);
+    }
+
+    /**
+     * Atomically adds a quantity to the stock of a product; concurrent adjustments are never lost.
+     * This default retries a compare-and-set update until no other writer interferes.
+     *
+     * @param ref The reference of the product.
+     * @param delta The quantity to add, negative to remove stock.
+     * @return The product as stored after the adjustment.
+     * @throws NoSuchElementException if there is no product with this reference.
+     */
+    default Produit adjustStock(long ref, double delta) {
+        while (true) {
+            Produit p = finfByRef(ref).orElseThrow(() -> new NoSuchElementException("No product with reference " + ref));
+            try {
+                return updateVersioned(p.withQuantiteStock(p.getQuantiteStock() + delta));
+            } catch (OptimisticLockException e) {
+                // Changed since it was read: start again from the new version
+            }
+        }
+    }
+
+    /**
+     * Atomically replaces the price of a product with a function of its current price.
+     * The function may be called several times if other writers interfere, and must not have side effects.
+     *
+     * @param ref The reference of the product.
+     * @param fn Computes the new price from the current one.
+     * @return The product as stored after the change.
+     * @throws NoSuchElementException if there is no product with this reference.
+     */
+    default Produit reprice(long ref, DoubleUnaryOperator fn) {
+        while (true) {
+            Produit p = finfByRef(ref).orElseThrow(() -> new NoSuchElementException("No product with reference " + ref));
+            try {
+                return updateVersioned(p.withPrix(fn.applyAsDouble(p.getPrix())));
+            } catch (OptimisticLockException e) {
+                // Changed since it was read: start again from the new version
+            }
+        }
+    }
+
+    /**
+     * Deletes a product from the repository by its reference.
+     *
+     * @param ref The reference of the product to delete.
+     */
+    void detele(Long ref); // Note: Consider fixing the method name typo to `delete`.
+
+    /**
+     * Searches for products that match the given criteria.
+     *
+     * @param predicate The condition used to filter products.
+     * @return A list of products matching the predicate.
+     */
+    List<Produit> search(Predicate<Produit> predicate);
+
+    /**
+     * Searches for products with a structured query.
+     * Unlike a Predicate, the query exposes its criteria, so implementations can answer it from
+     * their indexes; it also carries the ordering and the page (offset/limit) to return.
+     *
+     * @param query The query to run.
+     * @return The requested page of matching products.
+     */
+    List<Produit> search(ProduitQuery query);
+
+    /**
+     * Finds all products of the given type.
+     *
+     * @param type The product type.
+     * @return A list of the products of that type.
+     */
+    List<Produit> findByType(TypeProduit type);
+
+    /**
+     * Finds all products whose price lies in the given range, bounds included.
+     *
+     * @param min The lowest accepted price.
+     * @param max The highest accepted price.
+     * @return A list of the matching products, ordered by price.
+     */
+    List<Produit> findByPrixBetween(double min, double max);
+
+    /**
+     * Finds all products with strictly more than the given quantity in stock.
+     *
+     * @param seuil The stock threshold.
+     * @return A list of the matching products, ordered by stock quantity.
+     */
+    List<Produit> findByQuantiteStockGreaterThan(double seuil);
+
+    /**
+     * Finds the products whose name starts with a prefix, ignoring case and accents, as typed in a
+     * search box: "cre" finds "Crème solaire".
+     * Repositories with a name index answer in time proportional to the limit; this default
+     * filters every product and keeps the first matches in a heap.
+     *
+     * @param prefix The name prefix.
+     * @param limit The maximum number of products to return.
+     * @return At most limit matching products, ordered by folded name, then reference.
+     */
+    default List<Produit> findByNomPrefix(String prefix, int limit) {
+        // Fold each match once and keep the limit first ones, the last of them on top, instead of sorting every match
+        Comparator<Map.Entry<String, Produit>> order = Map.Entry.<String, Produit>comparingByKey()
+                .thenComparingLong(e -> e.getValue().getRef());
+        PriorityQueue<Map.Entry<String, Produit>> first = new PriorityQueue<>(order.reversed());
+        for (Produit p : search(ProduitQuery.where(Criteria.nom().startsWithIgnoringCase(prefix)))) {
+            first.add(new AbstractMap.SimpleImmutableEntry<>(Folding.fold(p.getNom()), p));
+            if (first.size() > limit)
+                first.poll();
+        }
+        List<Produit> result = new ArrayList<>(first.size());
+        while (!first.isEmpty())
+            result.add(first.poll().getValue());
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Finds the products whose name contains a fragment, ignoring case and accents.
+     * Repositories with a trigram index only visit the names holding every three-letter sequence
+     * of the fragment; shorter fragments, and this default, scan the products.
+     *
+     * @param fragment The name fragment.
+     * @param limit The maximum number of products to return.
+     * @return At most limit matching products, ordered by reference.
+     */
+    default List<Produit> findByNomContaining(String fragment, int limit) {
+        return search(ProduitQuery.where(Criteria.nom().containsIgnoringCase(fragment))
+                .orderBy(ProduitField.REF)
+                .limit(limit));
+    }
+
+    /**
+     * Finds the products expiring strictly before an instant.
+     * Repositories with an expiry index answer in time proportional to the number of results;
+     * this default runs the equivalent structured query.
+     *
+     * @param instant The instant.
+     * @return The matching products, ordered by expiration date.
+     */
+    default List<Produit> findExpiringBefore(Date instant) {
+        return search(ProduitQuery.where(Criteria.datePremption().before(instant)).orderBy(ProduitField.DATE_PREMPTION));
+    }
+
+    /**
+     * Finds the products expiring in a time window.
+     *
+     * @param from The start of the window, inclusive.
+     * @param to The end of the window, exclusive.
+     * @return The matching products, ordered by expiration date.
+     */
+    default List<Produit> findExpiringBetween(Date from, Date to) {
+        return search(ProduitQuery.where(Criteria.datePremption().after(new Date(from.getTime() - 1))
+                        .and(Criteria.datePremption().before(to)))
+                .orderBy(ProduitField.DATE_PREMPTION));
+    }
+
+    /**
+     * Finds the first product to expire at or after an instant.
+     *
+     * @param instant The instant.
+     * @return The product with the earliest such expiration date, or empty if there is none.
+     */
+    default Optional<Produit> findNextExpiring(Date instant) {
+        List<Produit> next = search(ProduitQuery.where(Criteria.datePremption().after(new Date(instant.getTime() - 1)))
+                .orderBy(ProduitField.DATE_PREMPTION)
+                .limit(1));
+        return next.isEmpty() ? Optional.empty() : Optional.of(next.get(0));
+    }
+
+    /**
+     * Removes the products expiring strictly before an instant.
+     * Implementations re-check each product under its write lock, so a product whose expiry was
+     * pushed back concurrently is kept; this default finds the products, then deletes them.
+     *
+     * @param instant The instant.
+     * @return The removed products, ordered by expiration date.
+     */
+    default List<Produit> drainExpiredBefore(Date instant) {
+        List<Produit> expired = findExpiringBefore(instant);
+        List<Long> refs = new ArrayList<>(expired.size());
+        for (Produit p : expired)
+            refs.add(p.getRef());
+        deleteAll(refs);
+        return expired;
+    }
+
+    /**
+     * Saves a batch of new products.
+     * Implementations reserve the references of the whole batch at once and amortize locking,
+     * indexing and persistence over it; this default simply saves the products one by one.
+     *
+     * @param produits The products to save.
+     * @return The saved products, in the order given, with their references set.
+     */
+    default List<Produit> saveAll(Collection<Produit> produits) {
+        List<Produit> saved = new ArrayList<>(produits.size());
+        for (Produit p : produits)
+            saved.add(save(p));
+        return saved;
+    }
+
+    /**
+     * Updates a batch of products.
      *
+     * @param produits The products with updated details; each must have a reference.
+     * @return The updated products, in the order given.
+     */
+    default List<Produit> updateAll(Collection<Produit> produits) {
+        List<Produit> updated = new ArrayList<>(produits.size());
+        for (Produit p : produits)
+            updated.add(update(p));
+        return updated;
+    }
+
+    /**
+     * Deletes a batch of products; unknown references are ignored.
+     *
+     * @param refs The references of the products to delete.
+     */
+    default void deleteAll(Collection<Long> refs) {
+        for (Long ref : refs)
+            detele(ref);
+    }
+
+    /**
+     * Finds the products with the given references.
+     * Each reference is looked up with {@link #getByRef(long)}, so unlike repeated finfByRef
+     * calls no Optional is created per reference, unless the repository only implements finfByRef.
+     *
+     * @param refs The references to look up.
+     * @return The products found, in the order of the references; missing and null ones are skipped.
+     */
+    default List<Produit> findAllByRefs(Collection<Long> refs) {
+        List<Produit> found = new ArrayList<>(refs.size());
+        for (Long ref : refs) {
+            Produit p = ref == null ? null : getByRef(ref);
+            if (p != null)
+                found.add(p);
+        }
+        return found;
+    }
+}
@@ -0,0 +1,482 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.repository.metrics.Measurable; // Repositories reporting their own gauges
+import org.example.repository.metrics.Operation;
+import org.example.repository.metrics.RepositoryMetrics;
+import org.example.repository.query.Criterion;
+import org.example.repository.query.ProduitQuery;
+
+import java.io.Closeable;
+import java.util.*; // For the collections of the repository interface
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * Decorator measuring every call to an IProduitRepository: how many, how many failed and how
+ * long they took, per method. When the decorated repository is {@link Measurable}, its size,
+ * estimated heap use and search selectivity are reported with them.
+ * <p>
+ * Each method counts the call and, unless it is left out of the sample, times it in a
+ * {@link RepositoryMetrics}, without allocating; no lambda wraps the call, so that nothing
+ * depends on the JIT compiler eliding it. spliterator() and stream() are lazy and passed
+ * through unmeasured.
+ * <p>
+ * {@link #instrument} leaves repositories undecorated when instrumentation is switched off, so
+ * that disabled metrics cost nothing at all.
+ */
+public class InstrumentedProduitRepository implements IProduitRepository, Closeable {
+
+    private final IProduitRepository delegate;
+    private final RepositoryMetrics metrics;
+
+    private InstrumentedProduitRepository(IProduitRepository delegate, int sampling) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate");
+        this.metrics = new RepositoryMetrics(delegate instanceof Measurable ? (Measurable) delegate : null, sampling);
+    }
+
+    /**
+     * Decorates a repository, whether instrumentation is switched on or not.
+     *
+     * @param delegate The repository to measure.
+     * @return The measured repository.
+     */
+    public static InstrumentedProduitRepository of(IProduitRepository delegate) {
+        return new InstrumentedProduitRepository(delegate, RepositoryMetrics.DEFAULT_SAMPLING);
+    }
+
+    /**
+     * Decorates a repository, whether instrumentation is switched on or not.
+     *
+     * @param delegate The repository to measure.
+     * @param sampling One point call in this many is timed; 1 times every call.
+     * @return The measured repository.
+     */
+    public static InstrumentedProduitRepository of(IProduitRepository delegate, int sampling) {
+        return new InstrumentedProduitRepository(delegate, sampling);
+    }
+
+    /**
+     * Decorates a repository if instrumentation is switched on.
+     *
+     * @param delegate The repository to measure.
+     * @return The measured repository, or the repository itself if {@link RepositoryMetrics#ENABLED} is false.
+     */
+    public static IProduitRepository instrument(IProduitRepository delegate) {
+        return RepositoryMetrics.ENABLED ? of(delegate) : delegate;
+    }
+
+    /**
+     * @return The metrics of this repository, to read or to register over JMX.
+     */
+    public RepositoryMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Unregisters the metrics from JMX; the delegate is left open.
+     */
+    @Override
+    public void close() {
+        metrics.unregister();
+    }
+
+    @Override
+    public Spliterator<Produit> spliterator() {
+        return delegate.spliterator();
+    }
+
+    @Override
+    public Produit save(Produit p) {
+        long start = metrics.start(Operation.SAVE);
+        try {
+            return delegate.save(p);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.SAVE);
+            throw e;
+        } finally {
+            metrics.record(Operation.SAVE, start);
+        }
+    }
+
+    @Override
+    public List<Produit> saveAll(Collection<Produit> produits) {
+        long start = metrics.start(Operation.SAVE_ALL);
+        try {
+            return delegate.saveAll(produits);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.SAVE_ALL);
+            throw e;
+        } finally {
+            metrics.record(Operation.SAVE_ALL, start);
+        }
+    }
+
+    @Override
+    public List<Produit> findAll() {
+        long start = metrics.start(Operation.FIND_ALL);
+        try {
+            return delegate.findAll();
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.FIND_ALL);
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_ALL, start);
+        }
+    }
+
+    @Override
+    public List<Produit> findPage(int offset, int limit) {
+        long start = metrics.start(Operation.FIND_PAGE);
+        try {
+            return delegate.findPage(offset, limit);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.FIND_PAGE);
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_PAGE, start);
+        }
+    }
+
+    @Override
+    public List<Produit> findPageAfter(long afterRef, int limit) {
+        long start = metrics.start(Operation.FIND_PAGE_AFTER);
+        try {
+            return delegate.findPageAfter(afterRef, limit);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.FIND_PAGE_AFTER);
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_PAGE_AFTER, start);
+        }
+    }
+
+    @Override
+    public Optional<Produit> finfByRef(Long ref) {
+        long start = metrics.start(Operation.FIND_BY_REF);
+        try {
+            return delegate.finfByRef(ref);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.FIND_BY_REF);
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_BY_REF, start);
+        }
+    }
+
+    /**
+     * Counted as a {@link Operation#FIND_BY_REF}.
+     */
+    @Override
+    public Produit getByRef(long ref) {
+        long start = metrics.start(Operation.FIND_BY_REF);
+        try {
+            return delegate.getByRef(ref);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.FIND_BY_REF);
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_BY_REF, start);
+        }
+    }
+
+    @Override
+    public List<Produit> findAllByRefs(Collection<Long> refs) {
+        long start = metrics.start(Operation.FIND_ALL_BY_REFS);
+        try {
+            return delegate.findAllByRefs(refs);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.FIND_ALL_BY_REFS);
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_ALL_BY_REFS, start);
+        }
+    }
+
+    @Override
+    public Produit update(Produit p) {
+        long start = metrics.start(Operation.UPDATE);
+        try {
+            return delegate.update(p);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.UPDATE);
+            throw e;
+        } finally {
+            metrics.record(Operation.UPDATE, start);
+        }
+    }
+
+    @Override
+    public Produit restore(Produit p) {
+        long start = metrics.start(Operation.UPDATE);
+        try {
+            return delegate.restore(p);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.UPDATE);
+            throw e;
+        } finally {
+            metrics.record(Operation.UPDATE, start);
+        }
+    }
+
+    @Override
+    public List<Produit> updateAll(Collection<Produit> produits) {
+        long start = metrics.start(Operation.UPDATE_ALL);
+        try {
+            return delegate.updateAll(produits);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.UPDATE_ALL);
+            throw e;
+        } finally {
+            metrics.record(Operation.UPDATE_ALL, start);
+        }
+    }
+
+    @Override
+    public Produit updateVersioned(Produit p) {
+        long start = metrics.start(Operation.UPDATE_VERSIONED);
+        try {
+            return delegate.updateVersioned(p);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.UPDATE_VERSIONED);
+            throw e;
+        } finally {
+            metrics.record(Operation.UPDATE_VERSIONED, start);
+        }
+    }
+
+    @Override
+    public Produit adjustStock(long ref, double delta) {
+        long start = metrics.start(Operation.ADJUST_STOCK);
+        try {
+            return delegate.adjustStock(ref, delta);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.ADJUST_STOCK);
+            throw e;
+        } finally {
+            metrics.record(Operation.ADJUST_STOCK, start);
+        }
+    }
+
+    @Override
+    public Produit reprice(long ref, DoubleUnaryOperator fn) {
+        long start = metrics.start(Operation.REPRICE);
+        try {
+            return delegate.reprice(ref, fn);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.REPRICE);
+            throw e;
+        } finally {
+            metrics.record(Operation.REPRICE, start);
+        }
+    }
+
+    @Override
+    public void detele(Long ref) {
+        long start = metrics.start(Operation.DETELE);
+        try {
+            delegate.detele(ref);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.DETELE);
+            throw e;
+        } finally {
+            metrics.record(Operation.DETELE, start);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<Long> refs) {
+        long start = metrics.start(Operation.DELETE_ALL);
+        try {
+            delegate.deleteAll(refs);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.DELETE_ALL);
+            throw e;
+        } finally {
+            metrics.record(Operation.DELETE_ALL, start);
+        }
+    }
+
+    @Override
+    public List<Produit> search(Predicate<Produit> predicate) {
+        long start = metrics.start(Operation.SEARCH_PREDICATE);
+        try {
+            return delegate.search(predicate);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.SEARCH_PREDICATE);
+            throw e;
+        } finally {
+            metrics.record(Operation.SEARCH_PREDICATE, start);
+        }
+    }
+
+    @Override
+    public List<Produit> search(ProduitQuery query) {
+        long start = metrics.start(Operation.SEARCH_QUERY);
+        try {
+            return delegate.search(query);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.SEARCH_QUERY);
+            throw e;
+        } finally {
+            metrics.record(Operation.SEARCH_QUERY, start);
+        }
+    }
+
+    @Override
+    public ProduitStatistics aggregate(Criterion criterion) {
+        long start = metrics.start(Operation.AGGREGATE);
+        try {
+            return delegate.aggregate(criterion);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.AGGREGATE);
+            throw e;
+        } finally {
+            metrics.record(Operation.AGGREGATE, start);
+        }
+    }
+
+    @Override
+    public Map<TypeProduit, InventorySummary> inventory() {
+        long start = metrics.start(Operation.INVENTORY);
+        try {
+            return delegate.inventory();
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.INVENTORY);
+            throw e;
+        } finally {
+            metrics.record(Operation.INVENTORY, start);
+        }
+    }
+
+    @Override
+    public InventorySummary inventory(TypeProduit type) {
+        long start = metrics.start(Operation.INVENTORY);
+        try {
+            return delegate.inventory(type);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.INVENTORY);
+            throw e;
+        } finally {
+            metrics.record(Operation.INVENTORY, start);
+        }
+    }
+
+    @Override
+    public List<Produit> findByType(TypeProduit type) {
+        long start = metrics.start(Operation.FIND_BY_TYPE);
+        try {
+            return delegate.findByType(type);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.FIND_BY_TYPE);
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_BY_TYPE, start);
+        }
+    }
+
+    @Override
+    public List<Produit> findByPrixBetween(double min, double max) {
+        long start = metrics.start(Operation.FIND_BY_PRIX_BETWEEN);
+        try {
+            return delegate.findByPrixBetween(min, max);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.FIND_BY_PRIX_BETWEEN);
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_BY_PRIX_BETWEEN, start);
+        }
+    }
+
+    @Override
+    public List<Produit> findByQuantiteStockGreaterThan(double seuil) {
+        long start = metrics.start(Operation.FIND_BY_QUANTITE_STOCK_GREATER_THAN);
+        try {
+            return delegate.findByQuantiteStockGreaterThan(seuil);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.FIND_BY_QUANTITE_STOCK_GREATER_THAN);
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_BY_QUANTITE_STOCK_GREATER_THAN, start);
+        }
+    }
+
+    @Override
+    public List<Produit> findByNomPrefix(String prefix, int limit) {
+        long start = metrics.start(Operation.FIND_BY_NOM_PREFIX);
+        try {
+            return delegate.findByNomPrefix(prefix, limit);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.FIND_BY_NOM_PREFIX);
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_BY_NOM_PREFIX, start);
+        }
+    }
+
+    @Override
+    public List<Produit> findByNomContaining(String fragment, int limit) {
+        long start = metrics.start(Operation.FIND_BY_NOM_CONTAINING);
+        try {
+            return delegate.findByNomContaining(fragment, limit);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.FIND_BY_NOM_CONTAINING);
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_BY_NOM_CONTAINING, start);
+        }
+    }
+
+    @Override
+    public List<Produit> findExpiringBefore(Date instant) {
+        long start = metrics.start(Operation.FIND_EXPIRING_BEFORE);
+        try {
+            return delegate.findExpiringBefore(instant);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.FIND_EXPIRING_BEFORE);
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_EXPIRING_BEFORE, start);
+        }
+    }
+
+    @Override
+    public List<Produit> findExpiringBetween(Date from, Date to) {
+        long start = metrics.start(Operation.FIND_EXPIRING_BETWEEN);
+        try {
+            return delegate.findExpiringBetween(from, to);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.FIND_EXPIRING_BETWEEN);
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_EXPIRING_BETWEEN, start);
+        }
+    }
+
+    @Override
+    public Optional<Produit> findNextExpiring(Date instant) {
+        long start = metrics.start(Operation.FIND_NEXT_EXPIRING);
+        try {
+            return delegate.findNextExpiring(instant);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.FIND_NEXT_EXPIRING);
+            throw e;
+        } finally {
+            metrics.record(Operation.FIND_NEXT_EXPIRING, start);
+        }
+    }
+
+    @Override
+    public List<Produit> drainExpiredBefore(Date instant) {
+        long start = metrics.start(Operation.DRAIN_EXPIRED_BEFORE);
+        try {
+            return delegate.drainExpiredBefore(instant);
+        } catch (RuntimeException | Error e) {
+            metrics.recordFailure(Operation.DRAIN_EXPIRED_BEFORE);
+            throw e;
+        } finally {
+            metrics.record(Operation.DRAIN_EXPIRED_BEFORE, start);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+
+/**
+ * Running inventory totals per product type, updated from the product each write replaces and
+ * the product it stores, so that reading them never visits the products.
+ * <p>
+ * The totals are split over the lock stripes of the owning repository: a write updates the
+ * cells of its stripe while it holds the stripe lock, so writers of different stripes never
+ * contend, and a read adds up the cells of every stripe, taking each lock in turn. Each product
+ * is therefore counted exactly once, as it was at some point during the read. Cells are padded
+ * to a cache line each, so that writers of neighbouring stripes do not share one.
+ */
+final class InventorySummaries {
+
+    private static final TypeProduit[] TYPES = TypeProduit.values();
+    private static final int PAD = 8; // Longs or doubles per cell: 64 bytes
+    private static final int STOCK = 0; // Offsets of the sums in a cell
+    private static final int VALUE = 1;
+
+    private final Object[] locks; // The stripe locks of the repository
+    private final long[] counts; // Guarded by the stripe lock of the cell
+    private final double[] sums;
+
+    /**
+     * @param locks The lock stripes of the repository; writes call apply() holding the stripe's lock.
+     */
+    InventorySummaries(Object[] locks) {
+        this.locks = locks;
+        this.counts = new long[locks.length * TYPES.length * PAD];
+        this.sums = new double[locks.length * TYPES.length * PAD];
+    }
+
+    private static int cell(int stripe, TypeProduit type) {
+        return (stripe * TYPES.length + type.ordinal()) * PAD;
+    }
+
+    /**
+     * Moves the totals from one version of a product to the next; called with the stripe lock held.
+     *
+     * @param stripe The stripe of the product's reference.
+     * @param before The product replaced, or null if there was none.
+     * @param after The product stored, or null if it was deleted.
+     */
+    void apply(int stripe, Produit before, Produit after) {
+        if (before != null && before.getType() != null)
+            add(cell(stripe, before.getType()), -1, before);
+        if (after != null && after.getType() != null)
+            add(cell(stripe, after.getType()), 1, after);
+    }
+
+    private void add(int cell, int sign, Produit p) {
+        long count = counts[cell] + sign;
+        counts[cell] = count;
+        if (count == 0) { // Empty again: drop the rounding left by the additions and subtractions
+            sums[cell + STOCK] = 0;
+            sums[cell + VALUE] = 0;
+        } else {
+            sums[cell + STOCK] += sign * p.getQuantiteStock();
+            sums[cell + VALUE] += sign * (p.getPrix() * p.getQuantiteStock());
+        }
+    }
+
+    /**
+     * Reads the totals of a type.
+     *
+     * @param type The product type.
+     * @param cheapest The product of the type with the lowest price, or null.
+     * @param priciest The product of the type with the highest price, or null.
+     * @return The summary.
+     */
+    InventorySummary summary(TypeProduit type, Produit cheapest, Produit priciest) {
+        long count = 0;
+        double stock = 0;
+        double value = 0;
+        for (int stripe = 0; stripe < locks.length; stripe++) {
+            int cell = cell(stripe, type);
+            synchronized (locks[stripe]) {
+                count += counts[cell];
+                stock += sums[cell + STOCK];
+                value += sums[cell + VALUE];
+            }
+        }
+        return new InventorySummary(type, count, stock, value, cheapest, priciest);
+    }
+}
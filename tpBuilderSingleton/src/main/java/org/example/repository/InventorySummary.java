@@ -0,0 +1,176 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+
+import java.util.*; // For the per-type results and the list of differences
+
+/**
+ * Inventory totals of one product type, as read at one point in time: number of products,
+ * total quantity in stock, total stock value (price times quantity) and the cheapest and
+ * priciest products. Products without a type belong to no summary.
+ * <p>
+ * Among products of the same price, the cheapest is the one with the lowest reference and the
+ * priciest the one with the highest.
+ */
+public final class InventorySummary {
+
+    private static final TypeProduit[] TYPES = TypeProduit.values();
+
+    private final TypeProduit type;
+    private final long count;
+    private final double totalQuantiteStock;
+    private final double totalStockValue;
+    private final Produit cheapest;
+    private final Produit priciest;
+
+    InventorySummary(TypeProduit type, long count, double totalQuantiteStock, double totalStockValue,
+                     Produit cheapest, Produit priciest) {
+        this.type = type;
+        this.count = count;
+        this.totalQuantiteStock = totalQuantiteStock;
+        this.totalStockValue = totalStockValue;
+        this.cheapest = cheapest;
+        this.priciest = priciest;
+    }
+
+    /**
+     * Computes the summaries of every type from scratch, in one pass over the products.
+     *
+     * @param produits The products.
+     * @return A summary per type, empty summaries included.
+     */
+    static Map<TypeProduit, InventorySummary> of(Iterable<Produit> produits) {
+        Accumulator[] accumulators = new Accumulator[TYPES.length];
+        for (int t = 0; t < TYPES.length; t++)
+            accumulators[t] = new Accumulator();
+        for (Produit p : produits)
+            if (p.getType() != null)
+                accumulators[p.getType().ordinal()].accept(p);
+        Map<TypeProduit, InventorySummary> summaries = new EnumMap<>(TypeProduit.class);
+        for (TypeProduit type : TYPES)
+            summaries.put(type, accumulators[type.ordinal()].summary(type));
+        return summaries;
+    }
+
+    /**
+     * Adds up the summaries of the same type over two disjoint sets of products, such as two shards.
+     *
+     * @param other The summary of the other products.
+     * @return A new summary.
+     */
+    InventorySummary combine(InventorySummary other) {
+        return new InventorySummary(type, count + other.count,
+                totalQuantiteStock + other.totalQuantiteStock, totalStockValue + other.totalStockValue,
+                cheapest == null || (other.cheapest != null && compareByPrix(other.cheapest, cheapest) < 0) ? other.cheapest : cheapest,
+                priciest == null || (other.priciest != null && compareByPrix(other.priciest, priciest) > 0) ? other.priciest : priciest);
+    }
+
+    // The order of the price index: price, then reference
+    private static int compareByPrix(Produit a, Produit b) {
+        int c = Double.compare(a.getPrix(), b.getPrix());
+        return c != 0 ? c : Long.compare(a.getRef(), b.getRef());
+    }
+
+    public TypeProduit getType() {
+        return type;
+    }
+
+    /**
+     * @return The number of products of the type.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getTotalQuantiteStock() {
+        return totalQuantiteStock;
+    }
+
+    /**
+     * @return The sum of price times quantity in stock.
+     */
+    public double getTotalStockValue() {
+        return totalStockValue;
+    }
+
+    /**
+     * @return The product with the lowest price, or empty if there is no product of the type.
+     */
+    public Optional<Produit> getCheapest() {
+        return Optional.ofNullable(cheapest);
+    }
+
+    /**
+     * @return The product with the highest price, or empty if there is no product of the type.
+     */
+    public Optional<Produit> getPriciest() {
+        return Optional.ofNullable(priciest);
+    }
+
+    /**
+     * Compares maintained totals with totals recomputed from the products. Counts and products
+     * must match exactly; sums, which are maintained by adding and subtracting, may differ by
+     * rounding, up to a billionth of the expected total.
+     *
+     * @param maintained The summary kept up to date by the repository.
+     * @param differences Where to describe each difference.
+     */
+    void compare(InventorySummary maintained, List<String> differences) {
+        if (maintained.count != count)
+            differences.add(type + " count " + maintained.count + ", expected " + count);
+        if (!closeTo(maintained.totalQuantiteStock, totalQuantiteStock))
+            differences.add(type + " totalQuantiteStock " + maintained.totalQuantiteStock + ", expected " + totalQuantiteStock);
+        if (!closeTo(maintained.totalStockValue, totalStockValue))
+            differences.add(type + " totalStockValue " + maintained.totalStockValue + ", expected " + totalStockValue);
+        if (!sameProduit(maintained.cheapest, cheapest))
+            differences.add(type + " cheapest " + maintained.cheapest + ", expected " + cheapest);
+        if (!sameProduit(maintained.priciest, priciest))
+            differences.add(type + " priciest " + maintained.priciest + ", expected " + priciest);
+    }
+
+    private static boolean closeTo(double actual, double expected) {
+        return Math.abs(actual - expected) <= 1e-9 * Math.max(1, Math.abs(expected));
+    }
+
+    private static boolean sameProduit(Produit a, Produit b) {
+        if (a == null || b == null)
+            return a == b;
+        return a.getRef() == b.getRef() && a.getVersion() == b.getVersion();
+    }
+
+    @Override
+    public String toString() {
+        return "InventorySummary{" +
+                "type=" + type +
+                ", count=" + count +
+                ", totalQuantiteStock=" + totalQuantiteStock +
+                ", totalStockValue=" + totalStockValue +
+                ", cheapest=" + (cheapest == null ? null : cheapest.getRef()) +
+                ", priciest=" + (priciest == null ? null : priciest.getRef()) +
+                '}';
+    }
+
+    // Totals of one type computed from scratch
+    private static final class Accumulator {
+        private long count;
+        private double totalQuantiteStock;
+        private double totalStockValue;
+        private Produit cheapest;
+        private Produit priciest;
+
+        void accept(Produit p) {
+            count++;
+            totalQuantiteStock += p.getQuantiteStock();
+            totalStockValue += p.getPrix() * p.getQuantiteStock();
+            if (cheapest == null || compareByPrix(p, cheapest) < 0)
+                cheapest = p;
+            if (priciest == null || compareByPrix(p, priciest) > 0)
+                priciest = p;
+        }
+
+        InventorySummary summary(TypeProduit type) {
+            return new InventorySummary(type, count, totalQuantiteStock, totalStockValue, cheapest, priciest);
+        }
+    }
+}
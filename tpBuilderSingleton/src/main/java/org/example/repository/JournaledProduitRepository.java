@@ -0,0 +1,546 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.repository.query.Criterion;
+import org.example.repository.query.ProduitQuery;
+
+import java.io.*; // For snapshot streams
+import java.nio.file.*; // For snapshot files and atomic renames
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Durable decorator of an in-memory IProduitRepository.
+ * <p>
+ * Reads go straight to the in-memory delegate. Every save, update and detele is applied to the
+ * delegate and then appended to a write-ahead log, both under the lock stripe of the product, so
+ * that the log holds the changes of a product in the order the delegate saw them. If the record
+ * cannot be appended, the change is undone in the delegate and the call fails. Depending on the
+ * {@link SyncPolicy}, the call returns once the record is forced to disk (with group commit), or
+ * leaves syncing to a background thread or to the operating system.
+ * <p>
+ * {@link #snapshot()} writes the whole catalog to a compact snapshot file and drops the log
+ * segments it covers. On {@link #open}, the latest snapshot is loaded into the delegate and the
+ * log tail is replayed on top of it. Snapshots are taken while writers keep going: replaying a
+ * record restores one product with its logged version, so records already reflected in the
+ * snapshot can safely be applied again.
+ */
+public class JournaledProduitRepository implements IProduitRepository, Closeable {
+
+    private static final int SNAPSHOT_MAGIC = 0x534E4150; // "SNAP"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final int STRIPES = 64;
+
+    private final Path directory;
+    private final IProduitRepository delegate;
+    private final WriteAheadLog wal;
+    private final Object[] locks = new Object[STRIPES]; // Keep delegate and log order identical per reference
+    private final Object snapshotLock = new Object();
+    private ScheduledExecutorService snapshotter;
+
+    private JournaledProduitRepository(Path directory, IProduitRepository delegate, WriteAheadLog wal) {
+        this.directory = directory;
+        this.delegate = delegate;
+        this.wal = wal;
+        for (int i = 0; i < STRIPES; i++)
+            locks[i] = new Object();
+    }
+
+    /**
+     * Recovers the repository kept in a directory and opens it for writing.
+     *
+     * @param directory The directory holding snapshots and log segments; created if missing.
+     * @param delegate An empty in-memory repository, e.g. {@link ProduitRepositoryImpl#newInstance()}.
+     * @param policy When the log is forced to disk.
+     * @return The recovered repository.
+     * @throws IOException if the snapshot or the log cannot be read.
+     */
+    public static JournaledProduitRepository open(Path directory, IProduitRepository delegate, SyncPolicy policy) throws IOException {
+        Files.createDirectories(directory);
+        long snapshotSeq = loadLatestSnapshot(directory, delegate);
+        WriteAheadLog wal = WriteAheadLog.open(directory, policy, snapshotSeq, new WriteAheadLog.Replayer() {
+            @Override
+            public void put(Produit p) {
+                replay(delegate, p);
+            }
+
+            @Override
+            public void delete(long ref) {
+                delegate.detele(ref);
+            }
+        });
+        return new JournaledProduitRepository(directory, delegate, wal);
+    }
+
+    // Stores a recovered product under its reference with its recorded version
+    private static void replay(IProduitRepository delegate, Produit p) {
+        delegate.restore(p);
+    }
+
+    private Object lockFor(long ref) {
+        return locks[stripeOf(ref)];
+    }
+
+    private static int stripeOf(long ref) {
+        int h = (int) (ref ^ (ref >>> 32));
+        h ^= (h >>> 16);
+        return h & (STRIPES - 1);
+    }
+
+    /**
+     * Saves a product in the delegate, then logs it under the stripe of its new reference.
+     * The reference is only known once the delegate has saved the product, so a writer may change
+     * it in between: that writer has then logged the newer state, and the saved one is not logged.
+     */
+    @Override
+    public Produit save(Produit p) {
+        Produit saved = delegate.save(p);
+        long ref = saved.getRef();
+        long seq;
+        synchronized (lockFor(ref)) {
+            if (!saved.equals(delegate.getByRef(ref))) {
+                seq = wal.lastSeq(); // Superseded by a record already appended
+            } else {
+                try {
+                    seq = wal.appendPut(saved);
+                } catch (IOException | RuntimeException e) {
+                    delegate.detele(ref);
+                    throw appendFailed(e);
+                }
+            }
+        }
+        awaitDurable(seq);
+        return saved;
+    }
+
+    @Override
+    public Produit update(Produit p) {
+        if (!p.hasRef())
+            throw new IllegalArgumentException("Cannot update a product without a reference");
+        return logged(p.getRef(), () -> delegate.update(p));
+    }
+
+    @Override
+    public Produit updateVersioned(Produit p) {
+        if (!p.hasRef())
+            throw new IllegalArgumentException("Cannot update a product without a reference");
+        return logged(p.getRef(), () -> delegate.updateVersioned(p));
+    }
+
+    @Override
+    public Produit restore(Produit p) {
+        if (!p.hasRef())
+            throw new IllegalArgumentException("Cannot restore a product without a reference");
+        return logged(p.getRef(), () -> delegate.restore(p));
+    }
+
+    @Override
+    public Produit adjustStock(long ref, double delta) {
+        return logged(ref, () -> delegate.adjustStock(ref, delta));
+    }
+
+    @Override
+    public Produit reprice(long ref, DoubleUnaryOperator fn) {
+        return logged(ref, () -> delegate.reprice(ref, fn));
+    }
+
+    // Applies a change to one product in the delegate and logs the stored result, or undoes it
+    private Produit logged(long ref, Supplier<Produit> change) {
+        Produit stored;
+        long seq;
+        synchronized (lockFor(ref)) {
+            Produit before = delegate.getByRef(ref);
+            stored = change.get(); // Failures, such as a version mismatch, leave nothing to log
+            try {
+                seq = wal.appendPut(stored);
+            } catch (IOException | RuntimeException e) {
+                undo(ref, before);
+                throw appendFailed(e);
+            }
+        }
+        awaitDurable(seq);
+        return stored;
+    }
+
+    @Override
+    public void detele(Long ref) {
+        if (ref == null)
+            return;
+        long seq;
+        synchronized (lockFor(ref)) {
+            Produit before = delegate.getByRef(ref);
+            delegate.detele(ref);
+            try {
+                seq = wal.appendDelete(ref);
+            } catch (IOException | RuntimeException e) {
+                undo(ref, before);
+                throw appendFailed(e);
+            }
+        }
+        awaitDurable(seq);
+    }
+
+    // Puts back the product stored before a change that could not be logged; called with its stripe held
+    private void undo(long ref, Produit before) {
+        if (before == null)
+            delegate.detele(ref);
+        else
+            delegate.restore(before);
+    }
+
+    private static RuntimeException appendFailed(Exception e) {
+        if (e instanceof IOException)
+            return new UncheckedIOException("Cannot append to the write-ahead log", (IOException) e);
+        return (RuntimeException) e;
+    }
+
+    /**
+     * Saves a batch in the delegate and logs it with one write and, if required, one sync.
+     *
+     * @param batch The products to save.
+     * @return The saved products, in the order given.
+     */
+    @Override
+    public List<Produit> saveAll(Collection<Produit> batch) {
+        List<Produit> saved = delegate.saveAll(batch);
+        long[] refs = refsOf(saved);
+        long seq = withStripes(refs, () -> {
+            List<Produit> current = new ArrayList<>(saved.size());
+            for (Produit p : saved)
+                if (p.equals(delegate.getByRef(p.getRef()))) // Otherwise superseded, as in save()
+                    current.add(p);
+            try {
+                return current.isEmpty() ? wal.lastSeq() : wal.appendPuts(current);
+            } catch (IOException | RuntimeException e) {
+                for (Produit p : current)
+                    delegate.detele(p.getRef());
+                throw e;
+            }
+        });
+        awaitDurable(seq);
+        return saved;
+    }
+
+    /**
+     * Updates a batch in the delegate and logs it with one write and, if required, one sync.
+     *
+     * @param batch The updated products.
+     * @return The updated products as stored, in the order given.
+     */
+    @Override
+    public List<Produit> updateAll(Collection<Produit> batch) {
+        List<Produit> products = new ArrayList<>(batch);
+        List<Produit> updated = new ArrayList<>(products.size());
+        long[] refs = refsOf(products);
+        long seq = withStripes(refs, () -> {
+            Produit[] before = currentOf(refs);
+            updated.addAll(delegate.updateAll(products));
+            try {
+                return wal.appendPuts(updated);
+            } catch (IOException | RuntimeException e) {
+                undo(refs, before);
+                throw e;
+            }
+        });
+        awaitDurable(seq);
+        return updated;
+    }
+
+    /**
+     * Deletes a batch in the delegate and logs it with one write and, if required, one sync.
+     *
+     * @param batch The references of the products to delete.
+     */
+    @Override
+    public void deleteAll(Collection<Long> batch) {
+        List<Long> targets = new ArrayList<>(batch.size());
+        for (Long ref : batch)
+            if (ref != null)
+                targets.add(ref);
+        long[] refs = new long[targets.size()];
+        for (int i = 0; i < refs.length; i++)
+            refs[i] = targets.get(i);
+        long seq = withStripes(refs, () -> {
+            Produit[] before = currentOf(refs);
+            delegate.deleteAll(targets);
+            try {
+                return wal.appendDeletes(refs);
+            } catch (IOException | RuntimeException e) {
+                undo(refs, before);
+                throw e;
+            }
+        });
+        awaitDurable(seq);
+    }
+
+    @Override
+    public List<Produit> findAllByRefs(Collection<Long> refs) {
+        return delegate.findAllByRefs(refs);
+    }
+
+    private static long[] refsOf(List<Produit> produits) {
+        long[] refs = new long[produits.size()];
+        for (int i = 0; i < refs.length; i++)
+            refs[i] = produits.get(i).getRef();
+        return refs;
+    }
+
+    // The products stored under the references of a batch; called with their stripes held
+    private Produit[] currentOf(long[] refs) {
+        Produit[] current = new Produit[refs.length];
+        for (int i = 0; i < refs.length; i++)
+            current[i] = delegate.getByRef(refs[i]);
+        return current;
+    }
+
+    // Puts back the products stored before a batch that could not be logged, last change first
+    private void undo(long[] refs, Produit[] before) {
+        for (int i = refs.length - 1; i >= 0; i--)
+            undo(refs[i], before[i]);
+    }
+
+    /**
+     * Work done while holding lock stripes.
+     */
+    private interface StripedWork {
+        long run() throws IOException;
+    }
+
+    /**
+     * Runs work while holding the stripes of every given reference.
+     * Stripes are taken in ascending order, so two batches can never deadlock.
+     *
+     * @return The value returned by the work.
+     */
+    private long withStripes(long[] refs, StripedWork work) {
+        boolean[] used = new boolean[STRIPES];
+        int n = 0;
+        for (long ref : refs)
+            if (!used[stripeOf(ref)]) {
+                used[stripeOf(ref)] = true;
+                n++;
+            }
+        int[] stripes = new int[n];
+        for (int s = 0, i = 0; s < STRIPES; s++)
+            if (used[s])
+                stripes[i++] = s;
+        try {
+            return lockAndRun(stripes, 0, work);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to the write-ahead log", e);
+        }
+    }
+
+    private long lockAndRun(int[] stripes, int i, StripedWork work) throws IOException {
+        if (i == stripes.length)
+            return work.run();
+        synchronized (locks[stripes[i]]) {
+            return lockAndRun(stripes, i + 1, work);
+        }
+    }
+
+    private void awaitDurable(long seq) {
+        try {
+            wal.awaitDurable(seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot sync the write-ahead log", e);
+        }
+    }
+
+    @Override
+    public List<Produit> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Spliterator<Produit> spliterator() {
+        return delegate.spliterator();
+    }
+
+    @Override
+    public Stream<Produit> stream() {
+        return delegate.stream();
+    }
+
+    @Override
+    public ProduitStatistics aggregate(Criterion criterion) {
+        return delegate.aggregate(criterion);
+    }
+
+    @Override
+    public List<Produit> findByNomPrefix(String prefix, int limit) {
+        return delegate.findByNomPrefix(prefix, limit);
+    }
+
+    @Override
+    public List<Produit> findByNomContaining(String fragment, int limit) {
+        return delegate.findByNomContaining(fragment, limit);
+    }
+
+    @Override
+    public List<Produit> findExpiringBefore(Date instant) {
+        return delegate.findExpiringBefore(instant);
+    }
+
+    @Override
+    public List<Produit> findExpiringBetween(Date from, Date to) {
+        return delegate.findExpiringBetween(from, to);
+    }
+
+    @Override
+    public Optional<Produit> findNextExpiring(Date instant) {
+        return delegate.findNextExpiring(instant);
+    }
+
+    @Override
+    public List<Produit> findPage(int offset, int limit) {
+        return delegate.findPage(offset, limit);
+    }
+
+    @Override
+    public List<Produit> findPageAfter(long afterRef, int limit) {
+        return delegate.findPageAfter(afterRef, limit);
+    }
+
+    @Override
+    public Optional<Produit> finfByRef(Long ref) {
+        return delegate.finfByRef(ref);
+    }
+
+    @Override
+    public List<Produit> search(Predicate<Produit> predicate) {
+        return delegate.search(predicate);
+    }
+
+    @Override
+    public List<Produit> search(ProduitQuery query) {
+        return delegate.search(query);
+    }
+
+    @Override
+    public List<Produit> findByType(TypeProduit type) {
+        return delegate.findByType(type);
+    }
+
+    @Override
+    public List<Produit> findByPrixBetween(double min, double max) {
+        return delegate.findByPrixBetween(min, max);
+    }
+
+    @Override
+    public List<Produit> findByQuantiteStockGreaterThan(double seuil) {
+        return delegate.findByQuantiteStockGreaterThan(seuil);
+    }
+
+    /**
+     * Writes a snapshot of the whole catalog and deletes the log segments it makes obsolete.
+     * Writers are not blocked while the snapshot is written.
+     *
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long seq = wal.rotate(); // Every record up to seq is already applied to the delegate
+            List<Produit> produits = delegate.findAll();
+            Path tmp = directory.resolve(SNAPSHOT_PREFIX + "tmp");
+            try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(seq);
+                out.writeInt(produits.size());
+                for (Produit p : produits)
+                    ProduitRecords.write(out, p);
+                out.flush();
+                file.getFD().sync();
+            }
+            Path target = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, seq, SNAPSHOT_SUFFIX));
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            wal.deleteSegmentsUpTo(seq);
+            for (Path old : snapshots(directory))
+                if (!old.equals(target))
+                    Files.deleteIfExists(old);
+        }
+    }
+
+    /**
+     * Takes a snapshot at a fixed rate on a background thread.
+     *
+     * @param periodMillis The time between two snapshots.
+     */
+    public synchronized void scheduleSnapshots(long periodMillis) {
+        if (snapshotter != null)
+            snapshotter.shutdownNow();
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "repository-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshotter.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                // Keep the log; the next run tries again
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Loads the newest snapshot into the delegate and returns the sequence number it covers
+    private static long loadLatestSnapshot(Path directory, IProduitRepository delegate) throws IOException {
+        List<Path> snapshots = snapshots(directory);
+        if (snapshots.isEmpty())
+            return 0;
+        Path latest = snapshots.get(snapshots.size() - 1);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(latest), 1 << 16))) {
+            int version = in.readInt() == SNAPSHOT_MAGIC ? in.readInt() : -1;
+            if (version != SNAPSHOT_VERSION)
+                throw new IOException("Not a supported snapshot: " + latest);
+            long seq = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++)
+                replay(delegate, ProduitRecords.read(in));
+            return seq;
+        }
+    }
+
+    private static List<Path> snapshots(Path directory) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path p : stream)
+                snapshots.add(p);
+        }
+        Collections.sort(snapshots); // Zero-padded names sort by sequence number
+        return snapshots;
+    }
+
+    /**
+     * Stops background snapshots and closes the log after forcing it.
+     *
+     * @throws IOException if the log cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (snapshotter != null)
+                snapshotter.shutdownNow();
+        }
+        synchronized (snapshotLock) {
+            wal.close();
+        }
+    }
+}
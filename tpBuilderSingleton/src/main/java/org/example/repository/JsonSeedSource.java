@@ -0,0 +1,132 @@
+package org.example.repository;
+
+import org.example.io.ProduitJson;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel; // Positional reads, shared by the chunks of a file
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A seed source reading a JSON or NDJSON file of products.
+ * <p>
+ * An NDJSON file is cut into byte ranges that start and end at line boundaries, so that each
+ * chunk is itself valid NDJSON and is parsed by its own thread. A JSON array cannot be cut
+ * without parsing it, so it makes a single chunk. The size is estimated by counting the objects
+ * in the first {@value #SAMPLE} bytes.
+ */
+final class JsonSeedSource implements SeedSource {
+
+    private static final int SAMPLE = 1 << 16;
+    private static final int BUFFER = 1 << 16;
+
+    private final Path file;
+
+    JsonSeedSource(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public long estimateSize() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer sample = ByteBuffer.allocate((int) Math.min(SAMPLE, size));
+            while (sample.hasRemaining() && channel.read(sample, sample.position()) > 0) {
+                // Fill the sample
+            }
+            int objects = 0;
+            for (int i = 0; i < sample.position(); i++)
+                if (sample.get(i) == '{') // Product objects hold no nested object
+                    objects++;
+            if (objects == 0)
+                return size == 0 ? 0 : -1;
+            return (long) ((double) size * objects / sample.position());
+        }
+    }
+
+    @Override
+    public List<Chunk> split(int count) throws IOException {
+        List<Chunk> chunks = new ArrayList<>(count);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (count <= 1 || isArray(channel)) {
+                chunks.add(range(0, size));
+                return chunks;
+            }
+            long start = 0;
+            for (int i = 1; i <= count && start < size; i++) {
+                long end = i == count ? size : nextLine(channel, Math.max(start, size / count * i));
+                if (end > start)
+                    chunks.add(range(start, end));
+                start = end;
+            }
+        }
+        return chunks;
+    }
+
+    private static boolean isArray(FileChannel channel) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(256);
+        for (long pos = 0; channel.read(b, pos) > 0; pos += b.position(), b.clear()) {
+            for (int i = 0; i < b.position(); i++)
+                if (!Character.isWhitespace(b.get(i)))
+                    return b.get(i) == '[';
+        }
+        return false;
+    }
+
+    // The position just after the first line feed at or after a position, or the end of the file
+    private static long nextLine(FileChannel channel, long from) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(4096);
+        for (long pos = from; channel.read(b, pos) > 0; pos += b.position(), b.clear()) {
+            for (int i = 0; i < b.position(); i++)
+                if (b.get(i) == '\n')
+                    return pos + i + 1;
+        }
+        return channel.size();
+    }
+
+    private Chunk range(long start, long end) {
+        return (batchSize, sink) -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                 InputStream in = new BufferedInputStream(new RangeInputStream(channel, start, end), BUFFER)) {
+                ProduitJson.read(in, batchSize, sink);
+            }
+        };
+    }
+
+    /**
+     * The bytes of a file between two positions.
+     */
+    private static final class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end)
+                return -1;
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (n > 0)
+                position += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+
+import java.util.*; // For the values view and its spliterator
+import java.util.concurrent.locks.StampedLock; // Optimistic reads, exclusive writes
+import java.util.function.Consumer;
+
+/**
+ * Concurrent map from product references to products, keyed by primitive longs.
+ * <p>
+ * References are spread over {@value #SEGMENTS} segments, each an open-addressing table: the
+ * keys in a long[] and the products in a parallel array, probed linearly from a Fibonacci hash,
+ * so that an entry costs two array slots instead of a node and a boxed key. Deletions shift the
+ * following entries back instead of leaving tombstones. Key 0, {@link Produit#NO_REF}, marks a
+ * free slot and cannot be stored.
+ * <p>
+ * Each segment is guarded by a StampedLock. Lookups read optimistically, without locking or
+ * allocating, and only take the read lock if a writer changed the segment meanwhile; writers
+ * take the write lock of their segment. Iteration copies one segment at a time, so it is weakly
+ * consistent like a ConcurrentHashMap: every product present during the whole iteration is
+ * returned exactly once.
+ */
+final class LongProduitMap {
+
+    private static final int SEGMENTS = 64; // A power of two: a segment is picked from the top bits of the hash
+    private static final int SEGMENT_BITS = 6;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30; // Per segment, the largest power of two an array can hold
+    private static final long FREE = Produit.NO_REF;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Values values = new Values();
+
+    LongProduitMap() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize The number of products expected, so that the tables do not grow while
+     *                     they are loaded; 0 if unknown.
+     */
+    LongProduitMap(int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Expected size must be >= 0: " + expectedSize);
+        long perSegment = ((long) expectedSize + SEGMENTS - 1) / SEGMENTS;
+        long slots = perSegment * 4 / 3 + 1; // Stay under the 3/4 load factor
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < slots && capacity < MAX_CAPACITY)
+            capacity <<= 1;
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment(capacity);
+    }
+
+    // Fibonacci hashing: the high bits of the product depend on every bit of the key
+    private static long hash(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    private Segment segmentFor(long h) {
+        return segments[(int) (h >>> (64 - SEGMENT_BITS))];
+    }
+
+    /**
+     * @param ref The reference to look up.
+     * @return The product stored under it, or null.
+     */
+    Produit get(long ref) {
+        if (ref == FREE)
+            return null;
+        long h = hash(ref);
+        return segmentFor(h).get(ref, h);
+    }
+
+    /**
+     * @param ref The reference, not 0.
+     * @param p The product to store, not null.
+     * @return The product previously stored under the reference, or null.
+     */
+    Produit put(long ref, Produit p) {
+        if (ref == FREE)
+            throw new IllegalArgumentException("Cannot store a product under reference " + FREE);
+        long h = hash(ref);
+        return segmentFor(h).put(ref, h, Objects.requireNonNull(p, "produit"));
+    }
+
+    /**
+     * @param ref The reference to remove.
+     * @return The product that was stored under it, or null.
+     */
+    Produit remove(long ref) {
+        if (ref == FREE)
+            return null;
+        long h = hash(ref);
+        return segmentFor(h).remove(ref, h);
+    }
+
+    int size() {
+        int n = 0;
+        for (Segment s : segments)
+            n += s.size;
+        return n;
+    }
+
+    /**
+     * @return A live view of the products, weakly consistent.
+     */
+    Collection<Produit> values() {
+        return values;
+    }
+
+    /**
+     * @return A new list of the products, each segment copied at one point in time.
+     */
+    List<Produit> toList() {
+        List<Produit> list = new ArrayList<>(size() + SEGMENTS); // Room for some writes in between
+        for (Segment s : segments)
+            s.copyTo(list);
+        return list;
+    }
+
+    /**
+     * The keys and products of a segment, replaced as a whole when it grows, so that a reader
+     * never pairs arrays of different sizes.
+     */
+    private static final class Table {
+        final long[] keys;
+        final Produit[] produits;
+        final int mask;
+        final int shift; // Brings the bits below the segment bits to the range of the slots
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            produits = new Produit[capacity];
+            mask = capacity - 1;
+            shift = 64 - SEGMENT_BITS - Integer.numberOfTrailingZeros(capacity);
+        }
+
+        int home(long h) {
+            return (int) (h >>> shift) & mask;
+        }
+
+        // The product under a key, probing at most every slot so that a torn read cannot loop forever
+        Produit find(long key, long h) {
+            for (int i = home(h), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                long k = keys[i];
+                if (k == key)
+                    return produits[i];
+                if (k == FREE)
+                    return null;
+            }
+            return null;
+        }
+    }
+
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        Table table; // Replaced under the write lock
+        volatile int size;
+
+        Segment(int capacity) {
+            table = new Table(capacity);
+        }
+
+        Produit get(long key, long h) {
+            long stamp = lock.tryOptimisticRead();
+            Produit p = table.find(key, h);
+            if (lock.validate(stamp))
+                return p;
+            stamp = lock.readLock(); // A writer got in the way: read again under the lock
+            try {
+                return table.find(key, h);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        Produit put(long key, long h, Produit p) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int i = t.home(h);
+                while (t.keys[i] != FREE) {
+                    if (t.keys[i] == key) {
+                        Produit previous = t.produits[i];
+                        t.produits[i] = p;
+                        return previous;
+                    }
+                    i = (i + 1) & t.mask;
+                }
+                if ((size + 1) * 4L > (t.mask + 1) * 3L) { // Keep the load under 3/4 so that probes stay short
+                    t = grow(t);
+                    i = t.home(h);
+                    while (t.keys[i] != FREE)
+                        i = (i + 1) & t.mask;
+                }
+                t.produits[i] = p;
+                t.keys[i] = key;
+                size++;
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        Produit remove(long key, long h) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int i = t.home(h);
+                while (t.keys[i] != key) {
+                    if (t.keys[i] == FREE)
+                        return null;
+                    i = (i + 1) & t.mask;
+                }
+                Produit removed = t.produits[i];
+                // Shift back the entries that probed past the freed slot, so that probes never need tombstones
+                for (int j = (i + 1) & t.mask; t.keys[j] != FREE; j = (j + 1) & t.mask) {
+                    int home = t.home(hash(t.keys[j]));
+                    if (((j - home) & t.mask) >= ((j - i) & t.mask)) { // The freed slot is on the entry's probe path
+                        t.keys[i] = t.keys[j];
+                        t.produits[i] = t.produits[j];
+                        i = j;
+                    }
+                }
+                t.keys[i] = FREE;
+                t.produits[i] = null;
+                size--;
+                return removed;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private Table grow(Table t) {
+            Table bigger = new Table((t.mask + 1) * 2);
+            for (int i = 0; i <= t.mask; i++) {
+                long k = t.keys[i];
+                if (k == FREE)
+                    continue;
+                int j = bigger.home(hash(k));
+                while (bigger.keys[j] != FREE)
+                    j = (j + 1) & bigger.mask;
+                bigger.keys[j] = k;
+                bigger.produits[j] = t.produits[i];
+            }
+            table = bigger;
+            return bigger;
+        }
+
+        // The products of the segment at one point in time
+        Produit[] copy() {
+            long stamp = lock.readLock();
+            try {
+                Table t = table;
+                Produit[] copy = new Produit[size];
+                int n = 0;
+                for (Produit p : t.produits)
+                    if (p != null)
+                        copy[n++] = p;
+                return copy;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void copyTo(List<Produit> list) {
+            long stamp = lock.readLock();
+            try {
+                for (Produit p : table.produits)
+                    if (p != null)
+                        list.add(p);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * The live view of the products.
+     */
+    private final class Values extends AbstractCollection<Produit> {
+
+        @Override
+        public int size() {
+            return LongProduitMap.this.size();
+        }
+
+        @Override
+        public Iterator<Produit> iterator() {
+            return Spliterators.iterator(spliterator());
+        }
+
+        @Override
+        public Spliterator<Produit> spliterator() {
+            return new SegmentSpliterator(0, SEGMENTS);
+        }
+    }
+
+    /**
+     * Walks a range of segments, copying each when it is reached; splits between segments, then
+     * within the copy of the last segment.
+     */
+    private final class SegmentSpliterator implements Spliterator<Produit> {
+        private int next; // Next segment to copy
+        private final int end;
+        private Produit[] copy = new Produit[0];
+        private int pos;
+
+        SegmentSpliterator(int from, int end) {
+            this.next = from;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Produit> action) {
+            while (pos == copy.length) {
+                if (next == end)
+                    return false;
+                copy = segments[next++].copy();
+                pos = 0;
+            }
+            action.accept(copy[pos++]);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Produit> action) {
+            while (pos < copy.length)
+                action.accept(copy[pos++]);
+            while (next < end)
+                for (Produit p : segments[next++].copy())
+                    action.accept(p);
+        }
+
+        @Override
+        public Spliterator<Produit> trySplit() {
+            if (end - next < 2) {
+                if (pos == copy.length && next < end) {
+                    copy = segments[next++].copy();
+                    pos = 0;
+                }
+                if (next < end || copy.length - pos < 2)
+                    return null;
+                int half = (pos + copy.length) >>> 1;
+                Spliterator<Produit> prefix = Spliterators.spliterator(copy, pos, half, NONNULL | CONCURRENT);
+                pos = half;
+                return prefix;
+            }
+            int mid = (next + end) >>> 1;
+            SegmentSpliterator prefix = new SegmentSpliterator(next, mid);
+            next = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            long n = copy.length - pos;
+            for (int i = next; i < end; i++)
+                n += segments[i].size;
+            return n;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | CONCURRENT;
+        }
+    }
+}
@@ -0,0 +1,879 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.repository.query.Criteria;
+import org.example.repository.query.Criterion;
+import org.example.repository.query.ProduitQuery;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*; // For lists and iterators
+import java.util.concurrent.locks.ReentrantReadWriteLock; // Many readers, one writer
+import java.util.function.DoubleUnaryOperator; // For computing new prices
+import java.util.function.Predicate; // For opaque predicate search
+
+/**
+ * Persistent implementation of the IProduitRepository interface backed by memory-mapped files.
+ * <p>
+ * Products are stored outside the Java heap as fixed-width 64-byte records in
+ * {@code produits.dat}; names live in a separate string region, {@code produits.str}; and
+ * {@code produits.idx} maps each reference to its record slot, one long per reference.
+ * Opening an existing directory only maps the files again: nothing is parsed or copied, and
+ * however large the catalog, the garbage collector never sees it.
+ * <p>
+ * Slots of deleted products are chained into a free list and reused by later saves. Renamed and
+ * deleted products leave their old names behind in the string region; once those make up more
+ * than half of it, and at least 1 MB, the live names are moved down to its start and the space
+ * is reused. References are expected to be dense: an explicit reference more than 2<sup>20</sup>
+ * past the highest one stored is rejected, so that a single write cannot grow the reference
+ * index without bound.
+ * <p>
+ * Changes reach the page cache immediately and the disk when {@link #flush()} or
+ * {@link #close()} is called, or whenever the operating system writes the pages back.
+ * <p>
+ * A single read-write lock guards the whole store: reads share it, and every write, including
+ * updateVersioned(), adjustStock() and reprice(), takes it exclusively, since writes may also
+ * move the header, the free list and the string region. Writers are serialized store-wide,
+ * not per row.
+ * <p>
+ * The store is not crash-safe. A write batch changes records, names and the index in place and
+ * writes the header at its end; if the process dies in between, the files no longer agree with
+ * each other. A flag in the header marks such an interrupted write, and opening the store then
+ * fails with an IOException rather than serving inconsistent data: the directory must be
+ * deleted and the store rebuilt, for instance by replaying a JournaledProduitRepository
+ * placed in front of it. Single-record changes by adjustStock() and reprice() leave the header
+ * alone and are not flagged.
+ */
+public class MappedProduitRepository implements IProduitRepository, Closeable {
+
+    private static final int MAGIC = 0x50524F44; // "PROD"
+    private static final int VERSION = 1;
+    private static final int RECORD_SIZE = 64; // Divides MappedRegion.CHUNK_SIZE, so records never straddle chunks
+    private static final TypeProduit[] TYPES = TypeProduit.values();
+    private static final long MAX_REF_GAP = 1 << 20; // At most 8 MB of reference index per write
+    private static final long COMPACT_MIN_GARBAGE = 1 << 20; // Smaller string regions are never compacted
+
+    // Header, stored in slot 0 of the record file
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_SLOTS = 8; // Number of slots ever allocated, header included
+    private static final int H_FREE_HEAD = 16; // First free slot, 0 if none
+    private static final int H_NEXT_REF = 24; // Last generated reference
+    private static final int H_COUNT = 32; // Number of live products
+    private static final int H_STRING_END = 40; // End of the used part of the string region
+    private static final int H_WRITING = 48; // Non-zero while a write batch is in progress
+    private static final int H_STRING_LIVE = 56; // Bytes of the string region held by live names
+
+    // Record layout
+    private static final int R_REF = 0; // 0 marks a free slot
+    private static final int R_PRIX = 8;
+    private static final int R_STOCK = 16;
+    private static final int R_DATE_CREATION = 24;
+    private static final int R_DATE_PREMPTION = 32;
+    private static final int R_NOM_POS = 40; // Position in the string region, -1 for a null name
+    private static final int R_NOM_LEN = 48; // Length in UTF-8 bytes
+    private static final int R_TYPE = 52;
+    private static final int R_NEXT_FREE = 56; // Next slot of the free list, for free slots only
+    private static final int R_VERSION = 56; // Version of the product, for used slots only
+
+    private final MappedRegion records;
+    private final MappedRegion strings;
+    private final MappedRegion refIndex; // One long per reference: the slot holding it, or 0
+
+    // Header values, mirrored on the heap and written through on every change
+    private long slots;
+    private long freeHead;
+    private long nextRef;
+    private long count;
+    private long stringEnd;
+    private long stringLive;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private MappedProduitRepository(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        records = new MappedRegion(directory.resolve("produits.dat"));
+        strings = new MappedRegion(directory.resolve("produits.str"));
+        refIndex = new MappedRegion(directory.resolve("produits.idx"));
+        if (records.capacity() == 0 || records.getInt(H_MAGIC) == 0) {
+            records.ensureCapacity(RECORD_SIZE);
+            records.putInt(H_MAGIC, MAGIC);
+            records.putInt(H_VERSION, VERSION);
+            slots = 1;
+            writeHeader();
+        } else {
+            if (records.getInt(H_MAGIC) != MAGIC)
+                throw new IOException("Not a product store: " + directory);
+            if (records.getInt(H_VERSION) != VERSION)
+                throw new IOException("Unsupported product store version " + records.getInt(H_VERSION));
+            if (records.getInt(H_WRITING) != 0)
+                throw new IOException("The product store in " + directory
+                        + " was interrupted during a write and may be inconsistent; it must be rebuilt");
+            slots = records.getLong(H_SLOTS);
+            freeHead = records.getLong(H_FREE_HEAD);
+            nextRef = records.getLong(H_NEXT_REF);
+            count = records.getLong(H_COUNT);
+            stringEnd = records.getLong(H_STRING_END);
+            stringLive = records.getLong(H_STRING_LIVE);
+        }
+    }
+
+    /**
+     * Opens the store kept in a directory, creating it if it does not exist.
+     *
+     * @param directory The directory holding the store files.
+     * @return The opened repository.
+     * @throws IOException if the files cannot be created, mapped or are not a product store, or if
+     *         a write to the store was interrupted.
+     */
+    public static MappedProduitRepository open(Path directory) throws IOException {
+        return new MappedProduitRepository(directory);
+    }
+
+    private void writeHeader() {
+        records.putLong(H_SLOTS, slots);
+        records.putLong(H_FREE_HEAD, freeHead);
+        records.putLong(H_NEXT_REF, nextRef);
+        records.putLong(H_COUNT, count);
+        records.putLong(H_STRING_END, stringEnd);
+        records.putLong(H_STRING_LIVE, stringLive);
+    }
+
+    // Flags a write batch as in progress until endWrite(); called with the write lock held
+    private void beginWrite() {
+        records.putInt(H_WRITING, 1);
+    }
+
+    // Compacts the string region if needed, writes the header and clears the in-progress flag; called with the write lock held
+    private void endWrite() {
+        compactStringsIfNeeded();
+        writeHeader();
+        records.putInt(H_WRITING, 0);
+    }
+
+    private static long at(long slot) {
+        return slot * RECORD_SIZE;
+    }
+
+    /**
+     * Saves a new product in a free slot, or in a new one if the free list is empty.
+     *
+     * @param p The product to save.
+     * @return The saved product with its reference set.
+     */
+    @Override
+    public Produit save(Produit p) {
+        return saveAll(Collections.singletonList(p)).get(0);
+    }
+
+    /**
+     * Saves a batch of products under a single lock acquisition and header write.
+     *
+     * @param batch The products to save.
+     * @return The saved products, in the order given, with their references set.
+     */
+    @Override
+    public List<Produit> saveAll(Collection<Produit> batch) {
+        List<Produit> saved = new ArrayList<>(batch.size());
+        lock.writeLock().lock();
+        try {
+            beginWrite();
+            for (Produit p : batch) {
+                long ref = nextRef + 1;
+                long slot = allocateSlot();
+                write(slot, ref, p, 1, -1, 0);
+                mapRef(ref, slot);
+                nextRef = ref;
+                count++;
+                saved.add(p.withRefAndVersion(ref, 1));
+            }
+            return saved;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot grow the product store", e);
+        } finally {
+            endWrite(); // Also records the products saved before a failure
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the product stored under the reference of the given product, or stores it if
+     * the reference is unknown.
+     *
+     * @param p The updated product.
+     * @return The updated product, carrying its stored version.
+     * @throws IllegalArgumentException if the product has no valid reference.
+     */
+    @Override
+    public Produit update(Produit p) {
+        return updateAll(Collections.singletonList(p)).get(0);
+    }
+
+    /**
+     * Updates a batch of products under a single lock acquisition and header write.
+     *
+     * @param batch The updated products.
+     * @return The updated products as stored, in the order given.
+     * @throws IllegalArgumentException if a product has no valid reference, or one too far past the
+     *         highest stored; nothing is updated then.
+     */
+    @Override
+    public List<Produit> updateAll(Collection<Produit> batch) {
+        List<Produit> updated = new ArrayList<>(batch);
+        for (Produit p : updated)
+            if (p.getRef() < 1)
+                throw new IllegalArgumentException("Invalid reference: " + p.getRef());
+        lock.writeLock().lock();
+        try {
+            long highest = nextRef;
+            for (Produit p : updated) {
+                checkRefGap(p.getRef(), highest);
+                highest = Math.max(highest, p.getRef());
+            }
+            beginWrite();
+            try {
+                for (int i = 0; i < updated.size(); i++) {
+                    Produit p = updated.get(i);
+                    long slot = slotOf(p.getRef());
+                    updated.set(i, put(p, slot, Math.max(versionAt(slot) + 1, p.getVersion())));
+                }
+            } finally {
+                endWrite(); // Also records the products updated before a failure
+            }
+            return updated;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot grow the product store", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Rejects a reference so far past the highest stored that mapping it would grow the index without bound
+    private static void checkRefGap(long ref, long highest) {
+        if (ref > highest + MAX_REF_GAP)
+            throw new IllegalArgumentException("Invalid reference: " + ref + ", more than " + MAX_REF_GAP
+                    + " past the highest stored reference " + highest);
+    }
+
+    // Stores a product in its slot, or in a new one if slot is 0, and returns it as stored; called with the write lock held
+    private Produit put(Produit p, long slot, long version) throws IOException {
+        long ref = p.getRef();
+        if (slot == 0) {
+            slot = allocateSlot();
+            write(slot, ref, p, version, -1, 0);
+            mapRef(ref, slot);
+            count++;
+        } else {
+            // Keep the stored name when it did not change, so that updates do not grow the string region
+            write(slot, ref, p, version, records.getLong(at(slot) + R_NOM_POS), records.getInt(at(slot) + R_NOM_LEN));
+        }
+        nextRef = Math.max(nextRef, ref);
+        return p.withVersion(version);
+    }
+
+    // Stored version of a slot, 0 for no slot; called with a lock held
+    private long versionAt(long slot) {
+        return slot == 0 ? 0 : records.getLong(at(slot) + R_VERSION);
+    }
+
+    /**
+     * Stores a product in its slot with the version it carries, under the write lock.
+     *
+     * @param p The product to store.
+     * @return The product, as stored.
+     * @throws IllegalArgumentException if the product has no valid reference, or one too far past
+     *         the highest stored.
+     */
+    @Override
+    public Produit restore(Produit p) {
+        if (p.getRef() < 1)
+            throw new IllegalArgumentException("Invalid reference: " + p.getRef());
+        lock.writeLock().lock();
+        try {
+            checkRefGap(p.getRef(), nextRef);
+            beginWrite();
+            try {
+                return put(p, slotOf(p.getRef()), p.getVersion());
+            } finally {
+                endWrite();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot grow the product store", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates a product under the write lock if its stored version is the one it carries.
+     *
+     * @param p The product with updated details and the version it was read with.
+     * @return The updated product, carrying its new version.
+     * @throws OptimisticLockException if the stored version differs.
+     * @throws IllegalArgumentException if the product has no valid reference, or one too far past
+     *         the highest stored.
+     */
+    @Override
+    public Produit updateVersioned(Produit p) {
+        if (p.getRef() < 1)
+            throw new IllegalArgumentException("Invalid reference: " + p.getRef());
+        lock.writeLock().lock();
+        try {
+            long slot = slotOf(p.getRef());
+            long actual = versionAt(slot);
+            if (actual != p.getVersion())
+                throw new OptimisticLockException(p.getRef(), p.getVersion(), actual);
+            checkRefGap(p.getRef(), nextRef);
+            beginWrite();
+            try {
+                return put(p, slot, actual + 1);
+            } finally {
+                endWrite();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot grow the product store", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds to the stock of a product in its record, under the write lock.
+     *
+     * @param ref The reference of the product.
+     * @param delta The quantity to add, negative to remove stock.
+     * @return The product as stored after the adjustment.
+     * @throws NoSuchElementException if there is no product with this reference.
+     */
+    @Override
+    public Produit adjustStock(long ref, double delta) {
+        lock.writeLock().lock();
+        try {
+            long base = at(liveSlot(ref));
+            records.putDouble(base + R_STOCK, records.getDouble(base + R_STOCK) + delta);
+            records.putLong(base + R_VERSION, records.getLong(base + R_VERSION) + 1);
+            return materialize(base / RECORD_SIZE);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the price of a product in its record, under the write lock; the function is called once.
+     *
+     * @param ref The reference of the product.
+     * @param fn Computes the new price from the current one.
+     * @return The product as stored after the change.
+     * @throws NoSuchElementException if there is no product with this reference.
+     */
+    @Override
+    public Produit reprice(long ref, DoubleUnaryOperator fn) {
+        lock.writeLock().lock();
+        try {
+            long base = at(liveSlot(ref));
+            records.putDouble(base + R_PRIX, fn.applyAsDouble(records.getDouble(base + R_PRIX)));
+            records.putLong(base + R_VERSION, records.getLong(base + R_VERSION) + 1);
+            return materialize(base / RECORD_SIZE);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Slot of a stored product, called with a lock held
+    private long liveSlot(long ref) {
+        long slot = ref < 1 ? 0 : slotOf(ref);
+        if (slot == 0)
+            throw new NoSuchElementException("No product with reference " + ref);
+        return slot;
+    }
+
+    /**
+     * Deletes a product and pushes its slot onto the free list.
+     *
+     * @param ref The reference of the product to delete.
+     */
+    @Override
+    public void detele(Long ref) {
+        deleteAll(Collections.singletonList(ref));
+    }
+
+    /**
+     * Deletes a batch of products under a single lock acquisition and header write.
+     *
+     * @param batch The references of the products to delete.
+     */
+    @Override
+    public void deleteAll(Collection<Long> batch) {
+        lock.writeLock().lock();
+        try {
+            beginWrite();
+            for (Long ref : batch) {
+                if (ref == null || ref < 1)
+                    continue;
+                long slot = slotOf(ref);
+                if (slot == 0)
+                    continue;
+                if (records.getLong(at(slot) + R_NOM_POS) >= 0)
+                    stringLive -= records.getInt(at(slot) + R_NOM_LEN);
+                records.putLong(at(slot) + R_REF, 0);
+                records.putLong(at(slot) + R_NEXT_FREE, freeHead);
+                freeHead = slot;
+                refIndex.putLong(ref * 8, 0);
+                count--;
+            }
+        } finally {
+            endWrite();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Materializes the products with the given references under a single lock acquisition.
+     *
+     * @param batch The references to look up.
+     * @return The products found, in the order of the references; missing ones are skipped.
+     */
+    @Override
+    public List<Produit> findAllByRefs(Collection<Long> batch) {
+        List<Produit> found = new ArrayList<>(batch.size());
+        lock.readLock().lock();
+        try {
+            for (Long ref : batch) {
+                long slot = ref == null || ref < 1 ? 0 : slotOf(ref);
+                if (slot != 0)
+                    found.add(materialize(slot));
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long allocateSlot() throws IOException {
+        if (freeHead != 0) {
+            long slot = freeHead;
+            freeHead = records.getLong(at(slot) + R_NEXT_FREE);
+            return slot;
+        }
+        records.ensureCapacity(at(slots + 1));
+        return slots++;
+    }
+
+    private void mapRef(long ref, long slot) throws IOException {
+        refIndex.ensureCapacity((ref + 1) * 8);
+        refIndex.putLong(ref * 8, slot);
+    }
+
+    // Called with the read or write lock held
+    private long slotOf(long ref) {
+        long pos = ref * 8;
+        if (pos + 8 > refIndex.capacity())
+            return 0;
+        return refIndex.getLong(pos);
+    }
+
+    /**
+     * Writes a product into a slot.
+     *
+     * @param version The version to store, also set on the product.
+     * @param previousNomPos The string position currently stored in the slot, or -1.
+     * @param previousNomLen The length of that string.
+     */
+    private void write(long slot, long ref, Produit p, long version, long previousNomPos, int previousNomLen) throws IOException {
+        long base = at(slot);
+        long nomPos = -1;
+        int nomLen = 0;
+        if (p.getNom() != null) {
+            byte[] utf8 = p.getNom().getBytes(StandardCharsets.UTF_8);
+            if (previousNomPos >= 0 && previousNomLen == utf8.length && bytesEqual(previousNomPos, utf8, utf8.length)) {
+                nomPos = previousNomPos;
+            } else {
+                nomPos = appendString(utf8);
+                stringLive += utf8.length;
+            }
+            nomLen = utf8.length;
+        }
+        if (previousNomPos >= 0 && nomPos != previousNomPos)
+            stringLive -= previousNomLen; // The previous name is garbage now
+        records.putDouble(base + R_PRIX, p.getPrix());
+        records.putDouble(base + R_STOCK, p.getQuantiteStock());
+        records.putLong(base + R_DATE_CREATION, p.getDateCreationMillis());
+        records.putLong(base + R_DATE_PREMPTION, p.getDatePremptionMillis());
+        records.putLong(base + R_NOM_POS, nomPos);
+        records.putInt(base + R_NOM_LEN, nomLen);
+        records.put(base + R_TYPE, p.getType() == null ? RowFilter.NO_TYPE : (byte) p.getType().ordinal());
+        records.putLong(base + R_VERSION, version); // Replaces the free list link of a reused slot
+        records.putLong(base + R_REF, ref); // Written last: a non-zero reference marks the slot as used
+    }
+
+    private long appendString(byte[] utf8) throws IOException {
+        if (utf8.length > MappedRegion.CHUNK_SIZE)
+            throw new IllegalArgumentException("Product name too long: " + utf8.length + " bytes");
+        if (utf8.length > 0 && !MappedRegion.fitsInChunk(stringEnd, utf8.length))
+            stringEnd = MappedRegion.nextChunk(stringEnd); // Strings never straddle two mappings
+        long pos = stringEnd;
+        strings.ensureCapacity(pos + utf8.length);
+        strings.put(pos, utf8);
+        stringEnd = pos + utf8.length;
+        return pos;
+    }
+
+    /**
+     * Moves the live names down to the start of the string region once the garbage left by renames
+     * and deletes outweighs them, then lets later names reuse the space after them. Names are
+     * moved in position order, so each one only moves down and never over a name not yet moved.
+     * Called with the write lock held, within a write batch.
+     */
+    private void compactStringsIfNeeded() {
+        if (stringEnd - stringLive < Math.max(stringLive, COMPACT_MIN_GARBAGE))
+            return;
+        List<long[]> named = new ArrayList<>(); // Position and slot of each live name
+        for (long slot = 1; slot < slots; slot++) {
+            long base = at(slot);
+            if (records.getLong(base + R_REF) != 0 && records.getLong(base + R_NOM_POS) >= 0)
+                named.add(new long[]{records.getLong(base + R_NOM_POS), slot});
+        }
+        named.sort(Comparator.comparingLong(entry -> entry[0]));
+        long end = 0;
+        long live = 0;
+        for (long[] entry : named) {
+            long base = at(entry[1]);
+            int length = records.getInt(base + R_NOM_LEN);
+            if (length > 0 && !MappedRegion.fitsInChunk(end, length))
+                end = MappedRegion.nextChunk(end); // Same rule as appendString()
+            if (end != entry[0]) {
+                byte[] utf8 = new byte[length];
+                strings.get(entry[0], utf8, length);
+                strings.put(end, utf8);
+                records.putLong(base + R_NOM_POS, end);
+            }
+            end += length;
+            live += length;
+        }
+        stringEnd = end;
+        stringLive = live;
+    }
+
+    private boolean bytesEqual(long pos, byte[] expected, int length) {
+        for (int i = 0; i < length; i++)
+            if (strings.get(pos + i) != expected[i])
+                return false;
+        return true;
+    }
+
+    @Override
+    public Optional<Produit> finfByRef(Long ref) {
+        if (ref == null || ref < 1)
+            return Optional.empty();
+        lock.readLock().lock();
+        try {
+            long slot = slotOf(ref);
+            return slot == 0 ? Optional.empty() : Optional.of(materialize(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Produit> findAll() {
+        return scan(Criteria.all());
+    }
+
+    /**
+     * Traverses the records in slot order, materializing one chunk of slots per read lock
+     * acquisition. Slots are reused, so the order is not the reference order; slots allocated
+     * after this call are not visited.
+     *
+     * @return A weakly consistent spliterator over the products.
+     */
+    @Override
+    public Spliterator<Produit> spliterator() {
+        lock.readLock().lock();
+        try {
+            return new RowSpliterator(lock.readLock(), slot -> records.getLong(at(slot) + R_REF) != 0,
+                    fields, 1, (int) slots, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Computes aggregates directly on the mapped records, in parallel for large stores.
+     *
+     * @param criterion The products to include.
+     * @return The aggregates.
+     */
+    @Override
+    public ProduitStatistics aggregate(Criterion criterion) {
+        RowFilter filter;
+        int end;
+        lock.readLock().lock();
+        try {
+            filter = RowFilter.compile(criterion, fields);
+            end = (int) slots;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ParallelAggregation.aggregateRows(lock.readLock(), slot -> records.getLong(at(slot) + R_REF) != 0,
+                fields, filter, 1, end);
+    }
+
+    /**
+     * Returns a page of products in reference order by walking the reference index.
+     *
+     * @param offset The number of products to skip.
+     * @param limit The maximum number of products to return.
+     * @return The products of the page, in ascending reference order.
+     */
+    @Override
+    public List<Produit> findPage(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Produit> page = new ArrayList<>((int) Math.min(limit, count));
+            int skip = offset;
+            for (long ref = 1; ref <= nextRef && page.size() < limit; ref++) {
+                long slot = slotOf(ref);
+                if (slot == 0)
+                    continue;
+                if (skip > 0)
+                    skip--;
+                else
+                    page.add(materialize(slot));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the products following a reference by walking the reference index from it.
+     *
+     * @param afterRef The reference after which the page starts, excluded.
+     * @param limit The maximum number of products to return.
+     * @return The products of the page, in ascending reference order.
+     */
+    @Override
+    public List<Produit> findPageAfter(long afterRef, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Produit> page = new ArrayList<>((int) Math.min(limit, count));
+            for (long ref = Math.max(1, afterRef + 1); ref <= nextRef && page.size() < limit; ref++) {
+                long slot = slotOf(ref);
+                if (slot != 0)
+                    page.add(materialize(slot));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches with an opaque predicate; every live record is materialized to be tested.
+     *
+     * @param predicate The condition to filter products.
+     * @return A list of products that match the predicate.
+     */
+    @Override
+    public List<Produit> search(Predicate<Produit> predicate) {
+        lock.readLock().lock();
+        try {
+            List<Produit> result = new ArrayList<>();
+            for (int slot = 1; slot < slots; slot++) {
+                if (records.getLong(at(slot) + R_REF) == 0)
+                    continue;
+                Produit p = materialize(slot);
+                if (predicate.test(p))
+                    result.add(p);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches with a structured query evaluated on the mapped records.
+     *
+     * @param query The query to run.
+     * @return The requested page of matching products.
+     */
+    @Override
+    public List<Produit> search(ProduitQuery query) {
+        lock.readLock().lock();
+        try {
+            RowFilter filter = RowFilter.compile(query.getCriterion(), fields);
+            if (query.getOrderFields().isEmpty()) {
+                List<Produit> result = new ArrayList<>();
+                int skip = query.getOffset();
+                for (int slot = 1; slot < slots && result.size() < query.getLimit(); slot++) {
+                    if (records.getLong(at(slot) + R_REF) == 0 || !filter.test(slot))
+                        continue;
+                    if (skip > 0)
+                        skip--;
+                    else
+                        result.add(materialize(slot));
+                }
+                return result;
+            }
+            List<Produit> matches = new ArrayList<>();
+            for (int slot = 1; slot < slots; slot++)
+                if (records.getLong(at(slot) + R_REF) != 0 && filter.test(slot))
+                    matches.add(materialize(slot));
+            return query.apply(matches, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Produit> findByType(TypeProduit type) {
+        return scan(Criteria.type().eq(type));
+    }
+
+    @Override
+    public List<Produit> findByPrixBetween(double min, double max) {
+        List<Produit> result = scan(Criteria.prix().between(min, max));
+        result.sort(Comparator.comparingDouble(Produit::getPrix));
+        return result;
+    }
+
+    @Override
+    public List<Produit> findByQuantiteStockGreaterThan(double seuil) {
+        List<Produit> result = scan(Criteria.quantiteStock().gt(seuil));
+        result.sort(Comparator.comparingDouble(Produit::getQuantiteStock));
+        return result;
+    }
+
+    private List<Produit> scan(Criterion criterion) {
+        lock.readLock().lock();
+        try {
+            RowFilter filter = RowFilter.compile(criterion, fields);
+            List<Produit> result = new ArrayList<>();
+            for (int slot = 1; slot < slots; slot++)
+                if (records.getLong(at(slot) + R_REF) != 0 && filter.test(slot))
+                    result.add(materialize(slot));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of live products.
+     */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes all modified pages of the store to disk.
+     */
+    public void flush() {
+        lock.readLock().lock();
+        try {
+            records.force();
+            strings.force();
+            refIndex.force();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes and closes the store files.
+     *
+     * @throws IOException if a file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            records.close();
+            strings.close();
+            refIndex.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Creates the Produit held by a slot, called with the read or write lock held
+    private Produit materialize(long slot) {
+        long base = at(slot);
+        byte type = records.get(base + R_TYPE);
+        return new Produit(records.getLong(base + R_REF),
+                readString(records.getLong(base + R_NOM_POS), records.getInt(base + R_NOM_LEN)),
+                records.getDouble(base + R_PRIX),
+                records.getDouble(base + R_STOCK),
+                records.getLong(base + R_DATE_CREATION),
+                records.getLong(base + R_DATE_PREMPTION),
+                type == RowFilter.NO_TYPE ? null : TYPES[type],
+                records.getLong(base + R_VERSION));
+    }
+
+    private String readString(long pos, int length) {
+        if (pos < 0)
+            return null;
+        byte[] utf8 = new byte[length];
+        strings.get(pos, utf8, length);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // Reads record fields for RowFilter; only used with the read lock held
+    private final RowFilter.Source fields = new RowFilter.Source() {
+        @Override
+        public double prix(int row) {
+            return records.getDouble(at(row) + R_PRIX);
+        }
+
+        @Override
+        public double quantiteStock(int row) {
+            return records.getDouble(at(row) + R_STOCK);
+        }
+
+        @Override
+        public long datePremption(int row) {
+            return records.getLong(at(row) + R_DATE_PREMPTION);
+        }
+
+        @Override
+        public byte type(int row) {
+            return records.get(at(row) + R_TYPE);
+        }
+
+        @Override
+        public RowFilter nomStartsWith(String prefix) {
+            // UTF-8 preserves prefixes, so the comparison runs on the mapped bytes without decoding
+            byte[] utf8 = prefix.getBytes(StandardCharsets.UTF_8);
+            return row -> {
+                long base = at(row);
+                long pos = records.getLong(base + R_NOM_POS);
+                return pos >= 0 && records.getInt(base + R_NOM_LEN) >= utf8.length && bytesEqual(pos, utf8, utf8.length);
+            };
+        }
+
+        @Override
+        public RowFilter nomMatches(Predicate<String> test) {
+            return row -> {
+                long base = at(row);
+                long pos = records.getLong(base + R_NOM_POS);
+                return pos >= 0 && test.test(readString(pos, records.getInt(base + R_NOM_LEN)));
+            };
+        }
+
+        @Override
+        public Produit materialize(int row) {
+            return MappedProduitRepository.this.materialize(row);
+        }
+    };
+}
@@ -0,0 +1,154 @@
+package org.example.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A file mapped into memory in fixed-size chunks, addressed with long positions.
+ * A single MappedByteBuffer cannot exceed 2 GB, so the file is mapped as a sequence of chunks
+ * that are added as the region grows. Callers must not read or write a value that straddles
+ * two chunks; fixed-width records whose size divides {@link #CHUNK_SIZE} never do.
+ * <p>
+ * Reads use absolute accessors only and are safe from several threads; writes and growth
+ * must be serialized by the caller.
+ */
+class MappedRegion implements Closeable {
+
+    static final int CHUNK_SIZE = 1 << 26; // 64 MB per mapping
+    private static final int CHUNK_SHIFT = 26;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final FileChannel channel;
+    private volatile MappedByteBuffer[] chunks; // Replaced, never modified in place, when the region grows
+
+    /**
+     * Opens or creates a file and maps all of its existing content.
+     *
+     * @param file The file to map.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    MappedRegion(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        chunks = new MappedByteBuffer[0];
+        long existing = channel.size();
+        if (existing > 0)
+            ensureCapacity(existing);
+    }
+
+    /**
+     * Maps enough chunks for the given size, extending the file if needed.
+     *
+     * @param size The number of addressable bytes required.
+     * @throws IOException if the file cannot be extended or mapped.
+     */
+    void ensureCapacity(long size) throws IOException {
+        int needed = (int) ((size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        MappedByteBuffer[] current = chunks;
+        if (needed <= current.length)
+            return;
+        List<MappedByteBuffer> grown = new ArrayList<>(needed);
+        for (MappedByteBuffer chunk : current)
+            grown.add(chunk);
+        for (int i = current.length; i < needed; i++) {
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, (long) i << CHUNK_SHIFT, CHUNK_SIZE);
+            chunk.order(ByteOrder.LITTLE_ENDIAN); // Fixed order keeps files portable between machines
+            grown.add(chunk);
+        }
+        chunks = grown.toArray(new MappedByteBuffer[0]);
+    }
+
+    /**
+     * @return The number of mapped bytes.
+     */
+    long capacity() {
+        return (long) chunks.length << CHUNK_SHIFT;
+    }
+
+    long getLong(long pos) {
+        return chunks[(int) (pos >>> CHUNK_SHIFT)].getLong((int) (pos & CHUNK_MASK));
+    }
+
+    void putLong(long pos, long value) {
+        chunks[(int) (pos >>> CHUNK_SHIFT)].putLong((int) (pos & CHUNK_MASK), value);
+    }
+
+    int getInt(long pos) {
+        return chunks[(int) (pos >>> CHUNK_SHIFT)].getInt((int) (pos & CHUNK_MASK));
+    }
+
+    void putInt(long pos, int value) {
+        chunks[(int) (pos >>> CHUNK_SHIFT)].putInt((int) (pos & CHUNK_MASK), value);
+    }
+
+    double getDouble(long pos) {
+        return chunks[(int) (pos >>> CHUNK_SHIFT)].getDouble((int) (pos & CHUNK_MASK));
+    }
+
+    void putDouble(long pos, double value) {
+        chunks[(int) (pos >>> CHUNK_SHIFT)].putDouble((int) (pos & CHUNK_MASK), value);
+    }
+
+    byte get(long pos) {
+        return chunks[(int) (pos >>> CHUNK_SHIFT)].get((int) (pos & CHUNK_MASK));
+    }
+
+    void put(long pos, byte value) {
+        chunks[(int) (pos >>> CHUNK_SHIFT)].put((int) (pos & CHUNK_MASK), value);
+    }
+
+    /**
+     * Copies bytes out of the region; the range must lie within one chunk.
+     */
+    void get(long pos, byte[] dst, int length) {
+        MappedByteBuffer chunk = chunks[(int) (pos >>> CHUNK_SHIFT)];
+        int offset = (int) (pos & CHUNK_MASK);
+        for (int i = 0; i < length; i++)
+            dst[i] = chunk.get(offset + i);
+    }
+
+    /**
+     * Copies bytes into the region; the range must lie within one chunk.
+     */
+    void put(long pos, byte[] src) {
+        MappedByteBuffer chunk = chunks[(int) (pos >>> CHUNK_SHIFT)];
+        int offset = (int) (pos & CHUNK_MASK);
+        for (int i = 0; i < src.length; i++)
+            chunk.put(offset + i, src[i]);
+    }
+
+    /**
+     * @return true if a range of the given length starting at pos lies within one chunk.
+     */
+    static boolean fitsInChunk(long pos, int length) {
+        return (pos >>> CHUNK_SHIFT) == ((pos + length - 1) >>> CHUNK_SHIFT);
+    }
+
+    /**
+     * @return The start of the chunk following the one containing pos.
+     */
+    static long nextChunk(long pos) {
+        return ((pos >>> CHUNK_SHIFT) + 1) << CHUNK_SHIFT;
+    }
+
+    /**
+     * Writes every modified page back to the file.
+     */
+    void force() {
+        for (MappedByteBuffer chunk : chunks)
+            chunk.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        chunks = new MappedByteBuffer[0]; // Mappings are released by the garbage collector
+        channel.close();
+    }
+}
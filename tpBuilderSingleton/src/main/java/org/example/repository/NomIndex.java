@@ -0,0 +1,248 @@
+package org.example.repository;
+
+import org.example.repository.query.Folding; // Case- and accent-insensitive names
+
+import java.util.*; // For sorted sets and iterators
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet; // Sorted, thread-safe set of names
+
+/**
+ * Full-text index over the product names, for autocomplete-style searches.
+ * <p>
+ * Names are folded (lower-cased, accents removed) before indexing, and two structures are kept:
+ * <ul>
+ * <li>a skip list sorted on (folded name, reference): the names starting with a prefix are one
+ * contiguous range of it;</li>
+ * <li>an inverted index from every trigram (three consecutive characters) of the folded names
+ * to the compressed, sorted list of references containing it. A fragment is only contained
+ * in the names holding all of its trigrams, so intersecting their lists yields a small
+ * superset of the matches, which the caller checks against the current product.</li>
+ * </ul>
+ * Writers of the same reference are serialized by the owning repository; readers never lock.
+ */
+class NomIndex {
+
+    static final int GRAM = 3;
+
+    private static final long MIX = 0x9E3779B97F4A7C15L; // Odd, so multiplying by it maps keys one to one
+
+    private final NavigableSet<Name> byName = new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<Long, PostingList> postings = new ConcurrentHashMap<>(); // Keyed by packed trigram
+
+    /**
+     * Indexes a name.
+     *
+     * @param ref The reference of the product.
+     * @param nom The name as stored, possibly null.
+     */
+    void add(long ref, String nom) {
+        if (nom == null)
+            return;
+        String folded = Folding.fold(nom);
+        byName.add(new Name(folded, ref));
+        for (long gram : grams(folded)) {
+            // Under the map's lock for the trigram: a list emptied and dropped by remove() meanwhile
+            // would otherwise take the reference out of the index
+            postings.compute(gram, (g, list) -> {
+                if (list == null)
+                    list = new PostingList();
+                list.add(ref);
+                return list;
+            });
+        }
+    }
+
+    /**
+     * Removes a name from the index.
+     *
+     * @param ref The reference of the product.
+     * @param nom The name it was indexed with, possibly null.
+     */
+    void remove(long ref, String nom) {
+        if (nom == null)
+            return;
+        String folded = Folding.fold(nom);
+        byName.remove(new Name(folded, ref));
+        for (long gram : grams(folded)) {
+            postings.computeIfPresent(gram, (g, list) -> {
+                list.remove(ref);
+                return list.isEmpty() ? null : list; // Drop the trigrams no name uses anymore
+            });
+        }
+    }
+
+    /**
+     * @param folded A folded prefix.
+     * @return The references of the names starting with the prefix, in (folded name, reference) order.
+     */
+    Iterable<Long> startingWith(String folded) {
+        NavigableSet<Name> tail = byName.tailSet(new Name(folded, Long.MIN_VALUE), true);
+        return () -> new Iterator<Long>() {
+            private final Iterator<Name> it = tail.iterator();
+            private Name next = advance();
+
+            private Name advance() {
+                Name n = it.hasNext() ? it.next() : null;
+                return n != null && n.folded.startsWith(folded) ? n : null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Long next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                long ref = next.ref;
+                next = advance();
+                return ref;
+            }
+        };
+    }
+
+    /**
+     * Returns the candidates for a fragment: the references whose names hold every trigram of it.
+     *
+     * @param folded A folded fragment.
+     * @return The candidate references in ascending order, or null if the fragment is shorter
+     *         than a trigram and the index cannot narrow the search.
+     */
+    Iterable<Long> containing(String folded) {
+        long[] grams = grams(folded);
+        if (grams.length == 0)
+            return null;
+        PostingList[] lists = new PostingList[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.get(grams[i]);
+            if (lists[i] == null)
+                return Collections.emptyList(); // A trigram no name contains
+        }
+        Arrays.sort(lists, Comparator.comparingInt(PostingList::size)); // Drive the intersection from the rarest trigram
+        return () -> new Intersection(lists);
+    }
+
+    /**
+     * @param folded A folded fragment.
+     * @return An upper bound of the number of candidates for the fragment, or -1 if it is too short.
+     */
+    long estimateContaining(String folded) {
+        long[] grams = grams(folded);
+        if (grams.length == 0)
+            return -1;
+        long min = Long.MAX_VALUE;
+        for (long gram : grams) {
+            PostingList list = postings.get(gram);
+            min = Math.min(min, list == null ? 0 : list.size());
+        }
+        return min;
+    }
+
+    // The distinct trigrams of a folded text, each packed as three 16-bit chars; the packing is
+    // multiplied by MIX because Long.hashCode would fold the first char onto the third
+    static long[] grams(String folded) {
+        int n = folded.length() - GRAM + 1;
+        if (n <= 0)
+            return new long[0];
+        long[] grams = new long[n];
+        for (int i = 0; i < n; i++)
+            grams[i] = (((long) folded.charAt(i) << 32) | ((long) folded.charAt(i + 1) << 16) | folded.charAt(i + 2)) * MIX;
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < n; i++)
+            if (i == 0 || grams[i] != grams[i - 1])
+                grams[distinct++] = grams[i];
+        return distinct == n ? grams : Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * Lazily intersects posting lists, leapfrogging each cursor to the current candidate.
+     * The lists are ordered from the smallest, and every mismatch restarts from it, so the long
+     * lists are only advanced to references the short ones agree on.
+     */
+    private static final class Intersection implements Iterator<Long> {
+        private final PostingList.Cursor[] cursors;
+        private final long[] heads; // Last reference each cursor returned, 0 before the first, -1 at the end
+        private long next;
+
+        Intersection(PostingList[] lists) {
+            cursors = new PostingList.Cursor[lists.length];
+            for (int i = 0; i < lists.length; i++)
+                cursors[i] = lists[i].cursor();
+            heads = new long[lists.length];
+            next = align(1);
+        }
+
+        // The first reference at or above the candidate present in every list, or -1
+        private long align(long candidate) {
+            int c = 0;
+            while (c < cursors.length) {
+                if (heads[c] != -1 && heads[c] < candidate)
+                    heads[c] = cursors[c].advanceTo(candidate);
+                if (heads[c] == -1)
+                    return -1;
+                if (heads[c] > candidate) {
+                    candidate = heads[c];
+                    c = 0; // Let the smallest list check the new candidate first
+                } else {
+                    c++;
+                }
+            }
+            return candidate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != -1;
+        }
+
+        @Override
+        public Long next() {
+            if (next == -1)
+                throw new NoSuchElementException();
+            long ref = next;
+            next = align(ref + 1);
+            return ref;
+        }
+    }
+
+    /**
+     * A folded name paired with the reference of its product; unique even when names repeat.
+     * The first four chars are also packed in a long, so that most comparisons in the skip list
+     * are decided without reading the strings.
+     */
+    private static final class Name implements Comparable<Name> {
+        final String folded;
+        final long ref;
+        private final long head; // First four chars, 16 bits each, padded with zeros
+
+        Name(String folded, long ref) {
+            this.folded = folded;
+            this.ref = ref;
+            long h = 0;
+            for (int i = 0; i < 4; i++)
+                h = (h << 16) | (i < folded.length() ? folded.charAt(i) : 0);
+            this.head = h;
+        }
+
+        @Override
+        public int compareTo(Name o) {
+            int c = Long.compareUnsigned(head, o.head); // Same order as comparing the chars one by one
+            if (c == 0)
+                c = folded.compareTo(o.folded);
+            return c != 0 ? c : Long.compare(ref, o.ref);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Name && compareTo((Name) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return folded.hashCode() * 31 + Long.hashCode(ref);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.repository;
+
+/**
+ * Thrown by a compare-and-set update when the stored version of a product is not the version
+ * the caller read: another writer changed (or deleted) the product in between.
+ */
+public class OptimisticLockException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long ref;
+    private final long expectedVersion;
+    private final long actualVersion;
+
+    /**
+     * @param ref The reference of the product.
+     * @param expectedVersion The version the caller read.
+     * @param actualVersion The stored version, 0 if the product does not exist.
+     */
+    public OptimisticLockException(long ref, long expectedVersion, long actualVersion) {
+        super("Product " + ref + " is at version " + actualVersion + ", expected " + expectedVersion);
+        this.ref = ref;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    public long getRef() {
+        return ref;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public long getActualVersion() {
+        return actualVersion;
+    }
+}
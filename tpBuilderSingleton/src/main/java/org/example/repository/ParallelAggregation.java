@@ -0,0 +1,135 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.repository.query.Criterion;
+
+import java.util.Spliterator;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Fork-join computation of {@link ProduitStatistics}.
+ * <p>
+ * The catalog is split in segments until they are small enough; each segment is aggregated
+ * sequentially into its own partial result, and partial results are combined while the tasks
+ * are joined, so no state is shared between workers. Below {@link #SEQUENTIAL_THRESHOLD}
+ * products the whole catalog is aggregated by the calling thread.
+ * <p>
+ * The tasks are started with invoke(): from a fork-join worker they run in that worker's
+ * pool, otherwise in the common pool.
+ */
+final class ParallelAggregation {
+
+    static final long SEQUENTIAL_THRESHOLD = 50_000; // Below this, forking costs more than it saves
+    private static final long SEGMENT_SIZE = 16_384; // Products aggregated by a single task
+
+    private ParallelAggregation() {
+    }
+
+    /**
+     * Aggregates the products of a spliterator matching a criterion.
+     *
+     * @param produits The products; its splits are aggregated in parallel.
+     * @param criterion The products to include.
+     * @return The statistics.
+     */
+    static ProduitStatistics aggregate(Spliterator<Produit> produits, Criterion criterion) {
+        if (produits.estimateSize() < SEQUENTIAL_THRESHOLD)
+            return sequential(produits, criterion);
+        return new SpliteratorTask(produits, criterion).invoke();
+    }
+
+    private static ProduitStatistics sequential(Spliterator<Produit> produits, Criterion criterion) {
+        ProduitStatistics stats = new ProduitStatistics();
+        produits.forEachRemaining(p -> {
+            if (criterion.test(p))
+                stats.accept(p);
+        });
+        return stats;
+    }
+
+    // Serializable as every ForkJoinTask, though never serialized: the state the task reads is transient
+    private static final class SpliteratorTask extends RecursiveTask<ProduitStatistics> {
+        private static final long serialVersionUID = 1L;
+        private final transient Spliterator<Produit> produits;
+        private final transient Criterion criterion;
+
+        SpliteratorTask(Spliterator<Produit> produits, Criterion criterion) {
+            this.produits = produits;
+            this.criterion = criterion;
+        }
+
+        @Override
+        protected ProduitStatistics compute() {
+            Spliterator<Produit> prefix;
+            if (produits.estimateSize() <= SEGMENT_SIZE || (prefix = produits.trySplit()) == null)
+                return sequential(produits, criterion);
+            SpliteratorTask left = new SpliteratorTask(prefix, criterion);
+            left.fork();
+            ProduitStatistics right = compute(); // Keep splitting the suffix in this thread
+            return left.join().combine(right);
+        }
+    }
+
+    /**
+     * Aggregates the rows of a row-oriented store from their raw fields, without creating
+     * Produit objects. Each segment takes the read lock for its own rows only, so the caller must
+     * not hold it while the aggregation runs.
+     *
+     * @param readLock The read lock of the store.
+     * @param live Tells whether a row holds a product.
+     * @param source The raw fields of the rows.
+     * @param filter The rows to include, compiled under the read lock.
+     * @param from The first row, inclusive.
+     * @param end The last row, exclusive.
+     * @return The statistics.
+     */
+    static ProduitStatistics aggregateRows(Lock readLock, RowFilter live, RowFilter.Source source, RowFilter filter,
+                                           int from, int end) {
+        RowTask task = new RowTask(readLock, live, source, filter, from, end);
+        return end - from < SEQUENTIAL_THRESHOLD ? task.aggregate() : task.invoke();
+    }
+
+    private static final class RowTask extends RecursiveTask<ProduitStatistics> {
+        private static final long serialVersionUID = 1L;
+        private final transient Lock readLock;
+        private final transient RowFilter live;
+        private final transient RowFilter.Source source;
+        private final transient RowFilter filter;
+        private final int from;
+        private final int end;
+
+        RowTask(Lock readLock, RowFilter live, RowFilter.Source source, RowFilter filter, int from, int end) {
+            this.readLock = readLock;
+            this.live = live;
+            this.source = source;
+            this.filter = filter;
+            this.from = from;
+            this.end = end;
+        }
+
+        @Override
+        protected ProduitStatistics compute() {
+            if (end - from <= SEGMENT_SIZE)
+                return aggregate();
+            int mid = (from + end) >>> 1;
+            RowTask left = new RowTask(readLock, live, source, filter, from, mid);
+            left.fork();
+            ProduitStatistics right = new RowTask(readLock, live, source, filter, mid, end).compute();
+            return left.join().combine(right);
+        }
+
+        ProduitStatistics aggregate() {
+            ProduitStatistics stats = new ProduitStatistics();
+            readLock.lock();
+            try {
+                for (int row = from; row < end; row++)
+                    if (live.test(row) && filter.test(row))
+                        stats.accept(source.prix(row), source.quantiteStock(row), source.datePremption(row), source.type(row));
+            } finally {
+                readLock.unlock();
+            }
+            return stats;
+        }
+    }
+}
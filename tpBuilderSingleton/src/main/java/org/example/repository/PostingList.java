@@ -0,0 +1,339 @@
+package org.example.repository;
+
+import java.util.Arrays;
+
+/**
+ * A sorted set of product references, compressed for an inverted index.
+ * <p>
+ * References are stored in ascending order as the variable-length encoding of the gap to the
+ * previous one, so the dense references of a catalog take one or two bytes each. A skip entry
+ * every {@value #SKIP_INTERVAL} references lets {@link Cursor#advanceTo} jump over whole blocks
+ * when lists are intersected.
+ * <p>
+ * New references are normally the highest yet and are appended to the encoding in constant
+ * time. Lower ones (an old product being renamed, a batch indexed out of order) and removals are
+ * buffered unsorted, then sorted and settled in one pass before the next read: added references
+ * go to a sorted side array, removed ones still encoded are recorded as tombstones. Both are
+ * folded back into the encoding once they grow past a fraction of the list, so a stream of
+ * writes in any order costs O(log n) amortized per reference.
+ * <p>
+ * Writers are serialized on the list's monitor. Readers take a {@link Cursor} over a snapshot:
+ * appends only write past the snapshot's end and every other change replaces the arrays, so a
+ * cursor never sees a partial update and never blocks a writer.
+ */
+final class PostingList {
+
+    static final int SKIP_INTERVAL = 128;
+
+    private static final long[] NONE = new long[0];
+
+    private byte[] data = new byte[16]; // Gap encoding of the references, 7 bits per byte, low bits first
+    private int length; // Bytes in use in data
+    private int encoded; // References in data, tombstoned ones included
+    private long last; // Highest reference in data, 0 if none
+    private long[] skipBase = new long[1]; // Reference preceding each block of SKIP_INTERVAL references
+    private int[] skipOffset = new int[1]; // Offset of the first reference of each block
+    private int skips;
+    private long[] extra = NONE; // Sorted references added below last, not in data
+    private long[] removed = NONE; // Sorted references still in data but no longer in the set
+    private long[] pending = NONE; // Unsorted references at or below last, all added or all removed
+    private int pendingCount;
+    private boolean pendingRemoval; // Whether the pending references are removals
+
+    /**
+     * @param ref The reference to add; adding a present reference has no effect.
+     */
+    synchronized void add(long ref) {
+        if (ref > last)
+            append(ref); // No pending operation concerns a reference above last
+        else
+            buffer(ref, false);
+    }
+
+    /**
+     * @param ref The reference to remove; removing an absent reference has no effect.
+     */
+    synchronized void remove(long ref) {
+        if (ref <= last)
+            buffer(ref, true);
+    }
+
+    /**
+     * @return The number of references in the set.
+     */
+    synchronized int size() {
+        settle();
+        return encoded - removed.length + extra.length;
+    }
+
+    /**
+     * @return Whether the set is empty; settles pending removals only when they could empty it.
+     */
+    synchronized boolean isEmpty() {
+        int atLeast = encoded - removed.length + extra.length - (pendingRemoval ? pendingCount : 0);
+        return atLeast <= 0 && size() == 0;
+    }
+
+    /**
+     * @return A cursor over the references present now, in ascending order.
+     */
+    synchronized Cursor cursor() {
+        settle();
+        return new Cursor(data, length, skipBase, skipOffset, skips, extra, removed);
+    }
+
+    private void append(long ref) {
+        if (encoded % SKIP_INTERVAL == 0) {
+            if (skips == skipBase.length) {
+                skipBase = Arrays.copyOf(skipBase, skips * 2);
+                skipOffset = Arrays.copyOf(skipOffset, skips * 2);
+            }
+            skipBase[skips] = last;
+            skipOffset[skips] = length;
+            skips++;
+        }
+        if (length + 10 > data.length)
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 10)); // A new array: cursors keep the old one
+        long gap = ref - last;
+        while ((gap & ~0x7FL) != 0) {
+            data[length++] = (byte) ((gap & 0x7F) | 0x80);
+            gap >>>= 7;
+        }
+        data[length++] = (byte) gap;
+        encoded++;
+        last = ref;
+    }
+
+    private void buffer(long ref, boolean removal) {
+        if (pendingCount > 0 && pendingRemoval != removal)
+            settle(); // Keep one kind of operation pending, so that their order does not matter
+        if (pendingCount == pending.length)
+            pending = Arrays.copyOf(pending, Math.max(16, pendingCount * 2));
+        pending[pendingCount++] = ref;
+        pendingRemoval = removal;
+        if (pendingCount + extra.length + removed.length > 16 + encoded / 8) {
+            settle();
+            compactIfNeeded();
+        }
+    }
+
+    // Sorts the pending references and applies them to the side arrays in one merge
+    private void settle() {
+        if (pendingCount == 0)
+            return;
+        long[] refs = Arrays.copyOf(pending, pendingCount);
+        pendingCount = 0;
+        Arrays.sort(refs);
+        long[] keep = new long[refs.length]; // References that change the side arrays, deduplicated
+        int kept = 0;
+        Cursor encoding = new Cursor(data, length, skipBase, skipOffset, skips, NONE, NONE);
+        long at = 0; // Last reference the encoding cursor stopped on, -1 past its end
+        for (int i = 0; i < refs.length; i++) {
+            long ref = refs[i];
+            if (i > 0 && ref == refs[i - 1])
+                continue;
+            if (at != -1 && at < ref)
+                at = encoding.advanceTo(ref); // The references are ascending: one forward pass
+            boolean present = at == ref;
+            boolean inExtra = Arrays.binarySearch(extra, ref) >= 0;
+            boolean tombstoned = Arrays.binarySearch(removed, ref) >= 0;
+            if (pendingRemoval ? inExtra || (!tombstoned && present) : tombstoned || (!inExtra && !present))
+                keep[kept++] = ref;
+        }
+        if (kept == 0)
+            return;
+        if (pendingRemoval) {
+            // Added out of order: drop from extra; encoded: tombstone
+            long[] fromExtra = new long[kept];
+            long[] toRemoved = new long[kept];
+            int e = 0;
+            int r = 0;
+            for (int i = 0; i < kept; i++) {
+                if (Arrays.binarySearch(extra, keep[i]) >= 0)
+                    fromExtra[e++] = keep[i];
+                else
+                    toRemoved[r++] = keep[i];
+            }
+            extra = minus(extra, fromExtra, e);
+            removed = union(removed, toRemoved, r);
+        } else {
+            // Tombstoned: still encoded, revive it; otherwise: add to extra
+            long[] fromRemoved = new long[kept];
+            long[] toExtra = new long[kept];
+            int t = 0;
+            int x = 0;
+            for (int i = 0; i < kept; i++) {
+                if (Arrays.binarySearch(removed, keep[i]) >= 0)
+                    fromRemoved[t++] = keep[i];
+                else
+                    toExtra[x++] = keep[i];
+            }
+            removed = minus(removed, fromRemoved, t);
+            extra = union(extra, toExtra, x);
+        }
+    }
+
+    // Folds the side arrays into the encoding once they cost more than a rebuild amortizes
+    private void compactIfNeeded() {
+        if (extra.length + removed.length <= 16 + encoded / 8)
+            return;
+        long[] refs = new long[size()];
+        Cursor c = cursor();
+        int n = 0;
+        for (long ref = c.next(); ref > 0; ref = c.next())
+            refs[n++] = ref;
+        data = new byte[Math.max(16, length)];
+        length = 0;
+        encoded = 0;
+        last = 0;
+        skipBase = new long[1];
+        skipOffset = new int[1];
+        skips = 0;
+        extra = NONE;
+        removed = NONE;
+        for (int i = 0; i < n; i++)
+            append(refs[i]);
+    }
+
+    // Merges two sorted, disjoint arrays into a new one
+    private static long[] union(long[] sorted, long[] more, int n) {
+        if (n == 0)
+            return sorted;
+        long[] merged = new long[sorted.length + n];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < sorted.length && j < n)
+            merged[k++] = sorted[i] < more[j] ? sorted[i++] : more[j++];
+        while (i < sorted.length)
+            merged[k++] = sorted[i++];
+        while (j < n)
+            merged[k++] = more[j++];
+        return merged;
+    }
+
+    // Returns a new sorted array without the first n references of a sorted subset
+    private static long[] minus(long[] sorted, long[] less, int n) {
+        if (n == 0)
+            return sorted;
+        if (n == sorted.length)
+            return NONE;
+        long[] rest = new long[sorted.length - n];
+        int j = 0;
+        int k = 0;
+        for (long ref : sorted) {
+            if (j < n && less[j] == ref)
+                j++;
+            else
+                rest[k++] = ref;
+        }
+        return rest;
+    }
+
+    /**
+     * Walks a snapshot of a posting list in ascending order.
+     * A cursor is used by a single thread.
+     */
+    static final class Cursor {
+        private final byte[] data;
+        private final int length;
+        private final long[] skipBase;
+        private final int[] skipOffset;
+        private final int skips;
+        private final long[] extra;
+        private final long[] removed;
+
+        private int offset; // Next byte to decode
+        private long current; // Last decoded reference, 0 before the first
+        private long encodedHead; // Next reference of the encoding, not yet returned; 0 if exhausted
+        private int extraPos;
+        private int block; // Last block the cursor jumped to; targets only grow, so searches start there
+
+        Cursor(byte[] data, int length, long[] skipBase, int[] skipOffset, int skips, long[] extra, long[] removed) {
+            this.data = data;
+            this.length = length;
+            this.skipBase = skipBase;
+            this.skipOffset = skipOffset;
+            this.skips = skips;
+            this.extra = extra;
+            this.removed = removed;
+            this.encodedHead = decode();
+        }
+
+        /**
+         * @return The next reference, or -1 when the list is exhausted.
+         */
+        long next() {
+            while (true) {
+                long e = encodedHead;
+                long x = extraPos < extra.length ? extra[extraPos] : 0;
+                if (e == 0 && x == 0)
+                    return -1;
+                if (x != 0 && (e == 0 || x < e)) {
+                    extraPos++;
+                    return x;
+                }
+                encodedHead = decode();
+                if (removed.length == 0 || Arrays.binarySearch(removed, e) < 0)
+                    return e;
+            }
+        }
+
+        /**
+         * Moves to the first reference at or above a target, skipping the blocks below it.
+         *
+         * @param target The reference to reach.
+         * @return The first reference at or above the target, or -1 if there is none.
+         */
+        long advanceTo(long target) {
+            if (encodedHead != 0 && encodedHead < target && block + 1 < skips && skipBase[block + 1] < target) {
+                // Find the last block starting below the target, galloping from the current one
+                int lo = block + 1;
+                int step = 1;
+                while (lo + step < skips && skipBase[lo + step] < target) {
+                    lo += step;
+                    step <<= 1;
+                }
+                int hi = Math.min(lo + step, skips) - 1;
+                while (lo < hi) {
+                    int mid = (lo + hi + 1) >>> 1;
+                    if (skipBase[mid] < target)
+                        lo = mid;
+                    else
+                        hi = mid - 1;
+                }
+                block = lo;
+                if (skipBase[lo] >= encodedHead) { // Every reference skipped is below the target
+                    offset = skipOffset[lo];
+                    current = skipBase[lo];
+                    encodedHead = decode();
+                }
+            }
+            while (encodedHead != 0 && encodedHead < target)
+                encodedHead = decode();
+            while (extraPos < extra.length && extra[extraPos] < target)
+                extraPos++;
+            long ref;
+            do {
+                ref = next();
+            } while (ref != -1 && ref < target);
+            return ref;
+        }
+
+        // Decodes the next reference of the encoding, or returns 0 at its end
+        private long decode() {
+            if (offset >= length)
+                return 0;
+            long gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                gap |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            current += gap;
+            return current;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.repository.query.ProduitField;
+
+import java.util.*; // For EnumMap, NavigableSet and friends
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet; // Sorted, thread-safe set used for range indexes
+
+/**
+ * Secondary indexes over the products of a repository.
+ * Maintains a set of references and a price index per TypeProduit, sorted indexes on prix,
+ * quantiteStock and datePremption, and a NomIndex for name searches, so that typed queries only visit matching
+ * products instead of the whole store.
+ * <p>
+ * All structures are concurrent: readers never lock, and writers of the same reference are
+ * expected to be serialized by the owning repository. Products are immutable, so the owner
+ * passes the product it is replacing and its entries are found from its values, without
+ * keeping a copy of the indexed values per reference.
+ */
+class ProduitIndex {
+
+    // References of the products of each type; the EnumMap itself is never modified after construction
+    private final Map<TypeProduit, Set<Long>> byType = new EnumMap<>(TypeProduit.class);
+    private final NavigableSet<Entry> byPrix = new ConcurrentSkipListSet<>(); // Sorted on price, then reference
+    // The entries of byPrix split by type, for the cheapest and priciest product of each type
+    private final Map<TypeProduit, NavigableSet<Entry>> prixByType = new EnumMap<>(TypeProduit.class);
+    private final NavigableSet<Entry> byStock = new ConcurrentSkipListSet<>(); // Sorted on stock, then reference
+    // Sorted on expiry (epoch milliseconds, exact as a double), then reference; products without expiry are left out
+    private final NavigableSet<Entry> byPremption = new ConcurrentSkipListSet<>();
+    private final NomIndex byNom = new NomIndex(); // Prefix and trigram indexes on the folded name
+
+    ProduitIndex() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize The number of products expected, to size the sets of references per type.
+     */
+    ProduitIndex(int expectedSize) {
+        for (TypeProduit type : TypeProduit.values()) {
+            byType.put(type, ConcurrentHashMap.newKeySet(expectedSize / TypeProduit.values().length));
+            prixByType.put(type, new ConcurrentSkipListSet<>());
+        }
+    }
+
+    /**
+     * Indexes a product under its values, replacing the entries of the product it replaces.
+     *
+     * @param p The product to index; its reference must be set.
+     * @param previous The product previously stored under the same reference, or null.
+     */
+    void add(Produit p, Produit previous) {
+        long ref = p.getRef();
+        if (previous == null) {
+            byNom.add(ref, p.getNom());
+        } else if (!Objects.equals(previous.getNom(), p.getNom())) {
+            byNom.remove(ref, previous.getNom());
+            byNom.add(ref, p.getNom());
+        }
+        if (previous != null) {
+            if (sameKeys(previous, p))
+                return; // Only the name or unindexed fields changed
+            removeKeys(previous);
+        }
+        Entry prix = new Entry(p.getPrix(), ref);
+        if (p.getType() != null) {
+            byType.get(p.getType()).add(ref);
+            prixByType.get(p.getType()).add(prix);
+        }
+        byPrix.add(prix);
+        byStock.add(new Entry(p.getQuantiteStock(), ref));
+        if (p.getDatePremptionMillis() != RowFilter.NO_DATE)
+            byPremption.add(new Entry(p.getDatePremptionMillis(), ref));
+    }
+
+    /**
+     * Removes every index entry of a product.
+     *
+     * @param p The product as it was indexed.
+     */
+    void remove(Produit p) {
+        byNom.remove(p.getRef(), p.getNom());
+        removeKeys(p);
+    }
+
+    private void removeKeys(Produit p) {
+        long ref = p.getRef();
+        Entry prix = new Entry(p.getPrix(), ref);
+        if (p.getType() != null) {
+            byType.get(p.getType()).remove(ref);
+            prixByType.get(p.getType()).remove(prix);
+        }
+        byPrix.remove(prix);
+        byStock.remove(new Entry(p.getQuantiteStock(), ref));
+        if (p.getDatePremptionMillis() != RowFilter.NO_DATE)
+            byPremption.remove(new Entry(p.getDatePremptionMillis(), ref));
+    }
+
+    private static boolean sameKeys(Produit a, Produit b) {
+        return a.getType() == b.getType()
+                && Double.compare(a.getPrix(), b.getPrix()) == 0
+                && Double.compare(a.getQuantiteStock(), b.getQuantiteStock()) == 0
+                && a.getDatePremptionMillis() == b.getDatePremptionMillis();
+    }
+
+    /**
+     * @param type The product type.
+     * @return A live view of the references indexed under the type.
+     */
+    Set<Long> refsOfType(TypeProduit type) {
+        return byType.get(type);
+    }
+
+    /**
+     * @param type The product type.
+     * @return A live view of the price entries of the products of the type, cheapest first.
+     */
+    NavigableSet<Entry> prixOfType(TypeProduit type) {
+        return prixByType.get(type);
+    }
+
+    /**
+     * @param folded A folded name prefix.
+     * @return The references of the names starting with the prefix, in folded name order.
+     */
+    Iterable<Long> nomStartingWith(String folded) {
+        return byNom.startingWith(folded);
+    }
+
+    /**
+     * @param folded A folded name fragment.
+     * @return Candidate references, in ascending order, whose names may contain the fragment;
+     *         null if the fragment is too short to be looked up.
+     */
+    Iterable<Long> nomContaining(String folded) {
+        return byNom.containing(folded);
+    }
+
+    /**
+     * @param folded A folded name fragment.
+     * @return An upper bound of the candidates nomContaining returns, or -1 if it returns null.
+     */
+    long estimateNomContaining(String folded) {
+        return byNom.estimateContaining(folded);
+    }
+
+    /**
+     * @param min The lowest price, inclusive.
+     * @param max The highest price, inclusive.
+     * @return A live, price-ordered view of the entries in the range.
+     */
+    NavigableSet<Entry> prixBetween(double min, double max) {
+        return range(ProduitField.PRIX, min, true, max, true);
+    }
+
+    /**
+     * @param seuil The threshold, exclusive.
+     * @return A live, stock-ordered view of the entries strictly above the threshold.
+     */
+    NavigableSet<Entry> quantiteStockAbove(double seuil) {
+        return range(ProduitField.QUANTITE_STOCK, seuil, false, Double.POSITIVE_INFINITY, true);
+    }
+
+    /**
+     * @param instant The instant in epoch milliseconds, exclusive.
+     * @return A live, expiry-ordered view of the products expiring strictly before the instant.
+     */
+    NavigableSet<Entry> expiringBefore(long instant) {
+        return range(ProduitField.DATE_PREMPTION, Double.NEGATIVE_INFINITY, true, instant, false);
+    }
+
+    /**
+     * Returns the entries of a numeric index whose value lies in a range.
+     *
+     * @param field PRIX, QUANTITE_STOCK or DATE_PREMPTION (in epoch milliseconds).
+     * @param min The lower bound.
+     * @param minInclusive Whether the lower bound is accepted.
+     * @param max The upper bound.
+     * @param maxInclusive Whether the upper bound is accepted.
+     * @return A live, value-ordered view of the entries in the range.
+     */
+    NavigableSet<Entry> range(ProduitField field, double min, boolean minInclusive, double max, boolean maxInclusive) {
+        NavigableSet<Entry> sorted = sortedOn(field);
+        // An inclusive bound must admit every reference holding the bound value, an exclusive one none of them
+        Entry from = new Entry(min, minInclusive ? Long.MIN_VALUE : Long.MAX_VALUE);
+        Entry to = new Entry(max, maxInclusive ? Long.MAX_VALUE : Long.MIN_VALUE);
+        if (from.compareTo(to) > 0)
+            return Collections.emptyNavigableSet();
+        return sorted.subSet(from, minInclusive, to, maxInclusive);
+    }
+
+    /**
+     * @param field PRIX, QUANTITE_STOCK or DATE_PREMPTION.
+     * @param p A product.
+     * @return The value the product is indexed under in the sorted index of the field.
+     */
+    static double valueOf(ProduitField field, Produit p) {
+        switch (field) {
+            case PRIX:
+                return p.getPrix();
+            case QUANTITE_STOCK:
+                return p.getQuantiteStock();
+            case DATE_PREMPTION:
+                return p.getDatePremptionMillis();
+            default:
+                throw new IllegalArgumentException("No sorted index on " + field);
+        }
+    }
+
+    private NavigableSet<Entry> sortedOn(ProduitField field) {
+        switch (field) {
+            case PRIX:
+                return byPrix;
+            case QUANTITE_STOCK:
+                return byStock;
+            case DATE_PREMPTION:
+                return byPremption;
+            default:
+                throw new IllegalArgumentException("No sorted index on " + field);
+        }
+    }
+
+    /**
+     * An index entry: the indexed value paired with the reference of the product holding it.
+     * Ordering on (value, ref) keeps entries unique even when many products share a value.
+     */
+    static final class Entry implements Comparable<Entry> {
+        final double value;
+        final long ref;
+
+        Entry(double value, long ref) {
+            this.value = value;
+            this.ref = ref;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int c = Double.compare(value, o.value);
+            return c != 0 ? c : Long.compare(ref, o.ref);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry && compareTo((Entry) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(value) * 31 + Long.hashCode(ref);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary form of a Produit used by the write-ahead log and snapshots.
+ * Every field is written in a fixed order; nulls are encoded with sentinel values.
+ */
+final class ProduitRecords {
+
+    private static final TypeProduit[] TYPES = TypeProduit.values();
+
+    private ProduitRecords() {
+    }
+
+    /**
+     * Writes a product.
+     *
+     * @param out The destination.
+     * @param p The product; its reference must be set.
+     * @throws IOException if the destination fails.
+     */
+    static void write(DataOutput out, Produit p) throws IOException {
+        out.writeLong(p.getRef());
+        out.writeBoolean(p.getNom() != null);
+        if (p.getNom() != null)
+            out.writeUTF(p.getNom());
+        out.writeDouble(p.getPrix());
+        out.writeDouble(p.getQuantiteStock());
+        out.writeLong(p.getDateCreationMillis());
+        out.writeLong(p.getDatePremptionMillis());
+        out.writeByte(p.getType() == null ? RowFilter.NO_TYPE : p.getType().ordinal());
+        out.writeLong(p.getVersion());
+    }
+
+    /**
+     * Reads a product written by {@link #write}.
+     *
+     * @param in The source.
+     * @return The product.
+     * @throws IOException if the source fails or holds an invalid record.
+     */
+    static Produit read(DataInput in) throws IOException {
+        long ref = in.readLong();
+        String nom = in.readBoolean() ? in.readUTF() : null;
+        double prix = in.readDouble();
+        double quantiteStock = in.readDouble();
+        long dateCreation = in.readLong();
+        long datePremption = in.readLong();
+        byte type = in.readByte();
+        if (type != RowFilter.NO_TYPE && (type < 0 || type >= TYPES.length))
+            throw new IOException("Invalid product type ordinal " + type);
+        long version = in.readLong();
+        return new Produit(ref, nom, prix, quantiteStock, dateCreation, datePremption,
+                type == RowFilter.NO_TYPE ? null : TYPES[type], version);
+    }
+}
@@ -3,45 +3,191 @@ package org.example.repository;
 import org.example.entity.Produit;
 import org.example.entity.ProduitBuilder; // Builder for creating Produit objects
 import org.example.entity.TypeProduit; // Enum or class representing product types
+import org.example.repository.event.ProduitEvent; // Change events published by every write
+import org.example.repository.event.ProduitEventLog;
+import org.example.repository.metrics.Measurable; // Size, footprint and scan gauges for the metrics
+import org.example.repository.metrics.RepositoryMetrics;
+import org.example.repository.metrics.ScanCounter;
+import org.example.repository.query.Criterion;
+import org.example.repository.query.Folding; // Case- and accent-insensitive names
+import org.example.repository.query.ProduitField; // Fields of the sorted indexes
+import org.example.repository.query.ProduitQuery; // Structured queries answered by the planner
 
 import java.util.*; // For data structures like Map and List
+import java.util.concurrent.atomic.AtomicLong; // Lock-free reference generator
+import java.util.function.DoubleUnaryOperator; // For computing new prices
 import java.util.function.Predicate; // For functional-style filtering
 import java.util.stream.Collectors; // For converting streams to lists
 
 /**
  * Implementation of the IProduitRepository interface.
  * This class uses a Singleton pattern and manages Produit entities with CRUD operations.
+ * <p>
+ * The repository is safe for use by multiple threads: products live in a concurrent map,
+ * references come from an atomic counter, and writers touching the same reference are
+ * serialized on one of a fixed set of lock stripes.
+ * Secondary indexes on type, price, stock, expiry and name are kept in step with the map by
+ * every write, so typed queries only visit matching products. Structured queries go through a planner
+ * that picks the most selective index and filters the remaining criteria on the fly.
+ * Every change is published, under the lock of the changed product, to an event log that
+ * subscribers follow instead of polling findAll().
+ * {@link #snapshot()} pins the current version of the whole store for consistent reports: while
+ * a snapshot is open, writes keep the products they replace in a {@link VersionHistory}.
+ * Inventory totals per type are kept up to date by the same writes, so {@link #inventory()} never
+ * scans.
+ * <p>
+ * A large catalog is loaded at startup by {@link RepositoryStartup}, which sizes the store from the
+ * expected number of products and loads it in parallel batches, optionally while serving queries.
+ * <p>
+ * A repository created with {@link #newShard} holds one partition of a sharded catalog: it hands
+ * out and accepts only the references of its own residue class, so that independent shards never
+ * allocate the same reference and the owner of any reference is known from the reference alone.
+ * <p>
+ * The repository is {@link Measurable}: searches count the products they visit, unless metrics
+ * are switched off, and the size and heap footprint are computed on demand.
  */
-public class ProduitRepositoryImpl implements IProduitRepository {
+public class ProduitRepositoryImpl implements IProduitRepository, Measurable {
 
-    // In-memory data store for products, using a HashMap with the product reference as the key
-    private Map<Long, Produit> produits = new HashMap<>();
-    private long nbrProduit; // Counter for generating unique product references
+    // Number of lock stripes; a power of two so that a stripe can be picked with a mask
+    private static final int STRIPES = 64;
 
-    // Singleton instance of the repository
-    private static ProduitRepositoryImpl produitRepository;
+    // Heap of a product with its map slots and index entries, and of each char of its name;
+    // measured on a 64-bit JVM with compressed references and compact strings
+    private static final long BYTES_PER_PRODUCT = 502;
+    private static final long BYTES_PER_NAME_CHAR = 5;
+    private static final int NAME_SAMPLE = 256; // Names read to estimate the average length
+
+    // In-memory data store for products, keyed by the primitive product reference
+    private final LongProduitMap produits;
+    private final AtomicLong nbrProduit = new AtomicLong(); // Counter for generating unique product references
+    private final long firstRef; // Reference generated first; later ones follow every refStride
+    private final int refStride; // 1 unless the repository is a shard
+
+    // Writers of the same reference share a stripe, writers of different references rarely do
+    private final Object[] locks = new Object[STRIPES];
+
+    private final ProduitIndex index; // Secondary indexes maintained by save/update/detele
+    private final ScanCounter scans = new ScanCounter(); // Products visited and returned by searches
+    private final QueryPlanner planner;
+    private final ProduitEventLog events = new ProduitEventLog(); // Ordered change stream for subscribers
+    private final VersionHistory history = new VersionHistory(locks); // Past versions read by open snapshots
+    private final InventorySummaries inventory = new InventorySummaries(locks); // Running totals per type
 
     /**
      * Private constructor to enforce Singleton pattern.
-     * Calls the init() method to populate the repository with initial data.
+     * Calls the init() method to populate the repository with initial data when requested.
+     *
+     * @param seed Whether to add the default products.
+     * @param firstRef The first reference to generate.
+     * @param refStride The gap between generated references.
+     * @param expectedSize The number of products expected, to size the store and indexes up front.
+     */
+    private ProduitRepositoryImpl(boolean seed, long firstRef, int refStride, int expectedSize) {
+        this.firstRef = firstRef;
+        this.refStride = refStride;
+        this.produits = new LongProduitMap(expectedSize);
+        this.index = new ProduitIndex(expectedSize);
+        this.planner = new QueryPlanner(index, produits::get, produits.values(), scans);
+        for (int i = 0; i < STRIPES; i++)
+            locks[i] = new Object();
+        if (seed)
+            init();
+    }
+
+    /**
+     * Returns the lock stripe guarding the given reference.
+     *
+     * @param ref The product reference.
+     * @return The monitor to synchronize on.
      */
-    private ProduitRepositoryImpl() {
-        init();
+    private Object lockFor(long ref) {
+        return locks[stripeOf(ref)];
+    }
+
+    private static int stripeOf(long ref) {
+        int h = (int) (ref ^ (ref >>> 32));
+        h ^= (h >>> 16); // Spread the bits so that consecutive references land on different stripes
+        return h & (STRIPES - 1);
+    }
+
+    // The reference generated at a position of the counter, counted from 1
+    private long refAt(long n) {
+        return firstRef + (n - 1) * refStride;
+    }
+
+    // The position of the counter at which a reference of this repository is generated
+    long positionOf(long ref) {
+        return (ref - firstRef) / refStride + 1;
+    }
+
+    // Rejects the references another shard is responsible for
+    private void checkOwned(long ref) {
+        if (refStride != 1 && (ref < firstRef || (ref - firstRef) % refStride != 0))
+            throw new IllegalArgumentException("Reference " + ref + " belongs to another shard");
+    }
+
+    /**
+     * An action applied to the part of a batch guarded by one lock stripe.
+     */
+    private interface StripeAction {
+        /**
+         * @param positions Positions in the batch, grouped by stripe.
+         * @param from First position of the group, inclusive.
+         * @param to Last position of the group, exclusive.
+         */
+        void run(int[] positions, int from, int to);
+    }
+
+    /**
+     * Groups the elements of a batch by lock stripe (a counting sort on the stripe number) and
+     * runs the action for each group while holding its stripe, so that a batch takes each lock
+     * at most once instead of once per element.
+     *
+     * @param refs The reference of each element of the batch.
+     * @param action The work to do for each group.
+     */
+    private void forEachStripe(long[] refs, StripeAction action) {
+        int[] starts = new int[STRIPES + 1];
+        for (long ref : refs)
+            starts[stripeOf(ref) + 1]++;
+        for (int s = 0; s < STRIPES; s++)
+            starts[s + 1] += starts[s];
+        int[] fill = Arrays.copyOf(starts, STRIPES);
+        int[] positions = new int[refs.length];
+        for (int i = 0; i < refs.length; i++)
+            positions[fill[stripeOf(refs[i])]++] = i;
+        for (int s = 0; s < STRIPES; s++) {
+            if (starts[s] == starts[s + 1])
+                continue;
+            synchronized (locks[s]) {
+                action.run(positions, starts[s], starts[s + 1]);
+            }
+        }
     }
 
     /**
      * Saves a new product into the repository.
      * Assigns a unique reference to the product and adds it to the map.
+     * A reference generated while a concurrent update stored a product under it is taken: the
+     * product is then saved under the next one.
      * 
      * @param p The product to save.
-     * @return The saved product with its reference set.
+     * @return The saved product with its reference set; it is the stored instance.
      */
     @Override
     public Produit save(Produit p) {
-        Long ref = ++nbrProduit; // Increment the product counter to generate a new reference
-        p.setRef(ref); // Set the reference to the product
-        produits.put(ref, p); // Add the product to the map
-        return p; // Return the saved product
+        while (true) {
+            long ref = refAt(nbrProduit.incrementAndGet()); // Atomically generate a new, never reused reference
+            Produit saved = p.withRefAndVersion(ref, 1); // Stored under its reference, as its first version
+            synchronized (lockFor(ref)) {
+                if (produits.get(ref) != null)
+                    continue; // Taken by an update with an explicit reference; try the next one
+                store(ref, null, saved); // Add the product to the map
+                index.add(saved, null); // Index it under its type, price and stock
+                events.publish(ProduitEvent.Type.CREATED, ref, null, saved);
+            }
+            return saved; // Return the saved product
+        }
     }
 
     /**
@@ -51,31 +197,154 @@ public class ProduitRepositoryImpl implements IProduitRepository {
      */
     @Override
     public List<Produit> findAll() {
-        return produits.values().stream().collect(Collectors.toList()); // Convert map values to a list
+        return produits.toList(); // Copied once, a segment of the map at a time
+    }
+
+    /**
+     * Returns a spliterator over the live map, without copying all of it.
+     * It is the map's own weakly consistent spliterator: each of its segments is copied when the
+     * traversal reaches it, so only about 1/64th of the store is held at a time. It splits between
+     * segments, then within the copy of the last one, for parallel streams; products are visited
+     * in no particular order.
+     *
+     * @return A weakly consistent spliterator over the products.
+     */
+    @Override
+    public Spliterator<Produit> spliterator() {
+        return produits.values().spliterator();
+    }
+
+    /**
+     * Returns a page of products ordered by reference.
+     * References are generated in sequence, so while most of them are in use the page is found by
+     * probing references from 1; a sparse store falls back to a top-N pass over the map.
+     *
+     * @param offset The number of products to skip.
+     * @param limit The maximum number of products to return.
+     * @return The products of the page, in ascending reference order.
+     */
+    @Override
+    public List<Produit> findPage(int offset, int limit) {
+        long last = nbrProduit.get();
+        if (!isDense(last))
+            return IProduitRepository.super.findPage(offset, limit);
+        List<Produit> page = new ArrayList<>(Math.min(limit, produits.size()));
+        int skip = offset;
+        for (long n = 1; n <= last && page.size() < limit; n++) {
+            Produit p = produits.get(refAt(n));
+            if (p == null)
+                continue;
+            if (skip > 0)
+                skip--;
+            else
+                page.add(p);
+        }
+        return page;
+    }
+
+    /**
+     * Returns the products following a reference, probing the next references in sequence while
+     * the store is dense.
+     *
+     * @param afterRef The reference after which the page starts, excluded.
+     * @param limit The maximum number of products to return.
+     * @return The products of the page, in ascending reference order.
+     */
+    @Override
+    public List<Produit> findPageAfter(long afterRef, int limit) {
+        long last = nbrProduit.get();
+        if (!isDense(last))
+            return IProduitRepository.super.findPageAfter(afterRef, limit);
+        List<Produit> page = new ArrayList<>(Math.min(limit, produits.size()));
+        long from = afterRef < firstRef ? 1 : positionOf(afterRef) + 1;
+        for (long n = from; n <= last && page.size() < limit; n++) {
+            Produit p = produits.get(refAt(n));
+            if (p != null)
+                page.add(p);
+        }
+        return page;
+    }
+
+    // Whether at least half of the references handed out so far are still in use
+    private boolean isDense(long last) {
+        return produits.size() * 2L >= last;
     }
 
     /**
      * Finds a product by its reference.
+     * The stored instance is returned as is: products are immutable, so no copy is needed.
      * 
      * @param ref The reference of the product to find.
      * @return An Optional containing the product if found, or empty if not found.
      */
     @Override
     public Optional<Produit> finfByRef(Long ref) {
-        Produit prd = produits.get(ref); // Retrieve the product from the map
+        if (ref == null)
+            return Optional.empty();
+        Produit prd = produits.get(ref); // Retrieve the product from the map (lock-free read)
         return Optional.ofNullable(prd); // Wrap the product in an Optional (null-safe)
     }
 
+    /**
+     * Finds a product by its reference; allocates nothing.
+     *
+     * @param ref The reference of the product to find.
+     * @return The product, or null if there is none.
+     */
+    @Override
+    public Produit getByRef(long ref) {
+        return produits.get(ref);
+    }
+
     /**
      * Updates an existing product in the repository.
+     * If the product carries a reference that was never generated, the reference counter
+     * is moved past it, before the product is stored, so that later saves cannot hand out the
+     * same reference; a save that was handed it just before finds it taken and moves on.
      * 
      * @param p The updated product.
-     * @return The updated product.
+     * @return The updated product, as stored.
+     * @throws IllegalArgumentException if the product has no reference, or one of another shard.
      */
     @Override
     public Produit update(Produit p) {
-        produits.put(p.getRef(), p); // Replace the product in the map
-        return p; // Return the updated product
+        long ref = p.getRef();
+        if (!p.hasRef())
+            throw new IllegalArgumentException("Cannot update a product without a reference");
+        checkOwned(ref);
+        Produit updated;
+        synchronized (lockFor(ref)) {
+            nbrProduit.accumulateAndGet(positionOf(ref), Math::max); // Keep generated references ahead of explicit ones
+            Produit before = produits.get(ref);
+            updated = p.withVersion(nextVersion(before, p));
+            store(ref, before, updated); // Replace the product in the map
+            index.add(updated, before); // Re-index it, dropping the entries of the previous version
+            publishPut(ref, before, updated);
+        }
+        return updated; // Return the updated product
+    }
+
+    /**
+     * Stores a product with its reference and version as given, under its stripe lock.
+     *
+     * @param p The product to store.
+     * @return The product, as stored.
+     * @throws IllegalArgumentException if the product has no reference, or one of another shard.
+     */
+    @Override
+    public Produit restore(Produit p) {
+        long ref = p.getRef();
+        if (!p.hasRef())
+            throw new IllegalArgumentException("Cannot restore a product without a reference");
+        checkOwned(ref);
+        synchronized (lockFor(ref)) {
+            nbrProduit.accumulateAndGet(positionOf(ref), Math::max);
+            Produit before = produits.get(ref);
+            store(ref, before, p);
+            index.add(p, before);
+            publishPut(ref, before, p);
+        }
+        return p;
     }
 
     /**
@@ -85,7 +354,247 @@ public class ProduitRepositoryImpl implements IProduitRepository {
      */
     @Override
     public void detele(Long ref) {
-        produits.remove(ref); // Remove the product from the map
+        if (ref == null)
+            return; // Nothing can be stored under a null reference
+        synchronized (lockFor(ref)) {
+            Produit before = produits.get(ref);
+            if (before != null) {
+                store(ref, before, null); // Remove the product from the map
+                index.remove(before); // And from the secondary indexes
+                events.publish(ProduitEvent.Type.DELETED, ref, before, null);
+            }
+        }
+    }
+
+    // Version given by a blind update: never lower than the stored one plus one, or than the product's own
+    private static long nextVersion(Produit before, Produit p) {
+        return Math.max(before == null ? 1 : before.getVersion() + 1, p.getVersion());
+    }
+
+    /**
+     * Updates a product if its stored version is the one it carries, under its stripe lock.
+     *
+     * @param p The product with updated details and the version it was read with.
+     * @return The updated product, carrying its new version.
+     * @throws OptimisticLockException if the stored version differs.
+     * @throws IllegalArgumentException if the product has no reference, or one of another shard.
+     */
+    @Override
+    public Produit updateVersioned(Produit p) {
+        long ref = p.getRef();
+        if (!p.hasRef())
+            throw new IllegalArgumentException("Cannot update a product without a reference");
+        checkOwned(ref);
+        Produit updated;
+        synchronized (lockFor(ref)) {
+            Produit before = produits.get(ref);
+            long actual = before == null ? 0 : before.getVersion();
+            if (actual != p.getVersion())
+                throw new OptimisticLockException(ref, p.getVersion(), actual);
+            nbrProduit.accumulateAndGet(positionOf(ref), Math::max);
+            updated = p.withVersion(actual + 1);
+            store(ref, before, updated);
+            index.add(updated, before);
+            publishPut(ref, before, updated);
+        }
+        return updated;
+    }
+
+    /**
+     * Adds to the stock of a product under its stripe lock, without retries.
+     * The stored product is replaced by an updated copy; readers holding the previous one keep it.
+     *
+     * @param ref The reference of the product.
+     * @param delta The quantity to add, negative to remove stock.
+     * @return The product as stored after the adjustment.
+     * @throws NoSuchElementException if there is no product with this reference.
+     */
+    @Override
+    public Produit adjustStock(long ref, double delta) {
+        synchronized (lockFor(ref)) {
+            Produit current = stored(ref);
+            return replace(current, current.getPrix(), current.getQuantiteStock() + delta);
+        }
+    }
+
+    /**
+     * Replaces the price of a product under its stripe lock; the function is called exactly once.
+     *
+     * @param ref The reference of the product.
+     * @param fn Computes the new price from the current one.
+     * @return The product as stored after the change.
+     * @throws NoSuchElementException if there is no product with this reference.
+     */
+    @Override
+    public Produit reprice(long ref, DoubleUnaryOperator fn) {
+        synchronized (lockFor(ref)) {
+            Produit current = stored(ref);
+            return replace(current, fn.applyAsDouble(current.getPrix()), current.getQuantiteStock());
+        }
+    }
+
+    // The stored product; called with the stripe lock held
+    private Produit stored(long ref) {
+        Produit current = produits.get(ref);
+        if (current == null)
+            throw new NoSuchElementException("No product with reference " + ref);
+        return current;
+    }
+
+    // Stores a copy with a new price and stock and the next version, in a single allocation; called with the stripe lock held
+    private Produit replace(Produit current, double prix, double quantiteStock) {
+        Produit next = new Produit(current.getRef(), current.getNom(), prix, quantiteStock,
+                current.getDateCreationMillis(), current.getDatePremptionMillis(), current.getType(), current.getVersion() + 1);
+        store(next.getRef(), current, next);
+        index.add(next, current);
+        events.publish(ProduitEvent.Type.UPDATED, next.getRef(), current, next);
+        return next;
+    }
+
+    // Changes the map under the stripe lock of the reference, keeping the replaced product for open snapshots
+    private void store(long ref, Produit before, Produit after) {
+        VersionHistory.Retired retired = history.retire(ref, before);
+        if (after == null)
+            produits.remove(ref);
+        else
+            produits.put(ref, after);
+        history.stamp(ref, retired);
+        inventory.apply(stripeOf(ref), before, after);
+    }
+
+    // Publishes a creation or an update, depending on whether the reference was in use
+    private void publishPut(long ref, Produit before, Produit after) {
+        events.publish(before == null ? ProduitEvent.Type.CREATED : ProduitEvent.Type.UPDATED, ref, before, after);
+    }
+
+    /**
+     * Returns the log to which every change of this repository is published.
+     * Subscribe to it to follow the changes, starting from a known sequence number.
+     *
+     * @return The event log.
+     */
+    public ProduitEventLog events() {
+        return events;
+    }
+
+    /**
+     * Saves a batch of new products.
+     * The references of the whole batch are reserved with a single atomic operation, and each
+     * lock stripe is taken once for all the products it guards. A reserved reference that a
+     * concurrent update has meanwhile stored a product under is left to it, and the product is
+     * saved under a new reference instead.
+     *
+     * @param batch The products to save.
+     * @return The saved products, in the order given, with their references set.
+     */
+    @Override
+    public List<Produit> saveAll(Collection<Produit> batch) {
+        int n = batch.size();
+        List<Produit> saved = new ArrayList<>(n);
+        if (n == 0)
+            return saved;
+        long first = nbrProduit.getAndAdd(n) + 1; // Reserve a contiguous block of references
+        long[] refs = new long[n];
+        for (Produit p : batch) {
+            int i = saved.size();
+            refs[i] = refAt(first + i);
+            saved.add(p.withRefAndVersion(refs[i], 1));
+        }
+        boolean[] taken = new boolean[n];
+        forEachStripe(refs, (positions, from, to) -> {
+            for (int k = from; k < to; k++) {
+                Produit p = saved.get(positions[k]);
+                if (produits.get(p.getRef()) != null) {
+                    taken[positions[k]] = true; // Stored meanwhile by an update with an explicit reference
+                    continue;
+                }
+                store(p.getRef(), null, p);
+                index.add(p, null);
+                events.publish(ProduitEvent.Type.CREATED, p.getRef(), null, p);
+            }
+        });
+        for (int i = 0; i < n; i++)
+            if (taken[i])
+                saved.set(i, save(saved.get(i)));
+        return saved;
+    }
+
+    /**
+     * Updates a batch of products, taking each lock stripe once.
+     *
+     * @param batch The products with updated details.
+     * @return The updated products as stored, in the order given.
+     * @throws IllegalArgumentException if a product has no reference or one of another shard; nothing is updated then.
+     */
+    @Override
+    public List<Produit> updateAll(Collection<Produit> batch) {
+        List<Produit> updated = new ArrayList<>(batch);
+        long[] refs = new long[updated.size()];
+        long max = 0;
+        for (int i = 0; i < refs.length; i++) {
+            if (!updated.get(i).hasRef())
+                throw new IllegalArgumentException("Cannot update a product without a reference");
+            refs[i] = updated.get(i).getRef();
+            checkOwned(refs[i]);
+            max = Math.max(max, refs[i]);
+        }
+        if (max > 0)
+            nbrProduit.accumulateAndGet(positionOf(max), Math::max); // Once for the whole batch, before any is stored
+        forEachStripe(refs, (positions, from, to) -> {
+            for (int k = from; k < to; k++) {
+                int i = positions[k];
+                Produit before = produits.get(refs[i]);
+                Produit p = updated.get(i).withVersion(nextVersion(before, updated.get(i)));
+                updated.set(i, p); // Each position is written by the single stripe that owns it
+                store(refs[i], before, p);
+                index.add(p, before);
+                publishPut(refs[i], before, p);
+            }
+        });
+        return updated;
+    }
+
+    /**
+     * Deletes a batch of products, taking each lock stripe once.
+     *
+     * @param batch The references of the products to delete.
+     */
+    @Override
+    public void deleteAll(Collection<Long> batch) {
+        long[] refs = new long[batch.size()];
+        int n = 0;
+        for (Long ref : batch)
+            if (ref != null)
+                refs[n++] = ref;
+        long[] targets = Arrays.copyOf(refs, n);
+        forEachStripe(targets, (positions, from, to) -> {
+            for (int k = from; k < to; k++) {
+                long ref = targets[positions[k]];
+                Produit before = produits.get(ref);
+                if (before != null) {
+                    store(ref, before, null);
+                    index.remove(before);
+                    events.publish(ProduitEvent.Type.DELETED, ref, before, null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Finds the products with the given references with plain map lookups.
+     *
+     * @param refs The references to look up.
+     * @return The products found, in the order of the references; missing ones are skipped.
+     */
+    @Override
+    public List<Produit> findAllByRefs(Collection<Long> refs) {
+        List<Produit> found = new ArrayList<>(refs.size());
+        for (Long ref : refs) {
+            Produit p = ref == null ? null : produits.get(ref);
+            if (p != null)
+                found.add(p);
+        }
+        return found;
     }
 
     /**
@@ -96,9 +605,343 @@ public class ProduitRepositoryImpl implements IProduitRepository {
      */
     @Override
     public List<Produit> search(Predicate<Produit> predicate) {
-        return produits.values().stream()
+        List<Produit> result = produits.values().stream()
                 .filter(predicate) // Apply the predicate as a filter
                 .collect(Collectors.toList()); // Collect matching products into a list
+        if (RepositoryMetrics.ENABLED)
+            scans.record(produits.size(), result.size()); // Every product was tested
+        return result;
+    }
+
+    /**
+     * Searches for products with a structured query.
+     * The planner scans the most selective index matching part of the criterion, or every
+     * product if none applies, and checks the full criterion on each candidate.
+     *
+     * @param query The query to run.
+     * @return The requested page of matching products.
+     */
+    @Override
+    public List<Produit> search(ProduitQuery query) {
+        return planner.execute(query);
+    }
+
+    /**
+     * Describes how a query would be answered, without running it.
+     *
+     * @param query The query to plan.
+     * @return A human-readable description of the chosen access path.
+     */
+    public String explain(ProduitQuery query) {
+        return planner.plan(query.getCriterion()).toString();
+    }
+
+    /**
+     * Finds all products of the given type using the type index.
+     *
+     * @param type The product type.
+     * @return A list of the products of that type.
+     */
+    @Override
+    public List<Produit> findByType(TypeProduit type) {
+        Objects.requireNonNull(type, "type");
+        List<Produit> result = new ArrayList<>();
+        for (Long ref : index.refsOfType(type)) {
+            Produit p = produits.get(ref);
+            if (p != null && p.getType() == type) // Skip products changed since the index was read
+                result.add(p);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the products in a price range by walking the sorted price index.
+     *
+     * @param min The lowest accepted price.
+     * @param max The highest accepted price.
+     * @return A list of the matching products, ordered by price.
+     */
+    @Override
+    public List<Produit> findByPrixBetween(double min, double max) {
+        return resolve(index.prixBetween(min, max), p -> p.getPrix() >= min && p.getPrix() <= max);
+    }
+
+    /**
+     * Finds the products with more stock than the threshold by walking the sorted stock index.
+     *
+     * @param seuil The stock threshold.
+     * @return A list of the matching products, ordered by stock quantity.
+     */
+    @Override
+    public List<Produit> findByQuantiteStockGreaterThan(double seuil) {
+        return resolve(index.quantiteStockAbove(seuil), p -> p.getQuantiteStock() > seuil);
+    }
+
+    /**
+     * Finds the products whose name starts with a prefix by walking the sorted name index,
+     * stopping after limit products.
+     *
+     * @param prefix The name prefix, matched ignoring case and accents.
+     * @param limit The maximum number of products to return.
+     * @return At most limit matching products, ordered by folded name, then reference.
+     */
+    @Override
+    public List<Produit> findByNomPrefix(String prefix, int limit) {
+        String folded = Folding.fold(prefix);
+        List<Produit> result = new ArrayList<>(Math.min(limit, 64));
+        Set<Long> seen = new HashSet<>(); // A product renamed during the walk can be indexed under both names
+        long scanned = 0;
+        for (Iterator<Long> it = index.nomStartingWith(folded).iterator(); it.hasNext() && result.size() < limit; scanned++) {
+            Produit p = produits.get(it.next());
+            // Re-check the current name: the product may have been renamed since the index was read
+            if (p != null && p.getNom() != null && Folding.fold(p.getNom()).startsWith(folded) && seen.add(p.getRef()))
+                result.add(p);
+        }
+        if (RepositoryMetrics.ENABLED)
+            scans.record(scanned, result.size());
+        return result;
+    }
+
+    /**
+     * Finds the products whose name contains a fragment by intersecting the posting lists of its
+     * trigrams, stopping after limit products. Fragments of fewer than three characters scan.
+     *
+     * @param fragment The name fragment, matched ignoring case and accents.
+     * @param limit The maximum number of products to return.
+     * @return At most limit matching products, ordered by reference.
+     */
+    @Override
+    public List<Produit> findByNomContaining(String fragment, int limit) {
+        String folded = Folding.fold(fragment);
+        Iterable<Long> candidates = index.nomContaining(folded);
+        if (candidates == null)
+            return IProduitRepository.super.findByNomContaining(fragment, limit);
+        List<Produit> result = new ArrayList<>(Math.min(limit, 64));
+        long scanned = 0;
+        for (Iterator<Long> it = candidates.iterator(); it.hasNext() && result.size() < limit; scanned++) {
+            Produit p = produits.get(it.next());
+            // Holding every trigram does not imply holding them in sequence: check the name itself
+            if (p != null && p.getNom() != null && Folding.fold(p.getNom()).contains(folded))
+                result.add(p);
+        }
+        if (RepositoryMetrics.ENABLED)
+            scans.record(scanned, result.size());
+        return result;
+    }
+
+    /**
+     * Finds the products expiring before an instant by walking the head of the expiry index.
+     *
+     * @param instant The instant, exclusive.
+     * @return The matching products, ordered by expiration date.
+     */
+    @Override
+    public List<Produit> findExpiringBefore(Date instant) {
+        long limit = instant.getTime();
+        return resolve(index.expiringBefore(limit), p -> isExpiredAt(p, limit));
+    }
+
+    /**
+     * Finds the products expiring in a window by walking a range of the expiry index.
+     *
+     * @param from The start of the window, inclusive.
+     * @param to The end of the window, exclusive.
+     * @return The matching products, ordered by expiration date.
+     */
+    @Override
+    public List<Produit> findExpiringBetween(Date from, Date to) {
+        long start = from.getTime();
+        long end = to.getTime();
+        return resolve(index.range(ProduitField.DATE_PREMPTION, start, true, end, false),
+                p -> p.getDatePremptionMillis() != Produit.NO_DATE && p.getDatePremptionMillis() >= start
+                        && p.getDatePremptionMillis() < end);
+    }
+
+    /**
+     * Finds the first product to expire at or after an instant from the expiry index.
+     *
+     * @param instant The instant.
+     * @return The product with the earliest such expiration date, or empty if there is none.
+     */
+    @Override
+    public Optional<Produit> findNextExpiring(Date instant) {
+        long start = instant.getTime();
+        for (ProduitIndex.Entry e : index.range(ProduitField.DATE_PREMPTION, start, true, Double.POSITIVE_INFINITY, true)) {
+            Produit p = produits.get(e.ref);
+            if (p != null && p.getDatePremptionMillis() != Produit.NO_DATE && p.getDatePremptionMillis() == (long) e.value)
+                return Optional.of(p); // Otherwise the product changed since the index was read: try the next entry
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Removes the products expiring before an instant, walking the head of the expiry index.
+     * Each product is checked again under its stripe lock before it is removed.
+     *
+     * @param instant The instant, exclusive.
+     * @return The removed products, ordered by expiration date.
+     */
+    @Override
+    public List<Produit> drainExpiredBefore(Date instant) {
+        long limit = instant.getTime();
+        List<Produit> drained = new ArrayList<>();
+        for (ProduitIndex.Entry e : index.expiringBefore(limit)) {
+            synchronized (lockFor(e.ref)) {
+                Produit p = produits.get(e.ref);
+                if (p != null && isExpiredAt(p, limit)) {
+                    store(e.ref, p, null);
+                    index.remove(p);
+                    events.publish(ProduitEvent.Type.DELETED, e.ref, p, null);
+                    drained.add(p);
+                }
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Reads the inventory totals of a type, maintained by every write: the cost does not depend
+     * on the number of products. The totals of each lock stripe are read atomically, those of
+     * different stripes one after the other.
+     *
+     * @param type The product type.
+     * @return The summary of the type.
+     */
+    @Override
+    public InventorySummary inventory(TypeProduit type) {
+        Produit cheapest = firstOfType(type, index.prixOfType(type).iterator());
+        Produit priciest = firstOfType(type, index.prixOfType(type).descendingIterator());
+        return inventory.summary(type, cheapest, priciest);
+    }
+
+    @Override
+    public Map<TypeProduit, InventorySummary> inventory() {
+        Map<TypeProduit, InventorySummary> summaries = new EnumMap<>(TypeProduit.class);
+        for (TypeProduit type : TypeProduit.values())
+            summaries.put(type, inventory(type));
+        return summaries;
+    }
+
+    // The first product along a walk of a price index whose stored price still matches its entry
+    private Produit firstOfType(TypeProduit type, Iterator<ProduitIndex.Entry> entries) {
+        while (entries.hasNext()) {
+            ProduitIndex.Entry e = entries.next();
+            Produit p = produits.get(e.ref);
+            if (p != null && p.getType() == type && Double.compare(p.getPrix(), e.value) == 0)
+                return p; // Otherwise a write is between the map and the index: move on
+        }
+        return null;
+    }
+
+    /**
+     * Recomputes the inventory totals from every product and compares them with the maintained
+     * ones. Writers wait while it runs, so that both sides describe the same products.
+     *
+     * @throws IllegalStateException if they differ, listing the differences.
+     */
+    public void checkInventory() {
+        withAllStripesLocked(0, () -> {
+            Map<TypeProduit, InventorySummary> expected = InventorySummary.of(produits.values());
+            List<String> differences = new ArrayList<>();
+            for (TypeProduit type : TypeProduit.values())
+                expected.get(type).compare(inventory(type), differences);
+            if (!differences.isEmpty())
+                throw new IllegalStateException("Inventory summaries out of date: " + differences);
+        });
+    }
+
+    private void withAllStripesLocked(int stripe, Runnable action) {
+        if (stripe == STRIPES) {
+            action.run();
+            return;
+        }
+        synchronized (locks[stripe]) {
+            withAllStripesLocked(stripe + 1, action);
+        }
+    }
+
+    /**
+     * Opens a read-only view of the repository as it is now.
+     * Taking a snapshot copies nothing and never waits for more than the writes in progress;
+     * every read of the snapshot then sees the products as they were when it was taken,
+     * whatever is written meanwhile. Close it once done, so that the versions it pins are dropped.
+     *
+     * @return The snapshot.
+     */
+    public ProduitSnapshot snapshot() {
+        return history.open(version -> new ProduitSnapshot(this, history, version));
+    }
+
+    // The product stored under a reference at a version of the history
+    Produit valueAt(long ref, long version) {
+        return history.valueAt(produits, ref, version);
+    }
+
+    // Every product stored now, for scans of a snapshot
+    Collection<Produit> currentProduits() {
+        return produits.values();
+    }
+
+    // The products stored now that the planner would consider for a criterion
+    Iterable<Produit> currentCandidates(Criterion criterion) {
+        return planner.plan(criterion).candidates();
+    }
+
+    /**
+     * @return The number of products stored.
+     */
+    @Override
+    public int size() {
+        return produits.size();
+    }
+
+    /**
+     * Estimates the heap used by the products, the map and the indexes from the number of
+     * products and the average length of a sample of their names.
+     *
+     * @return The estimated footprint, in bytes.
+     */
+    @Override
+    public long estimatedHeapBytes() {
+        long names = 0;
+        int sampled = 0;
+        for (Iterator<Produit> it = produits.values().iterator(); it.hasNext() && sampled < NAME_SAMPLE; sampled++) {
+            String nom = it.next().getNom();
+            names += nom == null ? 0 : nom.length();
+        }
+        long size = produits.size();
+        return size * BYTES_PER_PRODUCT + (sampled == 0 ? 0 : size * names / sampled * BYTES_PER_NAME_CHAR);
+    }
+
+    /**
+     * @return The products visited and returned by the searches of this repository.
+     */
+    @Override
+    public ScanCounter scans() {
+        return scans;
+    }
+
+    private static boolean isExpiredAt(Produit p, long instant) {
+        return p.getDatePremptionMillis() != Produit.NO_DATE && p.getDatePremptionMillis() < instant;
+    }
+
+    /**
+     * Loads the products behind a range of index entries.
+     * Each product is checked again because a concurrent update may have changed it
+     * between reading the index and reading the map.
+     *
+     * @param entries The index entries to resolve.
+     * @param check The condition the current version of a product must still satisfy.
+     * @return The matching products, in index order.
+     */
+    private List<Produit> resolve(Collection<ProduitIndex.Entry> entries, Predicate<Produit> check) {
+        List<Produit> result = new ArrayList<>();
+        for (ProduitIndex.Entry e : entries) {
+            Produit p = produits.get(e.ref);
+            if (p != null && check.test(p))
+                result.add(p);
+        }
+        return result;
     }
 
     /**
@@ -128,16 +971,77 @@ public class ProduitRepositoryImpl implements IProduitRepository {
                 .build());
     }
 
+    /**
+     * Lazily holds the singleton instance.
+     * The JVM initializes this class, and therefore the repository, exactly once and on first use,
+     * which makes concurrent calls to getInstence() safe without any locking on the read path.
+     */
+    private static final class Holder {
+        private static final RepositoryStartup STARTUP = RepositoryStartup.fromSystemProperties();
+        private static final ProduitRepositoryImpl INSTANCE =
+                STARTUP == null ? new ProduitRepositoryImpl(true, 1, 1, 0) : STARTUP.getRepository();
+    }
+
     /**
      * Retrieves the singleton instance of the repository.
-     * If the instance doesn't exist, it creates one.
+     * The instance is created on first access; all threads observe the same instance.
+     * When the JVM is started with {@code -Dproduit.seed=<file>}, it is loaded from that file
+     * instead of holding the default products, see {@link RepositoryStartup}.
      * 
      * @return The singleton instance of ProduitRepositoryImpl.
+     * @throws java.io.UncheckedIOException if the seed file cannot be loaded.
      */
     public static ProduitRepositoryImpl getInstence() {
-        if (produitRepository == null) {
-            produitRepository = new ProduitRepositoryImpl(); // Create a new instance if none exists
-        }
-        return produitRepository; // Return the singleton instance
+        return Holder.INSTANCE; // Return the singleton instance
+    }
+
+    /**
+     * Returns how the singleton was loaded, with its loading progress and timings.
+     *
+     * @return The startup of the singleton, or empty if it was not seeded from a file.
+     */
+    public static Optional<RepositoryStartup> getStartup() {
+        return Optional.ofNullable(Holder.STARTUP);
+    }
+
+    /**
+     * Creates an empty, independent repository without the default products.
+     * Meant for components that manage the lifecycle of their own store, such as a journaled
+     * repository recovering its content from disk; application code should use getInstence().
+     *
+     * @return A new, empty repository.
+     */
+    public static ProduitRepositoryImpl newInstance() {
+        return newInstance(0);
+    }
+
+    /**
+     * Creates an empty, independent repository sized for a number of products, so that filling
+     * it does not rehash the store or grow the indexes along the way.
+     *
+     * @param expectedSize The number of products expected.
+     * @return A new, empty repository.
+     * @throws IllegalArgumentException if the expected size is negative.
+     */
+    public static ProduitRepositoryImpl newInstance(int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Expected size must be >= 0: " + expectedSize);
+        return new ProduitRepositoryImpl(false, 1, 1, expectedSize);
+    }
+
+    /**
+     * Creates an empty repository holding one shard of a catalog split into {@code count} shards.
+     * Shard {@code index} generates and accepts the references r such that (r - 1) % count == index,
+     * that is index + 1, index + 1 + count, and so on; updating any other reference fails.
+     *
+     * @param index The shard number, from 0 to count - 1.
+     * @param count The number of shards.
+     * @return A new, empty shard.
+     * @throws IllegalArgumentException if the index is not between 0 and count - 1.
+     */
+    public static ProduitRepositoryImpl newShard(int index, int count) {
+        if (count < 1 || index < 0 || index >= count)
+            throw new IllegalArgumentException("Invalid shard " + index + " of " + count);
+        return new ProduitRepositoryImpl(false, index + 1, count, 0);
     }
 }
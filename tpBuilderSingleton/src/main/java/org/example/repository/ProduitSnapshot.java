@@ -0,0 +1,268 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.repository.query.Criteria; // Typed finders expressed as queries
+import org.example.repository.query.ProduitField;
+import org.example.repository.query.ProduitQuery;
+
+import java.io.Closeable;
+import java.util.*; // For the candidate iteration
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * A read-only view of a {@link ProduitRepositoryImpl} as it was at one version.
+ * <p>
+ * Every read of the snapshot, however long after it was taken and whatever the writers did
+ * meanwhile, sees the products exactly as they were when {@link ProduitRepositoryImpl#snapshot()}
+ * returned, so reports made of several calls are consistent with each other. Taking a snapshot
+ * copies nothing: the repository keeps the versions written over while the snapshot is open.
+ * <p>
+ * Reads use the live indexes for the products unchanged since the snapshot and check the ones
+ * changed since one by one, so they cost as much as on the repository while the snapshot is
+ * recent, and more as writes accumulate. Close snapshots when done: the versions they pin are
+ * dropped then, or only once the garbage collector notices the snapshot is unreachable.
+ * Writing methods throw UnsupportedOperationException.
+ */
+public final class ProduitSnapshot implements IProduitRepository, Closeable {
+
+    private static final int DENSE_POSITIONS = 1 << 26; // References seen are tracked in a bitmap up to this position
+
+    private final ProduitRepositoryImpl owner;
+    private final VersionHistory history;
+    private final long version;
+    private final Object ticket = new Object(); // Identifies this snapshot to the history
+    private volatile boolean closed;
+
+    ProduitSnapshot(ProduitRepositoryImpl owner, VersionHistory history, long version) {
+        this.owner = owner;
+        this.history = history;
+        this.version = version;
+    }
+
+    Object ticket() {
+        return ticket;
+    }
+
+    /**
+     * @return The version of the repository the snapshot shows; later snapshots have higher ones.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Releases the versions kept for this snapshot; reading it afterwards fails.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        history.close(ticket);
+    }
+
+    // The versions a closed snapshot would read may be gone: refuse rather than mix versions
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("Snapshot " + version + " is closed");
+    }
+
+    @Override
+    public Optional<Produit> finfByRef(Long ref) {
+        checkOpen();
+        return ref == null ? Optional.empty() : Optional.ofNullable(owner.valueAt(ref, version));
+    }
+
+    @Override
+    public Produit getByRef(long ref) {
+        checkOpen();
+        return owner.valueAt(ref, version);
+    }
+
+    @Override
+    public List<Produit> findAllByRefs(Collection<Long> refs) {
+        checkOpen();
+        List<Produit> found = new ArrayList<>(refs.size());
+        for (Long ref : refs) {
+            Produit p = ref == null ? null : owner.valueAt(ref, version);
+            if (p != null)
+                found.add(p);
+        }
+        return found;
+    }
+
+    @Override
+    public List<Produit> findAll() {
+        checkOpen();
+        List<Produit> all = new ArrayList<>();
+        for (Produit p : at(owner.currentProduits()))
+            all.add(p);
+        return all;
+    }
+
+    @Override
+    public List<Produit> search(Predicate<Produit> predicate) {
+        checkOpen();
+        List<Produit> found = new ArrayList<>();
+        for (Produit p : at(owner.currentProduits()))
+            if (predicate.test(p))
+                found.add(p);
+        return found;
+    }
+
+    /**
+     * Runs a query with the access path the repository's planner picks, completed with the
+     * products changed since the snapshot.
+     *
+     * @param query The query to run.
+     * @return The requested page of products matching at the version of the snapshot.
+     */
+    @Override
+    public List<Produit> search(ProduitQuery query) {
+        checkOpen();
+        return query.apply(at(owner.currentCandidates(query.getCriterion())), false);
+    }
+
+    @Override
+    public List<Produit> findByType(TypeProduit type) {
+        Objects.requireNonNull(type, "type");
+        return search(ProduitQuery.where(Criteria.type().eq(type)).orderBy(ProduitField.REF));
+    }
+
+    @Override
+    public List<Produit> findByPrixBetween(double min, double max) {
+        return search(ProduitQuery.where(Criteria.prix().between(min, max)).orderBy(ProduitField.PRIX));
+    }
+
+    @Override
+    public List<Produit> findByQuantiteStockGreaterThan(double seuil) {
+        return search(ProduitQuery.where(Criteria.quantiteStock().gt(seuil)).orderBy(ProduitField.QUANTITE_STOCK));
+    }
+
+    @Override
+    public Produit save(Produit p) {
+        throw readOnly();
+    }
+
+    @Override
+    public List<Produit> saveAll(Collection<Produit> produits) {
+        throw readOnly();
+    }
+
+    @Override
+    public Produit update(Produit p) {
+        throw readOnly();
+    }
+
+    @Override
+    public List<Produit> updateAll(Collection<Produit> produits) {
+        throw readOnly();
+    }
+
+    @Override
+    public Produit restore(Produit p) {
+        throw readOnly();
+    }
+
+    @Override
+    public Produit updateVersioned(Produit p) {
+        throw readOnly();
+    }
+
+    @Override
+    public Produit adjustStock(long ref, double delta) {
+        throw readOnly();
+    }
+
+    @Override
+    public Produit reprice(long ref, DoubleUnaryOperator fn) {
+        throw readOnly();
+    }
+
+    @Override
+    public void detele(Long ref) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteAll(Collection<Long> refs) {
+        throw readOnly();
+    }
+
+    @Override
+    public List<Produit> drainExpiredBefore(Date instant) {
+        throw readOnly();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Snapshots are read-only");
+    }
+
+    /**
+     * Turns live candidates into the products of the snapshot. A product matching at the version
+     * of the snapshot is either unchanged, and found among the live candidates, or changed since,
+     * and found among the references changed, which are visited last so that a change made
+     * during the iteration cannot hide a product from both passes. Each reference is returned
+     * once, as it was at the version: the references seen are marked in a bitmap indexed by
+     * their position in the sequence of generated references, a few bits per product.
+     *
+     * @param live Products of the store now, a superset of those unchanged since the snapshot that matter.
+     * @return The products of the snapshot among them and among the ones changed since.
+     */
+    private Iterable<Produit> at(Iterable<Produit> live) {
+        return () -> new Iterator<Produit>() {
+            private final BitSet seen = new BitSet();
+            private Set<Long> seenBeyond; // References given explicitly, past the bitmap
+            private final Iterator<Produit> current = live.iterator();
+            private Iterator<Long> changed; // Started once the live candidates are exhausted
+            private Produit next = advance();
+
+            private Produit advance() {
+                while (true) {
+                    long ref;
+                    if (current.hasNext()) {
+                        ref = current.next().getRef();
+                    } else {
+                        if (changed == null)
+                            changed = history.changedSince(version).iterator();
+                        if (!changed.hasNext())
+                            return null;
+                        ref = changed.next();
+                    }
+                    if (!firstSeen(ref))
+                        continue;
+                    Produit p = owner.valueAt(ref, version);
+                    if (p != null)
+                        return p;
+                }
+            }
+
+            private boolean firstSeen(long ref) {
+                long position = owner.positionOf(ref);
+                if (position < 1 || position >= DENSE_POSITIONS) {
+                    if (seenBeyond == null)
+                        seenBeyond = new HashSet<>();
+                    return seenBeyond.add(ref);
+                }
+                if (seen.get((int) position))
+                    return false;
+                seen.set((int) position);
+                return true;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Produit next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                Produit p = next;
+                next = advance();
+                return p;
+            }
+        };
+    }
+}
@@ -0,0 +1,188 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+
+import java.time.LocalDate;
+import java.util.*; // For the per-type and per-week results
+
+/**
+ * Aggregates over a set of products: price statistics, stock value per type and number of
+ * products expiring per week.
+ * <p>
+ * An instance accumulates the products of one segment of the catalog and is not thread-safe;
+ * partial results computed in parallel are merged with {@link #combine}. Weeks start on Monday
+ * and are computed in UTC.
+ */
+public final class ProduitStatistics {
+
+    private static final TypeProduit[] TYPES = TypeProduit.values();
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final int MAX_WEEK_SPAN = 1 << 16; // Beyond this many weeks, counts go to the overflow map
+
+    private final DoubleSummaryStatistics prix = new DoubleSummaryStatistics();
+    private double totalStockValue;
+    private final double[] stockValueByType = new double[TYPES.length];
+    private final long[] countByType = new long[TYPES.length];
+
+    // Dense counts of products expiring per week, indexed from firstWeek
+    private long firstWeek;
+    private long[] weekCounts;
+    private Map<Long, Long> overflowWeeks; // Weeks too far from firstWeek, rarely used
+
+    /**
+     * Adds a product.
+     *
+     * @param p The product.
+     */
+    public void accept(Produit p) {
+        accept(p.getPrix(), p.getQuantiteStock(), p.getDatePremptionMillis(),
+                p.getType() == null ? RowFilter.NO_TYPE : (byte) p.getType().ordinal());
+    }
+
+    /**
+     * Adds a product given as raw fields, for stores that do not hold Produit objects.
+     *
+     * @param prix The price.
+     * @param quantiteStock The quantity in stock.
+     * @param datePremption The expiration date in epoch milliseconds, or RowFilter.NO_DATE.
+     * @param type The TypeProduit ordinal, or RowFilter.NO_TYPE.
+     */
+    void accept(double prix, double quantiteStock, long datePremption, byte type) {
+        this.prix.accept(prix);
+        double value = prix * quantiteStock;
+        totalStockValue += value;
+        if (type != RowFilter.NO_TYPE) {
+            stockValueByType[type] += value;
+            countByType[type]++;
+        }
+        if (datePremption != RowFilter.NO_DATE)
+            addWeek(weekOf(datePremption), 1);
+    }
+
+    // Week number counted from the Monday 1969-12-29; the epoch itself is a Thursday
+    private static long weekOf(long millis) {
+        return Math.floorDiv(Math.floorDiv(millis, DAY) + 3, 7);
+    }
+
+    private void addWeek(long week, long n) {
+        if (weekCounts == null) {
+            weekCounts = new long[64];
+            firstWeek = week - 8; // Leave room for slightly earlier dates
+        }
+        long offset = week - firstWeek;
+        if (offset < 0 || offset >= weekCounts.length) {
+            long from = Math.min(firstWeek, week);
+            long span = Math.max(firstWeek + weekCounts.length, week + 1) - from;
+            if (span > MAX_WEEK_SPAN) {
+                if (overflowWeeks == null)
+                    overflowWeeks = new HashMap<>();
+                overflowWeeks.merge(week, n, Long::sum);
+                return;
+            }
+            long[] grown = new long[(int) Math.min(MAX_WEEK_SPAN, Math.max(span, weekCounts.length * 2L))];
+            long shift = firstWeek - from;
+            if (week < firstWeek) // Growing downwards: keep the margin below the new first week as well
+                shift += grown.length - span;
+            System.arraycopy(weekCounts, 0, grown, (int) shift, weekCounts.length);
+            firstWeek -= shift;
+            weekCounts = grown;
+            offset = week - firstWeek;
+        }
+        weekCounts[(int) offset] += n;
+    }
+
+    /**
+     * Merges the partial result of another segment into this one.
+     *
+     * @param other The other partial result; it is left unchanged.
+     * @return This instance.
+     */
+    public ProduitStatistics combine(ProduitStatistics other) {
+        prix.combine(other.prix);
+        totalStockValue += other.totalStockValue;
+        for (int t = 0; t < TYPES.length; t++) {
+            stockValueByType[t] += other.stockValueByType[t];
+            countByType[t] += other.countByType[t];
+        }
+        if (other.weekCounts != null)
+            for (int i = 0; i < other.weekCounts.length; i++)
+                if (other.weekCounts[i] != 0)
+                    addWeek(other.firstWeek + i, other.weekCounts[i]);
+        if (other.overflowWeeks != null)
+            other.overflowWeeks.forEach((week, n) -> addWeek(week, n));
+        return this;
+    }
+
+    /**
+     * @return The number of aggregated products.
+     */
+    public long getCount() {
+        return prix.getCount();
+    }
+
+    /**
+     * @return The count, minimum, maximum, sum and average of the prices.
+     */
+    public DoubleSummaryStatistics getPrixStatistics() {
+        DoubleSummaryStatistics copy = new DoubleSummaryStatistics();
+        copy.combine(prix);
+        return copy;
+    }
+
+    /**
+     * @return The sum of prix * quantiteStock over all products, typed or not.
+     */
+    public double getTotalStockValue() {
+        return totalStockValue;
+    }
+
+    /**
+     * @return The sum of prix * quantiteStock for each product type.
+     */
+    public Map<TypeProduit, Double> getStockValueByType() {
+        Map<TypeProduit, Double> result = new EnumMap<>(TypeProduit.class);
+        for (TypeProduit t : TYPES)
+            result.put(t, stockValueByType[t.ordinal()]);
+        return result;
+    }
+
+    /**
+     * @return The number of products of each type.
+     */
+    public Map<TypeProduit, Long> getCountByType() {
+        Map<TypeProduit, Long> result = new EnumMap<>(TypeProduit.class);
+        for (TypeProduit t : TYPES)
+            result.put(t, countByType[t.ordinal()]);
+        return result;
+    }
+
+    /**
+     * @return The number of products expiring each week, keyed by the Monday starting the week;
+     * weeks without expiring products are left out.
+     */
+    public SortedMap<LocalDate, Long> getExpiringPerWeek() {
+        SortedMap<LocalDate, Long> result = new TreeMap<>();
+        if (weekCounts != null)
+            for (int i = 0; i < weekCounts.length; i++)
+                if (weekCounts[i] != 0)
+                    result.put(mondayOf(firstWeek + i), weekCounts[i]);
+        if (overflowWeeks != null)
+            overflowWeeks.forEach((week, n) -> result.merge(mondayOf(week), n, Long::sum));
+        return result;
+    }
+
+    private static LocalDate mondayOf(long week) {
+        return LocalDate.ofEpochDay(week * 7 - 3);
+    }
+
+    @Override
+    public String toString() {
+        return "ProduitStatistics{" +
+                "prix=" + prix +
+                ", totalStockValue=" + totalStockValue +
+                ", stockValueByType=" + getStockValueByType() +
+                ", expiringPerWeek=" + getExpiringPerWeek().size() + " weeks" +
+                '}';
+    }
+}
@@ -0,0 +1,379 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.repository.metrics.RepositoryMetrics; // Switch and counters of the scan metrics
+import org.example.repository.metrics.ScanCounter;
+import org.example.repository.query.Criterion;
+import org.example.repository.query.Folding;
+import org.example.repository.query.ProduitField;
+import org.example.repository.query.ProduitQuery;
+
+import java.util.*; // For collections and iterators
+import java.util.function.BiPredicate;
+import java.util.function.Function; // For resolving references to products
+import java.util.function.ToLongFunction;
+
+/**
+ * Chooses how to answer a ProduitQuery from the secondary indexes of a repository.
+ * The planner looks for the most selective access path in the criterion (a type set or a
+ * price/stock/expiry range, a name prefix or fragment), scans only the products it yields and lets the query re-test the whole
+ * criterion on each of them as a residual filter. Criteria with no usable index fall back to a
+ * full scan.
+ */
+class QueryPlanner {
+
+    private final ProduitIndex index;
+    private final Function<Long, Produit> lookup; // Resolves a reference to the current product, or null
+    private final Collection<Produit> all; // Live view of every product, for full scans
+    private final ScanCounter scans; // Candidates visited against products returned
+
+    QueryPlanner(ProduitIndex index, Function<Long, Produit> lookup, Collection<Produit> all, ScanCounter scans) {
+        this.index = index;
+        this.lookup = lookup;
+        this.all = all;
+        this.scans = scans;
+    }
+
+    /**
+     * Runs a query.
+     *
+     * @param query The query to run.
+     * @return The requested page of matching products.
+     */
+    List<Produit> execute(ProduitQuery query) {
+        Plan plan = plan(query.getCriterion());
+        if (!RepositoryMetrics.ENABLED)
+            return query.apply(plan.candidates(), plan.isOrderedFor(query));
+        Counting counting = new Counting(plan.candidates());
+        List<Produit> result = query.apply(counting, plan.isOrderedFor(query));
+        scans.record(counting.count, result.size());
+        return result;
+    }
+
+    /**
+     * Picks the cheapest access path for a criterion.
+     *
+     * @param criterion The criterion to plan.
+     * @return The chosen plan; a full scan if no index applies.
+     */
+    Plan plan(Criterion criterion) {
+        Plan full = new FullScan(all);
+        Plan best = accessPath(criterion, full.estimate());
+        return best != null && best.estimate() < full.estimate() ? best : full;
+    }
+
+    /**
+     * Finds an index-backed access path returning a superset of the products matching the criterion.
+     *
+     * @param c The criterion.
+     * @param cap The cost of the best plan found so far; range estimates stop counting there.
+     * @return The cheapest path, or null if the criterion cannot use an index.
+     */
+    private Plan accessPath(Criterion c, long cap) {
+        if (c instanceof Criterion.TypeEquals) {
+            return new RefScan("type index (" + c + ")", index.refsOfType(((Criterion.TypeEquals) c).getType()));
+        }
+        if (c instanceof Criterion.Range) {
+            Criterion.Range r = (Criterion.Range) c;
+            NavigableSet<ProduitIndex.Entry> entries = index.range(r.getField(),
+                    r.getMin(), r.isMinInclusive(), r.getMax(), r.isMaxInclusive());
+            return new RangeScan("range scan (" + c + ")", entries, r.getField(), cap);
+        }
+        if (c instanceof Criterion.DatePremption) {
+            Criterion.DatePremption d = (Criterion.DatePremption) c;
+            NavigableSet<ProduitIndex.Entry> entries = d.isBefore()
+                    ? index.expiringBefore(d.getInstant())
+                    : index.range(ProduitField.DATE_PREMPTION, d.getInstant(), false, Double.POSITIVE_INFINITY, true);
+            return new RangeScan("expiry scan (" + c + ")", entries, ProduitField.DATE_PREMPTION, cap);
+        }
+        if (c instanceof Criterion.NomStartsWith || c instanceof Criterion.NomStartsWithIgnoringCase) {
+            // Folding keeps prefixes, so the folded prefix range also covers a case-sensitive prefix
+            String folded = c instanceof Criterion.NomStartsWith
+                    ? Folding.fold(((Criterion.NomStartsWith) c).getPrefix())
+                    : ((Criterion.NomStartsWithIgnoringCase) c).getFolded();
+            Iterable<Long> refs = index.nomStartingWith(folded);
+            return new NomScan("name prefix scan (" + c + ")", refs, count(refs, cap), null);
+        }
+        if (c instanceof Criterion.NomContainsIgnoringCase) {
+            String folded = ((Criterion.NomContainsIgnoringCase) c).getFolded();
+            Iterable<Long> refs = index.nomContaining(folded);
+            if (refs == null)
+                return null; // Shorter than a trigram: the index cannot narrow it down
+            return new NomScan("trigram scan (" + c + ")", refs, index.estimateNomContaining(folded), ProduitField.REF);
+        }
+        if (c instanceof Criterion.And) {
+            // Any single operand is a valid access path for a conjunction: keep the most selective one
+            Plan best = null;
+            for (Criterion operand : ordered(((Criterion.And) c).getOperands())) {
+                Plan p = accessPath(operand, best == null ? cap : Math.min(cap, best.estimate()));
+                if (p != null && (best == null || p.estimate() < best.estimate()))
+                    best = p;
+            }
+            return best;
+        }
+        if (c instanceof Criterion.Or) {
+            // A disjunction can only use indexes if every operand can
+            List<Plan> parts = new ArrayList<>();
+            long total = 0;
+            for (Criterion operand : ((Criterion.Or) c).getOperands()) {
+                Plan p = accessPath(operand, cap);
+                if (p == null)
+                    return null;
+                parts.add(p);
+                total += p.estimate();
+                if (total >= cap)
+                    return null; // Cheaper to scan everything once
+            }
+            return new UnionScan(parts, total);
+        }
+        return null; // Negations and case-sensitive fragments have no index
+    }
+
+    // Skip lists have no cheap size; count only as far as it matters
+    private static long count(Iterable<Long> refs, long cap) {
+        long n = 0;
+        for (Iterator<Long> it = refs.iterator(); it.hasNext() && n < cap; it.next())
+            n++;
+        return n;
+    }
+
+    // Exact-size type sets first, so that range counts can stop early against their size
+    private static List<Criterion> ordered(List<Criterion> operands) {
+        List<Criterion> sorted = new ArrayList<>(operands);
+        sorted.sort(Comparator.comparingInt(op -> op instanceof Criterion.TypeEquals ? 0 : 1));
+        return sorted;
+    }
+
+    /**
+     * A way of producing candidate products for a query.
+     */
+    abstract static class Plan {
+        private final String description;
+
+        Plan(String description) {
+            this.description = description;
+        }
+
+        /**
+         * @return An upper bound of the number of candidates the plan yields.
+         */
+        abstract long estimate();
+
+        /**
+         * @return The candidate products; a superset of the matching products.
+         */
+        abstract Iterable<Produit> candidates();
+
+        /**
+         * @param query The query being answered.
+         * @return true if the candidates come in the order the query asks for.
+         */
+        boolean isOrderedFor(ProduitQuery query) {
+            return query.getOrderFields().isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return description + ", ~" + estimate() + " candidates";
+        }
+    }
+
+    private static final class FullScan extends Plan {
+        private final Collection<Produit> all;
+        private final long size;
+
+        FullScan(Collection<Produit> all) {
+            super("full scan");
+            this.all = all;
+            this.size = all.size();
+        }
+
+        @Override
+        long estimate() {
+            return size;
+        }
+
+        @Override
+        Iterable<Produit> candidates() {
+            return all;
+        }
+    }
+
+    private final class RefScan extends Plan {
+        private final Collection<Long> refs;
+        private final long size;
+
+        RefScan(String description, Collection<Long> refs) {
+            super(description);
+            this.refs = refs;
+            this.size = refs.size();
+        }
+
+        @Override
+        long estimate() {
+            return size;
+        }
+
+        @Override
+        Iterable<Produit> candidates() {
+            return () -> resolve(refs.iterator());
+        }
+    }
+
+    private final class RangeScan extends Plan {
+        private final NavigableSet<ProduitIndex.Entry> entries;
+        private final ProduitField field;
+        private final long size;
+
+        RangeScan(String description, NavigableSet<ProduitIndex.Entry> entries, ProduitField field, long cap) {
+            super(description);
+            this.entries = entries;
+            this.field = field;
+            long n = 0;
+            for (Iterator<ProduitIndex.Entry> it = entries.iterator(); it.hasNext() && n < cap; it.next())
+                n++; // Skip lists have no cheap size; count only as far as it matters
+            this.size = n;
+        }
+
+        @Override
+        long estimate() {
+            return size;
+        }
+
+        // Only the entry holding the product's current value resolves, so the candidates keep the index order
+        @Override
+        Iterable<Produit> candidates() {
+            return () -> resolve(entries.iterator(), e -> e.ref,
+                    (e, p) -> Double.compare(ProduitIndex.valueOf(field, p), e.value) == 0);
+        }
+
+        @Override
+        boolean isOrderedFor(ProduitQuery query) {
+            return super.isOrderedFor(query) || query.isOrderedOnlyBy(field);
+        }
+    }
+
+    private final class NomScan extends Plan {
+        private final Iterable<Long> refs;
+        private final long size;
+        private final ProduitField order; // The order the references come in, or null
+
+        NomScan(String description, Iterable<Long> refs, long size, ProduitField order) {
+            super(description);
+            this.refs = refs;
+            this.size = size;
+            this.order = order;
+        }
+
+        @Override
+        long estimate() {
+            return size;
+        }
+
+        @Override
+        Iterable<Produit> candidates() {
+            return () -> resolve(refs.iterator());
+        }
+
+        @Override
+        boolean isOrderedFor(ProduitQuery query) {
+            return super.isOrderedFor(query) || (order != null && query.isOrderedOnlyBy(order));
+        }
+    }
+
+    private final class UnionScan extends Plan {
+        private final List<Plan> parts;
+        private final long size;
+
+        UnionScan(List<Plan> parts, long size) {
+            super("union of " + parts);
+            this.parts = parts;
+            this.size = size;
+        }
+
+        @Override
+        long estimate() {
+            return size;
+        }
+
+        @Override
+        Iterable<Produit> candidates() {
+            Set<Long> seen = new HashSet<>();
+            List<Produit> result = new ArrayList<>();
+            for (Plan part : parts)
+                for (Produit p : part.candidates())
+                    if (seen.add(p.getRef())) // A product may be reached through several operands
+                        result.add(p);
+            return result;
+        }
+    }
+
+    /**
+     * Counts the candidates a query pulls; a query stopping at its first page pulls fewer than
+     * the plan could yield. Iterated once, so the iterable is its own iterator.
+     */
+    private static final class Counting implements Iterable<Produit>, Iterator<Produit> {
+        private final Iterator<Produit> it;
+        long count;
+
+        Counting(Iterable<Produit> candidates) {
+            this.it = candidates.iterator();
+        }
+
+        @Override
+        public Iterator<Produit> iterator() {
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        @Override
+        public Produit next() {
+            Produit p = it.next();
+            count++;
+            return p;
+        }
+    }
+
+    // Maps references to their current products, skipping references deleted since the index was read
+    private Iterator<Produit> resolve(Iterator<Long> refs) {
+        return resolve(refs, ref -> ref, (ref, p) -> true);
+    }
+
+    // Maps index items to the current products they still describe, each product once: a product
+    // re-indexed during the walk can be reached through its old and its new entry
+    private <T> Iterator<Produit> resolve(Iterator<T> items, ToLongFunction<T> refOf, BiPredicate<T, Produit> current) {
+        return new Iterator<Produit>() {
+            private final Set<Long> seen = new HashSet<>();
+            private Produit next = advance();
+
+            private Produit advance() {
+                while (items.hasNext()) {
+                    T item = items.next();
+                    long ref = refOf.applyAsLong(item);
+                    Produit p = lookup.apply(ref);
+                    if (p != null && current.test(item, p) && seen.add(ref))
+                        return p;
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Produit next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                Produit p = next;
+                next = advance();
+                return p;
+            }
+        };
+    }
+}
@@ -0,0 +1,333 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.repository.query.Criterion;
+import org.example.repository.query.ProduitQuery;
+import org.example.repository.query.QueryRecords; // Queries sent to the server
+
+import java.io.*; // Socket streams
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.*; // Lists, optionals and the idle connection queue
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Client of a repository served by a {@link ShardServer} in another process.
+ * <p>
+ * Each call borrows an idle connection, or opens a new one, sends one request and reads the
+ * response; concurrent callers thus use separate connections and never wait for each other.
+ * Exceptions thrown by the remote repository (invalid arguments, missing products, version
+ * conflicts) are thrown again here; a transport failure surfaces as an UncheckedIOException and
+ * drops the connection.
+ * <p>
+ * Predicates and price functions are code and cannot be sent: search(Predicate) filters the
+ * whole catalog on this side, and reprice runs the compare-and-set loop of the interface.
+ */
+public class RemoteProduitRepository implements IProduitRepository, Closeable {
+
+    private final InetSocketAddress address;
+    private final Queue<Connection> idle = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    private RemoteProduitRepository(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    /**
+     * Connects to a shard server.
+     *
+     * @param address The address of the server.
+     * @return A client; one connection is already open.
+     * @throws IOException if the server cannot be reached.
+     */
+    public static RemoteProduitRepository connect(InetSocketAddress address) throws IOException {
+        RemoteProduitRepository remote = new RemoteProduitRepository(address);
+        remote.idle.add(remote.open());
+        return remote;
+    }
+
+    /**
+     * Writes the operation code and the arguments of a request.
+     */
+    private interface Request {
+        void write(DataOutput out) throws IOException;
+    }
+
+    /**
+     * Reads the result of a successful response.
+     */
+    private interface Response<T> {
+        T read(DataInput in) throws IOException;
+    }
+
+    private static final class Connection implements Closeable {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Dropped anyway
+            }
+        }
+    }
+
+    private Connection open() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true); // Requests are flushed whole
+            socket.connect(address);
+            return new Connection(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private <T> T call(Request request, Response<T> response) {
+        if (closed)
+            throw new IllegalStateException("Remote repository is closed");
+        Connection c = idle.poll();
+        try {
+            if (c == null)
+                c = open();
+            request.write(c.out);
+            c.out.flush();
+            byte status = c.in.readByte();
+            if (status != ShardProtocol.OK) {
+                RuntimeException failure = ShardProtocol.readFailure(status, c.in);
+                release(c); // The response was read whole: the connection can be reused
+                throw failure;
+            }
+            T result = response.read(c.in);
+            release(c);
+            return result;
+        } catch (IOException e) {
+            if (c != null)
+                c.close();
+            throw new UncheckedIOException("Shard at " + address + " failed", e);
+        }
+    }
+
+    private void release(Connection c) {
+        idle.add(c);
+        if (closed)
+            closeIdle(); // Lost the race with close()
+    }
+
+    private void closeIdle() {
+        for (Connection c = idle.poll(); c != null; c = idle.poll())
+            c.close();
+    }
+
+    @Override
+    public Produit save(Produit p) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.SAVE);
+            ProduitRecords.write(out, p);
+        }, ProduitRecords::read);
+    }
+
+    @Override
+    public List<Produit> saveAll(Collection<Produit> produits) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.SAVE_ALL);
+            ShardProtocol.writeProduits(out, produits);
+        }, ShardProtocol::readProduits);
+    }
+
+    @Override
+    public List<Produit> findAll() {
+        return call(out -> out.writeByte(ShardProtocol.FIND_ALL), ShardProtocol::readProduits);
+    }
+
+    @Override
+    public Optional<Produit> finfByRef(Long ref) {
+        if (ref == null)
+            return Optional.empty();
+        return call(out -> {
+            out.writeByte(ShardProtocol.FIND_BY_REF);
+            out.writeLong(ref);
+        }, ShardProtocol::readOptional);
+    }
+
+    @Override
+    public List<Produit> findAllByRefs(Collection<Long> refs) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.FIND_ALL_BY_REFS);
+            ShardProtocol.writeRefs(out, refs);
+        }, ShardProtocol::readProduits);
+    }
+
+    @Override
+    public Produit update(Produit p) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.UPDATE);
+            ProduitRecords.write(out, p);
+        }, ProduitRecords::read);
+    }
+
+    @Override
+    public List<Produit> updateAll(Collection<Produit> produits) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.UPDATE_ALL);
+            ShardProtocol.writeProduits(out, produits);
+        }, ShardProtocol::readProduits);
+    }
+
+    @Override
+    public Produit updateVersioned(Produit p) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.UPDATE_VERSIONED);
+            ProduitRecords.write(out, p);
+        }, ProduitRecords::read);
+    }
+
+    @Override
+    public Produit adjustStock(long ref, double delta) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.ADJUST_STOCK);
+            out.writeLong(ref);
+            out.writeDouble(delta);
+        }, ProduitRecords::read);
+    }
+
+    @Override
+    public void detele(Long ref) {
+        if (ref == null)
+            return;
+        call(out -> {
+            out.writeByte(ShardProtocol.DETELE);
+            out.writeLong(ref);
+        }, in -> null);
+    }
+
+    @Override
+    public void deleteAll(Collection<Long> refs) {
+        call(out -> {
+            out.writeByte(ShardProtocol.DELETE_ALL);
+            ShardProtocol.writeRefs(out, refs);
+        }, in -> null);
+    }
+
+    /**
+     * Fetches the whole catalog and filters it on this side.
+     */
+    @Override
+    public List<Produit> search(Predicate<Produit> predicate) {
+        return findAll().stream().filter(predicate).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Produit> search(ProduitQuery query) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.SEARCH);
+            QueryRecords.write(out, query);
+        }, ShardProtocol::readProduits);
+    }
+
+    /**
+     * Fetches the matching products and aggregates them on this side.
+     */
+    @Override
+    public ProduitStatistics aggregate(Criterion criterion) {
+        ProduitStatistics stats = new ProduitStatistics();
+        for (Produit p : search(ProduitQuery.where(criterion)))
+            stats.accept(p);
+        return stats;
+    }
+
+    @Override
+    public List<Produit> findByType(TypeProduit type) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.FIND_BY_TYPE);
+            out.writeByte(type.ordinal());
+        }, ShardProtocol::readProduits);
+    }
+
+    @Override
+    public List<Produit> findByPrixBetween(double min, double max) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.FIND_BY_PRIX_BETWEEN);
+            out.writeDouble(min);
+            out.writeDouble(max);
+        }, ShardProtocol::readProduits);
+    }
+
+    @Override
+    public List<Produit> findByQuantiteStockGreaterThan(double seuil) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.FIND_BY_QUANTITE_STOCK_GREATER_THAN);
+            out.writeDouble(seuil);
+        }, ShardProtocol::readProduits);
+    }
+
+    @Override
+    public List<Produit> findByNomPrefix(String prefix, int limit) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.FIND_BY_NOM_PREFIX);
+            out.writeUTF(prefix);
+            out.writeInt(limit);
+        }, ShardProtocol::readProduits);
+    }
+
+    @Override
+    public List<Produit> findByNomContaining(String fragment, int limit) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.FIND_BY_NOM_CONTAINING);
+            out.writeUTF(fragment);
+            out.writeInt(limit);
+        }, ShardProtocol::readProduits);
+    }
+
+    @Override
+    public List<Produit> findPageAfter(long afterRef, int limit) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.FIND_PAGE_AFTER);
+            out.writeLong(afterRef);
+            out.writeInt(limit);
+        }, ShardProtocol::readProduits);
+    }
+
+    @Override
+    public Optional<Produit> findNextExpiring(Date instant) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.FIND_NEXT_EXPIRING);
+            out.writeLong(instant.getTime());
+        }, ShardProtocol::readOptional);
+    }
+
+    @Override
+    public List<Produit> drainExpiredBefore(Date instant) {
+        return call(out -> {
+            out.writeByte(ShardProtocol.DRAIN_EXPIRED_BEFORE);
+            out.writeLong(instant.getTime());
+        }, ShardProtocol::readProduits);
+    }
+
+    /**
+     * Closes the connections; calls in progress finish, later ones fail. The server keeps running.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeIdle();
+    }
+
+    @Override
+    public String toString() {
+        return "RemoteProduitRepository{" + address + '}';
+    }
+}
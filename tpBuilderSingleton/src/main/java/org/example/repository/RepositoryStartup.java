@@ -0,0 +1,293 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture; // One per chunk, joined when the whole seed is loaded
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Creates a repository and loads it from a {@link SeedSource}, with the store sized up front
+ * from the estimated number of products and the chunks of the source loaded in parallel, each
+ * batch stored with updateAll() or saveAll() so that every lock stripe is taken once per batch.
+ * Products carrying a reference are stored first; those without one are kept aside and saved
+ * once every reference of the source is in use, so that a generated reference can never be one
+ * that a later chunk stores a product under.
+ * <p>
+ * In the foreground (the default) the repository is handed out once fully loaded. In the
+ * background it is handed out at once, empty, and fills up while it serves queries: each
+ * product appears whole, but until {@link #awaitLoaded()} returns, searches and lookups only see
+ * the products loaded so far.
+ * <p>
+ * Two timings are kept: the time to first query, from the start until the repository could
+ * be queried, and the time to fully loaded. The singleton returned by
+ * {@link ProduitRepositoryImpl#getInstence()} is seeded this way when the JVM is started with
+ * {@code -Dproduit.seed=<file>}; {@code -Dproduit.seed.background=true},
+ * {@code -Dproduit.seed.parallelism=N} and {@code -Dproduit.seed.expectedSize=N} set the options.
+ */
+public final class RepositoryStartup {
+
+    private final ProduitRepositoryImpl repository;
+    private final long startNanos;
+    private final long timeToFirstQueryNanos;
+    private volatile long timeToFullyLoadedNanos = -1;
+    private final LongAdder loaded = new LongAdder();
+    private final CompletableFuture<Void> done;
+
+    private RepositoryStartup(Builder builder) throws IOException {
+        startNanos = System.nanoTime();
+        long expected = builder.expectedSize >= 0 ? builder.expectedSize : builder.source.estimateSize();
+        repository = ProduitRepositoryImpl.newInstance((int) Math.max(0, Math.min(expected, Integer.MAX_VALUE)));
+        done = load(builder);
+        if (!builder.background)
+            await(done);
+        timeToFirstQueryNanos = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @param source The products to load.
+     * @return A builder of a repository loaded from the source.
+     */
+    public static Builder builder(SeedSource source) {
+        return new Builder(source);
+    }
+
+    /**
+     * Options of a RepositoryStartup.
+     * By default, the size is estimated by the source, one thread per core loads batches of
+     * 10,000 products, and the repository is handed out once fully loaded.
+     */
+    public static final class Builder {
+        private final SeedSource source;
+        private long expectedSize = -1;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private int batchSize = 10_000;
+        private boolean background;
+
+        private Builder(SeedSource source) {
+            this.source = Objects.requireNonNull(source, "source");
+        }
+
+        /**
+         * @param expectedSize The number of products, instead of the estimate of the source.
+         * @return This builder.
+         */
+        public Builder expectedSize(long expectedSize) {
+            if (expectedSize < 0)
+                throw new IllegalArgumentException("Expected size must be >= 0: " + expectedSize);
+            this.expectedSize = expectedSize;
+            return this;
+        }
+
+        /**
+         * @param parallelism The number of threads loading chunks of the source.
+         * @return This builder.
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism <= 0)
+                throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * @param batchSize The number of products stored per call to the repository.
+         * @return This builder.
+         */
+        public Builder batchSize(int batchSize) {
+            if (batchSize <= 0)
+                throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param background true to hand out the repository before it is loaded.
+         * @return This builder.
+         */
+        public Builder background(boolean background) {
+            this.background = background;
+            return this;
+        }
+
+        /**
+         * Creates the repository and starts loading it.
+         *
+         * @return The startup, whose repository is fully loaded unless loading in the background.
+         * @throws IOException if the source cannot be read; in the background, errors met after
+         *                     the start are thrown by awaitLoaded() instead.
+         */
+        public RepositoryStartup start() throws IOException {
+            return new RepositoryStartup(this);
+        }
+    }
+
+    // Loads about four chunks per thread, so that threads given small chunks do not sit idle
+    private CompletableFuture<Void> load(Builder builder) throws IOException {
+        List<SeedSource.Chunk> chunks = builder.source.split(builder.parallelism * 4);
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(builder.parallelism, Math.max(1, chunks.size())), task -> {
+            Thread thread = new Thread(task, "produit-seed-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<List<Produit>> withoutRef = new ArrayList<>(chunks.size());
+        List<CompletableFuture<?>> loads = new ArrayList<>(chunks.size());
+        for (SeedSource.Chunk chunk : chunks) {
+            List<Produit> kept = new ArrayList<>();
+            withoutRef.add(kept);
+            loads.add(CompletableFuture.runAsync(() -> loadChunk(chunk, builder.batchSize, kept), executor));
+        }
+        return allOf(loads)
+                .thenCompose(ignored -> saveAll(withoutRef, builder.batchSize, executor))
+                .whenComplete((ignored, failure) -> {
+                    executor.shutdown();
+                    if (failure == null)
+                        timeToFullyLoadedNanos = System.nanoTime() - startNanos;
+                });
+    }
+
+    // Stores the products of a chunk that carry a reference and keeps the others aside
+    private void loadChunk(SeedSource.Chunk chunk, int batchSize, List<Produit> withoutRef) {
+        List<Produit> toUpdate = new ArrayList<>();
+        try {
+            chunk.read(batchSize, batch -> {
+                for (Produit p : batch)
+                    (p.hasRef() ? toUpdate : withoutRef).add(p);
+                if (!toUpdate.isEmpty())
+                    repository.updateAll(toUpdate);
+                loaded.add(toUpdate.size());
+                toUpdate.clear();
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Saves the products kept aside, once the references of the source are all in use
+    private CompletableFuture<Void> saveAll(List<List<Produit>> withoutRef, int batchSize, ExecutorService executor) {
+        List<CompletableFuture<?>> saves = new ArrayList<>();
+        for (List<Produit> kept : withoutRef)
+            for (int from = 0; from < kept.size(); from += batchSize) {
+                List<Produit> batch = kept.subList(from, Math.min(kept.size(), from + batchSize));
+                saves.add(CompletableFuture.runAsync(() -> {
+                    repository.saveAll(batch);
+                    loaded.add(batch.size());
+                }, executor));
+            }
+        return allOf(saves);
+    }
+
+    private static CompletableFuture<Void> allOf(List<CompletableFuture<?>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private static void await(CompletableFuture<Void> done) throws IOException {
+        try {
+            done.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException)
+                throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Seeds the singleton from the system properties, if {@code produit.seed} names a file.
+     *
+     * @return The startup, or null to create the singleton with its default products.
+     * @throws UncheckedIOException if the seed cannot be loaded.
+     */
+    static RepositoryStartup fromSystemProperties() {
+        String seed = System.getProperty("produit.seed");
+        if (seed == null)
+            return null;
+        Builder builder = builder(SeedSource.json(Paths.get(seed)))
+                .background(Boolean.getBoolean("produit.seed.background"))
+                .parallelism(Integer.getInteger("produit.seed.parallelism", Runtime.getRuntime().availableProcessors()));
+        Long expectedSize = Long.getLong("produit.seed.expectedSize");
+        if (expectedSize != null)
+            builder.expectedSize(expectedSize);
+        try {
+            return builder.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot seed the repository from " + seed, e);
+        }
+    }
+
+    public ProduitRepositoryImpl getRepository() {
+        return repository;
+    }
+
+    /**
+     * @return true once every product of the source is stored.
+     */
+    public boolean isLoaded() {
+        return done.isDone() && !done.isCompletedExceptionally();
+    }
+
+    /**
+     * @return The number of products stored so far.
+     */
+    public long getLoaded() {
+        return loaded.sum();
+    }
+
+    /**
+     * Waits until every product of the source is stored.
+     *
+     * @throws IOException if the source could not be read.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public void awaitLoaded() throws IOException, InterruptedException {
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException)
+                throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IllegalStateException("Loading failed", cause);
+        }
+    }
+
+    /**
+     * @return The nanoseconds from the start until the repository could be queried.
+     */
+    public long getTimeToFirstQueryNanos() {
+        return timeToFirstQueryNanos;
+    }
+
+    /**
+     * @return The nanoseconds from the start until every product was stored, or -1 while loading
+     *         or if loading failed.
+     */
+    public long getTimeToFullyLoadedNanos() {
+        return timeToFullyLoadedNanos;
+    }
+
+    @Override
+    public String toString() {
+        long full = timeToFullyLoadedNanos;
+        return "RepositoryStartup{" +
+                "loaded=" + getLoaded() +
+                ", timeToFirstQuery=" + TimeUnit.NANOSECONDS.toMillis(timeToFirstQueryNanos) + "ms" +
+                ", timeToFullyLoaded=" + (full < 0 ? "loading" : TimeUnit.NANOSECONDS.toMillis(full) + "ms") +
+                '}';
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.repository.query.Criterion;
+import org.example.repository.query.ProduitField;
+
+import org.example.repository.query.Folding;
+
+import java.util.List;
+import java.util.function.Predicate; // For name tests the store evaluates per distinct name
+
+/**
+ * A criterion translated into a test on a row of a record-oriented store.
+ * Stores that keep products as raw fields (arrays, mapped files) describe how to read a row
+ * through {@link Source}; {@link #compile} then evaluates criteria on those fields without
+ * creating Produit objects.
+ */
+interface RowFilter {
+
+    long NO_DATE = Produit.NO_DATE; // Encodes a missing date in raw storage
+    byte NO_TYPE = -1; // Encodes a null TypeProduit in raw storage
+
+    /**
+     * @param row The row to test.
+     * @return true if the row satisfies the criterion.
+     */
+    boolean test(int row);
+
+    /**
+     * Field accessors of a raw store.
+     */
+    interface Source {
+
+        double prix(int row);
+
+        double quantiteStock(int row);
+
+        /**
+         * @return The expiration date in epoch milliseconds, or NO_DATE.
+         */
+        long datePremption(int row);
+
+        /**
+         * @return The TypeProduit ordinal, or NO_TYPE.
+         */
+        byte type(int row);
+
+        /**
+         * @param prefix The name prefix.
+         * @return A filter accepting rows whose name starts with the prefix.
+         */
+        RowFilter nomStartsWith(String prefix);
+
+        /**
+         * @param test A test on the name, never given null.
+         * @return A filter accepting rows with a name passing the test.
+         */
+        RowFilter nomMatches(Predicate<String> test);
+
+        /**
+         * @return The product held by a row, for criteria with no raw translation.
+         */
+        Produit materialize(int row);
+    }
+
+    /**
+     * Translates a criterion into raw field accesses.
+     *
+     * @param c The criterion.
+     * @param s The store to read.
+     * @return The equivalent row filter.
+     */
+    static RowFilter compile(Criterion c, Source s) {
+        if (c instanceof Criterion.All)
+            return row -> true;
+        if (c instanceof Criterion.TypeEquals) {
+            byte ordinal = (byte) ((Criterion.TypeEquals) c).getType().ordinal();
+            return row -> s.type(row) == ordinal;
+        }
+        if (c instanceof Criterion.Range) {
+            Criterion.Range r = (Criterion.Range) c;
+            if (r.getField() == ProduitField.PRIX)
+                return row -> r.accepts(s.prix(row));
+            return row -> r.accepts(s.quantiteStock(row));
+        }
+        if (c instanceof Criterion.NomStartsWith)
+            return s.nomStartsWith(((Criterion.NomStartsWith) c).getPrefix());
+        if (c instanceof Criterion.NomStartsWithIgnoringCase) {
+            String folded = ((Criterion.NomStartsWithIgnoringCase) c).getFolded();
+            return s.nomMatches(nom -> Folding.fold(nom).startsWith(folded));
+        }
+        if (c instanceof Criterion.NomContainsIgnoringCase) {
+            String folded = ((Criterion.NomContainsIgnoringCase) c).getFolded();
+            return s.nomMatches(nom -> Folding.fold(nom).contains(folded));
+        }
+        if (c instanceof Criterion.DatePremption) {
+            Criterion.DatePremption d = (Criterion.DatePremption) c;
+            long instant = d.getInstant();
+            if (d.isBefore())
+                return row -> {
+                    long date = s.datePremption(row);
+                    return date != NO_DATE && date < instant;
+                };
+            return row -> {
+                long date = s.datePremption(row);
+                return date != NO_DATE && date > instant;
+            };
+        }
+        if (c instanceof Criterion.And) {
+            RowFilter[] parts = compileAll(((Criterion.And) c).getOperands(), s);
+            return row -> {
+                for (RowFilter f : parts)
+                    if (!f.test(row))
+                        return false;
+                return true;
+            };
+        }
+        if (c instanceof Criterion.Or) {
+            RowFilter[] parts = compileAll(((Criterion.Or) c).getOperands(), s);
+            return row -> {
+                for (RowFilter f : parts)
+                    if (f.test(row))
+                        return true;
+                return false;
+            };
+        }
+        if (c instanceof Criterion.Not) {
+            RowFilter inner = compile(((Criterion.Not) c).getOperand(), s);
+            return row -> !inner.test(row);
+        }
+        return row -> c.test(s.materialize(row)); // Unknown criterion: fall back to the object form
+    }
+
+    static RowFilter[] compileAll(List<Criterion> operands, Source s) {
+        RowFilter[] parts = new RowFilter[operands.size()];
+        for (int i = 0; i < parts.length; i++)
+            parts[i] = compile(operands.get(i), s);
+        return parts;
+    }
+}
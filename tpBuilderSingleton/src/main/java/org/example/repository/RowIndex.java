@@ -0,0 +1,87 @@
+package org.example.repository;
+
+/**
+ * Maps product references to the dense row indexes of a column store.
+ * <p>
+ * An open-addressing table of primitive keys and values with linear probing, so that looking
+ * up a reference allocates nothing and costs one or two array reads. Entries are never removed:
+ * a column store keeps the row of a deleted product for the day its reference comes back.
+ * <p>
+ * Not thread-safe; the owning repository guards it with its own lock.
+ */
+final class RowIndex {
+
+    private static final long EMPTY = 0; // References start at 1
+
+    private long[] keys;
+    private int[] rows;
+    private int size;
+
+    /**
+     * @param expected The number of references to make room for.
+     */
+    RowIndex(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        rows = new int[capacity];
+    }
+
+    /**
+     * @param ref A reference, at least 1.
+     * @return The row of the reference, or -1 if it has none.
+     */
+    int get(long ref) {
+        int mask = keys.length - 1;
+        for (int i = slot(ref, mask); ; i = (i + 1) & mask) {
+            long key = keys[i];
+            if (key == ref)
+                return rows[i];
+            if (key == EMPTY)
+                return -1;
+        }
+    }
+
+    /**
+     * Gives a row to a reference that has none.
+     *
+     * @param ref A reference, at least 1, not in the index.
+     * @param row Its row.
+     */
+    void put(long ref, int row) {
+        if (2 * (size + 1) > keys.length)
+            rehash(keys.length * 2); // Load factor of at most one half keeps probe chains short
+        insert(keys, rows, ref, row);
+        size++;
+    }
+
+    /**
+     * @return The heap used by the table, in bytes.
+     */
+    long bytes() {
+        return (long) keys.length * (8 + 4);
+    }
+
+    private void rehash(int capacity) {
+        long[] newKeys = new long[capacity];
+        int[] newRows = new int[capacity];
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != EMPTY)
+                insert(newKeys, newRows, keys[i], rows[i]);
+        keys = newKeys;
+        rows = newRows;
+    }
+
+    private static void insert(long[] keys, int[] rows, long ref, int row) {
+        int mask = keys.length - 1;
+        int i = slot(ref, mask);
+        while (keys[i] != EMPTY)
+            i = (i + 1) & mask;
+        keys[i] = ref;
+        rows[i] = row;
+    }
+
+    private static int slot(long ref, int mask) {
+        long h = ref * 0x9E3779B97F4A7C15L; // Spreads dense references over the whole table
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+/**
+ * Weakly consistent spliterator over the rows of a row-oriented store (columnar or mapped).
+ * <p>
+ * The range of rows is fixed when the spliterator is created; rows are read under the store's
+ * read lock, a chunk at a time, and the products are handed to the action after the lock is
+ * released, so an action may write to the store without deadlocking. A row deleted before it is
+ * reached is skipped; a row appended after creation is not visited.
+ */
+final class RowSpliterator implements Spliterator<Produit> {
+
+    private static final int CHUNK = 1024; // Rows read per lock acquisition, and smallest split
+
+    private final Lock readLock;
+    private final RowFilter live; // Whether a row holds a product
+    private final RowFilter.Source source;
+    private final int characteristics;
+    private int row;
+    private final int end;
+
+    /**
+     * @param readLock The read lock of the store.
+     * @param live Tells whether a row holds a product; called with the lock held.
+     * @param source Materializes rows; called with the lock held.
+     * @param from The first row, inclusive.
+     * @param end The last row, exclusive; read by the caller under the lock.
+     * @param ordered Whether rows are in reference order.
+     */
+    RowSpliterator(Lock readLock, RowFilter live, RowFilter.Source source, int from, int end, boolean ordered) {
+        this.readLock = readLock;
+        this.live = live;
+        this.source = source;
+        this.row = from;
+        this.end = end;
+        this.characteristics = NONNULL | CONCURRENT | (ordered ? ORDERED : 0);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Produit> action) {
+        Produit next = null;
+        readLock.lock();
+        try {
+            while (next == null && row < end) {
+                int r = row++;
+                if (live.test(r))
+                    next = source.materialize(r);
+            }
+        } finally {
+            readLock.unlock();
+        }
+        if (next == null)
+            return false;
+        action.accept(next);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Produit> action) {
+        List<Produit> chunk = new ArrayList<>(CHUNK);
+        while (row < end) {
+            int to = (int) Math.min(end, (long) row + CHUNK);
+            readLock.lock();
+            try {
+                for (; row < to; row++)
+                    if (live.test(row))
+                        chunk.add(source.materialize(row));
+            } finally {
+                readLock.unlock();
+            }
+            chunk.forEach(action);
+            chunk.clear();
+        }
+    }
+
+    @Override
+    public Spliterator<Produit> trySplit() {
+        int remaining = end - row;
+        if (remaining < 2 * CHUNK)
+            return null;
+        int mid = row + remaining / 2;
+        Spliterator<Produit> prefix = new RowSpliterator(readLock, live, source, row, mid, (characteristics & ORDERED) != 0);
+        row = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - row; // Deleted rows make it an overestimate
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The products a repository is seeded with at startup, split into chunks that can be loaded in
+ * parallel. Products carrying a reference keep it; the others get a new one.
+ *
+ * @see RepositoryStartup
+ */
+public interface SeedSource {
+
+    /**
+     * @return An estimate of the number of products, used to size the store; -1 if unknown.
+     * @throws IOException if the source cannot be read.
+     */
+    long estimateSize() throws IOException;
+
+    /**
+     * Splits the products into chunks, each read by one thread.
+     *
+     * @param count The number of chunks wanted; the source may return fewer.
+     * @return The chunks, covering every product exactly once.
+     * @throws IOException if the source cannot be read.
+     */
+    List<Chunk> split(int count) throws IOException;
+
+    /**
+     * A part of a seed source.
+     */
+    interface Chunk {
+        /**
+         * Reads the products of the chunk and hands them over in batches.
+         * The batch list is reused: the consumer must not keep a reference to it.
+         *
+         * @param batchSize The maximum number of products per batch.
+         * @param sink Receives each batch.
+         * @throws IOException if the source cannot be read or is invalid.
+         */
+        void read(int batchSize, Consumer<List<Produit>> sink) throws IOException;
+    }
+
+    /**
+     * A file written by {@link org.example.io.ProduitJson}. NDJSON files are split at line
+     * boundaries and parsed in parallel; a JSON array is read as a single chunk.
+     *
+     * @param file The file.
+     * @return The source.
+     */
+    static SeedSource json(Path file) {
+        return new JsonSeedSource(file);
+    }
+
+    /**
+     * The products of another repository, for instance a {@link ProduitSnapshot} of a live
+     * catalog, split along its spliterator.
+     *
+     * @param repository The repository to copy.
+     * @return The source.
+     */
+    static SeedSource of(IProduitRepository repository) {
+        return new SpliteratorSeedSource(repository::spliterator);
+    }
+
+    /**
+     * @param produits The products.
+     * @return A source reading them.
+     */
+    static SeedSource of(Collection<Produit> produits) {
+        return new SpliteratorSeedSource(produits::spliterator);
+    }
+}
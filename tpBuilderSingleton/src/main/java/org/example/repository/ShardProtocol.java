@@ -0,0 +1,150 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*; // Lists of products and references
+
+/**
+ * Messages exchanged between a {@link RemoteProduitRepository} and a {@link ShardServer}.
+ * <p>
+ * Every request is an operation code followed by its arguments; products travel in the
+ * {@link ProduitRecords} format and queries in the {@link org.example.repository.query.QueryRecords}
+ * format. Every response starts with a status: {@link #OK} followed by the result, or one of the
+ * failure statuses followed by what is needed to throw the same exception on the client side.
+ * A connection carries one request at a time.
+ */
+final class ShardProtocol {
+
+    static final byte SAVE = 1;
+    static final byte SAVE_ALL = 2;
+    static final byte FIND_ALL = 3;
+    static final byte FIND_BY_REF = 4;
+    static final byte FIND_ALL_BY_REFS = 5;
+    static final byte UPDATE = 6;
+    static final byte UPDATE_ALL = 7;
+    static final byte UPDATE_VERSIONED = 8;
+    static final byte ADJUST_STOCK = 9;
+    static final byte DETELE = 10;
+    static final byte DELETE_ALL = 11;
+    static final byte SEARCH = 12;
+    static final byte FIND_BY_TYPE = 13;
+    static final byte FIND_BY_PRIX_BETWEEN = 14;
+    static final byte FIND_BY_QUANTITE_STOCK_GREATER_THAN = 15;
+    static final byte FIND_BY_NOM_PREFIX = 16;
+    static final byte FIND_BY_NOM_CONTAINING = 17;
+    static final byte FIND_PAGE_AFTER = 18;
+    static final byte FIND_NEXT_EXPIRING = 19;
+    static final byte DRAIN_EXPIRED_BEFORE = 20;
+
+    static final byte OK = 0;
+    static final byte ILLEGAL_ARGUMENT = 1; // Followed by the message
+    static final byte NO_SUCH_ELEMENT = 2; // Followed by the message
+    static final byte OPTIMISTIC_LOCK = 3; // Followed by the reference, the expected and the actual version
+    static final byte FAILURE = 4; // Any other exception, followed by its description
+
+    private ShardProtocol() {
+    }
+
+    static void writeProduits(DataOutput out, Collection<Produit> produits) throws IOException {
+        out.writeInt(produits.size());
+        for (Produit p : produits)
+            ProduitRecords.write(out, p);
+    }
+
+    static List<Produit> readProduits(DataInput in) throws IOException {
+        int n = readCount(in);
+        List<Produit> produits = new ArrayList<>(Math.min(n, 1 << 16)); // The count is untrusted until the records are read
+        for (int i = 0; i < n; i++)
+            produits.add(ProduitRecords.read(in));
+        return produits;
+    }
+
+    static void writeOptional(DataOutput out, Optional<Produit> p) throws IOException {
+        out.writeBoolean(p.isPresent());
+        if (p.isPresent())
+            ProduitRecords.write(out, p.get());
+    }
+
+    static Optional<Produit> readOptional(DataInput in) throws IOException {
+        return in.readBoolean() ? Optional.of(ProduitRecords.read(in)) : Optional.empty();
+    }
+
+    // Null references are dropped: no product can have one
+    static void writeRefs(DataOutput out, Collection<Long> refs) throws IOException {
+        int n = 0;
+        for (Long ref : refs)
+            if (ref != null)
+                n++;
+        out.writeInt(n);
+        for (Long ref : refs)
+            if (ref != null)
+                out.writeLong(ref);
+    }
+
+    static List<Long> readRefs(DataInput in) throws IOException {
+        int n = readCount(in);
+        List<Long> refs = new ArrayList<>(Math.min(n, 1 << 16));
+        for (int i = 0; i < n; i++)
+            refs.add(in.readLong());
+        return refs;
+    }
+
+    private static int readCount(DataInput in) throws IOException {
+        int n = in.readInt();
+        if (n < 0)
+            throw new IOException("Invalid element count " + n);
+        return n;
+    }
+
+    /**
+     * Writes the failure status matching an exception thrown by the repository.
+     *
+     * @param out The destination.
+     * @param e The exception.
+     * @throws IOException if the destination fails.
+     */
+    static void writeFailure(DataOutput out, RuntimeException e) throws IOException {
+        if (e instanceof OptimisticLockException) {
+            OptimisticLockException conflict = (OptimisticLockException) e;
+            out.writeByte(OPTIMISTIC_LOCK);
+            out.writeLong(conflict.getRef());
+            out.writeLong(conflict.getExpectedVersion());
+            out.writeLong(conflict.getActualVersion());
+        } else if (e instanceof IllegalArgumentException) {
+            out.writeByte(ILLEGAL_ARGUMENT);
+            out.writeUTF(String.valueOf(e.getMessage()));
+        } else if (e instanceof NoSuchElementException) {
+            out.writeByte(NO_SUCH_ELEMENT);
+            out.writeUTF(String.valueOf(e.getMessage()));
+        } else {
+            out.writeByte(FAILURE);
+            out.writeUTF(e.toString());
+        }
+    }
+
+    /**
+     * Reads the rest of a failed response.
+     *
+     * @param status The status read.
+     * @param in The source.
+     * @return The exception to throw to the caller.
+     * @throws IOException if the source fails or the status is unknown.
+     */
+    static RuntimeException readFailure(byte status, DataInput in) throws IOException {
+        switch (status) {
+            case OPTIMISTIC_LOCK:
+                return new OptimisticLockException(in.readLong(), in.readLong(), in.readLong());
+            case ILLEGAL_ARGUMENT:
+                return new IllegalArgumentException(in.readUTF());
+            case NO_SUCH_ELEMENT:
+                return new NoSuchElementException(in.readUTF());
+            case FAILURE:
+                return new IllegalStateException("Shard failed: " + in.readUTF());
+            default:
+                throw new IOException("Invalid response status " + status);
+        }
+    }
+}
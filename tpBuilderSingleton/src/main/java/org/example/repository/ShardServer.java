@@ -0,0 +1,313 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.repository.query.QueryRecords; // Queries sent by the clients
+
+import java.io.*; // Socket streams
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Serves a repository to {@link RemoteProduitRepository} clients over the loopback interface,
+ * so that each shard of a {@link ShardedProduitRepository} can live in its own JVM with its own heap.
+ * <p>
+ * Each connection is served by its own thread and carries one request at a time; clients open
+ * as many connections as they have concurrent callers. Requests run directly against the
+ * repository, which provides the thread safety. A request whose arguments cannot be decoded
+ * leaves the stream at an unknown point, so it drops the connection like an I/O error rather than
+ * being answered with a failure. I/O errors that stop the server accepting connections or drop
+ * a connection are handed to an error callback, called on the server's threads; by default they
+ * are rethrown to the uncaught exception handler of those threads.
+ * <p>
+ * Run as a program, it hosts one empty shard:
+ * <pre>
+ * java -cp ... org.example.repository.ShardServer &lt;index&gt; &lt;count&gt; [port]
+ * </pre>
+ * prints the port it listens on, and stops when its standard input is closed, so that shards
+ * started by a parent process stop with it.
+ */
+public final class ShardServer implements Closeable {
+
+    private final IProduitRepository repository;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Consumer<? super IOException> onError;
+    private volatile boolean closed;
+
+    /**
+     * Reads the arguments of a request.
+     */
+    private interface Decoder<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private ShardServer(IProduitRepository repository, ServerSocket serverSocket, Consumer<? super IOException> onError) {
+        this.repository = repository;
+        this.serverSocket = serverSocket;
+        this.onError = onError;
+    }
+
+    /**
+     * Starts serving a repository.
+     *
+     * @param repository The repository to serve, typically {@link ProduitRepositoryImpl#newShard}.
+     * @param port The loopback port to listen on, 0 for any free port.
+     * @return The running server.
+     * @throws IOException if the port cannot be bound.
+     */
+    public static ShardServer start(IProduitRepository repository, int port) throws IOException {
+        return start(repository, port, e -> {
+            throw new UncheckedIOException(e);
+        });
+    }
+
+    /**
+     * Starts serving a repository, reporting the errors met once started to a callback.
+     *
+     * @param repository The repository to serve, typically {@link ProduitRepositoryImpl#newShard}.
+     * @param port The loopback port to listen on, 0 for any free port.
+     * @param onError Receives the errors that stop the server accepting connections or drop a
+     *                connection, except those caused by close().
+     * @return The running server.
+     * @throws IOException if the port cannot be bound.
+     */
+    public static ShardServer start(IProduitRepository repository, int port, Consumer<? super IOException> onError) throws IOException {
+        Objects.requireNonNull(onError, "onError");
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        ShardServer server = new ShardServer(repository, serverSocket, onError);
+        Thread acceptor = new Thread(server::accept, "shard-server-" + serverSocket.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server;
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!closed)
+                    onError.accept(e); // The server no longer accepts connections
+                return;
+            }
+            connections.add(socket);
+            Thread handler = new Thread(() -> serve(socket), "shard-connection-" + socket.getPort());
+            handler.setDaemon(true);
+            handler.start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true); // Responses are flushed whole; do not wait to coalesce them
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            int op;
+            while ((op = in.read()) != -1) { // The client closed the connection at -1
+                try {
+                    handle((byte) op, in, out);
+                } catch (RuntimeException e) {
+                    ShardProtocol.writeFailure(out, e);
+                }
+                out.flush();
+            }
+        } catch (SocketException e) {
+            // Connection reset by the client, or closed by close()
+        } catch (IOException e) {
+            if (!closed)
+                onError.accept(e); // The connection is dropped
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    // Reads request arguments; any failure to decode them is an IOException, so that it drops the connection
+    private static <T> T decode(Decoder<T> decoder, DataInputStream in) throws IOException {
+        try {
+            return decoder.read(in);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed request", e);
+        }
+    }
+
+    // Reads the arguments, calls the repository, then writes OK and the result: a failing call writes nothing
+    private void handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (op) {
+            case ShardProtocol.SAVE: {
+                Produit saved = repository.save(decode(ProduitRecords::read, in));
+                out.writeByte(ShardProtocol.OK);
+                ProduitRecords.write(out, saved);
+                break;
+            }
+            case ShardProtocol.SAVE_ALL: {
+                List<Produit> saved = repository.saveAll(decode(ShardProtocol::readProduits, in));
+                out.writeByte(ShardProtocol.OK);
+                ShardProtocol.writeProduits(out, saved);
+                break;
+            }
+            case ShardProtocol.FIND_ALL: {
+                List<Produit> all = repository.findAll();
+                out.writeByte(ShardProtocol.OK);
+                ShardProtocol.writeProduits(out, all);
+                break;
+            }
+            case ShardProtocol.FIND_BY_REF: {
+                Optional<Produit> found = repository.finfByRef(in.readLong());
+                out.writeByte(ShardProtocol.OK);
+                ShardProtocol.writeOptional(out, found);
+                break;
+            }
+            case ShardProtocol.FIND_ALL_BY_REFS: {
+                List<Produit> found = repository.findAllByRefs(decode(ShardProtocol::readRefs, in));
+                out.writeByte(ShardProtocol.OK);
+                ShardProtocol.writeProduits(out, found);
+                break;
+            }
+            case ShardProtocol.UPDATE: {
+                Produit updated = repository.update(decode(ProduitRecords::read, in));
+                out.writeByte(ShardProtocol.OK);
+                ProduitRecords.write(out, updated);
+                break;
+            }
+            case ShardProtocol.UPDATE_ALL: {
+                List<Produit> updated = repository.updateAll(decode(ShardProtocol::readProduits, in));
+                out.writeByte(ShardProtocol.OK);
+                ShardProtocol.writeProduits(out, updated);
+                break;
+            }
+            case ShardProtocol.UPDATE_VERSIONED: {
+                Produit updated = repository.updateVersioned(decode(ProduitRecords::read, in));
+                out.writeByte(ShardProtocol.OK);
+                ProduitRecords.write(out, updated);
+                break;
+            }
+            case ShardProtocol.ADJUST_STOCK: {
+                long ref = in.readLong();
+                Produit adjusted = repository.adjustStock(ref, in.readDouble());
+                out.writeByte(ShardProtocol.OK);
+                ProduitRecords.write(out, adjusted);
+                break;
+            }
+            case ShardProtocol.DETELE:
+                repository.detele(in.readLong());
+                out.writeByte(ShardProtocol.OK);
+                break;
+            case ShardProtocol.DELETE_ALL:
+                repository.deleteAll(decode(ShardProtocol::readRefs, in));
+                out.writeByte(ShardProtocol.OK);
+                break;
+            case ShardProtocol.SEARCH:
+                writeList(out, repository.search(decode(QueryRecords::read, in)));
+                break;
+            case ShardProtocol.FIND_BY_TYPE: {
+                int type = in.readUnsignedByte();
+                if (type >= TypeProduit.values().length)
+                    throw new IOException("Invalid product type ordinal " + type);
+                writeList(out, repository.findByType(TypeProduit.values()[type]));
+                break;
+            }
+            case ShardProtocol.FIND_BY_PRIX_BETWEEN: {
+                double min = in.readDouble();
+                writeList(out, repository.findByPrixBetween(min, in.readDouble()));
+                break;
+            }
+            case ShardProtocol.FIND_BY_QUANTITE_STOCK_GREATER_THAN:
+                writeList(out, repository.findByQuantiteStockGreaterThan(in.readDouble()));
+                break;
+            case ShardProtocol.FIND_BY_NOM_PREFIX: {
+                String prefix = in.readUTF();
+                writeList(out, repository.findByNomPrefix(prefix, in.readInt()));
+                break;
+            }
+            case ShardProtocol.FIND_BY_NOM_CONTAINING: {
+                String fragment = in.readUTF();
+                writeList(out, repository.findByNomContaining(fragment, in.readInt()));
+                break;
+            }
+            case ShardProtocol.FIND_PAGE_AFTER: {
+                long afterRef = in.readLong();
+                writeList(out, repository.findPageAfter(afterRef, in.readInt()));
+                break;
+            }
+            case ShardProtocol.FIND_NEXT_EXPIRING: {
+                Optional<Produit> next = repository.findNextExpiring(new Date(in.readLong()));
+                out.writeByte(ShardProtocol.OK);
+                ShardProtocol.writeOptional(out, next);
+                break;
+            }
+            case ShardProtocol.DRAIN_EXPIRED_BEFORE:
+                writeList(out, repository.drainExpiredBefore(new Date(in.readLong())));
+                break;
+            default:
+                throw new IOException("Unknown operation " + op);
+        }
+    }
+
+    private static void writeList(DataOutput out, List<Produit> produits) throws IOException {
+        out.writeByte(ShardProtocol.OK);
+        ShardProtocol.writeProduits(out, produits);
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones. The repository is left as is.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // Closing anyway
+        }
+        for (Socket socket : connections) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+    }
+
+    /**
+     * Hosts one empty shard until standard input is closed.
+     *
+     * @param args The shard index, the number of shards and optionally the port (any free port by default).
+     * @throws IOException if the port cannot be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ShardServer <index> <count> [port]");
+            System.exit(2);
+        }
+        int index = Integer.parseInt(args[0]);
+        int count = Integer.parseInt(args[1]);
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        try (ShardServer server = start(ProduitRepositoryImpl.newShard(index, count), port)) {
+            System.out.println("Shard " + index + " of " + count + " listening on port " + server.getPort());
+            System.out.flush();
+            while (System.in.read() != -1) {
+                // Only the end of the stream matters
+            }
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.repository.query.Criterion;
+import org.example.repository.query.Folding; // Order of the name prefix results
+import org.example.repository.query.ProduitField;
+import org.example.repository.query.ProduitQuery;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.*; // Lists and maps of the scattered calls
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Catalog partitioned by reference over independent shards, each a complete repository with its
+ * own store, indexes and locks, either in this JVM or in another process behind a {@link ShardServer}.
+ * <p>
+ * Product r lives in shard (r - 1) % n, and each shard generates only the references it owns
+ * (see {@link ProduitRepositoryImpl#newShard}), so shards never coordinate: a save goes to a
+ * random shard, which picks the reference, and every other single-product operation is routed
+ * by its reference. Batches are split by shard. Searches are scattered to all shards in
+ * parallel and their answers gathered: concatenated, or merged when the result is ordered or paged.
+ * <p>
+ * Operations on several shards are not atomic as a whole: a batch or a search may observe the
+ * writes of some shards and not yet of others, like the weakly consistent reads of a single shard.
+ */
+public class ShardedProduitRepository implements IProduitRepository, Closeable {
+
+    private final IProduitRepository[] shards;
+    private final ExecutorService scatter; // Runs the calls to all shards but one; the caller runs the last
+
+    private ShardedProduitRepository(List<? extends IProduitRepository> shards) {
+        if (shards.isEmpty())
+            throw new IllegalArgumentException("A sharded repository needs at least one shard");
+        this.shards = shards.toArray(new IProduitRepository[0]);
+        this.scatter = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "shard-scatter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Creates a repository of empty in-memory shards in this JVM.
+     *
+     * @param count The number of shards.
+     * @return A new, empty repository.
+     */
+    public static ShardedProduitRepository local(int count) {
+        List<IProduitRepository> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            shards.add(ProduitRepositoryImpl.newShard(i, count));
+        return new ShardedProduitRepository(shards);
+    }
+
+    /**
+     * Connects to shards served by other processes, e.g. started with {@link ShardServer#main}.
+     *
+     * @param addresses The address of each shard, shard 0 first.
+     * @return A repository over the remote shards.
+     * @throws IOException if a shard cannot be reached; the shards already connected are closed.
+     */
+    public static ShardedProduitRepository connect(List<InetSocketAddress> addresses) throws IOException {
+        List<RemoteProduitRepository> shards = new ArrayList<>(addresses.size());
+        try {
+            for (InetSocketAddress address : addresses)
+                shards.add(RemoteProduitRepository.connect(address));
+        } catch (IOException e) {
+            shards.forEach(RemoteProduitRepository::close);
+            throw e;
+        }
+        return new ShardedProduitRepository(shards);
+    }
+
+    /**
+     * Assembles a repository from existing shards.
+     *
+     * @param shards The shards, shard i holding and generating only the references r such that
+     *               (r - 1) % shards.size() == i.
+     * @return A repository over the shards.
+     */
+    public static ShardedProduitRepository of(List<? extends IProduitRepository> shards) {
+        return new ShardedProduitRepository(new ArrayList<>(shards));
+    }
+
+    /**
+     * @return The number of shards.
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @param ref A product reference, at least 1.
+     * @return The index of the shard holding it.
+     */
+    public int shardOf(long ref) {
+        return (int) ((ref - 1) % shards.length);
+    }
+
+    private IProduitRepository shardFor(long ref) {
+        if (ref < 1)
+            throw new IllegalArgumentException("Invalid product reference " + ref);
+        return shards[shardOf(ref)];
+    }
+
+    // Calls every shard in parallel and returns the answers in shard order
+    private <T> List<T> scatter(Function<IProduitRepository, T> call) {
+        return scatter(shards.length, i -> call.apply(shards[i]));
+    }
+
+    // Runs the parts in parallel; the first failure is thrown once every part is done
+    private <T> List<T> scatter(int parts, Function<Integer, T> part) {
+        if (parts == 1)
+            return Collections.singletonList(part.apply(0));
+        List<CompletableFuture<T>> futures = new ArrayList<>(parts - 1);
+        for (int i = 0; i < parts - 1; i++) {
+            int index = i;
+            futures.add(CompletableFuture.supplyAsync(() -> part.apply(index), scatter));
+        }
+        List<T> results = new ArrayList<>(parts);
+        RuntimeException failure = null;
+        T last = null;
+        try {
+            last = part.apply(parts - 1);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                if (failure == null)
+                    failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        if (failure != null)
+            throw failure;
+        results.add(last);
+        return results;
+    }
+
+    private static List<Produit> concat(List<List<Produit>> parts) {
+        int n = 0;
+        for (List<Produit> part : parts)
+            n += part.size();
+        List<Produit> all = new ArrayList<>(n);
+        for (List<Produit> part : parts)
+            all.addAll(part);
+        return all;
+    }
+
+    // The valid references of a batch, one list per shard; null and non-positive ones match no product
+    private List<List<Long>> splitRefs(Collection<Long> refs) {
+        List<List<Long>> parts = new ArrayList<>(shards.length);
+        for (int s = 0; s < shards.length; s++)
+            parts.add(new ArrayList<>());
+        for (Long ref : refs)
+            if (ref != null && ref >= 1)
+                parts.get(shardOf(ref)).add(ref);
+        return parts;
+    }
+
+    // The positions of a batch, grouped by the shard of their reference
+    private int[][] groupByShard(long[] refs) {
+        int[] counts = new int[shards.length];
+        for (long ref : refs)
+            counts[shardOf(ref)]++;
+        int[][] groups = new int[shards.length][];
+        for (int s = 0; s < shards.length; s++)
+            groups[s] = new int[counts[s]];
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < refs.length; i++) {
+            int s = shardOf(refs[i]);
+            groups[s][counts[s]++] = i;
+        }
+        return groups;
+    }
+
+    /**
+     * Saves a product in a random shard, which assigns its reference.
+     */
+    @Override
+    public Produit save(Produit p) {
+        return shards[ThreadLocalRandom.current().nextInt(shards.length)].save(p);
+    }
+
+    /**
+     * Splits the batch in one contiguous part per shard and saves the parts in parallel.
+     */
+    @Override
+    public List<Produit> saveAll(Collection<Produit> produits) {
+        List<Produit> batch = produits instanceof List ? (List<Produit>) produits : new ArrayList<>(produits);
+        int parts = Math.max(1, Math.min(shards.length, batch.size()));
+        int first = ThreadLocalRandom.current().nextInt(shards.length); // Small batches do not all go to shard 0
+        return concat(scatter(parts, i -> {
+            List<Produit> part = batch.subList((int) ((long) batch.size() * i / parts), (int) ((long) batch.size() * (i + 1) / parts));
+            return shards[(first + i) % shards.length].saveAll(part);
+        }));
+    }
+
+    @Override
+    public List<Produit> findAll() {
+        return concat(scatter(IProduitRepository::findAll));
+    }
+
+    @Override
+    public Optional<Produit> finfByRef(Long ref) {
+        if (ref == null || ref < 1)
+            return Optional.empty(); // No shard holds such a reference
+        return shards[shardOf(ref)].finfByRef(ref);
+    }
+
+    /**
+     * Looks the references up in parallel, one batch per shard.
+     */
+    @Override
+    public List<Produit> findAllByRefs(Collection<Long> refs) {
+        List<List<Long>> parts = splitRefs(refs);
+        Map<Long, Produit> found = new HashMap<>();
+        for (List<Produit> part : scatter(shards.length, s -> parts.get(s).isEmpty()
+                ? Collections.<Produit>emptyList() : shards[s].findAllByRefs(parts.get(s))))
+            for (Produit p : part)
+                found.put(p.getRef(), p);
+        List<Produit> result = new ArrayList<>(found.size());
+        for (Long ref : refs) {
+            Produit p = ref == null ? null : found.get(ref);
+            if (p != null)
+                result.add(p); // In the order of the references, repeated ones included
+        }
+        return result;
+    }
+
+    @Override
+    public Produit update(Produit p) {
+        if (!p.hasRef())
+            throw new IllegalArgumentException("Cannot update a product without a reference");
+        return shardFor(p.getRef()).update(p);
+    }
+
+    @Override
+    public Produit restore(Produit p) {
+        if (!p.hasRef())
+            throw new IllegalArgumentException("Cannot restore a product without a reference");
+        return shardFor(p.getRef()).restore(p);
+    }
+
+    /**
+     * Updates each shard's part of the batch in parallel.
+     *
+     * @throws IllegalArgumentException if a product has no valid reference; nothing is updated then.
+     */
+    @Override
+    public List<Produit> updateAll(Collection<Produit> produits) {
+        List<Produit> batch = new ArrayList<>(produits);
+        long[] refs = new long[batch.size()];
+        for (int i = 0; i < refs.length; i++) {
+            if (!batch.get(i).hasRef())
+                throw new IllegalArgumentException("Cannot update a product without a reference");
+            refs[i] = batch.get(i).getRef();
+            if (refs[i] < 1)
+                throw new IllegalArgumentException("Invalid product reference " + refs[i]);
+        }
+        int[][] groups = groupByShard(refs);
+        Produit[] updated = new Produit[refs.length];
+        scatter(shards.length, s -> {
+            if (groups[s].length == 0)
+                return null;
+            List<Produit> group = new ArrayList<>(groups[s].length);
+            for (int i : groups[s])
+                group.add(batch.get(i));
+            List<Produit> done = shards[s].updateAll(group);
+            for (int k = 0; k < groups[s].length; k++)
+                updated[groups[s][k]] = done.get(k); // Each position is written by the one shard owning it
+            return null;
+        });
+        return Arrays.asList(updated);
+    }
+
+    @Override
+    public Produit updateVersioned(Produit p) {
+        if (!p.hasRef())
+            throw new IllegalArgumentException("Cannot update a product without a reference");
+        return shardFor(p.getRef()).updateVersioned(p);
+    }
+
+    @Override
+    public Produit adjustStock(long ref, double delta) {
+        if (ref < 1)
+            throw new NoSuchElementException("No product with reference " + ref);
+        return shards[shardOf(ref)].adjustStock(ref, delta);
+    }
+
+    @Override
+    public Produit reprice(long ref, DoubleUnaryOperator fn) {
+        if (ref < 1)
+            throw new NoSuchElementException("No product with reference " + ref);
+        return shards[shardOf(ref)].reprice(ref, fn);
+    }
+
+    @Override
+    public void detele(Long ref) {
+        if (ref != null && ref >= 1)
+            shards[shardOf(ref)].detele(ref);
+    }
+
+    @Override
+    public void deleteAll(Collection<Long> refs) {
+        List<List<Long>> parts = splitRefs(refs);
+        scatter(shards.length, s -> {
+            if (!parts.get(s).isEmpty())
+                shards[s].deleteAll(parts.get(s));
+            return null;
+        });
+    }
+
+    @Override
+    public List<Produit> search(Predicate<Produit> predicate) {
+        return concat(scatter(s -> s.search(predicate)));
+    }
+
+    /**
+     * Asks every shard for the query's window (its results up to the end of the requested page),
+     * then orders and pages their union.
+     */
+    @Override
+    public List<Produit> search(ProduitQuery query) {
+        if (query.getLimit() == 0)
+            return new ArrayList<>();
+        if (shards.length == 1)
+            return shards[0].search(query);
+        ProduitQuery window = query.window();
+        return query.apply(concat(scatter(s -> s.search(window))), false);
+    }
+
+    @Override
+    public ProduitStatistics aggregate(Criterion criterion) {
+        ProduitStatistics total = new ProduitStatistics();
+        for (ProduitStatistics part : scatter(s -> s.aggregate(criterion)))
+            total.combine(part);
+        return total;
+    }
+
+    @Override
+    public Map<TypeProduit, InventorySummary> inventory() {
+        Map<TypeProduit, InventorySummary> total = new EnumMap<>(TypeProduit.class);
+        for (Map<TypeProduit, InventorySummary> part : scatter(IProduitRepository::inventory))
+            part.forEach((type, summary) -> total.merge(type, summary, InventorySummary::combine));
+        return total;
+    }
+
+    @Override
+    public InventorySummary inventory(TypeProduit type) {
+        InventorySummary total = null;
+        for (InventorySummary part : scatter(s -> s.inventory(type)))
+            total = total == null ? part : total.combine(part);
+        return total;
+    }
+
+    @Override
+    public List<Produit> findByType(TypeProduit type) {
+        return concat(scatter(s -> s.findByType(type)));
+    }
+
+    @Override
+    public List<Produit> findByPrixBetween(double min, double max) {
+        return concat(scatter(s -> s.findByPrixBetween(min, max)));
+    }
+
+    @Override
+    public List<Produit> findByQuantiteStockGreaterThan(double seuil) {
+        return concat(scatter(s -> s.findByQuantiteStockGreaterThan(seuil)));
+    }
+
+    /**
+     * Merges the first results of every shard in (folded name, reference) order.
+     */
+    @Override
+    public List<Produit> findByNomPrefix(String prefix, int limit) {
+        List<Produit> candidates = concat(scatter(s -> s.findByNomPrefix(prefix, limit)));
+        List<Map.Entry<String, Produit>> byName = new ArrayList<>(candidates.size());
+        for (Produit p : candidates)
+            byName.add(new AbstractMap.SimpleImmutableEntry<>(Folding.fold(p.getNom()), p)); // Fold each name once
+        byName.sort(Map.Entry.<String, Produit>comparingByKey().thenComparingLong(e -> e.getValue().getRef()));
+        List<Produit> result = new ArrayList<>(Math.min(limit, byName.size()));
+        for (int i = 0; i < byName.size() && i < limit; i++)
+            result.add(byName.get(i).getValue());
+        return result;
+    }
+
+    @Override
+    public List<Produit> findByNomContaining(String fragment, int limit) {
+        return firstByRef(scatter(s -> s.findByNomContaining(fragment, limit)), limit);
+    }
+
+    @Override
+    public List<Produit> findPageAfter(long afterRef, int limit) {
+        return firstByRef(scatter(s -> s.findPageAfter(afterRef, limit)), limit);
+    }
+
+    // The first products in reference order among the shards' answers
+    private static List<Produit> firstByRef(List<List<Produit>> parts, int limit) {
+        List<Produit> all = concat(parts);
+        all.sort(ProduitField.REF.comparator());
+        return all.size() <= limit ? all : new ArrayList<>(all.subList(0, limit));
+    }
+
+    @Override
+    public Optional<Produit> findNextExpiring(Date instant) {
+        Comparator<Produit> order = ProduitField.DATE_PREMPTION.comparator().thenComparing(ProduitField.REF.comparator());
+        Produit next = null;
+        for (Optional<Produit> candidate : scatter(s -> s.findNextExpiring(instant)))
+            if (candidate.isPresent() && (next == null || order.compare(candidate.get(), next) < 0))
+                next = candidate.get();
+        return Optional.ofNullable(next);
+    }
+
+    @Override
+    public List<Produit> drainExpiredBefore(Date instant) {
+        List<Produit> expired = concat(scatter(s -> s.drainExpiredBefore(instant)));
+        expired.sort(ProduitField.DATE_PREMPTION.comparator().thenComparing(ProduitField.REF.comparator()));
+        return expired;
+    }
+
+    /**
+     * Stops the scatter threads and closes the shards that can be closed, such as remote ones.
+     *
+     * @throws IOException if a shard fails to close; the others are closed anyway.
+     */
+    @Override
+    public void close() throws IOException {
+        scatter.shutdown();
+        IOException failure = null;
+        for (IProduitRepository shard : shards) {
+            if (shard instanceof Closeable) {
+                try {
+                    ((Closeable) shard).close();
+                } catch (IOException e) {
+                    if (failure == null)
+                        failure = e;
+                    else
+                        failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+
+import java.util.*; // For the chunks and their batches
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A seed source over products already in memory, split with Spliterator.trySplit().
+ */
+final class SpliteratorSeedSource implements SeedSource {
+
+    private final Supplier<Spliterator<Produit>> spliterator;
+
+    SpliteratorSeedSource(Supplier<Spliterator<Produit>> spliterator) {
+        this.spliterator = spliterator;
+    }
+
+    @Override
+    public long estimateSize() {
+        long size = spliterator.get().estimateSize();
+        return size == Long.MAX_VALUE ? -1 : size;
+    }
+
+    @Override
+    public List<Chunk> split(int count) {
+        Deque<Spliterator<Produit>> parts = new ArrayDeque<>();
+        parts.add(spliterator.get());
+        List<Spliterator<Produit>> unsplittable = new ArrayList<>();
+        // Split the largest part first, until there are enough parts or none splits any more
+        while (!parts.isEmpty() && parts.size() + unsplittable.size() < count) {
+            Spliterator<Produit> part = parts.pollFirst();
+            Spliterator<Produit> prefix = part.trySplit();
+            if (prefix == null) {
+                unsplittable.add(part);
+            } else {
+                parts.addLast(prefix);
+                parts.addLast(part);
+            }
+        }
+        List<Chunk> chunks = new ArrayList<>(parts.size() + unsplittable.size());
+        for (Spliterator<Produit> part : parts)
+            chunks.add(chunk(part));
+        for (Spliterator<Produit> part : unsplittable)
+            chunks.add(chunk(part));
+        return chunks;
+    }
+
+    private static Chunk chunk(Spliterator<Produit> part) {
+        return (batchSize, sink) -> {
+            List<Produit> batch = new ArrayList<>(Math.min(batchSize, 10_000));
+            Consumer<Produit> add = p -> {
+                batch.add(p);
+                if (batch.size() >= batchSize) {
+                    sink.accept(batch);
+                    batch.clear();
+                }
+            };
+            part.forEachRemaining(add);
+            if (!batch.isEmpty())
+                sink.accept(batch);
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.repository;
+
+/**
+ * When the write-ahead log forces its content to disk.
+ * Stronger policies lose less on a crash and cost more write throughput.
+ */
+public final class SyncPolicy {
+
+    /**
+     * The kinds of policy.
+     */
+    public enum Mode {
+        // Every mutation is on disk before it returns; concurrent writers share one fsync
+        EVERY_WRITE,
+        // A background thread forces the log at a fixed interval
+        INTERVAL,
+        // The log is written to the OS and never forced; the OS flushes it when it sees fit
+        OS_MANAGED
+    }
+
+    private final Mode mode;
+    private final long intervalMillis;
+
+    private SyncPolicy(Mode mode, long intervalMillis) {
+        this.mode = mode;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * @return A policy syncing before each mutation returns, with group commit.
+     */
+    public static SyncPolicy everyWrite() {
+        return new SyncPolicy(Mode.EVERY_WRITE, 0);
+    }
+
+    /**
+     * @param millis The interval between two syncs; at most this much is lost on a crash.
+     * @return A policy syncing periodically.
+     */
+    public static SyncPolicy everyMillis(long millis) {
+        if (millis <= 0)
+            throw new IllegalArgumentException("Sync interval must be positive: " + millis);
+        return new SyncPolicy(Mode.INTERVAL, millis);
+    }
+
+    /**
+     * @return A policy leaving writes to the operating system.
+     */
+    public static SyncPolicy osManaged() {
+        return new SyncPolicy(Mode.OS_MANAGED, 0);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    @Override
+    public String toString() {
+        return mode == Mode.INTERVAL ? "INTERVAL(" + intervalMillis + "ms)" : mode.toString();
+    }
+}
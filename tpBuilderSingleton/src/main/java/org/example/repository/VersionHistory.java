@@ -0,0 +1,260 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+
+import java.lang.ref.PhantomReference; // Notices snapshots dropped without being closed
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.*; // For the registry of open snapshots
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong; // Version clock
+import java.util.function.LongFunction;
+
+/**
+ * The past versions of the products of a repository, kept for as long as an open snapshot may
+ * read them.
+ * <p>
+ * While no snapshot is open, writes keep no history. While one is, a write first pushes the
+ * product it replaces (null for a creation) on the chain of its reference, pending, then changes
+ * the store, then stamps the pushed version with the next value of a clock. A snapshot is pinned
+ * to the value of the clock when it was opened, and reads a reference as the store shows it now,
+ * unless versions stamped after its own were pushed on the chain: it then sees the oldest of
+ * them. A version stamped at or before every open snapshot is never read again and is dropped.
+ * <p>
+ * Snapshots are released when closed, or when the garbage collector finds them unreachable.
+ * Writers of a reference are serialized by the repository's lock stripes. Readers never lock;
+ * they only wait, for a few instructions, on a version pushed but not stamped yet.
+ */
+final class VersionHistory {
+
+    private static final long PENDING = Long.MAX_VALUE; // Stamp of a version whose write is under way
+    private static final long NO_SNAPSHOT = Long.MAX_VALUE - 1; // Horizon when nothing is pinned; below PENDING
+
+    private final ConcurrentMap<Long, Retired> chains = new ConcurrentHashMap<>(); // Newest version first
+    private final AtomicLong clock = new AtomicLong();
+    private final Object[] writeLocks; // The repository's stripes, held by writers from open() to stamp()
+
+    // Guarded by this: the pinned versions with the number of snapshots on each; opening ones pin a lower bound
+    private final NavigableMap<Long, Integer> pinned = new TreeMap<>();
+    private final ReferenceQueue<ProduitSnapshot> dropped = new ReferenceQueue<>();
+    private final Map<Object, Pin> pins = new HashMap<>(); // By ticket; keeps the phantom references reachable
+    private volatile boolean tracking; // Whether any snapshot is open or opening
+    private volatile long horizon = NO_SNAPSHOT; // Versions stamped at or before it are read by no snapshot
+
+    VersionHistory(Object[] writeLocks) {
+        this.writeLocks = writeLocks;
+    }
+
+    /**
+     * Records the product a write is about to replace; called before changing the store, with
+     * the stripe lock of the reference held.
+     *
+     * @param ref The reference written.
+     * @param before The product stored under it, or null.
+     * @return The version to pass to {@link #stamp} once the store has changed, or null if no snapshot is open.
+     */
+    Retired retire(long ref, Produit before) {
+        if (!tracking)
+            return null;
+        Reference<? extends ProduitSnapshot> collected = dropped.poll();
+        if (collected != null) { // A snapshot was never closed: release it here, whether or not others get opened
+            synchronized (this) {
+                Pin p = (Pin) collected;
+                if (pins.remove(p.ticket, p))
+                    unpin(p.version);
+                expungeDropped();
+            }
+            reclaim();
+            if (!tracking)
+                return null;
+        }
+        Retired previous = chains.get(ref);
+        Retired retired = new Retired(before, previous);
+        long h = horizon;
+        for (Retired r = previous; r != null; r = r.older) {
+            Retired older = r.older;
+            if (older != null && older.stamp <= h) {
+                r.older = null; // Stamps decrease along the chain: no snapshot reads past this version
+                break;
+            }
+        }
+        chains.put(ref, retired);
+        return retired;
+    }
+
+    /**
+     * Stamps a retired version once the store has changed; called with the same lock held.
+     *
+     * @param ref The reference written.
+     * @param retired What {@link #retire} returned.
+     */
+    void stamp(long ref, Retired retired) {
+        if (retired == null)
+            return;
+        retired.stamp = clock.incrementAndGet();
+        if (!tracking)
+            chains.remove(ref, retired); // Every snapshot closed meanwhile: nobody will read it
+    }
+
+    /**
+     * Reads a product as it was at a version.
+     *
+     * @param current The store.
+     * @param ref The reference to read.
+     * @param version The version of the snapshot.
+     * @return The product stored under the reference at that version, or null.
+     */
+    Produit valueAt(LongProduitMap current, long ref, long version) {
+        Produit value = current.get(ref); // Before the chain: a write seen in the store has its version pushed already
+        for (Retired r = chains.get(ref); r != null; r = r.older) {
+            long stamp = r.stamp;
+            while (stamp == PENDING) {
+                Thread.yield(); // The writer is between changing the store and stamping
+                stamp = r.stamp;
+            }
+            if (stamp <= version)
+                break;
+            value = r.before;
+        }
+        return value;
+    }
+
+    /**
+     * @param version The version of a snapshot.
+     * @return The references written since that version, possibly with some written before it.
+     */
+    Iterable<Long> changedSince(long version) {
+        return () -> chains.entrySet().stream()
+                .filter(e -> e.getValue().stamp > version)
+                .map(Map.Entry::getKey)
+                .iterator();
+    }
+
+    /**
+     * Pins the current version for a new snapshot.
+     *
+     * @param snapshot Creates the snapshot of a version.
+     * @return The snapshot.
+     */
+    ProduitSnapshot open(LongFunction<ProduitSnapshot> snapshot) {
+        long bound;
+        synchronized (this) {
+            expungeDropped();
+            bound = clock.get(); // The version will be at least this: protect what it may read meanwhile
+            pin(bound);
+        }
+        try {
+            // A writer that saw no snapshot open holds its stripe until its write is done: wait for them
+            for (Object lock : writeLocks) {
+                synchronized (lock) {
+                    // Nothing to do: acquiring the stripe is enough
+                }
+            }
+            long version = clock.get();
+            ProduitSnapshot s = snapshot.apply(version);
+            synchronized (this) {
+                pin(version);
+                pins.put(s.ticket(), new Pin(s, dropped, version));
+            }
+            return s;
+        } finally {
+            synchronized (this) {
+                unpin(bound);
+            }
+        }
+    }
+
+    /**
+     * Releases the version of a snapshot, and drops the versions no other snapshot reads.
+     *
+     * @param ticket The ticket of the closed snapshot.
+     */
+    void close(Object ticket) {
+        synchronized (this) {
+            Pin p = pins.remove(ticket);
+            if (p != null)
+                unpin(p.version);
+            expungeDropped();
+        }
+        reclaim();
+    }
+
+    /**
+     * @return The number of snapshots open, those dropped without being closed but not collected yet included.
+     */
+    synchronized int openSnapshots() {
+        expungeDropped();
+        return pins.size();
+    }
+
+    /**
+     * @return The number of references with past versions kept.
+     */
+    int retainedChains() {
+        return chains.size();
+    }
+
+    // Releases the snapshots the garbage collector found unreachable; called holding this
+    private boolean expungeDropped() {
+        boolean released = false;
+        for (Reference<? extends ProduitSnapshot> r = dropped.poll(); r != null; r = dropped.poll()) {
+            Pin p = (Pin) r;
+            if (pins.remove(p.ticket, p)) {
+                unpin(p.version);
+                released = true;
+            }
+        }
+        return released;
+    }
+
+    private void pin(long version) {
+        pinned.merge(version, 1, Integer::sum);
+        horizon = pinned.firstKey();
+        tracking = true;
+    }
+
+    private void unpin(long version) {
+        pinned.computeIfPresent(version, (v, n) -> n == 1 ? null : n - 1);
+        tracking = !pinned.isEmpty();
+        horizon = pinned.isEmpty() ? NO_SNAPSHOT : pinned.firstKey();
+    }
+
+    // Drops the chains no open snapshot reads; a chain pushed to meanwhile is left for later
+    private void reclaim() {
+        long h = horizon;
+        for (Map.Entry<Long, Retired> e : chains.entrySet()) {
+            Retired head = e.getValue();
+            if (head.stamp <= h)
+                chains.remove(e.getKey(), head);
+        }
+    }
+
+    /**
+     * A product replaced at some version, linked to the versions it replaced itself.
+     */
+    static final class Retired {
+        final Produit before; // null if the reference was free
+        volatile long stamp = PENDING;
+        volatile Retired older;
+
+        Retired(Produit before, Retired older) {
+            this.before = before;
+            this.older = older;
+        }
+    }
+
+    /**
+     * Ties the version of a snapshot to the snapshot, and is enqueued once it is unreachable.
+     */
+    private static final class Pin extends PhantomReference<ProduitSnapshot> {
+        final Object ticket; // Identifies the snapshot without keeping it reachable
+        final long version;
+
+        Pin(ProduitSnapshot snapshot, ReferenceQueue<ProduitSnapshot> queue, long version) {
+            super(snapshot, queue);
+            this.ticket = snapshot.ticket();
+            this.version = version;
+        }
+    }
+}
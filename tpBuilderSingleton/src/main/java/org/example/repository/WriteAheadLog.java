@@ -0,0 +1,400 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+
+import java.io.*; // For streams over log records
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32; // Detects torn or corrupt records
+
+/**
+ * Append-only log of repository mutations, split into segment files.
+ * <p>
+ * Each record is {@code [int length][int crc32][long seq][byte op][payload]}; the payload of a
+ * PUT is the full product and that of a DELETE its reference, so replaying a record always sets
+ * the final state and replay is idempotent. Segments are named after the sequence number of
+ * their first record; a snapshot lets every older segment be deleted.
+ * <p>
+ * With {@link SyncPolicy.Mode#EVERY_WRITE}, writers wait in {@link #awaitDurable} until their
+ * record is forced; the thread that runs the fsync covers every record appended before it
+ * started, so concurrent writers share a single fsync (group commit).
+ * <p>
+ * A write that fails partway is cut back off the segment, since recovery stops at the first torn
+ * record and would drop every record after it; if even that fails, the log refuses new records,
+ * so that none is acknowledged past the torn bytes.
+ */
+class WriteAheadLog implements Closeable {
+
+    static final byte OP_PUT = 1;
+    static final byte OP_DELETE = 2;
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+
+    /**
+     * Receives the records read back during recovery.
+     */
+    interface Replayer {
+        void put(Produit p);
+
+        void delete(long ref);
+    }
+
+    /**
+     * Opens the channel of a new segment file for appending.
+     */
+    interface SegmentOpener {
+        FileChannel open(Path file) throws IOException;
+    }
+
+    private static final SegmentOpener APPEND = file -> FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+    private final Path directory;
+    private final SyncPolicy policy;
+    private final SegmentOpener opener;
+
+    // Guarded by this
+    private FileChannel segment;
+    private IOException failure; // A write whose torn bytes could not be cut off: the log takes no more records
+    private long segmentStart; // Sequence number of the first record of the current segment
+    private long lastSeq; // Sequence number of the last appended record
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final ByteArrayOutputStream frames = new ByteArrayOutputStream(4096); // Framed records of one append
+    private final DataOutputStream frameOut = new DataOutputStream(frames);
+    private final CRC32 crc = new CRC32();
+
+    private final Object syncLock = new Object(); // Held by the thread running an fsync
+    private volatile long durableSeq; // Every record up to this one is on disk
+    private final ScheduledExecutorService syncer; // Only for the INTERVAL policy
+
+    private WriteAheadLog(Path directory, SyncPolicy policy, SegmentOpener opener, long lastSeq) throws IOException {
+        this.directory = directory;
+        this.policy = policy;
+        this.opener = opener;
+        this.lastSeq = lastSeq;
+        this.durableSeq = lastSeq;
+        openSegment();
+        if (policy.getMode() == SyncPolicy.Mode.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "wal-sync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleWithFixedDelay(this::syncQuietly, policy.getIntervalMillis(), policy.getIntervalMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Replays the log found in a directory and opens it for appending.
+     *
+     * @param directory The directory holding the segments.
+     * @param policy The sync policy for new records.
+     * @param afterSeq Records up to this sequence number are already reflected (by a snapshot) and are skipped.
+     * @param replayer Receives the records to apply.
+     * @return The opened log, positioned after the last valid record.
+     * @throws IOException if a segment cannot be read, or is corrupt anywhere but at its tail.
+     */
+    static WriteAheadLog open(Path directory, SyncPolicy policy, long afterSeq, Replayer replayer) throws IOException {
+        return open(directory, policy, APPEND, afterSeq, replayer);
+    }
+
+    // Opens the log with its segments opened by the given opener, for tests simulating failing disks
+    static WriteAheadLog open(Path directory, SyncPolicy policy, SegmentOpener opener, long afterSeq, Replayer replayer) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = segments(directory);
+        long lastSeq = afterSeq;
+        for (int i = 0; i < segments.size(); i++) {
+            boolean last = i == segments.size() - 1;
+            lastSeq = Math.max(lastSeq, replay(segments.get(i), afterSeq, replayer, last));
+        }
+        return new WriteAheadLog(directory, policy, opener, lastSeq);
+    }
+
+    // Replays one segment and returns the sequence number of its last valid record
+    private static long replay(Path file, long afterSeq, Replayer replayer, boolean last) throws IOException {
+        long lastSeq = 0;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break; // Clean end of segment
+                }
+                int checksum;
+                byte[] body;
+                try {
+                    checksum = in.readInt();
+                    if (length < 9 || length > (1 << 24))
+                        throw new EOFException("Invalid record length " + length);
+                    body = new byte[length];
+                    in.readFully(body);
+                } catch (EOFException e) {
+                    if (!last)
+                        throw new IOException("Truncated record in " + file, e);
+                    break; // Torn write at the end of the log: the record was never acknowledged
+                }
+                crc.reset();
+                crc.update(body, 0, body.length);
+                if ((int) crc.getValue() != checksum) {
+                    if (!last)
+                        throw new IOException("Corrupt record in " + file);
+                    break;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+                long seq = record.readLong();
+                byte op = record.readByte();
+                if (seq > afterSeq) {
+                    if (op == OP_PUT)
+                        replayer.put(ProduitRecords.read(record));
+                    else if (op == OP_DELETE)
+                        replayer.delete(record.readLong());
+                    else
+                        throw new IOException("Unknown log operation " + op + " in " + file);
+                }
+                lastSeq = seq;
+                validLength += 8 + length;
+            }
+        }
+        if (last && validLength < Files.size(file)) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.truncate(validLength); // Drop the torn tail so that new records follow valid ones
+            }
+        }
+        return lastSeq;
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path p : stream)
+                segments.add(p);
+        }
+        Collections.sort(segments); // Zero-padded names sort by first sequence number
+        return segments;
+    }
+
+    private static long startOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    // Called with the monitor held, or from the constructor
+    private void openSegment() throws IOException {
+        segmentStart = lastSeq + 1;
+        Path file = directory.resolve(String.format("%s%020d%s", PREFIX, segmentStart, SUFFIX));
+        segment = opener.open(file);
+    }
+
+    /**
+     * Appends the new state of a product.
+     *
+     * @param p The product as stored.
+     * @return The sequence number of the record.
+     * @throws IOException if the record cannot be written.
+     */
+    synchronized long appendPut(Produit p) throws IOException {
+        return appendPuts(Collections.singletonList(p));
+    }
+
+    /**
+     * Appends the new state of several products with a single write.
+     *
+     * @param produits The products as stored.
+     * @return The sequence number of the last record.
+     * @throws IOException if the records cannot be written.
+     */
+    synchronized long appendPuts(Collection<Produit> produits) throws IOException {
+        frames.reset();
+        long seq = lastSeq;
+        for (Produit p : produits) {
+            bytes.reset();
+            out.writeLong(++seq);
+            out.writeByte(OP_PUT);
+            ProduitRecords.write(out, p);
+            frame();
+        }
+        return writeFrames(seq);
+    }
+
+    /**
+     * Appends the deletion of a product.
+     *
+     * @param ref The deleted reference.
+     * @return The sequence number of the record.
+     * @throws IOException if the record cannot be written.
+     */
+    synchronized long appendDelete(long ref) throws IOException {
+        return appendDeletes(new long[]{ref});
+    }
+
+    /**
+     * Appends the deletion of several products with a single write.
+     *
+     * @param refs The deleted references.
+     * @return The sequence number of the last record.
+     * @throws IOException if the records cannot be written.
+     */
+    synchronized long appendDeletes(long[] refs) throws IOException {
+        frames.reset();
+        long seq = lastSeq;
+        for (long ref : refs) {
+            bytes.reset();
+            out.writeLong(++seq);
+            out.writeByte(OP_DELETE);
+            out.writeLong(ref);
+            frame();
+        }
+        return writeFrames(seq);
+    }
+
+    // Frames the encoded body with its length and checksum; called with the monitor held
+    private void frame() throws IOException {
+        byte[] body = bytes.toByteArray();
+        crc.reset();
+        crc.update(body, 0, body.length);
+        frameOut.writeInt(body.length);
+        frameOut.writeInt((int) crc.getValue());
+        frameOut.write(body);
+    }
+
+    // Writes the pending frames; the sequence only advances once they are all in the file
+    private long writeFrames(long seq) throws IOException {
+        if (failure != null)
+            throw new IOException("The log takes no more records after a failed write", failure);
+        long end = segment.size(); // Where the last complete record ends
+        ByteBuffer buffer = ByteBuffer.wrap(frames.toByteArray());
+        try {
+            while (buffer.hasRemaining())
+                segment.write(buffer);
+        } catch (IOException e) {
+            try {
+                segment.truncate(end); // Recovery would stop at the torn frames and drop the records after them
+            } catch (IOException truncation) {
+                e.addSuppressed(truncation);
+                failure = e;
+            }
+            throw e;
+        }
+        lastSeq = seq;
+        return seq;
+    }
+
+    /**
+     * Blocks until a record is durable, if the sync policy requires it.
+     *
+     * @param seq The sequence number of the record.
+     * @throws IOException if the log cannot be forced.
+     */
+    void awaitDurable(long seq) throws IOException {
+        if (policy.getMode() == SyncPolicy.Mode.EVERY_WRITE)
+            sync(seq);
+    }
+
+    /**
+     * Forces the log until at least the given record is on disk.
+     * A thread arriving while another one is forcing waits for it and usually finds its own record
+     * already covered, which turns concurrent commits into a single fsync.
+     *
+     * @param seq The sequence number that must become durable.
+     * @throws IOException if the log cannot be forced.
+     */
+    void sync(long seq) throws IOException {
+        if (durableSeq >= seq)
+            return;
+        synchronized (syncLock) {
+            if (durableSeq >= seq)
+                return; // Covered by the fsync we waited for
+            FileChannel channel;
+            long target;
+            synchronized (this) {
+                channel = segment;
+                target = lastSeq;
+            }
+            channel.force(false);
+            durableSeq = Math.max(durableSeq, target);
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            long target;
+            synchronized (this) {
+                target = lastSeq;
+            }
+            sync(target);
+        } catch (IOException e) {
+            // The next attempt retries; a failing disk also fails the next rotation or close
+        }
+    }
+
+    /**
+     * Starts a new segment, so that a snapshot taken now makes every older segment obsolete.
+     *
+     * @return The sequence number of the last record of the closed segments.
+     * @throws IOException if the segments cannot be switched.
+     */
+    long rotate() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                segment.force(false);
+                segment.close();
+                durableSeq = lastSeq;
+                openSegment();
+                return lastSeq;
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments whose records are all at or before a sequence number.
+     *
+     * @param seq The sequence number covered by a snapshot.
+     * @throws IOException if a segment cannot be deleted.
+     */
+    void deleteSegmentsUpTo(long seq) throws IOException {
+        List<Path> segments = segments(directory);
+        for (int i = 0; i < segments.size(); i++) {
+            long nextStart = i + 1 < segments.size() ? startOf(segments.get(i + 1)) : Long.MAX_VALUE;
+            if (nextStart <= seq + 1)
+                Files.deleteIfExists(segments.get(i)); // Every record of this segment is <= seq
+        }
+    }
+
+    /**
+     * @return The sequence number of the last appended record.
+     */
+    synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (syncer != null)
+            syncer.shutdownNow();
+        synchronized (syncLock) {
+            synchronized (this) {
+                segment.force(false);
+                segment.close();
+                durableSeq = lastSeq;
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.repository.event;
+
+/**
+ * What a subscription does when its listener falls so far behind that unread events are
+ * overwritten. Publishers never wait for listeners, whatever the policy.
+ */
+public enum LagPolicy {
+    // Report the missed range with onLag(), then resume from the oldest event still retained
+    SKIP,
+    // Report the missed range with onLag(), then close the subscription
+    CANCEL
+}
@@ -0,0 +1,83 @@
+package org.example.repository.event;
+
+import org.example.entity.Produit;
+
+/**
+ * A change made to a repository.
+ * Events are numbered by the repository in the order the changes were applied; two changes to
+ * the same product are always numbered in the order they happened.
+ */
+public final class ProduitEvent {
+
+    /**
+     * The kinds of change.
+     */
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final long ref;
+    private final Produit before;
+    private final Produit after;
+    private final long timestamp;
+
+    ProduitEvent(long sequence, Type type, long ref, Produit before, Produit after, long timestamp) {
+        this.sequence = sequence;
+        this.type = type;
+        this.ref = ref;
+        this.before = before;
+        this.after = after;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @return The position of the event in the repository's change stream, starting at 1.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getRef() {
+        return ref;
+    }
+
+    /**
+     * @return The product before the change, or null for a creation.
+     */
+    public Produit getBefore() {
+        return before;
+    }
+
+    /**
+     * @return The product after the change, or null for a deletion.
+     */
+    public Produit getAfter() {
+        return after;
+    }
+
+    /**
+     * @return When the change was published, in epoch milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "ProduitEvent{" +
+                "sequence=" + sequence +
+                ", type=" + type +
+                ", ref=" + ref +
+                ", before=" + before +
+                ", after=" + after +
+                '}';
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.repository.event;
+
+/**
+ * Receives the change events of a subscription, one at a time and in sequence order.
+ */
+@FunctionalInterface
+public interface ProduitEventListener {
+
+    /**
+     * Called for each event.
+     *
+     * @param event The event.
+     */
+    void onEvent(ProduitEvent event);
+
+    /**
+     * Called when events were overwritten before this listener could read them, because it fell
+     * more than the log capacity behind. The products they touched should be reloaded.
+     *
+     * @param fromSequence The first missed sequence number.
+     * @param toSequence The last missed sequence number.
+     */
+    default void onLag(long fromSequence, long toSequence) {
+    }
+
+    /**
+     * Called when {@link #onEvent} or {@link #onLag} threw. The subscription goes on with the next
+     * event, so the event that failed is not delivered again; failures thrown from this method
+     * are counted by the subscription and otherwise ignored.
+     *
+     * @param event The event that failed, null if onLag() failed.
+     * @param failure What the listener threw.
+     */
+    default void onError(ProduitEvent event, RuntimeException failure) {
+    }
+}
@@ -0,0 +1,209 @@
+package org.example.repository.event;
+
+import org.example.entity.Produit;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ordered stream of the changes made to a repository, kept in a fixed-size ring buffer.
+ * <p>
+ * Publishing is lock-free and never waits: a writer claims the next sequence number with one
+ * atomic increment and stores its event in the slot of that number, overwriting the event
+ * published a full ring earlier. Each subscription reads the ring on its own thread, at its own
+ * pace; a subscription that falls more than the capacity behind loses the overwritten events and
+ * is told so through {@link ProduitEventListener#onLag}, then handled as its {@link LagPolicy}
+ * says. An exception thrown by a listener does not stop its subscription: it is handed to
+ * {@link ProduitEventListener#onError} and counted in {@link Subscription#failures()}, and
+ * delivery goes on with the next event. Subscribers remember the last sequence number they processed and resume from it, instead
+ * of rescanning the catalog.
+ */
+public final class ProduitEventLog {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final long IDLE_PARK_NANOS = 1_000_000; // Longest wait of an idle subscriber between checks
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+    private final AtomicReferenceArray<ProduitEvent> ring;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong(1);
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a log retaining the last {@link #DEFAULT_CAPACITY} events.
+     */
+    public ProduitEventLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of events retained, rounded up to a power of two.
+     */
+    public ProduitEventLog(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30))
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        ring = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Publishes a change.
+     * Repositories call it while they still hold the lock of the changed product, so that the
+     * changes of one product are numbered in the order they were applied.
+     *
+     * @param type The kind of change.
+     * @param ref The reference of the changed product.
+     * @param before The product before the change, null for a creation.
+     * @param after The product after the change, null for a deletion.
+     * @return The sequence number of the event.
+     */
+    public long publish(ProduitEvent.Type type, long ref, Produit before, Produit after) {
+        long seq = nextSequence.getAndIncrement();
+        ProduitEvent event = new ProduitEvent(seq, type, ref, before, after, System.currentTimeMillis());
+        int slot = (int) seq & mask;
+        while (true) {
+            ProduitEvent current = ring.get(slot);
+            // A slower writer of an older sequence must not overwrite a newer event
+            if (current != null && current.getSequence() > seq)
+                break;
+            if (ring.compareAndSet(slot, current, event))
+                break;
+        }
+        for (Subscription s : subscriptions)
+            if (s.idle)
+                LockSupport.unpark(s.thread);
+        return seq;
+    }
+
+    /**
+     * @return The sequence number of the last published event, 0 if there is none.
+     */
+    public long lastSequence() {
+        return nextSequence.get() - 1;
+    }
+
+    /**
+     * @return The number of events retained.
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Starts delivering events to a listener, on a dedicated daemon thread.
+     *
+     * @param fromSequence The first event to deliver: the last processed sequence number plus one
+     * to resume, or lastSequence() + 1 for new events only.
+     * @param listener The listener.
+     * @param policy What to do if the listener falls too far behind.
+     * @return The subscription, to be closed when no longer needed.
+     */
+    public Subscription subscribe(long fromSequence, ProduitEventListener listener, LagPolicy policy) {
+        Subscription s = new Subscription(Math.max(1, fromSequence), listener, policy);
+        subscriptions.add(s);
+        s.thread.start();
+        return s;
+    }
+
+    /**
+     * Delivers events to one listener.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final ProduitEventListener listener;
+        private final LagPolicy policy;
+        private final Thread thread;
+        private volatile long position; // Next sequence number to deliver
+        private volatile boolean idle;
+        private volatile boolean closed;
+        private volatile long failures; // Written by the delivery thread only
+
+        private Subscription(long from, ProduitEventListener listener, LagPolicy policy) {
+            this.position = from;
+            this.listener = listener;
+            this.policy = policy;
+            this.thread = new Thread(this::run, "produit-events-" + THREAD_IDS.incrementAndGet());
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            long pos = position;
+            while (!closed) {
+                ProduitEvent event = ring.get((int) pos & mask);
+                if (event == null || event.getSequence() < pos) {
+                    // Not published yet: park until a publisher wakes us up
+                    idle = true;
+                    if (!closed && ring.get((int) pos & mask) == event)
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    idle = false;
+                    continue;
+                }
+                if (event.getSequence() > pos) {
+                    // Overwritten: resume from the oldest event that can still be in the ring
+                    long resume = Math.max(pos + 1, nextSequence.get() - capacity());
+                    try {
+                        listener.onLag(pos, resume - 1);
+                    } catch (RuntimeException e) {
+                        failed(null, e); // The listener's failure does not change the policy
+                    }
+                    if (policy == LagPolicy.CANCEL) {
+                        close();
+                        return;
+                    }
+                    position = pos = resume;
+                    continue;
+                }
+                try {
+                    listener.onEvent(event);
+                } catch (RuntimeException e) {
+                    failed(event, e); // A failing listener skips the event rather than stopping the subscription
+                }
+                position = ++pos;
+            }
+        }
+
+        private void failed(ProduitEvent event, RuntimeException e) {
+            failures++;
+            try {
+                listener.onError(event, e);
+            } catch (RuntimeException ignored) {
+                // Already counted; the handler cannot stop the subscription either
+            }
+        }
+
+        /**
+         * @return The number of times the listener threw, since the subscription started.
+         */
+        public long failures() {
+            return failures;
+        }
+
+        /**
+         * @return The sequence number of the next event to deliver.
+         */
+        public long position() {
+            return position;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Stops the delivery; the event being delivered, if any, completes.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.example.repository.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray; // One array of bucket counters per stripe
+
+/**
+ * Histogram of durations in nanoseconds with a bounded relative error, in the manner of an
+ * HdrHistogram.
+ * <p>
+ * Buckets are log-linear: every power of two is split into {@value #SUB_BUCKETS} buckets of
+ * equal width, so that a bucket is never wider than 1/{@value #SUB_BUCKETS} of the values it
+ * holds (about 3%), from 1 ns up to about 2 minutes; longer durations go to the last bucket.
+ * The whole range fits in about a thousand counters.
+ * <p>
+ * Recording increments one counter and allocates nothing. Threads are spread over several
+ * copies of the counters, picked from the thread id, so that threads recording at the same
+ * time rarely write the same cache line; the copies are summed when the histogram is read.
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 36; // 2^37 ns is a little over two minutes
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) << SUB_BITS;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    // A power of two so that a stripe is picked with a mask, and no more than the threads able to run at once
+    private static final int STRIPES = Math.min(8, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+    private final AtomicLong max = new AtomicLong(); // Exact, unlike the buckets; rarely written
+
+    public LatencyHistogram() {
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos The duration in nanoseconds; negative values count as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        stripes[(int) Thread.currentThread().threadId() & (STRIPES - 1)].incrementAndGet(bucketOf(value));
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value))
+            m = max.get();
+    }
+
+    /**
+     * @return The counts recorded so far; recordings made meanwhile may be partly included.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (AtomicLongArray stripe : stripes)
+            for (int i = 0; i < BUCKETS; i++)
+                counts[i] += stripe.get(i);
+        return new Snapshot(counts, max.get());
+    }
+
+    /**
+     * Sets every count back to zero.
+     */
+    public void reset() {
+        for (AtomicLongArray stripe : stripes)
+            for (int i = 0; i < BUCKETS; i++)
+                stripe.set(i, 0);
+        max.set(0);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value; // Below the first split the buckets are exact
+        long v = Math.min(value, MAX_VALUE);
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int) ((v >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    // The highest value falling in a bucket
+    static long highestIn(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = (bucket >>> SUB_BITS) - 1; // exponent - SUB_BITS
+        long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * The counts of a histogram at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long total;
+        private final long max;
+
+        Snapshot(long[] counts, long max) {
+            this.counts = counts;
+            long n = 0;
+            for (long c : counts)
+                n += c;
+            this.total = n;
+            this.max = max;
+        }
+
+        /**
+         * @return The number of durations recorded.
+         */
+        public long count() {
+            return total;
+        }
+
+        /**
+         * @return The longest duration recorded, 0 if none.
+         */
+        public long max() {
+            return max;
+        }
+
+        /**
+         * Returns a percentile, rounded up to the end of its bucket and capped at the maximum.
+         *
+         * @param percentile The percentile, between 0 and 100.
+         * @return The duration at or below which that share of the durations fall, 0 if none was recorded.
+         * @throws IllegalArgumentException if the percentile is not between 0 and 100.
+         */
+        public long percentile(double percentile) {
+            if (!(percentile >= 0 && percentile <= 100))
+                throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+            if (total == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100)); // 1-based rank of the value
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return Math.min(highestIn(i), max);
+            }
+            return max;
+        }
+    }
+}
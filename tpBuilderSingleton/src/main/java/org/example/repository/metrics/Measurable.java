@@ -0,0 +1,23 @@
+package org.example.repository.metrics;
+
+/**
+ * A repository able to report its own size, memory footprint and search selectivity.
+ * Decorators measuring a repository read these gauges when it implements this interface.
+ */
+public interface Measurable {
+
+    /**
+     * @return The number of products stored.
+     */
+    int size();
+
+    /**
+     * @return An estimate of the heap used by the products and their indexes, in bytes.
+     */
+    long estimatedHeapBytes();
+
+    /**
+     * @return The counters of products scanned and returned by searches.
+     */
+    ScanCounter scans();
+}
@@ -0,0 +1,96 @@
+package org.example.repository.metrics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Metrics of a repository, as read at one point in time.
+ * The size, heap and search gauges are -1 when the measured repository does not report them.
+ */
+public final class MetricsSnapshot {
+
+    private final long timestampMillis;
+    private final List<OperationStats> operations;
+    private final long size;
+    private final long estimatedHeapBytes;
+    private final long searches;
+    private final long scannedProducts;
+    private final long returnedProducts;
+
+    MetricsSnapshot(long timestampMillis, List<OperationStats> operations, long size, long estimatedHeapBytes,
+                    long searches, long scannedProducts, long returnedProducts) {
+        this.timestampMillis = timestampMillis;
+        this.operations = Collections.unmodifiableList(operations);
+        this.size = size;
+        this.estimatedHeapBytes = estimatedHeapBytes;
+        this.searches = searches;
+        this.scannedProducts = scannedProducts;
+        this.returnedProducts = returnedProducts;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * @return The operations called at least once, in declaration order.
+     */
+    public List<OperationStats> getOperations() {
+        return operations;
+    }
+
+    /**
+     * @param operation The name of a repository method, as in {@link Operation#getMethod()}.
+     * @return Its statistics, or null if it was never called.
+     */
+    public OperationStats get(String operation) {
+        for (OperationStats s : operations)
+            if (s.getOperation().equals(operation))
+                return s;
+        return null;
+    }
+
+    /**
+     * @return The number of products stored.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public long getEstimatedHeapBytes() {
+        return estimatedHeapBytes;
+    }
+
+    /**
+     * @return The searches counted by the repository: predicate, query, name prefix and name fragment.
+     */
+    public long getSearches() {
+        return searches;
+    }
+
+    /**
+     * @return The products those searches visited.
+     */
+    public long getScannedProducts() {
+        return scannedProducts;
+    }
+
+    /**
+     * @return The products those searches returned.
+     */
+    public long getReturnedProducts() {
+        return returnedProducts;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("MetricsSnapshot{size=").append(size)
+                .append(", estimatedHeapBytes=").append(estimatedHeapBytes)
+                .append(", searches=").append(searches)
+                .append(", scanned=").append(scannedProducts)
+                .append(", returned=").append(returnedProducts);
+        for (OperationStats s : operations)
+            sb.append(",\n  ").append(s);
+        return sb.append('}').toString();
+    }
+}
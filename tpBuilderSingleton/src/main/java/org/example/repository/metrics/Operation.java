@@ -0,0 +1,61 @@
+package org.example.repository.metrics;
+
+/**
+ * The operations of an IProduitRepository that are measured, one per method.
+ * Each keeps the name of the method it measures, typos included, so that reports can be
+ * matched with the code.
+ * <p>
+ * Point operations read or write a single product and take well under a microsecond; timing
+ * each of them would cost as much as the operation itself, so only a sample of them is timed.
+ */
+public enum Operation {
+    SAVE("save", true),
+    SAVE_ALL("saveAll", false),
+    FIND_ALL("findAll", false),
+    FIND_PAGE("findPage", false),
+    FIND_PAGE_AFTER("findPageAfter", false),
+    FIND_BY_REF("finfByRef", true),
+    FIND_ALL_BY_REFS("findAllByRefs", false),
+    UPDATE("update", true),
+    UPDATE_ALL("updateAll", false),
+    UPDATE_VERSIONED("updateVersioned", true),
+    ADJUST_STOCK("adjustStock", true),
+    REPRICE("reprice", true),
+    DETELE("detele", true),
+    DELETE_ALL("deleteAll", false),
+    SEARCH_PREDICATE("search(Predicate)", false),
+    SEARCH_QUERY("search(ProduitQuery)", false),
+    AGGREGATE("aggregate", false),
+    INVENTORY("inventory", false),
+    FIND_BY_TYPE("findByType", false),
+    FIND_BY_PRIX_BETWEEN("findByPrixBetween", false),
+    FIND_BY_QUANTITE_STOCK_GREATER_THAN("findByQuantiteStockGreaterThan", false),
+    FIND_BY_NOM_PREFIX("findByNomPrefix", false),
+    FIND_BY_NOM_CONTAINING("findByNomContaining", false),
+    FIND_EXPIRING_BEFORE("findExpiringBefore", false),
+    FIND_EXPIRING_BETWEEN("findExpiringBetween", false),
+    FIND_NEXT_EXPIRING("findNextExpiring", true),
+    DRAIN_EXPIRED_BEFORE("drainExpiredBefore", false);
+
+    private final String method;
+    private final boolean point;
+
+    Operation(String method, boolean point) {
+        this.method = method;
+        this.point = point;
+    }
+
+    /**
+     * @return The name of the repository method.
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return Whether the operation reads or writes a single product.
+     */
+    public boolean isPoint() {
+        return point;
+    }
+}
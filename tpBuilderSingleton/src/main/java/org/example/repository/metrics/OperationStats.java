@@ -0,0 +1,123 @@
+package org.example.repository.metrics;
+
+import javax.management.openmbean.CompositeData; // The form JMX clients receive
+
+/**
+ * Calls and latencies of one repository operation, as read at one point in time.
+ * Durations are in nanoseconds and computed over the timed calls, which are a sample of the
+ * calls for point operations; percentiles are accurate to about 3%.
+ */
+public final class OperationStats {
+
+    private final String operation;
+    private final long count;
+    private final long timed;
+    private final long errors;
+    private final long meanNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    OperationStats(Operation operation, long count, long errors, long totalNanos, LatencyHistogram.Snapshot latencies) {
+        this(operation.getMethod(), count, latencies.count(), errors,
+                latencies.count() == 0 ? 0 : totalNanos / latencies.count(),
+                latencies.percentile(50), latencies.percentile(90), latencies.percentile(99),
+                latencies.percentile(99.9), latencies.max());
+    }
+
+    private OperationStats(String operation, long count, long timed, long errors, long meanNanos, long p50Nanos,
+                           long p90Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+        this.operation = operation;
+        this.count = count;
+        this.timed = timed;
+        this.errors = errors;
+        this.meanNanos = meanNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.p999Nanos = p999Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * Rebuilds statistics received over JMX; called by MXBean proxies.
+     *
+     * @param data The statistics as JMX transmits them.
+     * @return The statistics.
+     */
+    public static OperationStats from(CompositeData data) {
+        return new OperationStats((String) data.get("operation"), (Long) data.get("count"), (Long) data.get("timed"),
+                (Long) data.get("errors"), (Long) data.get("meanNanos"), (Long) data.get("p50Nanos"),
+                (Long) data.get("p90Nanos"), (Long) data.get("p99Nanos"), (Long) data.get("p999Nanos"),
+                (Long) data.get("maxNanos"));
+    }
+
+    /**
+     * @return The name of the repository method.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return The calls completed, failed ones included.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The calls whose duration was measured.
+     */
+    public long getTimed() {
+        return timed;
+    }
+
+    /**
+     * @return The calls that threw an exception.
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getMeanNanos() {
+        return meanNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getP999Nanos() {
+        return p999Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return operation + "{" +
+                "count=" + count +
+                ", timed=" + timed +
+                ", errors=" + errors +
+                ", mean=" + meanNanos +
+                ", p50=" + p50Nanos +
+                ", p90=" + p90Nanos +
+                ", p99=" + p99Nanos +
+                ", p999=" + p999Nanos +
+                ", max=" + maxNanos +
+                '}';
+    }
+}
@@ -0,0 +1,211 @@
+package org.example.repository.metrics;
+
+import javax.management.InstanceAlreadyExistsException; // JMX registration
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom; // Picks the point calls to time
+import java.util.concurrent.atomic.LongAdder; // Contention-free counters
+
+/**
+ * Counters and latency histograms of the operations of one repository, plus the gauges the
+ * repository reports about itself when it is {@link Measurable}.
+ * <p>
+ * Every call is counted. Reading the clock is what costs most: it waits for the loads in flight,
+ * which would make a lookup in a map several times slower. {@link Operation#isPoint() Point}
+ * operations are therefore timed one call in {@code sampling}, picked at random, while the
+ * others, which take microseconds or more, are timed on every call. Recording costs a few atomic
+ * increments on memory the calling thread rarely shares with others, and no allocation.
+ * Metrics are read through {@link #snapshot()} in the process, or over JMX once
+ * {@link #register registered}.
+ * <p>
+ * Instrumentation as a whole is switched off by starting the JVM with
+ * {@code -Dproduit.metrics=false}: {@link #ENABLED} is then a false constant, repositories are
+ * left undecorated and the JIT compiler removes the code guarded by it. The default sampling is
+ * set with {@code -Dproduit.metrics.sampling=N}; 1 times every call.
+ */
+public final class RepositoryMetrics implements RepositoryMetricsMXBean {
+
+    /**
+     * Whether repositories are instrumented; read once, when the class is initialized.
+     */
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("produit.metrics", "true"));
+
+    /**
+     * One point call in this many is timed, unless the metrics are created with another sampling.
+     */
+    public static final int DEFAULT_SAMPLING = Integer.getInteger("produit.metrics.sampling", 32);
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final long NOT_TIMED = Long.MIN_VALUE; // Returned by start() for calls left out of the sample
+
+    private final int sampleMask; // sampling - 1, sampling being a power of two
+    private final LongAdder[] calls = new LongAdder[OPERATIONS.length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder[] totalNanos = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] errors = new LongAdder[OPERATIONS.length];
+    private final Measurable gauges; // null if the repository reports nothing about itself
+    private ObjectName registeredAs; // Guarded by this
+
+    /**
+     * @param gauges The repository reporting its size and searches, or null.
+     */
+    public RepositoryMetrics(Measurable gauges) {
+        this(gauges, DEFAULT_SAMPLING);
+    }
+
+    /**
+     * @param gauges The repository reporting its size and searches, or null.
+     * @param sampling One point call in this many is timed, rounded up to a power of two.
+     * @throws IllegalArgumentException if the sampling is not between 1 and 2^30.
+     */
+    public RepositoryMetrics(Measurable gauges, int sampling) {
+        if (sampling < 1 || sampling > 1 << 30)
+            throw new IllegalArgumentException("Sampling must be between 1 and 2^30: " + sampling);
+        this.gauges = gauges;
+        this.sampleMask = Integer.highestOneBit(sampling * 2 - 1) - 1;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            calls[i] = new LongAdder();
+            latencies[i] = new LatencyHistogram();
+            totalNanos[i] = new LongAdder();
+            errors[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Starts a call; its result must be passed to {@link #record} when the call ends.
+     *
+     * @param operation The operation called.
+     * @return The start time, or a marker if the call is not timed.
+     */
+    public long start(Operation operation) {
+        if (operation.isPoint() && (ThreadLocalRandom.current().nextInt() & sampleMask) != 0)
+            return NOT_TIMED;
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a completed call.
+     *
+     * @param operation The operation called.
+     * @param start The value start() returned when it started.
+     */
+    public void record(Operation operation, long start) {
+        int i = operation.ordinal();
+        calls[i].increment();
+        if (start == NOT_TIMED)
+            return;
+        long elapsed = System.nanoTime() - start;
+        latencies[i].record(elapsed);
+        totalNanos[i].add(elapsed);
+    }
+
+    /**
+     * Counts a call that threw; its duration is recorded by {@link #record} as well.
+     *
+     * @param operation The operation called.
+     */
+    public void recordFailure(Operation operation) {
+        errors[operation.ordinal()].increment();
+    }
+
+    /**
+     * @return The current metrics.
+     */
+    public MetricsSnapshot snapshot() {
+        List<OperationStats> stats = new ArrayList<>();
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            long n = calls[i].sum();
+            if (n > 0)
+                stats.add(new OperationStats(OPERATIONS[i], n, errors[i].sum(), totalNanos[i].sum(), latencies[i].snapshot()));
+        }
+        if (gauges == null)
+            return new MetricsSnapshot(System.currentTimeMillis(), stats, -1, -1, -1, -1, -1);
+        ScanCounter scans = gauges.scans();
+        return new MetricsSnapshot(System.currentTimeMillis(), stats, gauges.size(), gauges.estimatedHeapBytes(),
+                scans.getSearches(), scans.getScanned(), scans.getReturned());
+    }
+
+    @Override
+    public List<OperationStats> getOperations() {
+        return snapshot().getOperations();
+    }
+
+    @Override
+    public long getSize() {
+        return gauges == null ? -1 : gauges.size();
+    }
+
+    @Override
+    public long getEstimatedHeapBytes() {
+        return gauges == null ? -1 : gauges.estimatedHeapBytes();
+    }
+
+    @Override
+    public long getSearches() {
+        return gauges == null ? -1 : gauges.scans().getSearches();
+    }
+
+    @Override
+    public long getScannedProducts() {
+        return gauges == null ? -1 : gauges.scans().getScanned();
+    }
+
+    @Override
+    public long getReturnedProducts() {
+        return gauges == null ? -1 : gauges.scans().getReturned();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            calls[i].reset();
+            latencies[i].reset();
+            totalNanos[i].reset();
+            errors[i].reset();
+        }
+        if (gauges != null)
+            gauges.scans().reset();
+    }
+
+    /**
+     * Publishes these metrics on the platform MBean server, as
+     * {@code org.example.repository:type=RepositoryMetrics,name=<name>}.
+     *
+     * @param name The name telling this repository apart from the others.
+     * @return The name the metrics were registered under.
+     * @throws IllegalStateException if these metrics or others of the same name are already registered.
+     */
+    public synchronized ObjectName register(String name) {
+        if (registeredAs != null)
+            throw new IllegalStateException("Metrics already registered as " + registeredAs);
+        try {
+            ObjectName objectName = new ObjectName("org.example.repository:type=RepositoryMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            registeredAs = objectName;
+            return objectName;
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalStateException("Metrics named " + name + " are already registered", e);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics " + name, e);
+        }
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if they were registered.
+     */
+    public synchronized void unregister() {
+        if (registeredAs == null)
+            return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(registeredAs);
+        } catch (JMException e) {
+            // Already unregistered by someone else: nothing left to remove
+        }
+        registeredAs = null;
+    }
+}
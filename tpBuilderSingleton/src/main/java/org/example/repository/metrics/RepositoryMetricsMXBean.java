@@ -0,0 +1,30 @@
+package org.example.repository.metrics;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link RepositoryMetrics}, as seen from JConsole or any JMX client.
+ * Every attribute is computed when read.
+ */
+public interface RepositoryMetricsMXBean {
+
+    /**
+     * @return The statistics of the operations called at least once.
+     */
+    List<OperationStats> getOperations();
+
+    long getSize();
+
+    long getEstimatedHeapBytes();
+
+    long getSearches();
+
+    long getScannedProducts();
+
+    long getReturnedProducts();
+
+    /**
+     * Sets every counter and histogram back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,46 @@
+package org.example.repository.metrics;
+
+import java.util.concurrent.atomic.LongAdder; // Contention-free counters
+
+/**
+ * Counts the products a repository visits to answer searches against the products it returns.
+ * A search scanning far more products than it returns is missing an index or a selective
+ * criterion. Searches count their candidates in a local variable and record once at the end.
+ */
+public final class ScanCounter {
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder returned = new LongAdder();
+
+    /**
+     * @param scannedProducts The products the search visited.
+     * @param returnedProducts The products it returned.
+     */
+    public void record(long scannedProducts, long returnedProducts) {
+        searches.increment();
+        scanned.add(scannedProducts);
+        returned.add(returnedProducts);
+    }
+
+    public long getSearches() {
+        return searches.sum();
+    }
+
+    public long getScanned() {
+        return scanned.sum();
+    }
+
+    public long getReturned() {
+        return returned.sum();
+    }
+
+    /**
+     * Sets every counter back to zero; searches running meanwhile may be partly counted.
+     */
+    public void reset() {
+        searches.reset();
+        scanned.reset();
+        returned.reset();
+    }
+}
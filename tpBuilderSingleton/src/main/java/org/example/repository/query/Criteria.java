@@ -0,0 +1,190 @@
+package org.example.repository.query;
+
+import org.example.entity.TypeProduit;
+
+import java.util.Arrays; // For variadic combinators
+import java.util.Date;
+
+/**
+ * Entry points of the query DSL.
+ * Each field of Produit has a factory returning the operators it supports, e.g.
+ * <pre>
+ * Criteria.type().eq(TypeProduit.Cosmitique).and(Criteria.quantiteStock().gt(80))
+ * </pre>
+ */
+public final class Criteria {
+
+    private Criteria() {
+    }
+
+    /**
+     * @return A criterion matching every product.
+     */
+    public static Criterion all() {
+        return Criterion.All.INSTANCE;
+    }
+
+    /**
+     * @return The operators available on the product type.
+     */
+    public static TypeField type() {
+        return TypeField.INSTANCE;
+    }
+
+    /**
+     * @return The operators available on the product price.
+     */
+    public static NumberField prix() {
+        return NumberField.PRIX;
+    }
+
+    /**
+     * @return The operators available on the stock quantity.
+     */
+    public static NumberField quantiteStock() {
+        return NumberField.QUANTITE_STOCK;
+    }
+
+    /**
+     * @return The operators available on the product name.
+     */
+    public static NomField nom() {
+        return NomField.INSTANCE;
+    }
+
+    /**
+     * @return The operators available on the expiration date.
+     */
+    public static DateField datePremption() {
+        return DateField.INSTANCE;
+    }
+
+    /**
+     * @param criteria The criteria to combine.
+     * @return A criterion satisfied when all the given criteria are.
+     */
+    public static Criterion and(Criterion... criteria) {
+        return new Criterion.And(Arrays.asList(criteria));
+    }
+
+    /**
+     * @param criteria The criteria to combine.
+     * @return A criterion satisfied when at least one of the given criteria is.
+     */
+    public static Criterion or(Criterion... criteria) {
+        return new Criterion.Or(Arrays.asList(criteria));
+    }
+
+    /**
+     * @param criterion The criterion to negate.
+     * @return A criterion satisfied when the given one is not.
+     */
+    public static Criterion not(Criterion criterion) {
+        return criterion.not();
+    }
+
+    /**
+     * Operators on TypeProduit.
+     */
+    public static final class TypeField {
+        private static final TypeField INSTANCE = new TypeField();
+
+        private TypeField() {
+        }
+
+        public Criterion eq(TypeProduit type) {
+            return new Criterion.TypeEquals(type);
+        }
+    }
+
+    /**
+     * Operators on a numeric field (prix or quantiteStock).
+     */
+    public static final class NumberField {
+        private static final NumberField PRIX = new NumberField(ProduitField.PRIX);
+        private static final NumberField QUANTITE_STOCK = new NumberField(ProduitField.QUANTITE_STOCK);
+
+        private final ProduitField field;
+
+        private NumberField(ProduitField field) {
+            this.field = field;
+        }
+
+        public Criterion eq(double value) {
+            return new Criterion.Range(field, value, true, value, true);
+        }
+
+        public Criterion gt(double value) {
+            return new Criterion.Range(field, value, false, Double.POSITIVE_INFINITY, true);
+        }
+
+        public Criterion ge(double value) {
+            return new Criterion.Range(field, value, true, Double.POSITIVE_INFINITY, true);
+        }
+
+        public Criterion lt(double value) {
+            return new Criterion.Range(field, Double.NEGATIVE_INFINITY, true, value, false);
+        }
+
+        public Criterion le(double value) {
+            return new Criterion.Range(field, Double.NEGATIVE_INFINITY, true, value, true);
+        }
+
+        /**
+         * @param min The lowest accepted value, inclusive.
+         * @param max The highest accepted value, inclusive.
+         * @return A criterion matching values in [min, max].
+         */
+        public Criterion between(double min, double max) {
+            return new Criterion.Range(field, min, true, max, true);
+        }
+    }
+
+    /**
+     * Operators on the product name.
+     */
+    public static final class NomField {
+        private static final NomField INSTANCE = new NomField();
+
+        private NomField() {
+        }
+
+        public Criterion startsWith(String prefix) {
+            return new Criterion.NomStartsWith(prefix);
+        }
+
+        /**
+         * @param prefix The prefix, compared ignoring case and accents.
+         * @return A criterion matching the names that start with the prefix.
+         */
+        public Criterion startsWithIgnoringCase(String prefix) {
+            return new Criterion.NomStartsWithIgnoringCase(prefix);
+        }
+
+        /**
+         * @param fragment The fragment, compared ignoring case and accents.
+         * @return A criterion matching the names that contain the fragment.
+         */
+        public Criterion containsIgnoringCase(String fragment) {
+            return new Criterion.NomContainsIgnoringCase(fragment);
+        }
+    }
+
+    /**
+     * Operators on the expiration date.
+     */
+    public static final class DateField {
+        private static final DateField INSTANCE = new DateField();
+
+        private DateField() {
+        }
+
+        public Criterion before(Date instant) {
+            return new Criterion.DatePremption(instant, true);
+        }
+
+        public Criterion after(Date instant) {
+            return new Criterion.DatePremption(instant, false);
+        }
+    }
+}
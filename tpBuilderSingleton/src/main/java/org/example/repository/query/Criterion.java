@@ -0,0 +1,389 @@
+package org.example.repository.query;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+
+import java.util.*; // For lists of sub-criteria
+import java.util.function.Predicate; // For interoperability with predicate-based search
+
+/**
+ * A condition on the fields of a Produit.
+ * Unlike an opaque Predicate, a criterion exposes its structure (field, operator, operands),
+ * which lets a repository answer it from an index and keep only the rest as a residual filter.
+ * Criteria are immutable and are created through the factories of {@link Criteria}.
+ */
+public abstract class Criterion {
+
+    Criterion() {
+    }
+
+    /**
+     * Evaluates the criterion against a product.
+     *
+     * @param p The product to test.
+     * @return true if the product satisfies the criterion.
+     */
+    public abstract boolean test(Produit p);
+
+    /**
+     * @param other The criterion to combine with.
+     * @return A criterion satisfied when both this and the other criterion are.
+     */
+    public Criterion and(Criterion other) {
+        return new And(Arrays.asList(this, other));
+    }
+
+    /**
+     * @param other The criterion to combine with.
+     * @return A criterion satisfied when this or the other criterion is.
+     */
+    public Criterion or(Criterion other) {
+        return new Or(Arrays.asList(this, other));
+    }
+
+    /**
+     * @return A criterion satisfied exactly when this one is not.
+     */
+    public Criterion not() {
+        return new Not(this);
+    }
+
+    /**
+     * @return This criterion as a Predicate, for APIs that only accept predicates.
+     */
+    public Predicate<Produit> asPredicate() {
+        return this::test;
+    }
+
+    /**
+     * Matches every product.
+     */
+    public static final class All extends Criterion {
+        static final All INSTANCE = new All();
+
+        private All() {
+        }
+
+        @Override
+        public boolean test(Produit p) {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "all";
+        }
+    }
+
+    /**
+     * Matches products of a given type.
+     */
+    public static final class TypeEquals extends Criterion {
+        private final TypeProduit type;
+
+        TypeEquals(TypeProduit type) {
+            this.type = Objects.requireNonNull(type, "type");
+        }
+
+        public TypeProduit getType() {
+            return type;
+        }
+
+        @Override
+        public boolean test(Produit p) {
+            return p.getType() == type;
+        }
+
+        @Override
+        public String toString() {
+            return "type = " + type;
+        }
+    }
+
+    /**
+     * Matches products whose numeric field (prix or quantiteStock) lies in a range.
+     * Open ends are expressed with infinite bounds.
+     */
+    public static final class Range extends Criterion {
+        private final ProduitField field;
+        private final double min;
+        private final boolean minInclusive;
+        private final double max;
+        private final boolean maxInclusive;
+
+        Range(ProduitField field, double min, boolean minInclusive, double max, boolean maxInclusive) {
+            if (field != ProduitField.PRIX && field != ProduitField.QUANTITE_STOCK)
+                throw new IllegalArgumentException("Not a numeric field: " + field);
+            this.field = field;
+            this.min = min;
+            this.minInclusive = minInclusive;
+            this.max = max;
+            this.maxInclusive = maxInclusive;
+        }
+
+        public ProduitField getField() {
+            return field;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public boolean isMinInclusive() {
+            return minInclusive;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public boolean isMaxInclusive() {
+            return maxInclusive;
+        }
+
+        /**
+         * Tests a raw value against the range.
+         *
+         * @param value The value of the field.
+         * @return true if the value lies in the range.
+         */
+        public boolean accepts(double value) {
+            return (minInclusive ? value >= min : value > min)
+                    && (maxInclusive ? value <= max : value < max);
+        }
+
+        @Override
+        public boolean test(Produit p) {
+            return accepts(field == ProduitField.PRIX ? p.getPrix() : p.getQuantiteStock());
+        }
+
+        @Override
+        public String toString() {
+            return field + " in " + (minInclusive ? "[" : "]") + min + ", " + max + (maxInclusive ? "]" : "[");
+        }
+    }
+
+    /**
+     * Matches products whose name starts with a prefix (case-sensitive).
+     */
+    public static final class NomStartsWith extends Criterion {
+        private final String prefix;
+
+        NomStartsWith(String prefix) {
+            this.prefix = Objects.requireNonNull(prefix, "prefix");
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        @Override
+        public boolean test(Produit p) {
+            return p.getNom() != null && p.getNom().startsWith(prefix);
+        }
+
+        @Override
+        public String toString() {
+            return "nom startsWith '" + prefix + "'";
+        }
+    }
+
+    /**
+     * Matches products whose name starts with a prefix, ignoring case and accents.
+     */
+    public static final class NomStartsWithIgnoringCase extends Criterion {
+        private final String folded;
+
+        NomStartsWithIgnoringCase(String prefix) {
+            this.folded = Folding.fold(Objects.requireNonNull(prefix, "prefix"));
+        }
+
+        /**
+         * @return The folded prefix.
+         */
+        public String getFolded() {
+            return folded;
+        }
+
+        @Override
+        public boolean test(Produit p) {
+            return p.getNom() != null && Folding.fold(p.getNom()).startsWith(folded);
+        }
+
+        @Override
+        public String toString() {
+            return "nom startsWith ignoring case '" + folded + "'";
+        }
+    }
+
+    /**
+     * Matches products whose name contains a fragment, ignoring case and accents.
+     */
+    public static final class NomContainsIgnoringCase extends Criterion {
+        private final String folded;
+
+        NomContainsIgnoringCase(String fragment) {
+            this.folded = Folding.fold(Objects.requireNonNull(fragment, "fragment"));
+        }
+
+        /**
+         * @return The folded fragment.
+         */
+        public String getFolded() {
+            return folded;
+        }
+
+        @Override
+        public boolean test(Produit p) {
+            return p.getNom() != null && Folding.fold(p.getNom()).contains(folded);
+        }
+
+        @Override
+        public String toString() {
+            return "nom contains ignoring case '" + folded + "'";
+        }
+    }
+
+    /**
+     * Matches products whose expiration date is strictly before, or strictly after, an instant.
+     * Products without an expiration date never match.
+     */
+    public static final class DatePremption extends Criterion {
+        private final long instant; // Epoch milliseconds
+        private final boolean before;
+
+        DatePremption(Date instant, boolean before) {
+            this.instant = instant.getTime();
+            this.before = before;
+        }
+
+        public long getInstant() {
+            return instant;
+        }
+
+        public boolean isBefore() {
+            return before;
+        }
+
+        @Override
+        public boolean test(Produit p) {
+            long d = p.getDatePremptionMillis();
+            return d != Produit.NO_DATE && (before ? d < instant : d > instant);
+        }
+
+        @Override
+        public String toString() {
+            return "datePremption " + (before ? "before " : "after ") + new Date(instant);
+        }
+    }
+
+    /**
+     * Matches products satisfying every sub-criterion.
+     */
+    public static final class And extends Criterion {
+        private final List<Criterion> operands;
+
+        And(List<Criterion> operands) {
+            this.operands = Collections.unmodifiableList(new ArrayList<>(operands));
+        }
+
+        public List<Criterion> getOperands() {
+            return operands;
+        }
+
+        @Override
+        public boolean test(Produit p) {
+            for (Criterion c : operands)
+                if (!c.test(p))
+                    return false;
+            return true;
+        }
+
+        @Override
+        public Criterion and(Criterion other) {
+            List<Criterion> all = new ArrayList<>(operands); // Keep conjunctions flat for the planner
+            all.add(other);
+            return new And(all);
+        }
+
+        @Override
+        public String toString() {
+            return join(operands, " and ");
+        }
+    }
+
+    /**
+     * Matches products satisfying at least one sub-criterion.
+     */
+    public static final class Or extends Criterion {
+        private final List<Criterion> operands;
+
+        Or(List<Criterion> operands) {
+            this.operands = Collections.unmodifiableList(new ArrayList<>(operands));
+        }
+
+        public List<Criterion> getOperands() {
+            return operands;
+        }
+
+        @Override
+        public boolean test(Produit p) {
+            for (Criterion c : operands)
+                if (c.test(p))
+                    return true;
+            return false;
+        }
+
+        @Override
+        public Criterion or(Criterion other) {
+            List<Criterion> all = new ArrayList<>(operands); // Keep disjunctions flat for the planner
+            all.add(other);
+            return new Or(all);
+        }
+
+        @Override
+        public String toString() {
+            return join(operands, " or ");
+        }
+    }
+
+    /**
+     * Matches products that do not satisfy the wrapped criterion.
+     */
+    public static final class Not extends Criterion {
+        private final Criterion operand;
+
+        Not(Criterion operand) {
+            this.operand = Objects.requireNonNull(operand, "operand");
+        }
+
+        public Criterion getOperand() {
+            return operand;
+        }
+
+        @Override
+        public boolean test(Produit p) {
+            return !operand.test(p);
+        }
+
+        @Override
+        public Criterion not() {
+            return operand; // Double negation
+        }
+
+        @Override
+        public String toString() {
+            return "not (" + operand + ")";
+        }
+    }
+
+    private static String join(List<Criterion> operands, String separator) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < operands.size(); i++) {
+            if (i > 0)
+                sb.append(separator);
+            sb.append(operands.get(i));
+        }
+        return sb.append(')').toString();
+    }
+}
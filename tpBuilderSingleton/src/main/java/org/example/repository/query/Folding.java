@@ -0,0 +1,54 @@
+package org.example.repository.query;
+
+import java.text.Normalizer; // Separates accents from their base letters
+
+/**
+ * Case- and accent-insensitive form of product names.
+ * Folding lower-cases a name and strips its accents ("Crème Brûlée" becomes "creme brulee"), so
+ * that name searches match whatever the user typed. Names that are already folded, which is
+ * the common case for lower-case ASCII names, are returned as is without allocating.
+ */
+public final class Folding {
+
+    private Folding() {
+    }
+
+    /**
+     * @param s The text to fold.
+     * @return The folded text.
+     */
+    public static String fold(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80 || (c >= 'A' && c <= 'Z'))
+                return c >= 0x80 || hasNonAscii(s, i) ? foldUnicode(s) : lowerAscii(s);
+        }
+        return s;
+    }
+
+    private static boolean hasNonAscii(String s, int from) {
+        for (int i = from; i < s.length(); i++)
+            if (s.charAt(i) >= 0x80)
+                return true;
+        return false;
+    }
+
+    private static String lowerAscii(String s) {
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++)
+            if (chars[i] >= 'A' && chars[i] <= 'Z')
+                chars[i] += 'a' - 'A';
+        return new String(chars);
+    }
+
+    private static String foldUnicode(String s) {
+        String decomposed = Normalizer.normalize(s, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) // Accents are combining marks after NFD
+                folded.append(Character.toLowerCase(c));
+        }
+        return folded.toString();
+    }
+}
@@ -0,0 +1,31 @@
+package org.example.repository.query;
+
+import org.example.entity.Produit;
+
+import java.util.Comparator; // For ordering query results
+
+/**
+ * Enum of the Produit fields that queries can filter or sort on.
+ */
+public enum ProduitField {
+    REF(Comparator.comparing(Produit::getRef, Comparator.nullsLast(Comparator.naturalOrder()))),
+    NOM(Comparator.comparing(Produit::getNom, Comparator.nullsLast(Comparator.naturalOrder()))),
+    PRIX(Comparator.comparingDouble(Produit::getPrix)),
+    QUANTITE_STOCK(Comparator.comparingDouble(Produit::getQuantiteStock)),
+    DATE_CREATION(Comparator.comparing(Produit::getDateCreation, Comparator.nullsLast(Comparator.naturalOrder()))),
+    DATE_PREMPTION(Comparator.comparing(Produit::getDatePremption, Comparator.nullsLast(Comparator.naturalOrder()))),
+    TYPE(Comparator.comparing(Produit::getType, Comparator.nullsLast(Comparator.naturalOrder())));
+
+    private final Comparator<Produit> comparator; // Ascending order on this field, nulls last
+
+    ProduitField(Comparator<Produit> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * @return A comparator ordering products by this field, ascending, with null values last.
+     */
+    public Comparator<Produit> comparator() {
+        return comparator;
+    }
+}
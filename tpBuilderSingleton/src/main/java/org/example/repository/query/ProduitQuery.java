@@ -0,0 +1,228 @@
+package org.example.repository.query;
+
+import org.example.entity.Produit;
+
+import java.util.*; // For lists, heaps and comparators
+
+/**
+ * A query over products: a criterion, an optional ordering and an optional page (offset/limit).
+ * Built fluently, for example:
+ * <pre>
+ * ProduitQuery.where(Criteria.type().eq(TypeProduit.Cosmitique))
+ *         .orderByDesc(ProduitField.PRIX)
+ *         .limit(10);
+ * </pre>
+ */
+public class ProduitQuery {
+
+    private final Criterion criterion; // Condition the results must satisfy
+    private final List<ProduitField> orderFields = new ArrayList<>();
+    private final List<Boolean> descending = new ArrayList<>(); // Direction of each order field
+    private Comparator<Produit> comparator; // Null when no ordering was requested
+    private int offset; // Number of matching products to skip
+    private int limit = Integer.MAX_VALUE; // Maximum number of products to return
+
+    private ProduitQuery(Criterion criterion) {
+        this.criterion = Objects.requireNonNull(criterion, "criterion");
+    }
+
+    /**
+     * Starts a query returning the products that satisfy a criterion.
+     *
+     * @param criterion The condition to satisfy.
+     * @return A new query.
+     */
+    public static ProduitQuery where(Criterion criterion) {
+        return new ProduitQuery(criterion);
+    }
+
+    /**
+     * Starts a query returning every product.
+     *
+     * @return A new query.
+     */
+    public static ProduitQuery all() {
+        return new ProduitQuery(Criteria.all());
+    }
+
+    /**
+     * Orders the results by a field, ascending. May be called several times to add tie-breakers.
+     *
+     * @param field The field to sort on.
+     * @return The current query for chaining.
+     */
+    public ProduitQuery orderBy(ProduitField field) {
+        return addOrder(field, field.comparator(), false);
+    }
+
+    /**
+     * Orders the results by a field, descending. May be called several times to add tie-breakers.
+     *
+     * @param field The field to sort on.
+     * @return The current query for chaining.
+     */
+    public ProduitQuery orderByDesc(ProduitField field) {
+        return addOrder(field, field.comparator().reversed(), true);
+    }
+
+    private ProduitQuery addOrder(ProduitField field, Comparator<Produit> c, boolean desc) {
+        orderFields.add(field);
+        descending.add(desc);
+        comparator = comparator == null ? c : comparator.thenComparing(c);
+        return this;
+    }
+
+    /**
+     * @param offset The number of matching products to skip.
+     * @return The current query for chaining.
+     */
+    public ProduitQuery offset(int offset) {
+        if (offset < 0)
+            throw new IllegalArgumentException("offset must be >= 0: " + offset);
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * @param limit The maximum number of products to return.
+     * @return The current query for chaining.
+     */
+    public ProduitQuery limit(int limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("limit must be >= 0: " + limit);
+        this.limit = limit;
+        return this;
+    }
+
+    public Criterion getCriterion() {
+        return criterion;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return The fields the results are ordered by, in priority order; empty if unordered.
+     */
+    public List<ProduitField> getOrderFields() {
+        return Collections.unmodifiableList(orderFields);
+    }
+
+    // Whether the order field at a position sorts descending
+    boolean isDescending(int position) {
+        return descending.get(position);
+    }
+
+    /**
+     * Returns a copy of this query starting at the first result and ending where this query's
+     * page ends. A catalog split into partitions asks each of them for the window, then applies
+     * this query to the union of their answers to cut the page.
+     *
+     * @return A new query with the same criterion and ordering, offset 0 and limit offset + limit.
+     */
+    public ProduitQuery window() {
+        ProduitQuery copy = new ProduitQuery(criterion);
+        copy.orderFields.addAll(orderFields);
+        copy.descending.addAll(descending);
+        copy.comparator = comparator;
+        copy.limit = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        return copy;
+    }
+
+    /**
+     * @return true if the first sort key is the given field in ascending order and is the only key.
+     */
+    public boolean isOrderedOnlyBy(ProduitField field) {
+        return orderFields.size() == 1 && orderFields.get(0) == field && comparator == field.comparator();
+    }
+
+    /**
+     * Filters, orders and pages a sequence of candidate products.
+     * Candidates are re-tested against the whole criterion, so they may be a superset of the result
+     * (for instance the output of an index scan on one part of the criterion).
+     *
+     * @param candidates The products to consider.
+     * @param presorted true if the candidates already come in the requested order, which allows
+     *                  stopping as soon as the page is full.
+     * @return The requested page of matching products.
+     */
+    public List<Produit> apply(Iterable<Produit> candidates, boolean presorted) {
+        if (limit == 0)
+            return new ArrayList<>();
+        if (comparator == null || presorted)
+            return firstPage(candidates);
+        long window = (long) offset + limit;
+        if (window > Integer.MAX_VALUE || window > 4096)
+            return sortAll(candidates);
+        return topN(candidates, (int) window);
+    }
+
+    // Candidates already in order: skip, take and stop early
+    private List<Produit> firstPage(Iterable<Produit> candidates) {
+        List<Produit> result = new ArrayList<>();
+        int skipped = 0;
+        for (Produit p : candidates) {
+            if (!criterion.test(p))
+                continue;
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            result.add(p);
+            if (result.size() >= limit)
+                break;
+        }
+        return result;
+    }
+
+    // Small page: keep only the best offset+limit products in a bounded heap
+    private List<Produit> topN(Iterable<Produit> candidates, int window) {
+        Comparator<Produit> order = comparator.thenComparing(ProduitField.REF.comparator());
+        PriorityQueue<Produit> heap = new PriorityQueue<>(window + 1, order.reversed()); // Worst product on top
+        for (Produit p : candidates) {
+            if (!criterion.test(p))
+                continue;
+            if (heap.size() < window) {
+                heap.add(p);
+            } else if (order.compare(p, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(p);
+            }
+        }
+        List<Produit> sorted = new ArrayList<>(heap);
+        sorted.sort(order);
+        return page(sorted);
+    }
+
+    // Large page: sort every match
+    private List<Produit> sortAll(Iterable<Produit> candidates) {
+        List<Produit> matches = new ArrayList<>();
+        for (Produit p : candidates)
+            if (criterion.test(p))
+                matches.add(p);
+        matches.sort(comparator.thenComparing(ProduitField.REF.comparator()));
+        return page(matches);
+    }
+
+    private List<Produit> page(List<Produit> sorted) {
+        if (offset >= sorted.size())
+            return new ArrayList<>();
+        int end = (int) Math.min(sorted.size(), (long) offset + limit);
+        return new ArrayList<>(sorted.subList(offset, end));
+    }
+
+    @Override
+    public String toString() {
+        return "ProduitQuery{" +
+                "criterion=" + criterion +
+                ", orderBy=" + orderFields +
+                ", offset=" + offset +
+                ", limit=" + limit +
+                '}';
+    }
+}
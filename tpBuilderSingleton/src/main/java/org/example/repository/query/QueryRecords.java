@@ -0,0 +1,200 @@
+package org.example.repository.query;
+
+import org.example.entity.TypeProduit;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Binary form of a ProduitQuery, for sending queries to a repository in another process.
+ * A criterion is written as a tag followed by its operands, sub-criteria first-to-last; the
+ * ordering is written as (field, direction) pairs and the page as offset and limit.
+ */
+public final class QueryRecords {
+
+    private static final int MAX_DEPTH = 256; // Deeper criteria are rejected rather than overflowing the stack
+
+    private static final byte ALL = 0;
+    private static final byte TYPE_EQUALS = 1;
+    private static final byte RANGE = 2;
+    private static final byte NOM_STARTS_WITH = 3;
+    private static final byte NOM_STARTS_WITH_IGNORING_CASE = 4;
+    private static final byte NOM_CONTAINS_IGNORING_CASE = 5;
+    private static final byte DATE_PREMPTION = 6;
+    private static final byte AND = 7;
+    private static final byte OR = 8;
+    private static final byte NOT = 9;
+
+    private static final TypeProduit[] TYPES = TypeProduit.values();
+    private static final ProduitField[] FIELDS = ProduitField.values();
+
+    private QueryRecords() {
+    }
+
+    /**
+     * Writes a query.
+     *
+     * @param out The destination.
+     * @param query The query.
+     * @throws IOException if the destination fails.
+     */
+    public static void write(DataOutput out, ProduitQuery query) throws IOException {
+        write(out, query.getCriterion());
+        List<ProduitField> order = query.getOrderFields();
+        out.writeByte(order.size());
+        for (int i = 0; i < order.size(); i++) {
+            out.writeByte(order.get(i).ordinal());
+            out.writeBoolean(query.isDescending(i));
+        }
+        out.writeInt(query.getOffset());
+        out.writeInt(query.getLimit());
+    }
+
+    /**
+     * Reads a query written by {@link #write(DataOutput, ProduitQuery)}.
+     *
+     * @param in The source.
+     * @return The query.
+     * @throws IOException if the source fails or holds an invalid record.
+     */
+    public static ProduitQuery read(DataInput in) throws IOException {
+        ProduitQuery query = ProduitQuery.where(readCriterion(in, 0));
+        int fields = in.readUnsignedByte();
+        for (int i = 0; i < fields; i++) {
+            ProduitField field = field(in.readUnsignedByte());
+            if (in.readBoolean())
+                query.orderByDesc(field);
+            else
+                query.orderBy(field);
+        }
+        try {
+            return query.offset(in.readInt()).limit(in.readInt());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid query page", e);
+        }
+    }
+
+    /**
+     * Writes a criterion.
+     *
+     * @param out The destination.
+     * @param criterion The criterion.
+     * @throws IOException if the destination fails.
+     */
+    public static void write(DataOutput out, Criterion criterion) throws IOException {
+        if (criterion instanceof Criterion.All) {
+            out.writeByte(ALL);
+        } else if (criterion instanceof Criterion.TypeEquals) {
+            out.writeByte(TYPE_EQUALS);
+            out.writeByte(((Criterion.TypeEquals) criterion).getType().ordinal());
+        } else if (criterion instanceof Criterion.Range) {
+            Criterion.Range r = (Criterion.Range) criterion;
+            out.writeByte(RANGE);
+            out.writeByte(r.getField().ordinal());
+            out.writeDouble(r.getMin());
+            out.writeBoolean(r.isMinInclusive());
+            out.writeDouble(r.getMax());
+            out.writeBoolean(r.isMaxInclusive());
+        } else if (criterion instanceof Criterion.NomStartsWith) {
+            out.writeByte(NOM_STARTS_WITH);
+            out.writeUTF(((Criterion.NomStartsWith) criterion).getPrefix());
+        } else if (criterion instanceof Criterion.NomStartsWithIgnoringCase) {
+            out.writeByte(NOM_STARTS_WITH_IGNORING_CASE);
+            out.writeUTF(((Criterion.NomStartsWithIgnoringCase) criterion).getFolded()); // Folding again is a no-op
+        } else if (criterion instanceof Criterion.NomContainsIgnoringCase) {
+            out.writeByte(NOM_CONTAINS_IGNORING_CASE);
+            out.writeUTF(((Criterion.NomContainsIgnoringCase) criterion).getFolded());
+        } else if (criterion instanceof Criterion.DatePremption) {
+            Criterion.DatePremption d = (Criterion.DatePremption) criterion;
+            out.writeByte(DATE_PREMPTION);
+            out.writeLong(d.getInstant());
+            out.writeBoolean(d.isBefore());
+        } else if (criterion instanceof Criterion.And) {
+            out.writeByte(AND);
+            writeAll(out, ((Criterion.And) criterion).getOperands());
+        } else if (criterion instanceof Criterion.Or) {
+            out.writeByte(OR);
+            writeAll(out, ((Criterion.Or) criterion).getOperands());
+        } else if (criterion instanceof Criterion.Not) {
+            out.writeByte(NOT);
+            write(out, ((Criterion.Not) criterion).getOperand());
+        } else {
+            throw new IllegalArgumentException("Unsupported criterion: " + criterion); // The hierarchy is closed
+        }
+    }
+
+    private static void writeAll(DataOutput out, List<Criterion> operands) throws IOException {
+        out.writeInt(operands.size());
+        for (Criterion c : operands)
+            write(out, c);
+    }
+
+    /**
+     * Reads a criterion written by {@link #write(DataOutput, Criterion)}.
+     *
+     * @param in The source.
+     * @return The criterion.
+     * @throws IOException if the source fails or holds an invalid record.
+     */
+    public static Criterion readCriterion(DataInput in) throws IOException {
+        return readCriterion(in, 0);
+    }
+
+    private static Criterion readCriterion(DataInput in, int depth) throws IOException {
+        if (depth > MAX_DEPTH)
+            throw new IOException("Criterion nested deeper than " + MAX_DEPTH);
+        byte tag = in.readByte();
+        try {
+            switch (tag) {
+                case ALL:
+                    return Criterion.All.INSTANCE;
+                case TYPE_EQUALS:
+                    int type = in.readUnsignedByte();
+                    if (type >= TYPES.length)
+                        throw new IOException("Invalid product type ordinal " + type);
+                    return new Criterion.TypeEquals(TYPES[type]);
+                case RANGE:
+                    return new Criterion.Range(field(in.readUnsignedByte()), in.readDouble(), in.readBoolean(),
+                            in.readDouble(), in.readBoolean());
+                case NOM_STARTS_WITH:
+                    return new Criterion.NomStartsWith(in.readUTF());
+                case NOM_STARTS_WITH_IGNORING_CASE:
+                    return new Criterion.NomStartsWithIgnoringCase(in.readUTF());
+                case NOM_CONTAINS_IGNORING_CASE:
+                    return new Criterion.NomContainsIgnoringCase(in.readUTF());
+                case DATE_PREMPTION:
+                    return new Criterion.DatePremption(new Date(in.readLong()), in.readBoolean());
+                case AND:
+                    return new Criterion.And(readAll(in, depth));
+                case OR:
+                    return new Criterion.Or(readAll(in, depth));
+                case NOT:
+                    return new Criterion.Not(readCriterion(in, depth + 1));
+                default:
+                    throw new IOException("Invalid criterion tag " + tag);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid criterion", e); // A range on a non-numeric field
+        }
+    }
+
+    private static List<Criterion> readAll(DataInput in, int depth) throws IOException {
+        int n = in.readInt();
+        if (n < 0)
+            throw new IOException("Invalid number of operands " + n);
+        List<Criterion> operands = new ArrayList<>(Math.min(n, 16)); // The count is untrusted until the operands are read
+        for (int i = 0; i < n; i++)
+            operands.add(readCriterion(in, depth + 1));
+        return operands;
+    }
+
+    private static ProduitField field(int ordinal) throws IOException {
+        if (ordinal >= FIELDS.length)
+            throw new IOException("Invalid field ordinal " + ordinal);
+        return FIELDS[ordinal];
+    }
+}
@@ -0,0 +1,505 @@
+package org.example.server;
+
+import com.sun.net.httpserver.HttpExchange; // The JDK's built-in HTTP server
+import com.sun.net.httpserver.HttpServer;
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.example.io.ProduitJson;
+import org.example.repository.IProduitRepository;
+import org.example.repository.OptimisticLockException;
+import org.example.repository.ProduitRepositoryImpl;
+import org.example.repository.query.Criteria;
+import org.example.repository.query.Criterion;
+import org.example.repository.query.ProduitField;
+import org.example.repository.query.ProduitQuery;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*; // For the parameters and results of the requests
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors; // One virtual thread per request
+import java.util.concurrent.Semaphore; // Bounds the requests of each kind running at once
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves a repository over HTTP on the loopback interface, one virtual thread per request.
+ * <p>
+ * Requests block on the repository as they would in the caller's own thread, so that a client
+ * waiting on a slow search holds a cheap virtual thread rather than a platform thread. The
+ * number of requests of each {@link RequestKind kind} running at once is bounded: a request
+ * over the bound waits up to the queue timeout for a permit, then is answered 503 with a
+ * Retry-After header. Searches, which keep a core busy, thereby cannot starve the lookups.
+ * <p>
+ * Products are exchanged in the JSON layout of {@link ProduitJson}:
+ * <pre>
+ * GET    /produits/{ref}      the product, or 404
+ * PUT    /produits/{ref}      update from the product in the body
+ * DELETE /produits/{ref}      204 whether or not it existed
+ * POST   /produits            save the product, or the array of products, in the body
+ * GET    /produits?...        search: type, prixMin, prixMax, stockMin, nom (prefix),
+ *                             nomContient, expireAvant (epoch millis), orderBy (ProduitField
+ *                             names, comma-separated, '-' for descending), offset, limit
+ * </pre>
+ * Searches return at most {@value #DEFAULT_LIMIT} products unless a limit is given, and never more
+ * than {@value #MAX_LIMIT}. A body longer than the configured maximum is answered 413 without
+ * being read past it.
+ * <p>
+ * Run as a program, it serves an empty repository:
+ * <pre>
+ * java -cp ... org.example.server.ProduitHttpServer [port]
+ * </pre>
+ * prints the port it listens on, and stops when its standard input is closed.
+ */
+public final class ProduitHttpServer implements Closeable {
+
+    /**
+     * The classes of requests, each with its own concurrency bound.
+     */
+    public enum RequestKind {
+        /**
+         * GET of one product; a map lookup.
+         */
+        LOOKUP,
+        /**
+         * GET with parameters; may scan the whole catalog.
+         */
+        SEARCH,
+        /**
+         * POST, PUT and DELETE; serialized per reference by the repository.
+         */
+        WRITE
+    }
+
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 10_000;
+    private static final String PATH = "/produits";
+    private static final RequestKind[] KINDS = RequestKind.values();
+
+    private final IProduitRepository repository;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int[] maxConcurrent = new int[KINDS.length];
+    private final Semaphore[] permits = new Semaphore[KINDS.length];
+    private final LongAdder[] rejected = new LongAdder[KINDS.length];
+    private final long queueTimeoutMillis;
+    private final int maxBodyBytes;
+
+    private ProduitHttpServer(Builder builder) throws IOException {
+        this.repository = builder.repository;
+        this.queueTimeoutMillis = builder.queueTimeoutMillis;
+        this.maxBodyBytes = builder.maxBodyBytes;
+        for (RequestKind kind : KINDS) {
+            maxConcurrent[kind.ordinal()] = builder.maxConcurrent[kind.ordinal()];
+            permits[kind.ordinal()] = new Semaphore(maxConcurrent[kind.ordinal()]);
+            rejected[kind.ordinal()] = new LongAdder();
+        }
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), builder.backlog);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    /**
+     * @param repository The repository to serve.
+     * @return A builder of a server in front of the repository.
+     */
+    public static Builder builder(IProduitRepository repository) {
+        return new Builder(repository);
+    }
+
+    /**
+     * Options of a ProduitHttpServer.
+     * By default, it listens on any free port and runs at most 8,192 lookups, twice as many
+     * searches as there are cores and 256 writes at once; requests wait up to one second for
+     * their turn, and bodies are at most 16 MiB.
+     */
+    public static final class Builder {
+        private final IProduitRepository repository;
+        private int port;
+        private int backlog = 4096;
+        private final int[] maxConcurrent = new int[KINDS.length];
+        private long queueTimeoutMillis = 1000;
+        private int maxBodyBytes = 16 << 20;
+
+        private Builder(IProduitRepository repository) {
+            this.repository = Objects.requireNonNull(repository, "repository");
+            maxConcurrent[RequestKind.LOOKUP.ordinal()] = 8192;
+            maxConcurrent[RequestKind.SEARCH.ordinal()] = 2 * Runtime.getRuntime().availableProcessors();
+            maxConcurrent[RequestKind.WRITE.ordinal()] = 256;
+        }
+
+        /**
+         * @param port The loopback port to listen on, 0 for any free port.
+         * @return This builder.
+         */
+        public Builder port(int port) {
+            if (port < 0 || port > 0xFFFF)
+                throw new IllegalArgumentException("Invalid port: " + port);
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param backlog The connections the system may queue before they are accepted.
+         * @return This builder.
+         */
+        public Builder backlog(int backlog) {
+            if (backlog <= 0)
+                throw new IllegalArgumentException("Backlog must be positive: " + backlog);
+            this.backlog = backlog;
+            return this;
+        }
+
+        /**
+         * @param kind A class of requests.
+         * @param max The number of requests of that class allowed to run at once.
+         * @return This builder.
+         */
+        public Builder maxConcurrent(RequestKind kind, int max) {
+            if (max <= 0)
+                throw new IllegalArgumentException("Maximum concurrency must be positive: " + max);
+            maxConcurrent[kind.ordinal()] = max;
+            return this;
+        }
+
+        /**
+         * @param millis The time a request over its bound waits for a turn before it is answered 503.
+         * @return This builder.
+         */
+        public Builder queueTimeout(long millis) {
+            if (millis < 0)
+                throw new IllegalArgumentException("Queue timeout must be >= 0: " + millis);
+            this.queueTimeoutMillis = millis;
+            return this;
+        }
+
+        /**
+         * @param bytes The longest request body accepted; a longer one is answered 413.
+         * @return This builder.
+         */
+        public Builder maxBodyBytes(int bytes) {
+            if (bytes <= 0 || bytes == Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Invalid maximum body size: " + bytes);
+            this.maxBodyBytes = bytes;
+            return this;
+        }
+
+        /**
+         * @return A new server, already listening; close it to stop.
+         * @throws IOException if the port cannot be bound.
+         */
+        public ProduitHttpServer start() throws IOException {
+            return new ProduitHttpServer(this);
+        }
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @param kind A class of requests.
+     * @return The requests of that class running now.
+     */
+    public int getActive(RequestKind kind) {
+        return maxConcurrent[kind.ordinal()] - permits[kind.ordinal()].availablePermits();
+    }
+
+    /**
+     * @param kind A class of requests.
+     * @return The requests of that class answered 503 because they waited too long for a turn.
+     */
+    public long getRejected(RequestKind kind) {
+        return rejected[kind.ordinal()].sum();
+    }
+
+    /**
+     * Stops listening, lets the requests in progress finish for up to a second, then stops.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    // Runs on the request's own thread
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getRawPath();
+            if (path.equals(PATH) || path.equals(PATH + "/")) {
+                if (method.equals("GET"))
+                    run(exchange, RequestKind.SEARCH, () -> search(exchange));
+                else if (method.equals("POST"))
+                    run(exchange, RequestKind.WRITE, () -> save(exchange));
+                else
+                    notAllowed(exchange, "GET, POST");
+            } else if (path.startsWith(PATH + "/") && path.indexOf('/', PATH.length() + 1) < 0) {
+                long ref = parseRef(path.substring(PATH.length() + 1));
+                if (method.equals("GET"))
+                    run(exchange, RequestKind.LOOKUP, () -> find(exchange, ref));
+                else if (method.equals("PUT"))
+                    run(exchange, RequestKind.WRITE, () -> update(exchange, ref));
+                else if (method.equals("DELETE"))
+                    run(exchange, RequestKind.WRITE, () -> delete(exchange, ref));
+                else
+                    notAllowed(exchange, "GET, PUT, DELETE");
+            } else {
+                send(exchange, 404, "No such resource: " + path);
+            }
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private interface Request {
+        void run() throws IOException;
+    }
+
+    // Runs a request once a permit of its kind is free, and maps the repository's exceptions to statuses
+    private void run(HttpExchange exchange, RequestKind kind, Request request) throws IOException {
+        Semaphore semaphore = permits[kind.ordinal()];
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // The server is stopping
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected[kind.ordinal()].increment();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            send(exchange, 503, "Too many concurrent " + kind.name().toLowerCase(Locale.ROOT) + " requests");
+            return;
+        }
+        try {
+            request.run();
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, e.getMessage());
+        } catch (NoSuchElementException e) {
+            send(exchange, 404, e.getMessage());
+        } catch (OptimisticLockException e) {
+            send(exchange, 409, e.getMessage());
+        } catch (UnsupportedOperationException e) {
+            send(exchange, 405, e.getMessage());
+        } catch (RuntimeException e) {
+            send(exchange, 500, String.valueOf(e));
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    private void find(HttpExchange exchange, long ref) throws IOException {
+        Produit p = repository.getByRef(ref);
+        if (p == null)
+            send(exchange, 404, "No product with reference " + ref);
+        else
+            sendJson(exchange, 200, Collections.singletonList(p), ProduitJson.Format.NDJSON);
+    }
+
+    private void search(HttpExchange exchange) throws IOException {
+        ProduitQuery query = parseQuery(exchange.getRequestURI().getRawQuery());
+        sendJson(exchange, 200, repository.search(query), ProduitJson.Format.JSON_ARRAY);
+    }
+
+    // One product answers one product, an array answers an array
+    private void save(HttpExchange exchange) throws IOException {
+        byte[] body = readBody(exchange);
+        if (body == null)
+            return;
+        List<Produit> produits = readProduits(body);
+        if (isArray(body))
+            sendJson(exchange, 201, repository.saveAll(produits), ProduitJson.Format.JSON_ARRAY);
+        else if (produits.size() == 1)
+            sendJson(exchange, 201, Collections.singletonList(repository.save(produits.get(0))), ProduitJson.Format.NDJSON);
+        else
+            send(exchange, 400, "Expected one product or an array of products");
+    }
+
+    private void update(HttpExchange exchange, long ref) throws IOException {
+        byte[] body = readBody(exchange);
+        if (body == null)
+            return;
+        List<Produit> produits = readProduits(body);
+        if (produits.size() != 1) {
+            send(exchange, 400, "Expected one product");
+            return;
+        }
+        Produit updated = repository.update(produits.get(0).withRef(ref));
+        sendJson(exchange, 200, Collections.singletonList(updated), ProduitJson.Format.NDJSON);
+    }
+
+    private void delete(HttpExchange exchange, long ref) throws IOException {
+        repository.detele(ref);
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    // The body, or null once answered 413; reads one byte past the maximum at most
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+        byte[] body = null;
+        if (declared == null || parseLength(declared) <= maxBodyBytes)
+            body = exchange.getRequestBody().readNBytes(maxBodyBytes + 1); // Chunked bodies declare no length
+        if (body == null || body.length > maxBodyBytes) {
+            send(exchange, 413, "Request body larger than " + maxBodyBytes + " bytes");
+            return null;
+        }
+        return body;
+    }
+
+    private static long parseLength(String declared) {
+        try {
+            return Long.parseLong(declared.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid Content-Length: " + declared);
+        }
+    }
+
+    private static List<Produit> readProduits(byte[] body) {
+        List<Produit> produits = new ArrayList<>();
+        try {
+            ProduitJson.read(new ByteArrayInputStream(body), ProduitJson.DEFAULT_BATCH_SIZE, produits::addAll);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid product JSON: " + e.getMessage(), e);
+        }
+        return produits;
+    }
+
+    private static boolean isArray(byte[] body) {
+        for (byte b : body)
+            if (!Character.isWhitespace(b))
+                return b == '[';
+        return false;
+    }
+
+    private static long parseRef(String segment) {
+        try {
+            return Long.parseLong(segment);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid reference: " + segment);
+        }
+    }
+
+    /**
+     * Turns the parameters of a search into a query; every criterion given must hold.
+     *
+     * @param rawQuery The query string, still URL-encoded, or null.
+     * @return The query.
+     * @throws IllegalArgumentException if a parameter is unknown or its value invalid.
+     */
+    static ProduitQuery parseQuery(String rawQuery) {
+        List<Criterion> criteria = new ArrayList<>();
+        String orderBy = null;
+        int offset = 0;
+        int limit = DEFAULT_LIMIT;
+        if (rawQuery != null && !rawQuery.isEmpty()) {
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+                switch (name) {
+                    case "type":
+                        criteria.add(Criteria.type().eq(TypeProduit.valueOf(value)));
+                        break;
+                    case "prixMin":
+                        criteria.add(Criteria.prix().ge(Double.parseDouble(value)));
+                        break;
+                    case "prixMax":
+                        criteria.add(Criteria.prix().le(Double.parseDouble(value)));
+                        break;
+                    case "stockMin":
+                        criteria.add(Criteria.quantiteStock().ge(Double.parseDouble(value)));
+                        break;
+                    case "nom":
+                        criteria.add(Criteria.nom().startsWithIgnoringCase(value));
+                        break;
+                    case "nomContient":
+                        criteria.add(Criteria.nom().containsIgnoringCase(value));
+                        break;
+                    case "expireAvant":
+                        criteria.add(Criteria.datePremption().before(new Date(Long.parseLong(value))));
+                        break;
+                    case "orderBy":
+                        orderBy = value;
+                        break;
+                    case "offset":
+                        offset = Integer.parseInt(value);
+                        break;
+                    case "limit":
+                        limit = Integer.parseInt(value);
+                        if (limit > MAX_LIMIT)
+                            throw new IllegalArgumentException("limit must be <= " + MAX_LIMIT + ": " + limit);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown search parameter: " + name);
+                }
+            }
+        }
+        ProduitQuery query = ProduitQuery.where(criteria.isEmpty() ? Criteria.all()
+                : Criteria.and(criteria.toArray(new Criterion[0])));
+        if (orderBy != null) {
+            for (String field : orderBy.split(",")) {
+                if (field.startsWith("-"))
+                    query.orderByDesc(ProduitField.valueOf(field.substring(1)));
+                else
+                    query.orderBy(ProduitField.valueOf(field));
+            }
+        }
+        return query.offset(offset).limit(limit);
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, List<Produit> produits, ProduitJson.Format format) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64 + 160 * produits.size());
+        ProduitJson.write(produits, body, format);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+    }
+
+    private static void notAllowed(HttpExchange exchange, String allowed) throws IOException {
+        exchange.getResponseHeaders().set("Allow", allowed);
+        send(exchange, 405, "Allowed methods: " + allowed);
+    }
+
+    private static void send(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Serves an empty repository until standard input is closed.
+     *
+     * @param args Optionally the port (any free port by default).
+     * @throws IOException if the port cannot be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        try (ProduitHttpServer server = builder(ProduitRepositoryImpl.newInstance()).port(port).start()) {
+            System.out.println("Serving products on port " + server.getPort() + " with virtual threads");
+            System.out.flush();
+            while (System.in.read() != -1) {
+                // Only the end of the stream matters
+            }
+        }
+    }
+}
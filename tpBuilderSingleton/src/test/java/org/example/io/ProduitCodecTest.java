@@ -0,0 +1,169 @@
+package org.example.io;
+
+import org.example.entity.Produit;
+import org.example.entity.TypeProduit;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Round trips and malformed input of the binary product codec, on heap and direct buffers.
+ */
+class ProduitCodecTest {
+
+    private static final List<IntFunction<ByteBuffer>> BUFFERS = List.of(
+            ByteBuffer::allocate,
+            ByteBuffer::allocateDirect,
+            size -> ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN),
+            size -> ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN),
+            size -> ByteBuffer.allocate(size + 7).position(7).slice()); // Non-zero array offset
+
+    private static final ProduitCodec DICTIONARY = ProduitCodec.withDictionary(List.of("Lait", "Pain", "Café"));
+
+    @Test
+    void productsWithAndWithoutOptionalFieldsRoundTrip() {
+        for (Produit p : samples()) {
+            roundTrip(ProduitCodec.standard(), p);
+            roundTrip(DICTIONARY, p);
+        }
+    }
+
+    @Test
+    void namesOfTheDictionaryAreWrittenAsTheirPosition() {
+        Produit p = produit("Café");
+        assertEquals(ProduitCodec.standard().sizeOf(p) - "Café".getBytes(StandardCharsets.UTF_8).length,
+                DICTIONARY.sizeOf(p));
+        for (IntFunction<ByteBuffer> allocator : BUFFERS)
+            assertSame(DICTIONARY.decode(encoded(DICTIONARY, p, allocator)).getNom(),
+                    DICTIONARY.decode(encoded(DICTIONARY, p, allocator)).getNom());
+    }
+
+    @Test
+    void surrogatePairsRoundTripAndUnpairedSurrogatesBecomeQuestionMarks() {
+        roundTrip(ProduitCodec.standard(), produit("Fruits 🍓 et 🍋"));
+        roundTrip(ProduitCodec.standard(), produit("😀"));
+        for (String unpaired : List.of("a\uD800b", "a\uDC00b", "ab\uD800", "\uDC00\uD800")) {
+            Produit p = produit(unpaired);
+            String expected = unpaired.replaceAll("[\uD800-\uDFFF]", "?");
+            for (IntFunction<ByteBuffer> allocator : BUFFERS)
+                assertEquals(expected, ProduitCodec.standard().decode(encoded(ProduitCodec.standard(), p, allocator)).getNom());
+        }
+    }
+
+    @Test
+    void randomNamesRoundTripOnEveryKindOfBuffer() {
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder nom = new StringBuilder();
+            for (int n = random.nextInt(40); n > 0; n--) {
+                int cp;
+                do {
+                    cp = switch (random.nextInt(4)) {
+                        case 0 -> random.nextInt(0x80);
+                        case 1 -> 0x80 + random.nextInt(0x780);
+                        case 2 -> 0x800 + random.nextInt(0xF800);
+                        default -> 0x10000 + random.nextInt(0x100000);
+                    };
+                } while (Character.isSurrogate((char) cp) && cp < 0x10000);
+                nom.appendCodePoint(cp);
+            }
+            roundTrip(ProduitCodec.standard(), produit(nom.toString()));
+        }
+    }
+
+    @Test
+    void encodingIntoATooSmallBufferLeavesItUnchanged() {
+        Produit p = produit("Pain de campagne");
+        ByteBuffer buffer = ByteBuffer.allocate(ProduitCodec.standard().sizeOf(p) - 1);
+        assertThrows(BufferOverflowException.class, () -> ProduitCodec.standard().encode(p, buffer));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void truncatedRecordsUnderflow() {
+        ByteBuffer full = encoded(ProduitCodec.standard(), produit("Pain"), ByteBuffer::allocate);
+        for (int length = 0; length < full.limit(); length++) {
+            ByteBuffer truncated = full.duplicate().limit(length);
+            assertThrows(BufferUnderflowException.class, () -> ProduitCodec.standard().decode(truncated));
+        }
+    }
+
+    @Test
+    void negativeVarintsForTheNameAreRejected() {
+        // A ten-byte varint with the top bit set decodes to a negative long
+        byte[] negative = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01};
+        for (ProduitCodec codec : List.of(ProduitCodec.standard(), DICTIONARY)) {
+            Produit p = codec == DICTIONARY ? produit("Lait") : produit("x");
+            ByteBuffer record = encoded(codec, p, ByteBuffer::allocate);
+            int nameAt = record.limit() - (codec == DICTIONARY ? 1 : 2); // Position or length, then the name
+            ByteBuffer forged = ByteBuffer.allocate(nameAt + negative.length + 8);
+            forged.put(record.array(), 0, nameAt).put(negative).put(new byte[8]).flip();
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> codec.decode(forged));
+            assertEquals(codec == DICTIONARY ? "Name " + Long.MIN_VALUE + " is not in the dictionary"
+                    : "Invalid name length " + Long.MIN_VALUE, e.getMessage());
+        }
+    }
+
+    @Test
+    void unknownSchemaVersionsAndTypesAreRejected() {
+        ByteBuffer record = encoded(ProduitCodec.standard(), produit("x"), ByteBuffer::allocate);
+        record.put(0, (byte) 2);
+        assertThrows(IllegalArgumentException.class, () -> ProduitCodec.standard().decode(record));
+
+        Produit typed = new Produit(1, null, 1, 1, Produit.NO_DATE, Produit.NO_DATE, TypeProduit.Cosmitique, 1);
+        ByteBuffer typedRecord = encoded(ProduitCodec.standard(), typed, ByteBuffer::allocate);
+        typedRecord.put(typedRecord.limit() - 1, (byte) TypeProduit.values().length);
+        assertThrows(IllegalArgumentException.class, () -> ProduitCodec.standard().decode(typedRecord));
+    }
+
+    private static void roundTrip(ProduitCodec codec, Produit p) {
+        for (IntFunction<ByteBuffer> allocator : BUFFERS) {
+            // Two copies in a row: decoding the first must stop exactly where the second starts
+            int size = codec.sizeOf(p);
+            ByteBuffer buffer = allocator.apply(2 * size);
+            codec.encode(p, buffer);
+            assertEquals(size, buffer.position());
+            codec.encode(p, buffer);
+            buffer.flip();
+            assertEquals(p, codec.decode(buffer));
+            assertEquals(size, buffer.position());
+            assertEquals(p, codec.decode(buffer));
+            assertEquals(2 * size, buffer.position());
+        }
+    }
+
+    private static ByteBuffer encoded(ProduitCodec codec, Produit p, IntFunction<ByteBuffer> allocator) {
+        ByteBuffer buffer = allocator.apply(codec.sizeOf(p));
+        codec.encode(p, buffer);
+        return buffer.flip();
+    }
+
+    private static List<Produit> samples() {
+        long now = ProduitCodec.DATE_BASE + 123_456_789L;
+        List<Produit> samples = new ArrayList<>();
+        samples.add(new Produit(1, null, 0, 0, Produit.NO_DATE, Produit.NO_DATE, null, 0));
+        samples.add(new Produit(Long.MAX_VALUE, "", -1.5, Double.NaN, now, Produit.NO_DATE, TypeProduit.Neutritif, 1));
+        samples.add(new Produit(300, "Lait", Double.MAX_VALUE, Double.NEGATIVE_INFINITY, Produit.NO_DATE, now, TypeProduit.Cosmitique, Long.MAX_VALUE));
+        samples.add(new Produit(42, "Crème brûlée", 3.2, 10, now, now - 86_400_000L, TypeProduit.Neutritif, 7));
+        samples.add(new Produit(7, "Pain", 1, 1, 0, Long.MAX_VALUE, null, 2)); // Dates far from the base
+        samples.add(new Produit(8, "x".repeat(70_000), 1, 1, Long.MIN_VALUE + 1, Produit.NO_DATE, null, 3));
+        return samples;
+    }
+
+    private static Produit produit(String nom) {
+        return new Produit(5, nom, 2.5, 3, ProduitCodec.DATE_BASE, Produit.NO_DATE, TypeProduit.Neutritif, 1);
+    }
+}
@@ -0,0 +1,247 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Caching of a slow backend by CachingProduitRepository: loads, eviction, expiry and both write modes.
+ */
+class CachingProduitRepositoryTest {
+
+    @Test
+    void concurrentMissesOnAReferenceShareOneBackendLoad() throws Exception {
+        ProduitRepositoryImpl backend = ProduitRepositoryImpl.newInstance();
+        long ref = backend.save(produit("Lent")).getRef();
+        Slow slow = new Slow(backend, 200);
+        try (CachingProduitRepository cache = CachingProduitRepository.builder(slow.repository()).build()) {
+            List<Produit> seen = ProduitRepositoryImplConcurrencyTest.runAll(16,
+                    thread -> cache.finfByRef(ref).orElseThrow());
+            assertEquals(1, slow.calls("finfByRef"));
+            for (Produit p : seen)
+                assertSame(seen.get(0), p);
+            CacheStats stats = cache.stats();
+            assertEquals(1, stats.getLoads());
+            assertEquals(seen.size() - 1, stats.getCoalescedLoads() + stats.getHits());
+            assertTrue(stats.getCoalescedLoads() > 0);
+        }
+    }
+
+    @Test
+    void aFailedLoadIsThrownToEveryWaiterAndRetriedByTheNextMiss() throws Exception {
+        ProduitRepositoryImpl backend = ProduitRepositoryImpl.newInstance();
+        long ref = backend.save(produit("Fragile")).getRef();
+        Slow slow = new Slow(backend, 200);
+        slow.failing.set(true);
+        try (CachingProduitRepository cache = CachingProduitRepository.builder(slow.repository()).build()) {
+            AtomicInteger failures = new AtomicInteger();
+            ProduitRepositoryImplConcurrencyTest.runAll(8, thread -> {
+                try {
+                    cache.finfByRef(ref);
+                } catch (IllegalStateException e) {
+                    failures.incrementAndGet();
+                }
+                return null;
+            });
+            assertEquals(8, failures.get());
+            slow.failing.set(false);
+            assertEquals("Fragile", cache.finfByRef(ref).orElseThrow().getNom());
+            assertTrue(slow.calls("finfByRef") < 8); // Waiters took the failure of the load they joined
+        }
+    }
+
+    @Test
+    void productsReadTwiceSurviveAScanOfProductsReadOnce() {
+        ProduitRepositoryImpl backend = ProduitRepositoryImpl.newInstance();
+        List<Produit> saved = backend.saveAll(produits(5000));
+        Slow slow = new Slow(backend, 0);
+        try (CachingProduitRepository cache = CachingProduitRepository.builder(slow.repository())
+                .maximumSize(320)
+                .build()) {
+            List<Produit> hot = saved.subList(0, 40);
+            for (int round = 0; round < 2; round++)
+                for (Produit p : hot)
+                    cache.finfByRef(p.getRef()); // Loaded, then promoted to the protected list
+            for (Produit p : saved.subList(40, saved.size()))
+                cache.finfByRef(p.getRef());
+
+            CacheStats stats = cache.stats();
+            assertTrue(stats.getSize() <= 320);
+            assertEquals(saved.size() - stats.getSize(), stats.getEvictions());
+            int loads = slow.calls("finfByRef");
+            for (Produit p : hot)
+                assertEquals(p, cache.finfByRef(p.getRef()).orElseThrow());
+            assertEquals(loads, slow.calls("finfByRef")); // All hits
+
+            // The scanned products were only read once, so the first of them are long gone
+            cache.finfByRef(saved.get(40).getRef());
+            assertEquals(loads + 1, slow.calls("finfByRef"));
+        }
+    }
+
+    @Test
+    void productsExpireAFixedTimeAfterTheyWereLoaded() {
+        ProduitRepositoryImpl backend = ProduitRepositoryImpl.newInstance();
+        long ref = backend.save(produit("Frais")).getRef();
+        Slow slow = new Slow(backend, 0);
+        try (CachingProduitRepository cache = CachingProduitRepository.builder(slow.repository())
+                .expireAfterWrite(50)
+                .build()) {
+            cache.finfByRef(ref);
+            cache.finfByRef(ref);
+            assertEquals(1, slow.calls("finfByRef"));
+            LockSupport.parkNanos(100_000_000L);
+            backend.update(backend.getByRef(ref).withNom("Changé")); // Behind the cache's back
+            assertEquals("Changé", cache.finfByRef(ref).orElseThrow().getNom());
+            assertEquals(2, slow.calls("finfByRef"));
+            assertEquals(1, cache.stats().getExpirations());
+        }
+    }
+
+    @Test
+    void writesThroughReachTheBackendAndAreReadBackWithoutALoad() {
+        ProduitRepositoryImpl backend = ProduitRepositoryImpl.newInstance();
+        Slow slow = new Slow(backend, 5);
+        try (CachingProduitRepository cache = CachingProduitRepository.builder(slow.repository()).build()) {
+            List<Produit> saved = cache.saveAll(produits(3));
+            Produit updated = cache.update(saved.get(0).withPrix(42));
+            assertEquals(42, backend.getByRef(updated.getRef()).getPrix());
+            assertEquals(updated, cache.finfByRef(updated.getRef()).orElseThrow());
+            assertEquals(0, slow.calls("finfByRef"));
+
+            // A rejected compare-and-set leaves the cached product as it was
+            assertThrows(OptimisticLockException.class, () -> cache.updateVersioned(saved.get(0).withPrix(7)));
+            assertEquals(updated, cache.finfByRef(updated.getRef()).orElseThrow());
+
+            Produit adjusted = cache.adjustStock(saved.get(1).getRef(), 10);
+            assertEquals(backend.getByRef(adjusted.getRef()), cache.finfByRef(adjusted.getRef()).orElseThrow());
+
+            cache.detele(saved.get(2).getRef());
+            assertTrue(backend.finfByRef(saved.get(2).getRef()).isEmpty());
+            assertEquals(Optional.empty(), cache.finfByRef(saved.get(2).getRef()));
+            assertEquals(1, slow.calls("finfByRef")); // Only the deleted product was looked up again
+        }
+    }
+
+    @Test
+    void writesBehindReachTheBackendOnlyWhenFlushed() {
+        ProduitRepositoryImpl backend = ProduitRepositoryImpl.newInstance();
+        List<Produit> saved = backend.saveAll(produits(2));
+        Slow slow = new Slow(backend, 5);
+        try (CachingProduitRepository cache = CachingProduitRepository.builder(slow.repository())
+                .writeBehind(60_000)
+                .build()) {
+            cache.update(saved.get(0).withPrix(99));
+            cache.update(saved.get(0).withPrix(100)); // Only the last write of a reference is sent
+            cache.detele(saved.get(1).getRef());
+            assertEquals(saved.get(0).getPrix(), backend.getByRef(saved.get(0).getRef()).getPrix());
+            assertEquals(100, cache.finfByRef(saved.get(0).getRef()).orElseThrow().getPrix());
+            assertTrue(cache.finfByRef(saved.get(1).getRef()).isEmpty());
+            assertEquals(0, slow.calls("updateAll"));
+
+            assertEquals(1, cache.findAll().size()); // Queries flush first
+            assertEquals(1, slow.calls("updateAll"));
+            assertEquals(1, slow.calls("deleteAll"));
+            assertEquals(100, backend.getByRef(saved.get(0).getRef()).getPrix());
+            assertTrue(backend.finfByRef(saved.get(1).getRef()).isEmpty());
+            assertEquals(1, cache.stats().getWriteBehindFlushes());
+        }
+    }
+
+    @Test
+    void flushedWritesAreCachedWithTheVersionsTheBackendAssigned() {
+        ProduitRepositoryImpl backend = ProduitRepositoryImpl.newInstance();
+        try (CachingProduitRepository cache = CachingProduitRepository.builder(skippingVersions(backend))
+                .writeBehind(60_000)
+                .build()) {
+            Produit saved = cache.save(new ProduitBuilder().nom("Libre").prix(10)
+                    .type(TypeProduit.Neutritif).quantiteStock(1).build());
+            cache.update(saved.withPrix(20));
+            cache.flush();
+            Produit stored = backend.getByRef(saved.getRef());
+            assertEquals(stored, cache.getByRef(saved.getRef()));
+            Produit updated = cache.updateVersioned(cache.getByRef(saved.getRef()).withPrix(30));
+            assertEquals(stored.getVersion() + 1, updated.getVersion());
+        }
+    }
+
+    // Deliberately slow in-process stand-in for a remote backend, counting the calls it receives
+    private static final class Slow {
+        final IProduitRepository backend;
+        final long latencyMillis;
+        final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+        final AtomicBoolean failing = new AtomicBoolean();
+
+        Slow(IProduitRepository backend, long latencyMillis) {
+            this.backend = backend;
+            this.latencyMillis = latencyMillis;
+        }
+
+        int calls(String method) {
+            AtomicInteger n = calls.get(method);
+            return n == null ? 0 : n.get();
+        }
+
+        IProduitRepository repository() {
+            return (IProduitRepository) Proxy.newProxyInstance(IProduitRepository.class.getClassLoader(),
+                    new Class<?>[]{IProduitRepository.class}, (proxy, method, args) -> {
+                        calls.computeIfAbsent(method.getName(), m -> new AtomicInteger()).incrementAndGet();
+                        LockSupport.parkNanos(latencyMillis * 1_000_000);
+                        if (failing.get())
+                            throw new IllegalStateException("Backend unavailable");
+                        try {
+                            return method.invoke(backend, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+
+    private static List<Produit> produits(int n) {
+        List<Produit> produits = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            produits.add(produit("produit " + i));
+        return produits;
+    }
+
+    private static Produit produit(String nom) {
+        return new ProduitBuilder().nom(nom).prix(10).type(TypeProduit.Neutritif).quantiteStock(1).build();
+    }
+
+    // A backend whose batch updates skip ten versions, unlike the ones the cache is used with
+    private static IProduitRepository skippingVersions(IProduitRepository backend) {
+        return (IProduitRepository) Proxy.newProxyInstance(IProduitRepository.class.getClassLoader(),
+                new Class<?>[]{IProduitRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("updateAll")) {
+                        List<Produit> skipped = new ArrayList<>();
+                        for (Object p : (Collection<?>) args[0])
+                            skipped.add(((Produit) p).withVersion(((Produit) p).getVersion() + 10));
+                        args = new Object[]{skipped};
+                    }
+                    try {
+                        return method.invoke(backend, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.example.repository.query.Criteria;
+import org.example.repository.query.ProduitQuery;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Row allocation for explicit references and name dictionary reclamation of the column store.
+ */
+class ColumnarProduitRepositoryTest {
+
+    @Test
+    void aLargeExplicitReferenceTakesASingleRow() {
+        ColumnarProduitRepository repository = new ColumnarProduitRepository(16);
+        long before = repository.columnBytes();
+        Produit stored = repository.update(produit("far").withRef(Long.MAX_VALUE - 1));
+        assertEquals(1, stored.getVersion());
+        assertEquals(before, repository.columnBytes());
+        assertEquals("far", repository.finfByRef(Long.MAX_VALUE - 1).orElseThrow().getNom());
+
+        Produit other = repository.update(produit("other").withRef(1L << 40));
+        assertEquals("other", repository.finfByRef(other.getRef()).orElseThrow().getNom());
+        assertEquals(2, repository.size());
+    }
+
+    @Test
+    void generatedReferencesFollowTheHighestStored() {
+        ColumnarProduitRepository repository = new ColumnarProduitRepository(16);
+        repository.update(produit("a").withRef(1000));
+        assertEquals(1001, repository.save(produit("b")).getRef());
+    }
+
+    @Test
+    void pagesFollowReferenceOrderWhateverTheStorageOrder() {
+        ColumnarProduitRepository repository = new ColumnarProduitRepository(16);
+        TreeMap<Long, String> expected = new TreeMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            long ref = 1 + random.nextInt(5000);
+            if (random.nextInt(4) == 0) {
+                repository.detele(ref);
+                expected.remove(ref);
+            } else {
+                repository.update(produit("n" + ref).withRef(ref));
+                expected.put(ref, "n" + ref);
+            }
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), refs(repository.findPage(0, Integer.MAX_VALUE)));
+        assertEquals(new ArrayList<>(expected.keySet()).subList(10, 30), refs(repository.findPage(10, 20)));
+        long after = expected.keySet().stream().skip(100).findFirst().orElseThrow();
+        assertEquals(new ArrayList<>(expected.tailMap(after, false).keySet()).subList(0, 50),
+                refs(repository.findPageAfter(after, 50)));
+        assertEquals(new ArrayList<>(expected.tailMap(2500L, false).keySet()).subList(0, 5),
+                refs(repository.findPageAfter(2500, 5))); // Whether or not 2500 was ever stored
+
+        Spliterator<Produit> spliterator = repository.spliterator();
+        assertFalse(spliterator.hasCharacteristics(Spliterator.ORDERED));
+        List<Long> all = refs(StreamSupport.stream(spliterator, false).toList());
+        all.sort(Comparator.naturalOrder());
+        assertEquals(new ArrayList<>(expected.keySet()), all);
+        for (var entry : expected.entrySet())
+            assertEquals(entry.getValue(), repository.finfByRef(entry.getKey()).orElseThrow().getNom());
+    }
+
+    @Test
+    void rowsStayInReferenceOrderWhenReferencesAscend() {
+        ColumnarProduitRepository repository = new ColumnarProduitRepository(16);
+        for (int i = 0; i < 100; i++)
+            repository.save(produit("p" + i));
+        repository.update(produit("gap").withRef(500));
+        repository.detele(50L);
+        repository.update(produit("back").withRef(50)); // Gets its old row back
+        assertTrue(repository.spliterator().hasCharacteristics(Spliterator.ORDERED));
+        assertEquals(List.of(50L, 51L), refs(repository.findPageAfter(49, 2)));
+        assertEquals(List.of(100L, 500L), refs(repository.findPageAfter(99, 5)));
+    }
+
+    @Test
+    void namesNoLongerUsedLeaveTheDictionary() {
+        ColumnarProduitRepository repository = new ColumnarProduitRepository(16);
+        Produit renamed = repository.save(produit("shared"));
+        Produit other = repository.save(produit("shared"));
+        for (int i = 0; i < 1000; i++)
+            renamed = repository.update(renamed.withNom("name " + i));
+        assertEquals(2, repository.dictionarySize());
+
+        repository.detele(other.getRef());
+        assertEquals(1, repository.dictionarySize());
+        repository.update(renamed.withNom("name 999")); // Same name: its use is kept
+        assertEquals(1, repository.dictionarySize());
+
+        // Freed ids are reused by new names without confusing the products that held them
+        List<Produit> saved = repository.saveAll(List.of(produit("alpha"), produit("beta"), produit(null)));
+        assertEquals(3, repository.dictionarySize());
+        assertEquals("alpha", repository.finfByRef(saved.get(0).getRef()).orElseThrow().getNom());
+        assertEquals("name 999", repository.finfByRef(renamed.getRef()).orElseThrow().getNom());
+        assertEquals(List.of(saved.get(1).getRef()),
+                refs(repository.search(ProduitQuery.where(Criteria.nom().startsWith("be")))));
+        assertEquals(List.of(renamed.getRef()),
+                refs(repository.search(ProduitQuery.where(Criteria.nom().startsWith("name")))));
+    }
+
+    private static List<Long> refs(List<Produit> produits) {
+        List<Long> refs = new ArrayList<>();
+        for (Produit p : produits)
+            refs.add(p.getRef());
+        return refs;
+    }
+
+    private static Produit produit(String nom) {
+        return new ProduitBuilder().nom(nom).prix(1).type(TypeProduit.Neutritif).quantiteStock(1).build();
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.junit.jupiter.api.Test;
+
+import java.util.*; // For the batches
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The per-type inventory summaries of ProduitRepositoryImpl, checked with checkInventory() after
+ * random concurrent writes of every kind.
+ */
+class InventorySummariesTest {
+
+    private static final int THREADS = 32;
+    private static final TypeProduit[] TYPES = TypeProduit.values();
+
+    @Test
+    void summariesMatchTheProductsAfterRandomConcurrentWrites() throws Exception {
+        ProduitRepositoryImpl repository = ProduitRepositoryImpl.newInstance();
+        AtomicLong explicit = new AtomicLong(); // Explicit references, most of them ahead of the counter
+        ProduitRepositoryImplConcurrencyTest.runAll(THREADS, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 2_000; i++) {
+                long ref = 1 + random.nextInt(Math.max(1, (int) explicit.get() + 100));
+                try {
+                    switch (random.nextInt(9)) {
+                        case 0:
+                            repository.save(produit(random));
+                            break;
+                        case 1:
+                            repository.saveAll(Arrays.asList(produit(random), produit(random), produit(random)));
+                            break;
+                        case 2:
+                            repository.update(new ProduitBuilder().from(produit(random)).ref(explicit.addAndGet(2)).build());
+                            break;
+                        case 3:
+                            repository.updateAll(Arrays.asList(
+                                    new ProduitBuilder().from(produit(random)).ref(ref).build(),
+                                    new ProduitBuilder().from(produit(random)).ref(ref + 1).build()));
+                            break;
+                        case 4:
+                            repository.detele(ref);
+                            break;
+                        case 5:
+                            repository.deleteAll(Arrays.asList(ref, ref + 3));
+                            break;
+                        case 6:
+                            repository.adjustStock(ref, random.nextInt(21) - 10);
+                            break;
+                        case 7:
+                            repository.reprice(ref, prix -> prix * 1.1);
+                            break;
+                        default:
+                            Produit current = repository.getByRef(ref);
+                            if (current != null)
+                                repository.updateVersioned(current.withType(TYPES[random.nextInt(TYPES.length)]));
+                    }
+                } catch (NoSuchElementException | OptimisticLockException e) {
+                    // Deleted or changed by another thread meanwhile
+                }
+            }
+            return null;
+        });
+
+        repository.checkInventory();
+        Map<TypeProduit, InventorySummary> expected = InventorySummary.of(repository.findAll());
+        for (TypeProduit type : TYPES) {
+            List<String> differences = new ArrayList<>();
+            expected.get(type).compare(repository.inventory(type), differences);
+            assertEquals(Collections.emptyList(), differences);
+        }
+    }
+
+    private static Produit produit(Random random) {
+        return new ProduitBuilder()
+                .nom("p" + random.nextInt(1_000))
+                .prix(1 + random.nextInt(1_000))
+                .quantiteStock(random.nextInt(100))
+                .type(TYPES[random.nextInt(TYPES.length)])
+                .build();
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Recovery of a JournaledProduitRepository from its snapshot and log.
+ */
+class JournaledProduitRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replayKeepsTheVersionsOfRecordsTheSnapshotAlreadyHolds() throws IOException {
+        Produit stored;
+        try (JournaledProduitRepository journal = open()) {
+            Produit saved = journal.save(new ProduitBuilder().nom("Libre").prix(580.23)
+                    .type(TypeProduit.Cosmitique).quantiteStock(100).build());
+            stored = journal.updateVersioned(saved.withPrix(600));
+        }
+        assertEquals(2, stored.getVersion());
+        // A snapshot taken while both records were logged after its rotation: it covers no
+        // record by sequence number, yet already holds their result
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(
+                directory.resolve(String.format("snapshot-%020d.bin", 0))))) {
+            out.writeInt(0x534E4150);
+            out.writeInt(1);
+            out.writeLong(0);
+            out.writeInt(1);
+            ProduitRecords.write(out, stored);
+        }
+
+        try (JournaledProduitRepository journal = open()) {
+            assertEquals(stored, journal.getByRef(stored.getRef()));
+            assertEquals(2, journal.getByRef(stored.getRef()).getVersion());
+            Produit updated = journal.updateVersioned(stored.withPrix(610)); // Read before the crash
+            assertEquals(3, updated.getVersion());
+        }
+        try (JournaledProduitRepository journal = open()) {
+            assertEquals(3, journal.getByRef(stored.getRef()).getVersion());
+            assertEquals(610, journal.getByRef(stored.getRef()).getPrix());
+        }
+    }
+
+    @Test
+    void changesThatCannotBeLoggedAreUndone() throws IOException {
+        char[] chars = new char[70_000]; // Over the 64KB writeUTF limit of the log records
+        Arrays.fill(chars, 'x');
+        String tooLong = new String(chars);
+        Produit kept;
+        try (JournaledProduitRepository journal = open()) {
+            kept = journal.save(produit("Libre"));
+            assertThrows(UncheckedIOException.class, () -> journal.save(produit(tooLong)));
+            assertThrows(UncheckedIOException.class, () -> journal.update(kept.withNom(tooLong)));
+            assertThrows(UncheckedIOException.class, () -> journal.saveAll(Arrays.asList(produit("a"), produit(tooLong))));
+            assertThrows(UncheckedIOException.class, () -> journal.updateAll(Collections.singletonList(kept.withNom(tooLong))));
+            assertEquals(Collections.singletonList(kept), journal.findAll());
+            assertEquals(kept, journal.getByRef(kept.getRef()));
+        }
+        try (JournaledProduitRepository journal = open()) {
+            assertEquals(Collections.singletonList(kept), journal.findAll());
+        }
+    }
+
+    @Test
+    void productsDeletedWhileBeingSavedStayDeleted() throws Exception {
+        int count = 2_000;
+        try (JournaledProduitRepository journal = open()) {
+            ProduitRepositoryImplConcurrencyTest.runAll(2, thread -> {
+                if (thread == 0) {
+                    for (int i = 0; i < count; i++)
+                        journal.save(produit("p" + i));
+                } else {
+                    for (long ref = 1; ref <= count; ref++) {
+                        while (journal.getByRef(ref) == null)
+                            Thread.yield();
+                        journal.detele(ref);
+                    }
+                }
+                return null;
+            });
+            assertEquals(0, journal.findAll().size());
+        }
+        try (JournaledProduitRepository journal = open()) {
+            List<Produit> recovered = journal.findAll();
+            assertEquals(new HashSet<>(), new HashSet<>(recovered), "Deleted products came back");
+        }
+    }
+
+    private static Produit produit(String nom) {
+        return new ProduitBuilder().nom(nom).prix(10).type(TypeProduit.Neutritif).quantiteStock(1).build();
+    }
+
+    private JournaledProduitRepository open() throws IOException {
+        return JournaledProduitRepository.open(directory, ProduitRepositoryImpl.newInstance(), SyncPolicy.osManaged());
+    }
+}
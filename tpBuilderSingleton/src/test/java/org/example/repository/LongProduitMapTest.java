@@ -0,0 +1,145 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.junit.jupiter.api.Test;
+
+import java.util.*; // For the reference maps
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * The open-addressing map of ProduitRepositoryImpl, checked against a HashMap.
+ */
+class LongProduitMapTest {
+
+    @Test
+    void collidingKeysSurviveRemovalsInTheMiddleOfTheirChains() {
+        Random random = new Random(3);
+        List<Long> keys = collidingKeys(3, 8); // Three chains that run into each other
+        for (int round = 0; round < 200; round++) {
+            LongProduitMap map = new LongProduitMap();
+            Map<Long, Produit> expected = new HashMap<>();
+            for (int i = 0; i < 100; i++) {
+                long ref = keys.get(random.nextInt(keys.size()));
+                if (random.nextInt(3) == 0) {
+                    assertSame(expected.remove(ref), map.remove(ref));
+                } else {
+                    Produit p = produit(ref);
+                    assertSame(expected.put(ref, p), map.put(ref, p));
+                }
+                assertContent(expected, map, keys);
+            }
+        }
+    }
+
+    @Test
+    void tablesGrowWithoutLosingEntries() {
+        LongProduitMap map = new LongProduitMap();
+        Map<Long, Produit> expected = new HashMap<>();
+        Random random = new Random(4);
+        for (int i = 0; i < 200_000; i++) {
+            long ref = 1 + (random.nextLong() >>> 1);
+            Produit p = produit(ref);
+            expected.put(ref, p);
+            map.put(ref, p);
+        }
+        assertContent(expected, map, expected.keySet());
+        assertEquals(expected.size(), map.toList().size());
+        assertEquals(expected.size(), StreamSupport.stream(map.values().spliterator(), true)
+                .map(Produit::getRef).collect(Collectors.toSet()).size());
+    }
+
+    @Test
+    void presizedMapsHoldWhatTheyExpect() {
+        LongProduitMap map = new LongProduitMap(10_000);
+        for (long ref = 1; ref <= 10_000; ref++)
+            map.put(ref, produit(ref));
+        for (long ref = 1; ref <= 10_000; ref += 2)
+            map.remove(ref);
+        assertEquals(5_000, map.size());
+        for (long ref = 1; ref <= 10_000; ref++)
+            assertEquals(ref % 2 == 0 ? Long.valueOf(ref) : null, map.get(ref) == null ? null : map.get(ref).getRef());
+        assertNull(map.get(Produit.NO_REF));
+    }
+
+    @Test
+    void readersAlwaysFindTheKeysThatStayWhileWritersShiftAndGrow() throws Exception {
+        LongProduitMap map = new LongProduitMap();
+        List<Long> keys = collidingKeys(4, 6);
+        List<Long> stable = new ArrayList<>();
+        List<Long> churned = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++)
+            (i % 2 == 0 ? stable : churned).add(keys.get(i));
+        for (long ref : stable)
+            map.put(ref, produit(ref));
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Integer> misses = ProduitRepositoryImplConcurrencyTest.runAll(4, thread -> {
+            if (thread == 0) {
+                Random random = new Random(5);
+                for (int i = 0; i < 200_000; i++) {
+                    long ref = churned.get(random.nextInt(churned.size()));
+                    if (random.nextBoolean())
+                        map.put(ref, produit(ref));
+                    else
+                        map.remove(ref);
+                    if (i % 20_000 == 0)
+                        map.put(1_000_000_000L + i, produit(1_000_000_000L + i)); // Now and then a table grows
+                }
+                writing.set(false);
+                return 0;
+            }
+            int missed = 0;
+            while (writing.get())
+                for (long ref : stable) {
+                    Produit p = map.get(ref);
+                    if (p == null || p.getRef() != ref)
+                        missed++;
+                }
+            return missed;
+        });
+        assertEquals(Arrays.asList(0, 0, 0, 0), misses);
+    }
+
+    private static void assertContent(Map<Long, Produit> expected, LongProduitMap map, Collection<Long> keys) {
+        assertEquals(expected.size(), map.size());
+        for (long ref : keys)
+            assertSame(expected.get(ref), map.get(ref), "Key " + ref);
+    }
+
+    // Keys of the same segment, in groups sharing a home slot of a 16-slot table; the groups'
+    // homes follow each other, so that their probe chains merge
+    private static List<Long> collidingKeys(int groups, int perGroup) {
+        Map<Long, List<Long>> bySlot = new HashMap<>();
+        for (long key = 1; ; key++) {
+            long slot = (key * 0x9E3779B97F4A7C15L) >>> 54; // Segment bits, then the home in a 16-slot table
+            if ((slot & 0xF) > 16 - groups)
+                continue; // Keep the chains away from the end of the table
+            List<Long> group = bySlot.computeIfAbsent(slot, s -> new ArrayList<>());
+            if (group.size() < perGroup)
+                group.add(key);
+            long first = slot - (slot & 0xF); // First slot of the segment
+            for (long start = first; start <= first + 16 - groups; start++) {
+                List<Long> keys = new ArrayList<>();
+                for (int g = 0; g < groups; g++) {
+                    List<Long> at = bySlot.get(start + g);
+                    if (at == null || at.size() < perGroup)
+                        break;
+                    keys.addAll(at);
+                }
+                if (keys.size() == groups * perGroup)
+                    return keys;
+            }
+        }
+    }
+
+    private static Produit produit(long ref) {
+        return new ProduitBuilder().ref(ref).nom("p" + ref).prix(1).type(TypeProduit.Neutritif).quantiteStock(1).build();
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reference bounds, name reclamation and interrupted writes of the memory-mapped store.
+ */
+class MappedProduitRepositoryTest {
+
+    private static final long CHUNK = 1 << 26;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void referencesFarPastTheHighestAreRejectedWithoutGrowingTheIndex() throws IOException {
+        try (MappedProduitRepository repository = MappedProduitRepository.open(directory)) {
+            Produit saved = repository.save(produit("a"));
+            long far = 1L << 40;
+            assertThrows(IllegalArgumentException.class, () -> repository.update(saved.withRef(far)));
+            assertThrows(IllegalArgumentException.class, () -> repository.restore(saved.withRef(far)));
+            assertThrows(IllegalArgumentException.class, () -> repository.updateVersioned(saved.withRefAndVersion(far, 0)));
+            // A rejected batch updates nothing, even the products before the bad reference
+            assertThrows(IllegalArgumentException.class,
+                    () -> repository.updateAll(List.of(saved.withNom("b"), saved.withRef(far))));
+            assertEquals("a", repository.finfByRef(saved.getRef()).orElseThrow().getNom());
+            assertEquals(CHUNK, Files.size(directory.resolve("produits.idx")));
+
+            // Gaps below the bound are accepted, also when the batch itself raises the highest reference
+            repository.updateAll(List.of(saved.withRef(1000), saved.withRef(1000 + (1 << 20))));
+            assertTrue(repository.finfByRef(1000L + (1 << 20)).isPresent());
+        }
+    }
+
+    @Test
+    void namesLeftBehindByRenamesAndDeletesAreReclaimed() throws IOException {
+        String padding = "x".repeat(1000);
+        List<Produit> kept = new ArrayList<>();
+        try (MappedProduitRepository repository = MappedProduitRepository.open(directory)) {
+            for (int i = 0; i < 100; i++)
+                kept.add(repository.save(produit("kept " + i + padding)));
+            Produit renamed = repository.save(produit("renamed"));
+            // About 150 MB of names in all, far more than one mapping of the string region
+            for (int i = 0; i < 100_000; i++) {
+                renamed = repository.update(renamed.withNom(i + padding));
+                Produit temporary = repository.save(produit("temporary " + i + padding));
+                if (i % 2 == 0)
+                    repository.detele(temporary.getRef());
+                else
+                    repository.deleteAll(List.of(temporary.getRef()));
+            }
+            assertEquals(CHUNK, Files.size(directory.resolve("produits.str")));
+            assertEquals(99_999 + padding, repository.finfByRef(renamed.getRef()).orElseThrow().getNom());
+        }
+        try (MappedProduitRepository reopened = MappedProduitRepository.open(directory)) {
+            for (Produit p : kept)
+                assertEquals(p.getNom(), reopened.finfByRef(p.getRef()).orElseThrow().getNom());
+            assertEquals(101, reopened.size());
+        }
+    }
+
+    @Test
+    void aStoreInterruptedDuringAWriteIsNotOpened() throws IOException {
+        try (MappedProduitRepository repository = MappedProduitRepository.open(directory)) {
+            repository.save(produit("a"));
+        }
+        try (MappedProduitRepository reopened = MappedProduitRepository.open(directory)) {
+            assertFalse(reopened.findAll().isEmpty());
+        }
+
+        // What a crash between the start and the end of a write batch leaves in the header
+        try (FileChannel channel = FileChannel.open(directory.resolve("produits.dat"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 1), 48);
+        }
+        IOException e = assertThrows(IOException.class, () -> MappedProduitRepository.open(directory));
+        assertTrue(e.getMessage().contains("interrupted"));
+    }
+
+    private static Produit produit(String nom) {
+        return new ProduitBuilder().nom(nom).prix(1).type(TypeProduit.Neutritif).quantiteStock(1).build();
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.junit.jupiter.api.Test;
+
+import java.util.*; // For the collected references
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The name index, alone and behind the name searches of ProduitRepositoryImpl.
+ */
+class NomIndexTest {
+
+    @Test
+    void namesAreFoldedIgnoringCaseAndAccents() {
+        NomIndex index = new NomIndex();
+        index.add(1, "Crème Brûlée");
+        index.add(2, "CREME fraiche");
+        index.add(3, "Savon");
+        assertEquals(Arrays.asList(1L, 2L), refs(index.startingWith("creme")));
+        assertEquals(Collections.singletonList(1L), refs(index.containing("brulee")));
+        assertEquals(Arrays.asList(1L, 2L), refs(index.containing("eme")));
+        assertEquals(null, index.containing("cr"));
+    }
+
+    @Test
+    void renamedProductsAreFoundUnderTheirNewNameOnly() {
+        NomIndex index = new NomIndex();
+        index.add(1, "Libre");
+        index.remove(1, "Libre");
+        index.add(1, "Gloss");
+        assertEquals(Collections.emptyList(), refs(index.startingWith("lib")));
+        assertEquals(Collections.emptyList(), refs(index.containing("ibr")));
+        assertEquals(Collections.singletonList(1L), refs(index.containing("los")));
+    }
+
+    @Test
+    void searchesStopAtTheirLimit() {
+        ProduitRepositoryImpl repository = ProduitRepositoryImpl.newInstance();
+        for (int i = 0; i < 50; i++)
+            repository.save(produit("Crème n°" + i));
+        repository.save(produit("Savon"));
+        List<Produit> prefixed = repository.findByNomPrefix("CREME", 10);
+        assertEquals(10, prefixed.size());
+        for (Produit p : prefixed)
+            assertTrue(p.getNom().startsWith("Crème"));
+        List<Produit> containing = repository.findByNomContaining("ème n", 7);
+        assertEquals(7, containing.size());
+        for (int i = 1; i < containing.size(); i++)
+            assertTrue(containing.get(i - 1).getRef() < containing.get(i).getRef());
+        assertEquals(50, repository.findByNomContaining("REM", 100).size());
+    }
+
+    @Test
+    void renamesThroughTheRepositoryMoveTheProduct() {
+        ProduitRepositoryImpl repository = ProduitRepositoryImpl.newInstance();
+        Produit saved = repository.save(produit("Libre"));
+        repository.update(saved.withNom("Gloss"));
+        assertEquals(Collections.emptyList(), repository.findByNomPrefix("lib", 10));
+        assertEquals(Collections.emptyList(), repository.findByNomContaining("ibr", 10));
+        assertEquals(saved.getRef(), repository.findByNomContaining("los", 10).get(0).getRef());
+    }
+
+    @Test
+    void namesAddedWhileAnotherEmptiesTheirTrigramsAreKept() throws Exception {
+        NomIndex index = new NomIndex();
+        // Each thread indexes and removes its own product, so the trigram's list keeps emptying
+        List<Integer> lost = ProduitRepositoryImplConcurrencyTest.runAll(4, thread -> {
+            long ref = thread + 1;
+            int missing = 0;
+            for (int i = 0; i < 50_000; i++) {
+                index.add(ref, "abc");
+                if (!refs(index.containing("abc")).contains(ref))
+                    missing++;
+                index.remove(ref, "abc");
+            }
+            return missing;
+        });
+        assertEquals(Arrays.asList(0, 0, 0, 0), lost);
+    }
+
+    private static List<Long> refs(Iterable<Long> refs) {
+        List<Long> list = new ArrayList<>();
+        refs.forEach(list::add);
+        return list;
+    }
+
+    private static Produit produit(String nom) {
+        return new ProduitBuilder().nom(nom).prix(10).type(TypeProduit.Neutritif).quantiteStock(1).build();
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*; // For the reference sets
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The compressed posting lists of the name index.
+ */
+class PostingListTest {
+
+    @Test
+    void gapsOfEveryEncodedLengthDecodeBack() {
+        PostingList list = new PostingList();
+        List<Long> refs = new ArrayList<>();
+        long ref = 0;
+        for (int bits = 0; bits < 63; bits += 3) {
+            ref += 1L << bits; // Gaps of one to nine varint bytes
+            refs.add(ref);
+            list.add(ref);
+        }
+        assertEquals(refs, all(list));
+        assertEquals(refs.size(), list.size());
+    }
+
+    @Test
+    void advanceToJumpsOverSkipBlocks() {
+        PostingList list = new PostingList();
+        TreeSet<Long> refs = new TreeSet<>();
+        for (long ref = 3; ref < 3 * 10 * PostingList.SKIP_INTERVAL; ref += 3) {
+            list.add(ref);
+            refs.add(ref);
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            PostingList.Cursor cursor = list.cursor();
+            long target = 0;
+            for (int step = 0; step < 5; step++) {
+                target += 1 + random.nextInt(2 * PostingList.SKIP_INTERVAL);
+                Long expected = refs.ceiling(target);
+                long found = cursor.advanceTo(target);
+                assertEquals(expected == null ? -1 : expected, found, "advanceTo(" + target + ")");
+                if (found == -1)
+                    break;
+                target = found;
+            }
+        }
+    }
+
+    @Test
+    void outOfOrderAddsAndRemovesMatchASortedSet() {
+        PostingList list = new PostingList();
+        TreeSet<Long> refs = new TreeSet<>();
+        Random random = new Random(2);
+        for (int i = 0; i < 20_000; i++) {
+            long ref = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                list.remove(ref);
+                refs.remove(ref);
+            } else {
+                list.add(ref);
+                refs.add(ref);
+            }
+            if (i % 997 == 0)
+                assertEquals(new ArrayList<>(refs), all(list));
+        }
+        assertEquals(new ArrayList<>(refs), all(list));
+        assertEquals(refs.size(), list.size());
+        for (long ref : new ArrayList<>(refs))
+            list.remove(ref);
+        assertTrue(list.isEmpty());
+    }
+
+    @Test
+    void cursorsKeepTheirSnapshot() {
+        PostingList list = new PostingList();
+        for (long ref = 10; ref <= 100; ref += 10)
+            list.add(ref);
+        PostingList.Cursor cursor = list.cursor();
+        list.add(200); // Appended past the snapshot
+        list.add(5); // Buffered, then settled into new arrays
+        list.remove(50);
+        List<Long> seen = new ArrayList<>();
+        for (long ref = cursor.next(); ref != -1; ref = cursor.next())
+            seen.add(ref);
+        assertEquals(Arrays.asList(10L, 20L, 30L, 40L, 50L, 60L, 70L, 80L, 90L, 100L), seen);
+        assertEquals(Arrays.asList(5L, 10L, 20L, 30L, 40L, 60L, 70L, 80L, 90L, 100L, 200L), all(list));
+    }
+
+    private static List<Long> all(PostingList list) {
+        List<Long> refs = new ArrayList<>();
+        PostingList.Cursor cursor = list.cursor();
+        for (long ref = cursor.next(); ref != -1; ref = cursor.next())
+            refs.add(ref);
+        return refs;
+    }
+}
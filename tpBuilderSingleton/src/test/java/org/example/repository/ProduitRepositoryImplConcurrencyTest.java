@@ -0,0 +1,169 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.junit.jupiter.api.Test;
+
+import java.util.*; // For the collected results
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stress tests of ProduitRepositoryImpl under {@value #THREADS} concurrent writers.
+ */
+class ProduitRepositoryImplConcurrencyTest {
+
+    private static final int THREADS = 32;
+
+    @Test
+    void concurrentSavesHandOutDistinctReferences() throws Exception {
+        ProduitRepositoryImpl repository = ProduitRepositoryImpl.newInstance();
+        int perThread = 2_000;
+        List<List<Produit>> saved = runAll(THREADS, thread -> {
+            List<Produit> mine = new ArrayList<>(perThread);
+            for (int i = 0; i < perThread; i += 10) {
+                if (i % 20 == 0) {
+                    for (int k = 0; k < 10; k++)
+                        mine.add(repository.save(produit("t" + thread + "-" + (i + k), i + k)));
+                } else {
+                    List<Produit> batch = new ArrayList<>(10);
+                    for (int k = 0; k < 10; k++)
+                        batch.add(produit("t" + thread + "-" + (i + k), i + k));
+                    mine.addAll(repository.saveAll(batch));
+                }
+            }
+            return mine;
+        });
+
+        Set<Long> refs = new HashSet<>();
+        for (List<Produit> mine : saved)
+            for (Produit p : mine)
+                assertTrue(refs.add(p.getRef()), "Reference handed out twice: " + p.getRef());
+        assertEquals(THREADS * perThread, refs.size());
+        assertEquals(refs.size(), repository.findAll().size());
+        for (List<Produit> mine : saved)
+            for (Produit p : mine)
+                assertSame(p, repository.getByRef(p.getRef()));
+    }
+
+    @Test
+    void concurrentStockAdjustmentsLoseNoUpdate() throws Exception {
+        ProduitRepositoryImpl repository = ProduitRepositoryImpl.newInstance();
+        List<Produit> produits = new ArrayList<>();
+        for (int i = 0; i < 64; i++)
+            produits.add(produit("p" + i, 10));
+        List<Produit> saved = repository.saveAll(produits);
+        int perThread = 1_000;
+        runAll(THREADS, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < perThread; i++) {
+                long ref = saved.get(random.nextInt(saved.size())).getRef();
+                if (i % 2 == 0)
+                    repository.adjustStock(ref, 1);
+                else
+                    repository.reprice(ref, prix -> prix + 1);
+            }
+            return null;
+        });
+
+        double stock = 0;
+        double prix = 0;
+        long versions = 0;
+        for (Produit p : repository.findAll()) {
+            stock += p.getQuantiteStock();
+            prix += p.getPrix();
+            versions += p.getVersion();
+        }
+        int changes = THREADS * perThread;
+        assertEquals(saved.size() * 100.0 + changes / 2.0, stock, 1e-6);
+        assertEquals(saved.size() * 10.0 + changes / 2.0, prix, 1e-6);
+        assertEquals(saved.size() + changes, versions);
+    }
+
+    @Test
+    void savesNeverOverwriteProductsStoredUnderExplicitReferences() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            ProduitRepositoryImpl repository = ProduitRepositoryImpl.newInstance();
+            AtomicLong explicit = new AtomicLong(-1); // Odd references, handed out to the updaters
+            List<List<Produit>> written = runAll(THREADS, thread -> {
+                List<Produit> mine = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    if (thread % 2 == 0)
+                        mine.add(repository.save(produit("s" + thread + "-" + i, i)));
+                    else
+                        mine.add(repository.update(new ProduitBuilder().from(produit("u" + thread + "-" + i, i))
+                                .ref(explicit.addAndGet(2)).build()));
+                }
+                return mine;
+            });
+
+            for (int thread = 1; thread < THREADS; thread += 2)
+                for (Produit updated : written.get(thread))
+                    assertSame(updated, repository.getByRef(updated.getRef()), "Update lost at " + updated.getRef());
+            int size = repository.findAll().size();
+            for (int thread = 0; thread < THREADS; thread += 2)
+                for (Produit p : written.get(thread)) {
+                    Produit stored = repository.getByRef(p.getRef());
+                    assertNotNull(stored, "Save lost at " + p.getRef());
+                    assertTrue(stored == p || stored.getNom().startsWith("u"), "Save replaced by " + stored);
+                }
+            assertEquals(size, repository.findByPrixBetween(0, Double.MAX_VALUE).size(), "Stale price index entries");
+            assertEquals(size, repository.findByType(TypeProduit.Cosmitique).size()
+                    + repository.findByType(TypeProduit.Neutritif).size(), "Stale type index entries");
+        }
+    }
+
+    private static Produit produit(String nom, double prix) {
+        return new ProduitBuilder()
+                .nom(nom)
+                .prix(prix)
+                .quantiteStock(100)
+                .type(nom.hashCode() % 2 == 0 ? TypeProduit.Cosmitique : TypeProduit.Neutritif)
+                .build();
+    }
+
+    /**
+     * A task run by one of the threads of a test.
+     */
+    interface ThreadTask<T> {
+        T run(int thread) throws Exception;
+    }
+
+    /**
+     * Runs a task on each of {@code threads} threads, all started together.
+     *
+     * @return The result of each thread, by thread number.
+     */
+    static <T> List<T> runAll(int threads, ThreadTask<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                Callable<T> call = () -> {
+                    start.await();
+                    return task.run(thread);
+                };
+                futures.add(executor.submit(call));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>(threads);
+            for (Future<T> future : futures)
+                results.add(future.get());
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reads of a ProduitSnapshot while the repository keeps changing underneath it.
+ */
+class ProduitSnapshotTest {
+
+    private static final int PRODUITS = 512;
+    private static final int WRITERS = 8;
+
+    @Test
+    void aSnapshotReadsTheSameStoreWhileWritersRun() throws Exception {
+        ProduitRepositoryImpl repository = ProduitRepositoryImpl.newInstance();
+        List<Long> refs = new ArrayList<>();
+        for (int i = 0; i < PRODUITS; i++)
+            refs.add(repository.save(produit("p" + i, i % 2 == 0 ? TypeProduit.Neutritif : TypeProduit.Cosmitique)).getRef());
+
+        try (ProduitSnapshot snapshot = repository.snapshot()) {
+            List<Produit> all = byRef(snapshot.findAll());
+            List<Produit> cosmitiques = byRef(snapshot.findByType(TypeProduit.Cosmitique));
+            List<Produit> stocked = byRef(snapshot.search(p -> p.getQuantiteStock() > 5));
+            assertEquals(PRODUITS, all.size());
+
+            AtomicBoolean done = new AtomicBoolean();
+            List<Integer> checks = ProduitRepositoryImplConcurrencyTest.runAll(WRITERS + 1, thread -> {
+                if (thread == WRITERS) { // The reader: every pass must see what the snapshot saw first
+                    int passes = 0;
+                    try {
+                        do {
+                            assertEquals(all, byRef(snapshot.findAll()));
+                            assertEquals(cosmitiques, byRef(snapshot.findByType(TypeProduit.Cosmitique)));
+                            assertEquals(stocked, byRef(snapshot.search(p -> p.getQuantiteStock() > 5)));
+                            for (Produit p : all)
+                                assertSame(p, snapshot.finfByRef(p.getRef()).orElseThrow());
+                            passes++;
+                        } while (!done.get());
+                    } finally {
+                        done.set(true);
+                    }
+                    return passes;
+                }
+                int writes = 0;
+                for (int i = 0; i < 2_000 && !done.get(); i++, writes++) {
+                    long ref = refs.get((i * WRITERS + thread) % PRODUITS); // Each writer keeps to its own references
+                    switch (i % 4) {
+                        case 0 -> repository.adjustStock(ref, 10);
+                        case 1 -> repository.reprice(ref, prix -> prix * 2);
+                        case 2 -> {
+                            Produit gone = repository.getByRef(ref);
+                            repository.detele(ref);
+                            repository.restore(gone.toBuilder().nom("back").type(TypeProduit.Cosmitique).build());
+                        }
+                        default -> repository.save(produit("new", TypeProduit.Cosmitique));
+                    }
+                }
+                done.set(true);
+                return writes;
+            });
+            assertTrue(checks.get(WRITERS) > 0);
+
+            // The repository did change, the snapshot still does not show it
+            assertFalse(byRef(repository.findAll()).equals(all));
+            assertEquals(all, byRef(snapshot.findAll()));
+        }
+    }
+
+    @Test
+    void aDeletedThenRecreatedReferenceReadsAsItWasAtEachSnapshot() {
+        ProduitRepositoryImpl repository = ProduitRepositoryImpl.newInstance();
+        Produit original = repository.save(produit("original", TypeProduit.Neutritif));
+        long ref = original.getRef();
+
+        ProduitSnapshot beforeDelete = repository.snapshot();
+        repository.detele(ref);
+        ProduitSnapshot deleted = repository.snapshot();
+        Produit recreated = repository.restore(original.toBuilder().nom("recreated").build());
+        ProduitSnapshot afterRestore = repository.snapshot();
+
+        assertSame(original, beforeDelete.getByRef(ref));
+        assertEquals(List.of(original), beforeDelete.findAll());
+        assertNull(deleted.getByRef(ref));
+        assertTrue(deleted.findAll().isEmpty());
+        assertTrue(deleted.findByType(TypeProduit.Neutritif).isEmpty());
+        assertEquals("recreated", afterRestore.getByRef(ref).getNom());
+        assertEquals(List.of(recreated), afterRestore.findAll());
+
+        deleted.close();
+        afterRestore.close();
+        assertSame(original, beforeDelete.getByRef(ref));
+        beforeDelete.close();
+    }
+
+    @Test
+    void aClosedSnapshotRefusesReadsAndEverySnapshotRefusesWrites() {
+        ProduitRepositoryImpl repository = ProduitRepositoryImpl.newInstance();
+        Produit p = repository.save(produit("p", TypeProduit.Neutritif));
+        ProduitSnapshot snapshot = repository.snapshot();
+
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.save(produit("q", TypeProduit.Neutritif)));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.detele(p.getRef()));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.adjustStock(p.getRef(), 1));
+
+        snapshot.close();
+        snapshot.close(); // Closing twice is harmless
+        assertThrows(IllegalStateException.class, snapshot::findAll);
+        assertThrows(IllegalStateException.class, () -> snapshot.getByRef(p.getRef()));
+    }
+
+    private static List<Produit> byRef(List<Produit> produits) {
+        List<Produit> sorted = new ArrayList<>(produits);
+        sorted.sort(Comparator.comparingLong(Produit::getRef));
+        return sorted;
+    }
+
+    private static Produit produit(String nom, TypeProduit type) {
+        return new ProduitBuilder().nom(nom).prix(10).type(type).quantiteStock(1).build();
+    }
+}
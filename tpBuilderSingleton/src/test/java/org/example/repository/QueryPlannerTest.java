@@ -0,0 +1,144 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.example.repository.query.Criterion;
+import org.example.repository.query.ProduitField;
+import org.example.repository.query.ProduitQuery;
+import org.junit.jupiter.api.Test;
+
+import java.util.*; // For the expected results
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.example.repository.query.Criteria.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Index choice and results of the query planner of ProduitRepositoryImpl, checked against a full scan.
+ */
+class QueryPlannerTest {
+
+    private static final TypeProduit[] TYPES = TypeProduit.values();
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void theMostSelectiveIndexIsChosen() {
+        ProduitRepositoryImpl repository = seeded(2_000);
+        assertTrue(repository.explain(ProduitQuery.where(prix().between(10, 12))).startsWith("range scan"));
+        assertTrue(repository.explain(ProduitQuery.where(and(type().eq(TYPES[0]), prix().between(10, 12))))
+                .startsWith("range scan"));
+        assertTrue(repository.explain(ProduitQuery.where(and(type().eq(TYPES[0]), prix().ge(0))))
+                .startsWith("type index"));
+        assertTrue(repository.explain(ProduitQuery.where(nom().startsWith("p12"))).startsWith("name prefix scan"));
+        assertTrue(repository.explain(ProduitQuery.where(nom().containsIgnoringCase("123"))).startsWith("trigram scan"));
+        assertTrue(repository.explain(ProduitQuery.where(or(prix().lt(5), quantiteStock().gt(98)))).startsWith("union of"));
+        assertTrue(repository.explain(ProduitQuery.where(not(prix().lt(5)))).startsWith("full scan"));
+        assertTrue(repository.explain(ProduitQuery.where(prix().ge(0))).startsWith("full scan"));
+    }
+
+    @Test
+    void plannedQueriesAnswerLikeAFullScan() {
+        ProduitRepositoryImpl repository = seeded(2_000);
+        List<Produit> all = repository.findAll();
+        Random random = new Random(8);
+        for (int i = 0; i < 500; i++) {
+            ProduitQuery query = ProduitQuery.where(criterion(random, 2));
+            switch (random.nextInt(4)) {
+                case 0:
+                    query.orderBy(ProduitField.PRIX);
+                    break;
+                case 1:
+                    query.orderByDesc(ProduitField.QUANTITE_STOCK).orderBy(ProduitField.NOM);
+                    break;
+                case 2:
+                    query.orderBy(ProduitField.DATE_PREMPTION);
+                    break;
+                default:
+                    query.orderBy(ProduitField.REF);
+            }
+            query.offset(random.nextInt(20)).limit(1 + random.nextInt(50));
+            assertEquals(refs(query.apply(all, false)), refs(repository.search(query)), query.toString());
+        }
+    }
+
+    @Test
+    void rangeScansReturnEachProductOnceAndInOrderWhileItIsRepriced() throws Exception {
+        ProduitRepositoryImpl repository = seeded(2_000);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ProduitQuery query = ProduitQuery.where(prix().between(0, 10_000)).orderBy(ProduitField.PRIX).limit(Integer.MAX_VALUE);
+        List<String> failures = ProduitRepositoryImplConcurrencyTest.runAll(2, thread -> {
+            if (thread == 0) {
+                Random random = new Random(9);
+                for (int i = 0; i < 200_000; i++)
+                    repository.reprice(1 + random.nextInt(2_000), prix -> prix < 500 ? prix + 500 : prix - 500);
+                writing.set(false);
+                return "";
+            }
+            while (writing.get()) {
+                List<Produit> result = repository.search(query);
+                Set<Long> seen = new HashSet<>();
+                for (int i = 0; i < result.size(); i++) {
+                    if (!seen.add(result.get(i).getRef()))
+                        return "Returned twice: " + result.get(i).getRef();
+                    if (i > 0 && result.get(i - 1).getPrix() > result.get(i).getPrix())
+                        return "Out of order at " + i;
+                }
+            }
+            return "";
+        });
+        assertEquals(Arrays.asList("", ""), failures);
+    }
+
+    private static Criterion criterion(Random random, int depth) {
+        int kind = random.nextInt(depth > 0 ? 9 : 6);
+        switch (kind) {
+            case 0:
+                return type().eq(TYPES[random.nextInt(TYPES.length)]);
+            case 1:
+                double min = random.nextInt(1_000);
+                return prix().between(min, min + random.nextInt(200));
+            case 2:
+                return random.nextBoolean() ? quantiteStock().gt(random.nextInt(100)) : quantiteStock().le(random.nextInt(100));
+            case 3:
+                return random.nextBoolean() ? datePremption().before(new Date(NOW + random.nextInt(1_000) * 60_000L))
+                        : datePremption().after(new Date(NOW + random.nextInt(1_000) * 60_000L));
+            case 4:
+                return nom().startsWith("p" + random.nextInt(30));
+            case 5:
+                return nom().containsIgnoringCase(String.valueOf(10 + random.nextInt(90)) + (random.nextBoolean() ? "" : "3"));
+            case 6:
+                return and(criterion(random, depth - 1), criterion(random, depth - 1));
+            case 7:
+                return or(criterion(random, depth - 1), criterion(random, depth - 1));
+            default:
+                return not(criterion(random, depth - 1));
+        }
+    }
+
+    private static ProduitRepositoryImpl seeded(int size) {
+        ProduitRepositoryImpl repository = ProduitRepositoryImpl.newInstance();
+        Random random = new Random(size);
+        List<Produit> produits = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ProduitBuilder builder = new ProduitBuilder()
+                    .nom((i % 10 == 0 ? "P" : "p") + i)
+                    .prix(random.nextInt(1_000))
+                    .quantiteStock(random.nextInt(100))
+                    .type(TYPES[random.nextInt(TYPES.length)]);
+            if (random.nextBoolean())
+                builder.datePremptionMillis(NOW + random.nextInt(1_000) * 60_000L);
+            produits.add(builder.build());
+        }
+        repository.saveAll(produits);
+        return repository;
+    }
+
+    private static List<Long> refs(List<Produit> produits) {
+        List<Long> refs = new ArrayList<>(produits.size());
+        for (Produit p : produits)
+            refs.add(p.getRef());
+        return refs;
+    }
+}
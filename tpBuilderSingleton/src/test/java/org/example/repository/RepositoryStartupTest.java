@@ -0,0 +1,90 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.example.io.ProduitJson;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*; // For the seeds
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parallel loading of a repository by RepositoryStartup.
+ */
+class RepositoryStartupTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void seedsMixingExplicitAndNewReferencesLoseNoProduct() throws Exception {
+        List<Produit> seed = mixedSeed(20_000);
+        RepositoryStartup startup = RepositoryStartup.builder(SeedSource.of(seed))
+                .parallelism(4)
+                .batchSize(100)
+                .start();
+        assertLoaded(seed, startup);
+    }
+
+    @Test
+    void ndjsonFilesLoadInParallelChunks() throws Exception {
+        List<Produit> seed = mixedSeed(20_000);
+        Path file = directory.resolve("seed.ndjson");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            ProduitJson.write(seed, out, ProduitJson.Format.NDJSON);
+        }
+        RepositoryStartup startup = RepositoryStartup.builder(SeedSource.json(file))
+                .parallelism(4)
+                .batchSize(100)
+                .background(true)
+                .start();
+        startup.awaitLoaded();
+        assertLoaded(seed, startup);
+    }
+
+    private static void assertLoaded(List<Produit> seed, RepositoryStartup startup) throws IOException, InterruptedException {
+        startup.awaitLoaded();
+        ProduitRepositoryImpl repository = startup.getRepository();
+        assertTrue(startup.isLoaded());
+        assertEquals(seed.size(), startup.getLoaded());
+        assertEquals(seed.size(), repository.findAll().size());
+        Set<String> noms = new HashSet<>();
+        for (Produit p : repository.findAll())
+            noms.add(p.getNom());
+        for (Produit p : seed) {
+            assertTrue(noms.contains(p.getNom()), "Lost " + p.getNom());
+            if (p.hasRef())
+                assertEquals(p.getNom(), repository.getByRef(p.getRef()).getNom());
+        }
+        repository.checkInventory();
+    }
+
+    // Every other product carries a reference, scattered over the range the others are given
+    private static List<Produit> mixedSeed(int size) {
+        Random random = new Random(7);
+        List<Long> refs = new ArrayList<>();
+        for (long ref = 1; ref <= size; ref++)
+            refs.add(ref);
+        Collections.shuffle(refs, random);
+        List<Produit> seed = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ProduitBuilder builder = new ProduitBuilder()
+                    .nom("p" + i)
+                    .prix(1 + random.nextInt(1_000))
+                    .quantiteStock(random.nextInt(100))
+                    .type(i % 3 == 0 ? TypeProduit.Neutritif : TypeProduit.Cosmitique);
+            if (i % 2 == 0)
+                builder.ref(refs.get(i));
+            seed.add(builder.build());
+        }
+        return seed;
+    }
+}
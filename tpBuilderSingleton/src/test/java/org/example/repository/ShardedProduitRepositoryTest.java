@@ -0,0 +1,213 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.example.repository.query.Criteria;
+import org.example.repository.query.ProduitField;
+import org.example.repository.query.ProduitQuery;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Routing, scatter-gather and remote error handling of the sharded repository, in this JVM and
+ * through shard servers.
+ */
+class ShardedProduitRepositoryTest {
+
+    private static final int SHARDS = 3;
+
+    @Test
+    void productsLiveInTheShardOfTheirReference() {
+        List<ProduitRepositoryImpl> shards = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++)
+            shards.add(ProduitRepositoryImpl.newShard(i, SHARDS));
+        ShardedProduitRepository repository = ShardedProduitRepository.of(shards);
+        List<Produit> saved = new ArrayList<>(repository.saveAll(produits(new Random(1), 100)));
+        for (int i = 0; i < 20; i++)
+            saved.add(repository.save(produit("single " + i, i)));
+
+        for (Produit p : saved) {
+            int owner = repository.shardOf(p.getRef());
+            assertEquals((p.getRef() - 1) % SHARDS, owner);
+            for (int s = 0; s < SHARDS; s++)
+                assertEquals(s == owner, shards.get(s).finfByRef(p.getRef()).isPresent());
+        }
+
+        // Single-product operations reach the owner only
+        Produit first = saved.get(0);
+        repository.update(first.withNom("renamed"));
+        assertEquals("renamed", shards.get(repository.shardOf(first.getRef())).finfByRef(first.getRef()).orElseThrow().getNom());
+        repository.adjustStock(first.getRef(), 5);
+        repository.detele(first.getRef());
+        assertTrue(repository.finfByRef(first.getRef()).isEmpty());
+        assertEquals(saved.size() - 1, repository.findAll().size());
+    }
+
+    @Test
+    void scatteredSearchesAnswerLikeTheWholeCatalogLocally() throws IOException {
+        try (ShardedProduitRepository repository = ShardedProduitRepository.local(SHARDS)) {
+            checkScatterGather(repository);
+        }
+    }
+
+    @Test
+    void scatteredSearchesAnswerLikeTheWholeCatalogRemotely() throws IOException {
+        try (Servers servers = new Servers(); ShardedProduitRepository repository = servers.connect()) {
+            checkScatterGather(repository);
+        }
+    }
+
+    private static void checkScatterGather(ShardedProduitRepository repository) {
+        repository.saveAll(produits(new Random(2), 300));
+        List<Produit> all = repository.findAll();
+        assertEquals(300, all.size());
+        List<Produit> byRef = new ArrayList<>(all);
+        byRef.sort(ProduitField.REF.comparator());
+
+        ProduitQuery query = ProduitQuery.where(Criteria.prix().between(10, 80))
+                .orderByDesc(ProduitField.PRIX).orderBy(ProduitField.REF).offset(7).limit(25);
+        assertEquals(query.apply(all, false), repository.search(query));
+
+        long after = byRef.get(50).getRef();
+        assertEquals(byRef.subList(51, 91), repository.findPageAfter(after, 40));
+
+        List<Produit> cheap = repository.findByPrixBetween(0, 20);
+        assertEquals(all.stream().filter(p -> p.getPrix() <= 20).count(), cheap.size());
+        List<Produit> prefix = repository.findByNomPrefix("produit 1", 15);
+        assertEquals(15, prefix.size());
+        List<Produit> sorted = new ArrayList<>(prefix);
+        sorted.sort(Comparator.comparing(Produit::getNom).thenComparingLong(Produit::getRef));
+        assertEquals(sorted, prefix);
+
+        // Lookups keep the order of the references asked, repeated ones included; unknown ones are skipped
+        List<Long> refs = Arrays.asList(byRef.get(9).getRef(), 999_999L, byRef.get(0).getRef(), null,
+                byRef.get(4).getRef(), byRef.get(9).getRef());
+        assertEquals(List.of(byRef.get(9), byRef.get(0), byRef.get(4), byRef.get(9)), repository.findAllByRefs(refs));
+
+        List<Produit> updated = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            updated.add(byRef.get(i * 7).withPrix(1000 + i));
+        List<Produit> stored = repository.updateAll(updated);
+        for (int i = 0; i < updated.size(); i++) {
+            assertEquals(updated.get(i).getRef(), stored.get(i).getRef());
+            assertEquals(1000 + i, repository.finfByRef(updated.get(i).getRef()).orElseThrow().getPrix());
+        }
+    }
+
+    @Test
+    void failuresOfARemoteShardAreThrownAgainByTheClient() throws IOException {
+        try (Servers servers = new Servers(); ShardedProduitRepository repository = servers.connect()) {
+            Produit saved = repository.save(produit("a", 1));
+            OptimisticLockException conflict = assertThrows(OptimisticLockException.class,
+                    () -> repository.updateVersioned(saved.withVersion(saved.getVersion() + 5)));
+            assertEquals(saved.getRef(), conflict.getRef());
+            assertEquals(saved.getVersion(), conflict.getActualVersion());
+            assertThrows(NoSuchElementException.class, () -> repository.adjustStock(saved.getRef() + SHARDS, 1));
+
+            // A shard asked directly for a reference it does not own refuses it
+            try (RemoteProduitRepository shard = RemoteProduitRepository.connect(servers.address(0))) {
+                IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                        () -> shard.update(produit("b", 1).withRef(2)));
+                assertTrue(e.getMessage().contains("belongs to another shard"));
+                assertEquals(saved.getRef() % SHARDS == 1 ? 1 : 0, shard.findAll().size()); // The connection is still usable
+            }
+            assertEquals(saved.getRef(), repository.finfByRef(saved.getRef()).orElseThrow().getRef());
+        }
+    }
+
+    @Test
+    void malformedRequestsDropTheConnection() throws IOException, InterruptedException {
+        try (Servers servers = new Servers()) {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), servers.address(0).getPort())) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeByte(ShardProtocol.SAVE);
+                ProduitRecords.write(out, produit("x", 1));
+                out.writeByte(ShardProtocol.SEARCH);
+                out.writeByte(99); // No such criterion
+                out.flush();
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                assertEquals(ShardProtocol.OK, in.readByte());
+                ProduitRecords.read(in);
+                assertEquals(-1, in.read()); // Dropped instead of answered
+            }
+            IOException reported = servers.errors.poll(10, TimeUnit.SECONDS);
+            assertNotNull(reported);
+            assertTrue(reported.getMessage().contains("criterion"));
+
+            // The server goes on serving other connections
+            try (RemoteProduitRepository shard = RemoteProduitRepository.connect(servers.address(0))) {
+                assertEquals(1, shard.findAll().size());
+            }
+        }
+    }
+
+    @Test
+    void aClosedShardSurfacesAsATransportFailure() throws IOException {
+        Servers servers = new Servers();
+        try (ShardedProduitRepository repository = servers.connect()) {
+            servers.close();
+            assertInstanceOf(IOException.class, assertThrows(UncheckedIOException.class, repository::findAll).getCause());
+        }
+    }
+
+    // Shard servers on loopback ports, with the errors they report
+    private static final class Servers implements AutoCloseable {
+        final List<ShardServer> servers = new ArrayList<>();
+        final BlockingQueue<IOException> errors = new LinkedBlockingQueue<>();
+
+        Servers() throws IOException {
+            for (int i = 0; i < SHARDS; i++)
+                servers.add(ShardServer.start(ProduitRepositoryImpl.newShard(i, SHARDS), 0, errors::add));
+        }
+
+        InetSocketAddress address(int shard) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), servers.get(shard).getPort());
+        }
+
+        ShardedProduitRepository connect() throws IOException {
+            List<InetSocketAddress> addresses = new ArrayList<>();
+            for (int i = 0; i < SHARDS; i++)
+                addresses.add(address(i));
+            return ShardedProduitRepository.connect(addresses);
+        }
+
+        @Override
+        public void close() {
+            servers.forEach(ShardServer::close);
+        }
+    }
+
+    private static List<Produit> produits(Random random, int n) {
+        List<Produit> produits = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            produits.add(produit("produit " + i, random.nextInt(10_000) / 100.0));
+        return produits;
+    }
+
+    private static Produit produit(String nom, double prix) {
+        return new ProduitBuilder().nom(nom).prix(prix).type(TypeProduit.Neutritif).quantiteStock(1).build();
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Versions kept, read and dropped by VersionHistory as snapshots open and close.
+ */
+class VersionHistoryTest {
+
+    private final LongProduitMap store = new LongProduitMap();
+    private final VersionHistory history = new VersionHistory(new Object[]{new Object(), new Object()});
+
+    @Test
+    void writesKeepNoHistoryWhileNoSnapshotIsOpen() {
+        for (int i = 0; i < 100; i++)
+            write(1 + i % 10, produit(1 + i % 10, "v" + i));
+        assertEquals(0, history.retainedChains());
+        assertEquals(0, history.openSnapshots());
+    }
+
+    @Test
+    void eachSnapshotReadsTheVersionItWasOpenedAt() {
+        write(1, produit(1, "a"));
+        ProduitSnapshot first = open();
+        write(1, produit(1, "b"));
+        ProduitSnapshot second = open();
+        write(1, produit(1, "c"));
+        write(2, produit(2, "new"));
+
+        assertEquals("a", history.valueAt(store, 1, first.getVersion()).getNom());
+        assertEquals("b", history.valueAt(store, 1, second.getVersion()).getNom());
+        assertNull(history.valueAt(store, 2, second.getVersion()));
+        assertEquals("c", store.get(1).getNom());
+        assertEquals(List.of(1L, 2L), sorted(history.changedSince(second.getVersion())));
+
+        first.close();
+        assertEquals("b", history.valueAt(store, 1, second.getVersion()).getNom());
+        second.close();
+        assertEquals(0, history.retainedChains());
+    }
+
+    @Test
+    void versionsOlderThanEveryOpenSnapshotAreDropped() {
+        write(1, produit(1, "v0"));
+        ProduitSnapshot old = open();
+        for (int i = 1; i <= 5; i++)
+            write(1, produit(1, "v" + i));
+        ProduitSnapshot recent = open();
+        assertEquals(6, chainLength(write(1, produit(1, "v6")))); // v0 to v5, all read by the old snapshot
+
+        // Closing the old snapshot leaves the recent one, which only needs the version it read
+        old.close();
+        VersionHistory.Retired head = write(1, produit(1, "v7"));
+        assertEquals(2, chainLength(head));
+        assertEquals("v5", history.valueAt(store, 1, recent.getVersion()).getNom());
+
+        recent.close();
+        assertEquals(0, history.retainedChains());
+        write(1, produit(1, "v8"));
+        assertEquals(0, history.retainedChains());
+    }
+
+    @Test
+    void aDeletedThenRecreatedReferenceShowsEachStateToItsSnapshot() {
+        write(1, produit(1, "original"));
+        ProduitSnapshot beforeDelete = open();
+        write(1, null);
+        ProduitSnapshot deleted = open();
+        write(1, produit(1, "recreated"));
+        ProduitSnapshot recreated = open();
+
+        assertEquals("original", history.valueAt(store, 1, beforeDelete.getVersion()).getNom());
+        assertNull(history.valueAt(store, 1, deleted.getVersion()));
+        assertEquals("recreated", history.valueAt(store, 1, recreated.getVersion()).getNom());
+
+        deleted.close();
+        assertEquals("original", history.valueAt(store, 1, beforeDelete.getVersion()).getNom());
+        beforeDelete.close();
+        recreated.close();
+        assertEquals(0, history.retainedChains());
+    }
+
+    @Test
+    void snapshotsDroppedWithoutBeingClosedAreReleased() throws InterruptedException {
+        write(1, produit(1, "a"));
+        open(); // Never closed, and unreachable at once
+        write(1, produit(1, "b"));
+        assertEquals(1, history.retainedChains());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (history.openSnapshots() > 0 && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(0, history.openSnapshots());
+        ProduitSnapshot s = open(); // Releasing reclaims the chains no snapshot reads
+        s.close();
+        assertEquals(0, history.retainedChains());
+    }
+
+    // Writes like the repository does, with the stripe lock of the reference held
+    private VersionHistory.Retired write(long ref, Produit after) {
+        VersionHistory.Retired retired = history.retire(ref, store.get(ref));
+        if (after == null)
+            store.remove(ref);
+        else
+            store.put(ref, after);
+        history.stamp(ref, retired);
+        return retired;
+    }
+
+    private ProduitSnapshot open() {
+        return history.open(version -> new ProduitSnapshot(null, history, version));
+    }
+
+    private static int chainLength(VersionHistory.Retired head) {
+        int n = 0;
+        for (VersionHistory.Retired r = head; r != null; r = r.older)
+            n++;
+        return n;
+    }
+
+    private static List<Long> sorted(Iterable<Long> refs) {
+        List<Long> list = new ArrayList<>();
+        refs.forEach(list::add);
+        list.sort(null);
+        return list;
+    }
+
+    private static Produit produit(long ref, String nom) {
+        return new ProduitBuilder().nom(nom).prix(1).type(TypeProduit.Neutritif).quantiteStock(1).build().withRef(ref);
+    }
+}
@@ -0,0 +1,215 @@
+package org.example.repository;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Recovery of the write-ahead log after writes that failed partway.
+ */
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsAcknowledgedAfterATornWriteAreRecovered() throws IOException {
+        TornWrites opener = new TornWrites(false);
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, SyncPolicy.osManaged(), opener, 0, new Recorder())) {
+            wal.appendPut(produit(1));
+            opener.failNext = true;
+            assertThrows(IOException.class, () -> wal.appendPut(produit(2)));
+            wal.appendPut(produit(3));
+            wal.appendDelete(1);
+        }
+        Recorder recovered = new Recorder();
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, SyncPolicy.osManaged(), 0, recovered)) {
+            assertEquals(Arrays.asList("put 1", "put 3", "delete 1"), recovered.records);
+            assertEquals(3, wal.lastSeq());
+        }
+    }
+
+    @Test
+    void theLogRefusesRecordsOnceTornBytesCannotBeCutOff() throws IOException {
+        TornWrites opener = new TornWrites(true);
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, SyncPolicy.osManaged(), opener, 0, new Recorder())) {
+            wal.appendPut(produit(1));
+            opener.failNext = true;
+            assertThrows(IOException.class, () -> wal.appendPut(produit(2)));
+            assertThrows(IOException.class, () -> wal.appendPut(produit(3)));
+            assertEquals(1, wal.lastSeq());
+        }
+        Recorder recovered = new Recorder();
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, SyncPolicy.osManaged(), 0, recovered)) {
+            assertEquals(List.of("put 1"), recovered.records);
+        }
+    }
+
+    private static Produit produit(long ref) {
+        return new ProduitBuilder().ref(ref).nom("p" + ref).prix(1).type(TypeProduit.Neutritif).quantiteStock(1).build();
+    }
+
+    private static final class Recorder implements WriteAheadLog.Replayer {
+        final List<String> records = new ArrayList<>();
+
+        @Override
+        public void put(Produit p) {
+            records.add("put " + p.getRef());
+        }
+
+        @Override
+        public void delete(long ref) {
+            records.add("delete " + ref);
+        }
+    }
+
+    /**
+     * Opens segments whose next write, once armed, stops halfway and fails, as a full disk would.
+     */
+    private static final class TornWrites implements WriteAheadLog.SegmentOpener {
+        private final boolean failTruncate;
+        boolean failNext;
+
+        TornWrites(boolean failTruncate) {
+            this.failTruncate = failTruncate;
+        }
+
+        @Override
+        public FileChannel open(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            return new Forwarding(channel) {
+                @Override
+                public int write(ByteBuffer src) throws IOException {
+                    if (!failNext)
+                        return super.write(src);
+                    failNext = false;
+                    ByteBuffer half = src.duplicate();
+                    half.limit(src.position() + src.remaining() / 2);
+                    int written = super.write(half);
+                    src.position(src.position() + written);
+                    throw new IOException("No space left on device");
+                }
+
+                @Override
+                public FileChannel truncate(long size) throws IOException {
+                    if (failTruncate)
+                        throw new IOException("I/O error");
+                    return super.truncate(size);
+                }
+            };
+        }
+    }
+
+    private static class Forwarding extends FileChannel {
+        private final FileChannel channel;
+
+        Forwarding(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return channel.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return channel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return channel.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.repository.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reporting of listener failures by event log subscriptions.
+ */
+class ProduitEventLogTest {
+
+    @Test
+    void failingEventsAreReportedAndCountedWithoutStoppingDelivery() throws InterruptedException {
+        ProduitEventLog log = new ProduitEventLog(64);
+        List<Long> delivered = new ArrayList<>();
+        List<Long> failed = new ArrayList<>();
+        IllegalStateException thrown = new IllegalStateException("listener failure");
+        CountDownLatch done = new CountDownLatch(10);
+        ProduitEventListener listener = new ProduitEventListener() {
+            @Override
+            public void onEvent(ProduitEvent event) {
+                done.countDown();
+                if (event.getSequence() % 3 == 0)
+                    throw thrown;
+                delivered.add(event.getSequence());
+            }
+
+            @Override
+            public void onError(ProduitEvent event, RuntimeException failure) {
+                assertSame(thrown, failure);
+                failed.add(event.getSequence());
+                if (event.getSequence() == 6)
+                    throw new IllegalStateException("handler failure"); // Counted once, like any other
+            }
+        };
+        try (ProduitEventLog.Subscription s = log.subscribe(1, listener, LagPolicy.SKIP)) {
+            for (long ref = 1; ref <= 10; ref++)
+                log.publish(ProduitEvent.Type.CREATED, ref, null, null);
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            waitForPosition(s, 11);
+            assertEquals(List.of(1L, 2L, 4L, 5L, 7L, 8L, 10L), delivered);
+            assertEquals(List.of(3L, 6L, 9L), failed);
+            assertEquals(3, s.failures());
+        }
+    }
+
+    @Test
+    void failingLagNotificationsAreReportedWithoutAnEvent() throws InterruptedException {
+        ProduitEventLog log = new ProduitEventLog(4);
+        for (long ref = 1; ref <= 10; ref++)
+            log.publish(ProduitEvent.Type.CREATED, ref, null, null);
+        List<ProduitEvent> failedEvents = new ArrayList<>();
+        ProduitEventListener listener = new ProduitEventListener() {
+            @Override
+            public void onEvent(ProduitEvent event) {
+            }
+
+            @Override
+            public void onLag(long fromSequence, long toSequence) {
+                throw new IllegalStateException("lag");
+            }
+
+            @Override
+            public void onError(ProduitEvent event, RuntimeException failure) {
+                failedEvents.add(event);
+            }
+        };
+        try (ProduitEventLog.Subscription s = log.subscribe(1, listener, LagPolicy.SKIP)) {
+            waitForPosition(s, 11);
+            assertEquals(1, s.failures());
+            assertEquals(1, failedEvents.size());
+            assertNull(failedEvents.get(0));
+        }
+    }
+
+    private static void waitForPosition(ProduitEventLog.Subscription s, long position) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (s.position() < position && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertEquals(position, s.position());
+    }
+}
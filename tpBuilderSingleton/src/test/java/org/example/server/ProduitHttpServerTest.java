@@ -0,0 +1,190 @@
+package org.example.server;
+
+import org.example.entity.Produit;
+import org.example.entity.ProduitBuilder;
+import org.example.entity.TypeProduit;
+import org.example.io.ProduitJson;
+import org.example.repository.IProduitRepository;
+import org.example.repository.ProduitRepositoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Routes, statuses and admission control of ProduitHttpServer, over real HTTP on the loopback.
+ */
+class ProduitHttpServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final List<ProduitHttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stopServers() {
+        servers.forEach(ProduitHttpServer::close);
+    }
+
+    @Test
+    void eachRouteAnswersItsStatus() throws Exception {
+        ProduitRepositoryImpl repository = ProduitRepositoryImpl.newInstance();
+        ProduitHttpServer server = start(ProduitHttpServer.builder(repository));
+
+        HttpResponse<String> created = send(server, "POST", "/produits", json(produit("lait", 3)));
+        assertEquals(201, created.statusCode());
+        Produit saved = parse(created.body()).get(0);
+        assertEquals("lait", saved.getNom());
+        assertEquals(201, send(server, "POST", "/produits", json(produit("pain", 1), produit("riz", 2))).statusCode());
+
+        HttpResponse<String> found = send(server, "GET", "/produits/" + saved.getRef(), null);
+        assertEquals(200, found.statusCode());
+        assertEquals(List.of(saved), parse(found.body()));
+
+        HttpResponse<String> updated = send(server, "PUT", "/produits/" + saved.getRef(), json(saved.toBuilder().prix(5).build()));
+        assertEquals(200, updated.statusCode());
+        assertEquals(5, repository.getByRef(saved.getRef()).getPrix());
+
+        HttpResponse<String> searched = send(server, "GET", "/produits?prixMin=2&orderBy=-PRIX", null);
+        assertEquals(200, searched.statusCode());
+        List<String> noms = new ArrayList<>();
+        parse(searched.body()).forEach(p -> noms.add(p.getNom()));
+        assertEquals(List.of("lait", "riz"), noms);
+
+        assertEquals(204, send(server, "DELETE", "/produits/" + saved.getRef(), null).statusCode());
+        assertNull(repository.getByRef(saved.getRef()));
+        assertEquals(404, send(server, "GET", "/produits/" + saved.getRef(), null).statusCode());
+        assertEquals(204, send(server, "DELETE", "/produits/" + saved.getRef(), null).statusCode());
+    }
+
+    @Test
+    void malformedRequestsAreAnsweredWithoutReachingTheRepository() throws Exception {
+        ProduitRepositoryImpl repository = ProduitRepositoryImpl.newInstance();
+        ProduitHttpServer server = start(ProduitHttpServer.builder(repository));
+
+        assertEquals(400, send(server, "GET", "/produits/abc", null).statusCode());
+        assertEquals(400, send(server, "GET", "/produits?couleur=rouge", null).statusCode());
+        assertEquals(400, send(server, "GET", "/produits?limit=" + (ProduitHttpServer.MAX_LIMIT + 1), null).statusCode());
+        assertEquals(400, send(server, "POST", "/produits", "{pas du json").statusCode());
+        assertEquals(400, send(server, "PUT", "/produits/1", json(produit("a", 1), produit("b", 2))).statusCode());
+        assertEquals(404, send(server, "GET", "/produits/1/stock", null).statusCode());
+
+        HttpResponse<String> patched = send(server, "PATCH", "/produits/1", "{}");
+        assertEquals(405, patched.statusCode());
+        assertEquals("GET, PUT, DELETE", patched.headers().firstValue("Allow").orElse(null));
+        assertEquals(405, send(server, "DELETE", "/produits", null).statusCode());
+        assertEquals(0, repository.size());
+    }
+
+    @Test
+    void aBodyOverTheMaximumIsAnswered413() throws Exception {
+        ProduitRepositoryImpl repository = ProduitRepositoryImpl.newInstance();
+        ProduitHttpServer server = start(ProduitHttpServer.builder(repository).maxBodyBytes(1024));
+        List<Produit> many = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            many.add(produit("p" + i, i));
+        String big = json(many.toArray(new Produit[0]));
+        assertTrue(big.length() > 1024);
+
+        assertEquals(413, send(server, "POST", "/produits", big).statusCode());
+        assertEquals(413, send(server, "PUT", "/produits/1", big).statusCode());
+        // Without a declared length, the body is read only one byte past the maximum
+        HttpRequest chunked = HttpRequest.newBuilder(uri(server, "/produits"))
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(big.getBytes(StandardCharsets.UTF_8))))
+                .build();
+        assertEquals(413, client.send(chunked, HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(0, repository.size());
+
+        assertEquals(201, send(server, "POST", "/produits", json(produit("petit", 1))).statusCode());
+        assertEquals(1, repository.size());
+    }
+
+    @Test
+    void aRequestFindingNoPermitIsAnswered503() throws Exception {
+        ProduitRepositoryImpl backend = ProduitRepositoryImpl.newInstance();
+        Produit p = backend.save(produit("lent", 1));
+        CountDownLatch release = new CountDownLatch(1);
+        IProduitRepository blocking = (IProduitRepository) Proxy.newProxyInstance(IProduitRepository.class.getClassLoader(),
+                new Class<?>[]{IProduitRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getByRef"))
+                        release.await();
+                    try {
+                        return method.invoke(backend, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        ProduitHttpServer server = start(ProduitHttpServer.builder(blocking)
+                .maxConcurrent(ProduitHttpServer.RequestKind.LOOKUP, 1)
+                .queueTimeout(50));
+
+        CompletableFuture<HttpResponse<String>> first = client.sendAsync(
+                HttpRequest.newBuilder(uri(server, "/produits/" + p.getRef())).build(), HttpResponse.BodyHandlers.ofString());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (server.getActive(ProduitHttpServer.RequestKind.LOOKUP) == 0 && System.nanoTime() < deadline)
+            Thread.sleep(5);
+        assertEquals(1, server.getActive(ProduitHttpServer.RequestKind.LOOKUP));
+
+        HttpResponse<String> rejected = send(server, "GET", "/produits/" + p.getRef(), null);
+        assertEquals(503, rejected.statusCode());
+        assertEquals("1", rejected.headers().firstValue("Retry-After").orElse(null));
+        assertEquals(1, server.getRejected(ProduitHttpServer.RequestKind.LOOKUP));
+        // The other kinds have their own permits
+        assertEquals(200, send(server, "GET", "/produits?nom=le", null).statusCode());
+        assertEquals(0, server.getRejected(ProduitHttpServer.RequestKind.SEARCH));
+
+        release.countDown();
+        assertEquals(200, first.get(10, TimeUnit.SECONDS).statusCode());
+        assertEquals(0, server.getActive(ProduitHttpServer.RequestKind.LOOKUP));
+        assertEquals(200, send(server, "GET", "/produits/" + p.getRef(), null).statusCode());
+    }
+
+    private ProduitHttpServer start(ProduitHttpServer.Builder builder) throws IOException {
+        ProduitHttpServer server = builder.start();
+        servers.add(server);
+        return server;
+    }
+
+    private HttpResponse<String> send(ProduitHttpServer server, String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri(server, path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static URI uri(ProduitHttpServer server, String path) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + path);
+    }
+
+    private static String json(Produit... produits) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProduitJson.write(List.of(produits), out, produits.length == 1 ? ProduitJson.Format.NDJSON : ProduitJson.Format.JSON_ARRAY);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static List<Produit> parse(String body) throws IOException {
+        List<Produit> produits = new ArrayList<>();
+        ProduitJson.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), ProduitJson.DEFAULT_BATCH_SIZE, produits::addAll);
+        return produits;
+    }
+
+    private static Produit produit(String nom, double prix) {
+        return new ProduitBuilder().nom(nom).prix(prix).type(TypeProduit.Neutritif).quantiteStock(1).build();
+    }
+}